@@ -74,6 +74,9 @@ import org.sonar.db.DefaultDatabase;
 import org.sonar.db.purge.PurgeProfiler;
 import org.sonar.process.Props;
 import org.sonar.process.logging.LogbackHelper;
+import org.sonar.server.cache.DistributedCaches;
+import org.sonar.server.cache.HazelcastCacheInvalidationBus;
+import org.sonar.server.cache.StandaloneCacheInvalidationBus;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.component.index.ComponentIndexer;
 import org.sonar.server.computation.task.projectanalysis.ProjectAnalysisTaskModule;
@@ -162,6 +165,12 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
       .add(props.rawProperties())
       .add(level1Components())
       .add(toArray(CorePropertyDefinitions.all()));
+    if (props.valueAsBoolean("sonar.cluster.enabled")) {
+      this.level1.add(HazelcastClientWrapperImpl.class, HazelcastCacheInvalidationBus.class);
+    } else {
+      // settings and metrics are changed by the web server, which can't notify the Compute Engine
+      this.level1.add(new StandaloneCacheInvalidationBus(false));
+    }
     configureFromModules(this.level1);
     this.level1.startComponents();
 
@@ -180,9 +189,7 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
 
     // TODO refactoring levelXComponents()
     if (props.valueAsBoolean("sonar.cluster.enabled")) {
-      this.level4.add(
-        HazelcastClientWrapperImpl.class,
-        CeDistributedInformationImpl.class);
+      this.level4.add(CeDistributedInformationImpl.class);
     } else {
       this.level4.add(
         StandaloneCeDistributedInformation.class);
@@ -230,6 +237,7 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
       CeProcessLogging.class,
       UuidFactoryImpl.INSTANCE,
       ClusterImpl.class,
+      DistributedCaches.class,
       LogbackHelper.class,
       DefaultDatabase.class,
       DatabaseChecker.class,
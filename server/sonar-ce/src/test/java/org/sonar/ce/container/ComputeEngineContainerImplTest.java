@@ -46,6 +46,7 @@ import org.sonar.process.NetworkUtils;
 import org.sonar.process.ProcessId;
 import org.sonar.process.ProcessProperties;
 import org.sonar.process.Props;
+import org.sonar.server.cache.HazelcastCacheInvalidationBus;
 
 import static java.lang.String.valueOf;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -92,9 +93,13 @@ public class ComputeEngineContainerImplTest {
     MutablePicoContainer picoContainer = underTest.getComponentContainer().getPicoContainer();
     assertThat(
       picoContainer.getComponentAdapters().stream()
+        .map(ComponentAdapter::getComponentImplementation)
+        .collect(Collectors.toList())).contains((Class) CeDistributedInformationImpl.class);
+    assertThat(
+      picoContainer.getParent().getParent().getParent().getComponentAdapters().stream()
         .map(ComponentAdapter::getComponentImplementation)
         .collect(Collectors.toList())).contains((Class) HazelcastClientWrapperImpl.class,
-          (Class) CeDistributedInformationImpl.class);
+          (Class) HazelcastCacheInvalidationBus.class);
     underTest.stop();
   }
 
@@ -118,7 +123,7 @@ public class ComputeEngineContainerImplTest {
           + 4 // content of CeQueueModule
           + 4 // content of CeHttpModule
           + 3 // content of CeTaskCommonsModule
-          + 4 // content of ProjectAnalysisTaskModule
+          + 6 // content of ProjectAnalysisTaskModule
           + 5 // content of CeTaskProcessorModule
           + 3 // CeCleaningModule + its content
           + 1 // CeDistributedInformation
@@ -134,9 +139,10 @@ public class ComputeEngineContainerImplTest {
     );
     assertThat(picoContainer.getParent().getParent().getParent().getComponentAdapters()).hasSize(
       COMPONENTS_IN_LEVEL_1_AT_CONSTRUCTION
-        + 25 // level 1
+        + 26 // level 1
+        + 1 // CacheInvalidationBus
         + 47 // content of DaoModule
-        + 3 // content of EsSearchModule
+        + 4 // content of EsSearchModule
         + 61 // content of CorePropertyDefinitions
     );
     assertThat(
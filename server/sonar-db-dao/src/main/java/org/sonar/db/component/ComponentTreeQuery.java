@@ -21,6 +21,7 @@ package org.sonar.db.component;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -37,6 +38,14 @@ public class ComponentTreeQuery {
     CHILDREN, LEAVES
   }
 
+  /**
+   * Fields of components that can be used to sort the tree in database. Sort is case-insensitive and
+   * components without value are returned last, whatever the direction.
+   */
+  public enum SortField {
+    NAME, PATH, QUALIFIER
+  }
+
   @CheckForNull
   private final String nameOrKeyQuery;
   // SONAR-7681 a public implementation of List must be used in MyBatis - potential concurrency exceptions otherwise
@@ -44,12 +53,17 @@ public class ComponentTreeQuery {
   private final ArrayList<String> qualifiers;
   private final String baseUuid;
   private final Strategy strategy;
+  @CheckForNull
+  private final ArrayList<SortField> sortFields;
+  private final boolean asc;
 
   private ComponentTreeQuery(Builder builder) {
     this.nameOrKeyQuery = builder.nameOrKeyQuery;
     this.qualifiers = builder.qualifiers == null ? null : newArrayList(builder.qualifiers);
     this.baseUuid = builder.baseUuid;
     this.strategy = requireNonNull(builder.strategy);
+    this.sortFields = builder.sortFields == null ? null : newArrayList(builder.sortFields);
+    this.asc = builder.asc;
   }
 
   @CheckForNull
@@ -78,6 +92,19 @@ public class ComponentTreeQuery {
     return strategy;
   }
 
+  /**
+   * Components are not sorted when {@code null}. Otherwise they are sorted by the given fields then by id, so that
+   * pages of results are stable.
+   */
+  @CheckForNull
+  public List<SortField> getSortFields() {
+    return sortFields;
+  }
+
+  public boolean isAsc() {
+    return asc;
+  }
+
   public String getUuidPath(ComponentDto component) {
     switch (strategy) {
       case CHILDREN:
@@ -100,6 +127,9 @@ public class ComponentTreeQuery {
     private Collection<String> qualifiers;
     private String baseUuid;
     private Strategy strategy;
+    @CheckForNull
+    private List<SortField> sortFields;
+    private boolean asc = true;
 
     private Builder() {
       // private constructor
@@ -129,5 +159,15 @@ public class ComponentTreeQuery {
       this.strategy = requireNonNull(strategy);
       return this;
     }
+
+    public Builder setSortFields(@Nullable List<SortField> sortFields) {
+      this.sortFields = sortFields;
+      return this;
+    }
+
+    public Builder setAsc(boolean asc) {
+      this.asc = asc;
+      return this;
+    }
   }
 }
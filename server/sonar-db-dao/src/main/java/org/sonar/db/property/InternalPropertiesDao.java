@@ -61,6 +61,27 @@ public class InternalPropertiesDao implements Dao {
     }
   }
 
+  /**
+   * Change the value of a property which is stored in varchar.
+   * <p>Unlike {@link #save(DbSession, String, String)}, which deletes and inserts again the property, an existing
+   * property is changed by a single UPDATE. Concurrent transactions changing the same property then wait for each
+   * other instead of failing on the unique key of the property. The property is inserted if it does not exist yet.</p>
+   *
+   * @throws IllegalArgumentException if {@code key} or {@code value} is {@code null} or empty, or if {@code value}
+   *         is longer than 4000 characters.
+   */
+  public void update(DbSession dbSession, String key, String value) {
+    checkKey(key);
+    checkArgument(value != null && !value.isEmpty(), "value can't be null nor empty");
+    checkArgument(!mustsBeStoredInClob(value), "value can't be longer than %s characters", TEXT_VALUE_MAX_LENGTH);
+
+    InternalPropertiesMapper mapper = getMapper(dbSession);
+    long now = system2.now();
+    if (mapper.updateAsText(key, value, now) == 0) {
+      mapper.insertAsText(key, value, now);
+    }
+  }
+
   private static boolean mustsBeStoredInClob(String value) {
     return value.length() > TEXT_VALUE_MAX_LENGTH;
   }
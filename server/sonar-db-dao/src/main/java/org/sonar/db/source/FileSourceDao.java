@@ -25,8 +25,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import javax.annotation.CheckForNull;
 import org.apache.commons.dbutils.DbUtils;
@@ -35,6 +38,9 @@ import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
+
 public class FileSourceDao implements Dao {
 
   private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
@@ -74,6 +80,27 @@ public class FileSourceDao implements Dao {
     }
   }
 
+  /**
+   * Line hashes of multiple files, by file uuid. Files without source are not returned.
+   */
+  public Map<String, List<String>> selectLineHashesByFileUuids(DbSession dbSession, Collection<String> fileUuids) {
+    Map<String, List<String>> result = new HashMap<>();
+    executeLargeInputsWithoutOutput(fileUuids, partition -> mapper(dbSession).selectLineHashesByFileUuids(partition, Type.SOURCE)
+      .forEach(dto -> {
+        String lineHashes = dto.getLineHashes();
+        result.put(dto.getFileUuid(), lineHashes == null ? Collections.emptyList() : END_OF_LINE_SPLITTER.splitToList(lineHashes));
+      }));
+    return result;
+  }
+
+  /**
+   * Sources of multiple files, restricted to the columns needed to read SCM data with
+   * {@link FileSourceDto#getSourceScmData()}: id, project and file uuids, source hash and binary data.
+   */
+  public List<FileSourceDto> selectScmDataByFileUuids(DbSession dbSession, Collection<String> fileUuids) {
+    return executeLargeInputs(fileUuids, partition -> mapper(dbSession).selectScmDataByFileUuids(partition, Type.SOURCE));
+  }
+
   public <T> void readLineHashesStream(DbSession dbSession, String fileUuid, Function<Reader, T> function) {
     Connection connection = dbSession.getConnection();
     PreparedStatement pstmt = null;
@@ -106,6 +133,14 @@ public class FileSourceDao implements Dao {
     mapper(session).update(dto);
   }
 
+  /**
+   * Updates only the column INPUT_HASH of the row with the specified id. Column UPDATED_AT is not changed, as the data
+   * of the file is unchanged.
+   */
+  public void updateInputHash(DbSession session, long id, String inputHash) {
+    mapper(session).updateInputHash(id, inputHash);
+  }
+
   private static FileSourceMapper mapper(DbSession session) {
     return session.getMapper(FileSourceMapper.class);
   }
@@ -21,6 +21,7 @@ package org.sonar.db.source;
 
 import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -48,6 +49,7 @@ public class FileSourceDto {
   private long updatedAt;
   private String lineHashes;
   private String srcHash;
+  private String inputHash;
   private byte[] binaryData;
   private String dataType;
   private String dataHash;
@@ -212,6 +214,60 @@ public class FileSourceDto {
     return decodeSourceData(binaryData);
   }
 
+  /**
+   * Same as {@link #getSourceData()}, but only the number and the SCM fields (revision, author and date)
+   * of lines are deserialized. The other fields, for example source, highlighting or coverage, are skipped
+   * without being decoded.
+   */
+  public List<DbFileSources.Line> getSourceScmData() {
+    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
+      CodedInputStream input = CodedInputStream.newInstance(lz4Input);
+      input.setSizeLimit(Integer.MAX_VALUE);
+      List<DbFileSources.Line> lines = new ArrayList<>();
+      DbFileSources.Line.Builder lineBuilder = DbFileSources.Line.newBuilder();
+      int tag = input.readTag();
+      while (tag != 0) {
+        if (WireFormat.getTagFieldNumber(tag) == DbFileSources.Data.LINES_FIELD_NUMBER) {
+          int oldLimit = input.pushLimit(input.readRawVarint32());
+          lines.add(readScmOfLine(input, lineBuilder.clear()));
+          input.popLimit(oldLimit);
+        } else {
+          input.skipField(tag);
+        }
+        tag = input.readTag();
+      }
+      return lines;
+    } catch (IOException e) {
+      throw new IllegalStateException(
+        format("Fail to decompress and deserialize SCM data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
+        e);
+    }
+  }
+
+  private static DbFileSources.Line readScmOfLine(CodedInputStream input, DbFileSources.Line.Builder lineBuilder) throws IOException {
+    int tag = input.readTag();
+    while (tag != 0) {
+      switch (WireFormat.getTagFieldNumber(tag)) {
+        case DbFileSources.Line.LINE_FIELD_NUMBER:
+          lineBuilder.setLine(input.readInt32());
+          break;
+        case DbFileSources.Line.SCM_REVISION_FIELD_NUMBER:
+          lineBuilder.setScmRevision(input.readString());
+          break;
+        case DbFileSources.Line.SCM_AUTHOR_FIELD_NUMBER:
+          lineBuilder.setScmAuthor(input.readString());
+          break;
+        case DbFileSources.Line.SCM_DATE_FIELD_NUMBER:
+          lineBuilder.setScmDate(input.readInt64());
+          break;
+        default:
+          input.skipField(tag);
+      }
+      tag = input.readTag();
+    }
+    return lineBuilder.build();
+  }
+
   public FileSourceDto setSourceData(DbFileSources.Data data) {
     this.dataType = Type.SOURCE;
     this.binaryData = encodeSourceData(data);
@@ -254,6 +310,20 @@ public class FileSourceDto {
     return this;
   }
 
+  @CheckForNull
+  public String getInputHash() {
+    return inputHash;
+  }
+
+  /**
+   * MD5 of the data read from the analysis report and from the Compute Engine repositories to build column
+   * BINARY_DATA. Used to skip the computation of BINARY_DATA when none of its inputs changed.
+   */
+  public FileSourceDto setInputHash(@Nullable String inputHash) {
+    this.inputHash = inputHash;
+    return this;
+  }
+
   public long getCreatedAt() {
     return createdAt;
   }
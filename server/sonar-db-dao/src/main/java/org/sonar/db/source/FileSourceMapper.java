@@ -30,7 +30,13 @@ public interface FileSourceMapper {
   @CheckForNull
   FileSourceDto select(@Param("fileUuid") String fileUuid, @Param("dataType") String dataType);
 
+  List<FileSourceDto> selectLineHashesByFileUuids(@Param("fileUuids") List<String> fileUuids, @Param("dataType") String dataType);
+
+  List<FileSourceDto> selectScmDataByFileUuids(@Param("fileUuids") List<String> fileUuids, @Param("dataType") String dataType);
+
   void insert(FileSourceDto dto);
 
   void update(FileSourceDto dto);
+
+  void updateInputHash(@Param("id") long id, @Param("inputHash") String inputHash);
 }
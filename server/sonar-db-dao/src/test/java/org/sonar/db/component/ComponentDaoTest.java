@@ -1131,6 +1131,45 @@ public class ComponentDaoTest {
     assertThat(result).extracting("uuid").containsOnly("file-1-uuid", "file-2-uuid", "module-1-uuid");
   }
 
+  @Test
+  public void select_page_of_descendants_sorted_by_fields() {
+    ComponentDto project = newPrivateProjectDto(db.getDefaultOrganization(), PROJECT_UUID);
+    db.components().insertProjectAndSnapshot(project);
+    ComponentDto directory = db.components().insertComponent(newDirectory(project, "src").setName("b"));
+    ComponentDto file1 = db.components().insertComponent(newFileDto(project, null, "file-1-uuid").setName("B").setPath(null));
+    ComponentDto file2 = db.components().insertComponent(newFileDto(project, null, "file-2-uuid").setName("a").setPath("z"));
+    ComponentDto file3 = db.components().insertComponent(newFileDto(project, null, "file-3-uuid").setName("C").setPath("y"));
+    db.commit();
+
+    ComponentTreeQuery byName = newTreeQuery(PROJECT_UUID).setSortFields(asList(ComponentTreeQuery.SortField.NAME)).build();
+    assertThat(underTest.selectDescendants(dbSession, byName, 0, 10)).extracting(ComponentDto::uuid)
+      .containsExactly(file2.uuid(), directory.uuid(), file1.uuid(), file3.uuid());
+    assertThat(underTest.selectDescendants(dbSession, byName, 1, 2)).extracting(ComponentDto::uuid)
+      .containsExactly(directory.uuid(), file1.uuid());
+
+    ComponentTreeQuery byQualifierAndPathDesc = newTreeQuery(PROJECT_UUID)
+      .setSortFields(asList(ComponentTreeQuery.SortField.QUALIFIER, ComponentTreeQuery.SortField.PATH))
+      .setAsc(false)
+      .build();
+    assertThat(underTest.selectDescendants(dbSession, byQualifierAndPathDesc, 0, 10)).extracting(ComponentDto::uuid)
+      .containsExactly(file2.uuid(), file3.uuid(), file1.uuid(), directory.uuid());
+  }
+
+  @Test
+  public void count_descendants() {
+    ComponentDto project = newPrivateProjectDto(db.getDefaultOrganization(), PROJECT_UUID);
+    db.components().insertProjectAndSnapshot(project);
+    ComponentDto module = db.components().insertComponent(newModuleDto(MODULE_UUID, project));
+    db.components().insertComponent(newFileDto(project, null, "file-1-uuid"));
+    db.components().insertComponent(newFileDto(module, null, "file-2-uuid"));
+    db.commit();
+
+    assertThat(underTest.countDescendants(dbSession, newTreeQuery(PROJECT_UUID).setStrategy(CHILDREN).build())).isEqualTo(2);
+    assertThat(underTest.countDescendants(dbSession, newTreeQuery(PROJECT_UUID).setStrategy(LEAVES).build())).isEqualTo(3);
+    assertThat(underTest.countDescendants(dbSession, newTreeQuery(PROJECT_UUID).setStrategy(LEAVES).setQualifiers(asList(Qualifiers.FILE)).build())).isEqualTo(2);
+    assertThat(underTest.countDescendants(dbSession, newTreeQuery("unknown").build())).isZero();
+  }
+
   @Test
   public void select_descendants_returns_empty_list_if_base_component_does_not_exist() {
     ComponentTreeQuery query = newTreeQuery(PROJECT_UUID).setStrategy(CHILDREN).build();
@@ -152,6 +152,22 @@ public class IssueDaoTest {
     assertThat(accumulator.list).isEmpty();
   }
 
+  @Test
+  public void scrollNonClosedByComponentUuids() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file1 = db.components().insertComponent(newFileDto(project));
+    ComponentDto file2 = db.components().insertComponent(newFileDto(project));
+    IssueDto openIssueOnFile1 = db.issues().insert(rule, project, file1, i -> i.setStatus("OPEN").setResolution(null));
+    IssueDto openIssueOnFile2 = db.issues().insert(rule, project, file2, i -> i.setStatus("OPEN").setResolution(null));
+    db.issues().insert(rule, project, file2, i -> i.setStatus("CLOSED").setResolution("FIXED"));
+    db.issues().insert(rule, project, project, i -> i.setStatus("OPEN").setResolution(null));
+
+    Accumulator accumulator = new Accumulator();
+    underTest.scrollNonClosedByComponentUuids(db.getSession(), asList(file1.uuid(), file2.uuid(), "does_not_exist"), accumulator);
+    accumulator.assertThatContainsOnly(openIssueOnFile1, openIssueOnFile2);
+  }
+
   @Test
   public void scrollNonClosedByModuleOrProject() {
     RuleDefinitionDto rule = db.rules().insert();
@@ -180,6 +180,64 @@ public class InternalPropertiesDaoTest {
       .hasCreatedAt(DATE_2);
   }
 
+  @Test
+  public void update_throws_IAE_if_key_is_empty() {
+    expectKeyNullOrEmptyIAE();
+
+    underTest.update(dbSession, "", VALUE_SMALL);
+  }
+
+  @Test
+  public void update_throws_IAE_if_value_is_empty() {
+    expectValueNullOrEmptyIAE();
+
+    underTest.update(dbSession, A_KEY, "");
+  }
+
+  @Test
+  public void update_throws_IAE_if_value_is_more_than_4000() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("value can't be longer than 4000 characters");
+
+    underTest.update(dbSession, A_KEY, VALUE_SIZE_4001);
+  }
+
+  @Test
+  public void update_inserts_value_in_varchar_if_property_does_not_exist() {
+    when(system2.now()).thenReturn(DATE_1);
+
+    underTest.update(dbSession, A_KEY, VALUE_SMALL);
+
+    assertThatInternalProperty(A_KEY)
+      .hasTextValue(VALUE_SMALL)
+      .hasCreatedAt(DATE_1);
+  }
+
+  @Test
+  public void update_persists_new_value_in_varchar_when_old_one_was_in_varchar() {
+    when(system2.now()).thenReturn(DATE_1, DATE_2);
+
+    underTest.save(dbSession, A_KEY, VALUE_SMALL);
+    underTest.update(dbSession, A_KEY, VALUE_SIZE_4000);
+
+    assertThatInternalProperty(A_KEY)
+      .hasTextValue(VALUE_SIZE_4000)
+      .hasCreatedAt(DATE_2);
+    assertThat(dbTester.countRowsOfTable(dbSession, "internal_properties")).isEqualTo(1);
+  }
+
+  @Test
+  public void update_persists_new_value_in_varchar_when_old_one_was_in_clob() {
+    when(system2.now()).thenReturn(DATE_1, DATE_2);
+
+    underTest.save(dbSession, A_KEY, VALUE_SIZE_4001);
+    underTest.update(dbSession, A_KEY, VALUE_SMALL);
+
+    assertThatInternalProperty(A_KEY)
+      .hasTextValue(VALUE_SMALL)
+      .hasCreatedAt(DATE_2);
+  }
+
   @Test
   public void saveAsEmpty_throws_IAE_if_key_is_null() {
     expectKeyNullOrEmptyIAE();
@@ -21,6 +21,8 @@ package org.sonar.db.source;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
@@ -29,8 +31,10 @@ import org.junit.Test;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
+import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 
@@ -100,6 +104,7 @@ public class FileSourceDaoTest {
       .setDataHash("FILE2_DATA_HASH")
       .setLineHashes("LINE1_HASH\\nLINE2_HASH")
       .setSrcHash("FILE2_HASH")
+      .setInputHash("FILE2_INPUT_HASH")
       .setDataType(Type.SOURCE)
       .setCreatedAt(1500000000000L)
       .setUpdatedAt(1500000000001L)
@@ -107,7 +112,60 @@ public class FileSourceDaoTest {
     session.commit();
 
     dbTester.assertDbUnitTable(getClass(), "insert-result.xml", "file_sources",
-      "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "created_at", "updated_at", "data_type", "revision");
+      "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "input_hash", "created_at", "updated_at", "data_type", "revision");
+  }
+
+  @Test
+  public void selectLineHashesByFileUuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("FILE2_UUID")
+      .setBinaryData("FILE2_BINARY_DATA".getBytes())
+      .setLineHashes("LINE1\nLINE2")
+      .setDataType(Type.SOURCE)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L));
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("FILE3_UUID")
+      .setBinaryData("FILE3_BINARY_DATA".getBytes())
+      .setDataType(Type.SOURCE)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L));
+    session.commit();
+
+    Map<String, List<String>> lineHashes = underTest.selectLineHashesByFileUuids(session, asList("FILE2_UUID", "FILE3_UUID", "unknown"));
+
+    assertThat(lineHashes).containsOnlyKeys("FILE2_UUID", "FILE3_UUID");
+    assertThat(lineHashes.get("FILE2_UUID")).containsExactly("LINE1", "LINE2");
+    assertThat(lineHashes.get("FILE3_UUID")).isEmpty();
+  }
+
+  @Test
+  public void selectScmDataByFileUuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("FILE2_UUID")
+      .setSourceData(DbFileSources.Data.newBuilder()
+        .addLines(DbFileSources.Line.newBuilder().setLine(1).setSource("foo").setScmRevision("rev1").setScmDate(1_500_000_000_000L))
+        .build())
+      .setSrcHash("FILE2_HASH")
+      .setLineHashes("LINE1")
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L));
+    session.commit();
+
+    List<FileSourceDto> dtos = underTest.selectScmDataByFileUuids(session, asList("FILE2_UUID", "unknown"));
+
+    assertThat(dtos).hasSize(1);
+    FileSourceDto dto = dtos.get(0);
+    assertThat(dto.getFileUuid()).isEqualTo("FILE2_UUID");
+    assertThat(dto.getProjectUuid()).isEqualTo("PRJ_UUID");
+    assertThat(dto.getSrcHash()).isEqualTo("FILE2_HASH");
+    assertThat(dto.getLineHashes()).isNull();
+    assertThat(dto.getSourceScmData()).extracting(DbFileSources.Line::getScmRevision).containsExactly("rev1");
   }
 
   @Test
@@ -169,6 +227,7 @@ public class FileSourceDaoTest {
       .setBinaryData("updated data".getBytes())
       .setDataHash("NEW_DATA_HASH")
       .setSrcHash("NEW_FILE_HASH")
+      .setInputHash("NEW_INPUT_HASH")
       .setLineHashes("NEW_LINE_HASHES")
       .setDataType(Type.SOURCE)
       .setUpdatedAt(1500000000002L)
@@ -176,7 +235,20 @@ public class FileSourceDaoTest {
     session.commit();
 
     dbTester.assertDbUnitTable(getClass(), "update-result.xml", "file_sources",
-      "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "created_at", "updated_at", "data_type", "revision");
+      "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "input_hash", "created_at", "updated_at", "data_type", "revision");
+  }
+
+  @Test
+  public void updateInputHash() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    underTest.updateInputHash(session, 101L, "NEW_INPUT_HASH");
+    session.commit();
+
+    FileSourceDto fileSourceDto = underTest.selectSourceByFileUuid(session, "FILE1_UUID");
+    assertThat(fileSourceDto.getInputHash()).isEqualTo("NEW_INPUT_HASH");
+    assertThat(fileSourceDto.getDataHash()).isEqualTo("hash");
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(1500000000000L);
   }
 
   private static class ReaderToStringFunction implements Function<Reader, String> {
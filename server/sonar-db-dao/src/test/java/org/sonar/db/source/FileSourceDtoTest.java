@@ -80,6 +80,50 @@ public class FileSourceDtoTest {
     assertThat(data.getLinesCount()).isEqualTo(build.getLinesCount());
   }
 
+  @Test
+  public void getSourceScmData_reads_only_line_number_and_scm_fields() {
+    DbFileSources.Data data = DbFileSources.Data.newBuilder()
+      .addLines(DbFileSources.Line.newBuilder()
+        .setLine(1)
+        .setSource("foo")
+        .setScmRevision("rev1")
+        .setScmAuthor("john")
+        .setScmDate(1_500_000_000_000L)
+        .setHighlighting("0,3,k")
+        .addDuplication(1)
+        .setLineHits(3))
+      .addLines(DbFileSources.Line.newBuilder()
+        .setLine(2)
+        .setSource("bar")
+        .setScmRevision("rev2")
+        .setScmDate(1_500_000_000_001L))
+      .addLines(DbFileSources.Line.newBuilder()
+        .setLine(3))
+      .build();
+    FileSourceDto underTest = new FileSourceDto().setSourceData(data);
+
+    List<DbFileSources.Line> lines = underTest.getSourceScmData();
+
+    assertThat(lines).containsExactly(
+      DbFileSources.Line.newBuilder().setLine(1).setScmRevision("rev1").setScmAuthor("john").setScmDate(1_500_000_000_000L).build(),
+      DbFileSources.Line.newBuilder().setLine(2).setScmRevision("rev2").setScmDate(1_500_000_000_001L).build(),
+      DbFileSources.Line.newBuilder().setLine(3).build());
+  }
+
+  @Test
+  public void getSourceScmData_throws_ISE_with_id_fileUuid_and_projectUuid_in_message_when_data_cant_be_read() {
+    FileSourceDto underTest = new FileSourceDto()
+      .setBinaryData(new byte[] {1, 2, 3, 4, 5})
+      .setId(12L)
+      .setFileUuid("file uuid")
+      .setProjectUuid("project uuid");
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to decompress and deserialize SCM data [id=12,fileUuid=file uuid,projectUuid=project uuid]");
+
+    underTest.getSourceScmData();
+  }
+
   private static DbFileSources.Data createOver64MBDataStructure() {
     DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
     DbFileSources.Line.Builder lineBuilder = DbFileSources.Line.newBuilder();
@@ -30,6 +30,7 @@ public class DbVersion66 implements DbVersion {
       .add(1800, "Add incremental column to snapthots table", AddIncrementalColumnToSnapshotsTable.class)
       .add(1801, "Create table CE task characteristics", CreateTableCeTaskCharacteristics.class)
       .add(1802, "Delete leak settings on views", DeleteLeakSettingsOnViews.class)
+      .add(1803, "Add input_hash column to file_sources table", AddInputHashColumnToFileSources.class)
     ;
   }
 }
@@ -0,0 +1,40 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.db.migration.version.v66;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.db.CoreDbTester;
+
+public class AddInputHashColumnToFileSourcesTest {
+  @Rule
+  public CoreDbTester db = CoreDbTester.createForSchema(AddInputHashColumnToFileSourcesTest.class, "file_sources_without_input_hash_column.sql");
+
+  private AddInputHashColumnToFileSources underTest = new AddInputHashColumnToFileSources(db.database());
+
+  @Test
+  public void execute_adds_nullable_varchar_column_input_hash_to_table_FILE_SOURCES() throws SQLException {
+    underTest.execute();
+
+    db.assertColumnDefinition("file_sources", "input_hash", Types.VARCHAR, 50, true);
+  }
+}
@@ -59,4 +59,9 @@ public final class ClusterObjectKeys {
    * {@link CeCleaningSchedulerImpl}
    */
   public static final String CE_CLEANING_JOB_LOCK = "CE_CLEANING_JOB_LOCK";
+
+  /**
+   * The key of the topic publishing the invalidations of distributed caches
+   */
+  public static final String CACHE_INVALIDATIONS = "CACHE_INVALIDATIONS";
 }
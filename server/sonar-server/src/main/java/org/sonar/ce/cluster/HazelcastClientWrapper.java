@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
 /**
  * The interface Hazelcast client wrapper.
@@ -56,7 +57,7 @@ public interface HazelcastClientWrapper {
 
   /**
    * Retrieve the Set of connected clients.
-   * The client is only CE for the time being
+   * Clients are the web servers and the compute engines
    *
    * @return the connected clients
    */
@@ -66,4 +67,14 @@ public interface HazelcastClientWrapper {
    * Gets lock among the cluster, identified by name
    */
   Lock getLock(String name);
+
+  /**
+   * Publishes a message on the topic shared by the cluster and identified by name
+   */
+  <E> void publish(String topicName, E message);
+
+  /**
+   * Registers a consumer of the messages published on the topic shared by the cluster and identified by name
+   */
+  <E> void addMessageListener(String topicName, Consumer<E> listener);
 }
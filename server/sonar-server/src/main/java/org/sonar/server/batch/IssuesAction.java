@@ -20,8 +20,6 @@
 package org.sonar.server.batch;
 
 import com.google.common.base.Splitter;
-import java.io.IOException;
-import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 import org.apache.ibatis.session.ResultHandler;
@@ -37,10 +35,10 @@ import org.sonar.db.issue.IssueDto;
 import org.sonar.scanner.protocol.input.ScannerInput;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.user.UserSession;
-import org.sonarqube.ws.MediaTypes;
+import org.sonar.server.ws.ProtobufStreamWriter;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Maps.newHashMap;
-import static java.lang.String.format;
 import static org.sonar.api.web.UserRole.USER;
 import static org.sonar.core.util.Protobuf.setNullable;
 import static org.sonar.server.ws.KeyExamples.KEY_PROJECT_EXAMPLE_001;
@@ -86,29 +84,25 @@ public class IssuesAction implements BatchWsAction {
       Map<String, String> keysByUUid = keysByUUid(dbSession, component);
 
       ScannerInput.ServerIssue.Builder responseBuilder = ScannerInput.ServerIssue.newBuilder();
-      response.stream().setMediaType(MediaTypes.PROTOBUF);
-      OutputStream output = response.stream().output();
+      checkArgument(Scopes.PROJECT.equals(component.scope()) || Scopes.FILE.equals(component.scope()),
+        "Component of scope '%s' is not allowed", component.scope());
 
-      ResultHandler<IssueDto> handler = resultContext -> {
-        IssueDto issue = resultContext.getResultObject();
-        handleIssue(issue, responseBuilder, keysByUUid, output);
-      };
-      switch (component.scope()) {
-        case Scopes.PROJECT:
+      try (ProtobufStreamWriter writer = ProtobufStreamWriter.delimited(response)) {
+        ResultHandler<IssueDto> handler = resultContext -> {
+          IssueDto issue = resultContext.getResultObject();
+          writer.write(toServerIssue(issue, responseBuilder, keysByUUid));
+        };
+        if (Scopes.PROJECT.equals(component.scope())) {
           dbClient.issueDao().scrollNonClosedByModuleOrProject(dbSession, component, handler);
-          break;
-        case Scopes.FILE:
+        } else {
           dbClient.issueDao().scrollNonClosedByComponentUuid(dbSession, component.uuid(), handler);
-          break;
-        default:
-          // only projects, modules and files are supported. Other types of components are not allowed.
-          throw new IllegalArgumentException(format("Component of scope '%s' is not allowed", component.scope()));
+        }
       }
     }
   }
 
-  private static void handleIssue(IssueDto issue, ScannerInput.ServerIssue.Builder issueBuilder,
-                                  Map<String, String> keysByUUid, OutputStream out) {
+  private static ScannerInput.ServerIssue toServerIssue(IssueDto issue, ScannerInput.ServerIssue.Builder issueBuilder, Map<String, String> keysByUUid) {
+    issueBuilder.clear();
     issueBuilder.setKey(issue.getKey());
     String moduleUuid = extractModuleUuid(issue);
     issueBuilder.setModuleKey(keysByUUid.get(moduleUuid));
@@ -125,12 +119,7 @@ public class IssuesAction implements BatchWsAction {
     setNullable(issue.getResolution(), issueBuilder::setResolution);
     issueBuilder.setType(RuleType.valueOf(issue.getType()).name());
     issueBuilder.setCreationDate(issue.getIssueCreationTime());
-    try {
-      issueBuilder.build().writeDelimitedTo(out);
-    } catch (IOException e) {
-      throw new IllegalStateException("Unable to serialize issue", e);
-    }
-    issueBuilder.clear();
+    return issueBuilder.build();
   }
 
   private static String extractModuleUuid(IssueDto issue) {
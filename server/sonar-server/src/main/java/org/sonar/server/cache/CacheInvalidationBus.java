@@ -0,0 +1,50 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.cache;
+
+import javax.annotation.Nullable;
+
+/**
+ * Broadcasts the invalidations of {@link DistributedCache} to all the processes sharing the database,
+ * so that a value changed by one process is not served anymore by the caches of the other processes.
+ */
+public interface CacheInvalidationBus {
+
+  /**
+   * Notifies the listeners of all the other processes. The current process is expected to have already
+   * applied the invalidation.
+   *
+   * @param key the invalidated key, or {@code null} if all the keys of the cache are invalidated
+   */
+  void publish(String cacheName, @Nullable String key);
+
+  void addListener(Listener listener);
+
+  /**
+   * Whether this process is notified of all the changes of cached data made by the other processes. If not,
+   * the caches of this process are disabled, as they could serve stale values until their expiration.
+   */
+  boolean isNotifiedOfOtherProcesses();
+
+  @FunctionalInterface
+  interface Listener {
+    void onInvalidation(String cacheName, @Nullable String key);
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Near cache of values loaded from the database, created by {@link DistributedCaches#create(String, long, long)}.
+ * <p>
+ * Values are kept in memory by each process. The writers of the database must call {@link #invalidate(String)}
+ * or {@link #invalidateAll()} once their transaction is committed, so that the other processes of the cluster
+ * drop the stale values. Values also expire after the TTL of the cache, which bounds the staleness of
+ * the values changed by writers which do not invalidate the cache.
+ * <p>
+ * {@code null} values are cached too, so that missing keys do not hit the database on each call.
+ */
+public class DistributedCache<V> implements DistributedCacheMBean {
+
+  private final String name;
+  private final long maxSize;
+  private final long ttlInSeconds;
+  private final CacheInvalidationBus bus;
+  private final Cache<String, Optional<V>> values;
+  private final AtomicLong invalidationCount = new AtomicLong();
+
+  DistributedCache(String name, long maxSize, long ttlInSeconds, CacheInvalidationBus bus) {
+    this.name = name;
+    this.maxSize = maxSize;
+    this.ttlInSeconds = ttlInSeconds;
+    this.bus = bus;
+    this.values = CacheBuilder.newBuilder()
+      .maximumSize(maxSize)
+      .expireAfterWrite(ttlInSeconds, TimeUnit.SECONDS)
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * Returns the cached value of the key, or loads it when it's not cached yet. Concurrent calls for the same key
+   * wait for the first loading instead of loading the value again.
+   */
+  @CheckForNull
+  public V get(String key, Function<String, V> loader) {
+    try {
+      return values.get(key, () -> Optional.ofNullable(loader.apply(key))).orElse(null);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new IllegalStateException("Fail to load value of key [" + key + "] in cache [" + name + "]", e.getCause());
+    }
+  }
+
+  /**
+   * Drops the value of the key in all the processes of the cluster.
+   */
+  public void invalidate(String key) {
+    invalidateLocally(key);
+    bus.publish(name, key);
+  }
+
+  /**
+   * Drops all the values in all the processes of the cluster.
+   */
+  public void invalidateAll() {
+    invalidateLocally(null);
+    bus.publish(name, null);
+  }
+
+  void invalidateLocally(@Nullable String key) {
+    invalidationCount.incrementAndGet();
+    if (key == null) {
+      values.invalidateAll();
+    } else {
+      values.invalidate(key);
+    }
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  @Override
+  public long getTtlInSeconds() {
+    return ttlInSeconds;
+  }
+
+  @Override
+  public long getSize() {
+    return values.size();
+  }
+
+  @Override
+  public long getHitCount() {
+    return values.stats().hitCount();
+  }
+
+  @Override
+  public long getMissCount() {
+    return values.stats().missCount();
+  }
+
+  @Override
+  public double getHitRate() {
+    CacheStats stats = values.stats();
+    return stats.requestCount() == 0L ? 0.0D : stats.hitRate();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return values.stats().evictionCount();
+  }
+
+  @Override
+  public long getInvalidationCount() {
+    return invalidationCount.get();
+  }
+}
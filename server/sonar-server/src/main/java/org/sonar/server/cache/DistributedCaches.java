@@ -0,0 +1,125 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.picocontainer.Startable;
+import org.sonar.api.config.Configuration;
+import org.sonar.process.Jmx;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Registry of the {@link DistributedCache}s of the process. Caches are created by the components reading the
+ * database, usually in their constructor, and their invalidations are received from the {@link CacheInvalidationBus}.
+ * <p>
+ * The size and the TTL of each cache can be overridden by the properties {@code sonar.cache.<name>.maxSize} and
+ * {@code sonar.cache.<name>.ttlInSeconds}. A TTL of zero disables the cache. Statistics of each cache are
+ * exposed through JMX.
+ * <p>
+ * All the caches are disabled if the process is not notified of the changes made by the other processes,
+ * see {@link CacheInvalidationBus#isNotifiedOfOtherProcesses()}.
+ */
+public class DistributedCaches implements CacheInvalidationBus.Listener, Startable {
+
+  private static final String PROPERTY_PREFIX = "sonar.cache.";
+  private static final String OBJECT_NAME_PREFIX = "SonarQube:name=DistributedCache,cache=";
+
+  private final Configuration config;
+  private final CacheInvalidationBus bus;
+  private final Map<String, DistributedCache<?>> cachesByName = new HashMap<>();
+  private boolean started = false;
+
+  public DistributedCaches(Configuration config, CacheInvalidationBus bus) {
+    this.config = config;
+    this.bus = bus;
+    bus.addListener(this);
+  }
+
+  /**
+   * Creates a cache, replacing the existing cache with the same name if any.
+   *
+   * @param name name of the cache, which must not contain {@code ':'}
+   */
+  public synchronized <V> DistributedCache<V> create(String name, long defaultMaxSize, long defaultTtlInSeconds) {
+    checkArgument(!name.isEmpty() && name.indexOf(':') < 0, "Invalid cache name: '%s'", name);
+    long maxSize = config.getLong(PROPERTY_PREFIX + name + ".maxSize").orElse(defaultMaxSize);
+    long ttlInSeconds = bus.isNotifiedOfOtherProcesses() ? config.getLong(PROPERTY_PREFIX + name + ".ttlInSeconds").orElse(defaultTtlInSeconds) : 0L;
+    checkArgument(maxSize >= 0L, "Max size of cache '%s' must be positive or zero: %s", name, maxSize);
+    checkArgument(ttlInSeconds >= 0L, "TTL of cache '%s' must be positive or zero: %s", name, ttlInSeconds);
+
+    DistributedCache<V> cache = new DistributedCache<>(name, maxSize, ttlInSeconds, bus);
+    DistributedCache<?> replaced = cachesByName.put(name, cache);
+    if (started) {
+      if (replaced != null) {
+        Jmx.unregister(objectName(name));
+      }
+      Jmx.register(objectName(name), cache);
+    }
+    return cache;
+  }
+
+  /**
+   * Drops the value of the key in all the processes of the cluster, even if the cache
+   * has not been created by the current process.
+   */
+  public void invalidate(String cacheName, String key) {
+    onInvalidation(cacheName, key);
+    bus.publish(cacheName, key);
+  }
+
+  /**
+   * Drops all the values of the cache in all the processes of the cluster, even if the cache
+   * has not been created by the current process.
+   */
+  public void invalidateAll(String cacheName) {
+    onInvalidation(cacheName, null);
+    bus.publish(cacheName, null);
+  }
+
+  @Override
+  public void onInvalidation(String cacheName, @Nullable String key) {
+    DistributedCache<?> cache;
+    synchronized (this) {
+      cache = cachesByName.get(cacheName);
+    }
+    if (cache != null) {
+      cache.invalidateLocally(key);
+    }
+  }
+
+  @Override
+  public synchronized void start() {
+    cachesByName.forEach((name, cache) -> Jmx.register(objectName(name), cache));
+    started = true;
+  }
+
+  @Override
+  public synchronized void stop() {
+    cachesByName.keySet().forEach(name -> Jmx.unregister(objectName(name)));
+    started = false;
+  }
+
+  private static String objectName(String cacheName) {
+    return OBJECT_NAME_PREFIX + cacheName;
+  }
+}
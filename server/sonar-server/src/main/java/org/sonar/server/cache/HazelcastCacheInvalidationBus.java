@@ -0,0 +1,97 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.picocontainer.Startable;
+import org.sonar.ce.cluster.HazelcastClientWrapper;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.sonar.process.cluster.ClusterObjectKeys.CACHE_INVALIDATIONS;
+
+/**
+ * Bus of a cluster, where invalidations are published on a Hazelcast topic that all the
+ * web servers and compute engines of the cluster listen to.
+ * <p>
+ * Messages are the UUID of the publishing client, the name of the cache and, when only one key
+ * is invalidated, the invalidated key, separated by {@code ':'}. A client ignores its own messages, as
+ * publishers have already applied the invalidation to their local caches.
+ */
+public class HazelcastCacheInvalidationBus implements CacheInvalidationBus, Startable {
+
+  private static final char SEPARATOR = ':';
+
+  private final HazelcastClientWrapper hazelcastClientWrapper;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  private String clientUuid;
+
+  public HazelcastCacheInvalidationBus(HazelcastClientWrapper hazelcastClientWrapper) {
+    this.hazelcastClientWrapper = hazelcastClientWrapper;
+  }
+
+  @Override
+  public void start() {
+    clientUuid = hazelcastClientWrapper.getClientUUID();
+    hazelcastClientWrapper.<String>addMessageListener(CACHE_INVALIDATIONS, this::onMessage);
+  }
+
+  @Override
+  public void stop() {
+    // the Hazelcast client is shut down by HazelcastClientWrapper
+  }
+
+  @Override
+  public void publish(String cacheName, @Nullable String key) {
+    checkState(clientUuid != null, "Cache invalidation bus is not started");
+    String invalidation = key == null ? cacheName : (cacheName + SEPARATOR + key);
+    hazelcastClientWrapper.publish(CACHE_INVALIDATIONS, clientUuid + SEPARATOR + invalidation);
+  }
+
+  @Override
+  public boolean isNotifiedOfOtherProcesses() {
+    return true;
+  }
+
+  @Override
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  private void onMessage(String message) {
+    int uuidSeparatorIndex = message.indexOf(SEPARATOR);
+    if (uuidSeparatorIndex < 0 || message.substring(0, uuidSeparatorIndex).equals(clientUuid)) {
+      return;
+    }
+    String invalidation = message.substring(uuidSeparatorIndex + 1);
+    int separatorIndex = invalidation.indexOf(SEPARATOR);
+    String cacheName = separatorIndex < 0 ? invalidation : invalidation.substring(0, separatorIndex);
+    String key = parseKey(invalidation, separatorIndex);
+    listeners.forEach(listener -> listener.onInvalidation(cacheName, key));
+  }
+
+  @CheckForNull
+  private static String parseKey(String invalidation, int separatorIndex) {
+    return separatorIndex < 0 ? null : invalidation.substring(separatorIndex + 1);
+  }
+}
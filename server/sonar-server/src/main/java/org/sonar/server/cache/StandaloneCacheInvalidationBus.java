@@ -0,0 +1,62 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.cache;
+
+import javax.annotation.Nullable;
+
+/**
+ * Bus of a standalone instance, where the web server and the Compute Engine are two processes which can't
+ * notify each other.
+ * <p>
+ * The web server makes all the changes of the cached data (settings, metrics, rules, tokens), as the
+ * Compute Engine only reads them, so the caches of the web server are never stale. On the contrary the
+ * caches of the Compute Engine would not be invalidated when data is changed by the web server, so they
+ * are disabled by creating its bus with {@code notifiedOfOtherProcesses} set to {@code false}.
+ */
+public class StandaloneCacheInvalidationBus implements CacheInvalidationBus {
+
+  private final boolean notifiedOfOtherProcesses;
+
+  /**
+   * Bus of the web server
+   */
+  public StandaloneCacheInvalidationBus() {
+    this(true);
+  }
+
+  public StandaloneCacheInvalidationBus(boolean notifiedOfOtherProcesses) {
+    this.notifiedOfOtherProcesses = notifiedOfOtherProcesses;
+  }
+
+  @Override
+  public void publish(String cacheName, @Nullable String key) {
+    // the other process can't be notified
+  }
+
+  @Override
+  public void addListener(Listener listener) {
+    // invalidations are never received from the other process
+  }
+
+  @Override
+  public boolean isNotifiedOfOtherProcesses() {
+    return notifiedOfOtherProcesses;
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.CheckForNull;
+import org.picocontainer.Startable;
+import org.sonar.api.config.Configuration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
+import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository.OriginalFile;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Loads in advance the base data of issue tracking of files, that is their open issues and line hashes.
+ * <p>
+ * Files are grouped in batches, in the order in which they are visited by {@link IntegrateIssuesVisitor}. Each batch
+ * is loaded by two requests with IN clause, by a background thread, while the previous batches are being tracked.
+ * The number of batches loaded ahead of the file being tracked is bounded, so that memory does not depend on the
+ * size of project.
+ * </p>
+ * <p>
+ * Only the files having open issues at the beginning of the task are prefetched. Line hashes of other files are not
+ * needed, as they have no base issues to track. Data of other components (project, modules, directories) is not
+ * prefetched.
+ * </p>
+ * <p>
+ * This class is not thread-safe. It must be called by the thread executing the task only.
+ * </p>
+ */
+public class BaseInputPrefetcher implements Startable {
+
+  /**
+   * Number of files per batch
+   */
+  static final String BATCH_SIZE_PROPERTY = "sonar.ce.issueTracking.prefetchBatchSize";
+  /**
+   * Maximum number of batches loaded ahead of the batch of the file being tracked
+   */
+  static final String BATCHES_AHEAD_PROPERTY = "sonar.ce.issueTracking.prefetchBatchesAhead";
+  private static final int DEFAULT_BATCH_SIZE = 100;
+  private static final int DEFAULT_BATCHES_AHEAD = 2;
+
+  private final TreeRootHolder treeRootHolder;
+  private final MovedFilesRepository movedFilesRepository;
+  private final BaseIssuesLoader baseIssuesLoader;
+  private final DbClient dbClient;
+  private final int batchSize;
+  private final int batchesAhead;
+
+  // initialized on first call
+  @CheckForNull
+  private List<List<String>> batches;
+  @CheckForNull
+  private Map<String, Integer> batchIndexByUuid;
+  @CheckForNull
+  private Set<String> uuidsWithOpenIssues;
+  @CheckForNull
+  private ExecutorService executor;
+
+  private final Map<Integer, Future<Batch>> loadingBatches = new HashMap<>();
+  private int currentBatchIndex = -1;
+
+  public BaseInputPrefetcher(TreeRootHolder treeRootHolder, MovedFilesRepository movedFilesRepository, BaseIssuesLoader baseIssuesLoader,
+    DbClient dbClient, Configuration config) {
+    this.treeRootHolder = treeRootHolder;
+    this.movedFilesRepository = movedFilesRepository;
+    this.baseIssuesLoader = baseIssuesLoader;
+    this.dbClient = dbClient;
+    this.batchSize = Math.max(1, config.getInt(BATCH_SIZE_PROPERTY).orElse(DEFAULT_BATCH_SIZE));
+    this.batchesAhead = Math.max(0, config.getInt(BATCHES_AHEAD_PROPERTY).orElse(DEFAULT_BATCHES_AHEAD));
+  }
+
+  @Override
+  public void start() {
+    // executor is lazily created
+  }
+
+  @Override
+  public void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * @param effectiveUuid uuid of the file, or of its original file if it has been moved
+   * @return the open issues of the file, or {@link Optional#empty()} if they are not prefetched and must be loaded directly
+   */
+  public Optional<List<DefaultIssue>> getIssues(Component component, String effectiveUuid) {
+    if (component.getType() != Component.Type.FILE) {
+      return Optional.empty();
+    }
+    init();
+    if (!uuidsWithOpenIssues.contains(effectiveUuid)) {
+      return Optional.of(emptyList());
+    }
+    Batch batch = batchOf(effectiveUuid);
+    if (batch == null) {
+      return Optional.empty();
+    }
+    List<DefaultIssue> issues = batch.issuesByUuid.remove(effectiveUuid);
+    if (issues == null) {
+      return Optional.empty();
+    }
+    issues.forEach(baseIssuesLoader::prepare);
+    return Optional.of(issues);
+  }
+
+  /**
+   * @param effectiveUuid uuid of the file, or of its original file if it has been moved
+   * @return the line hashes of the file, empty if it has no source, or {@link Optional#empty()} if they are not prefetched
+   * and must be loaded directly
+   */
+  public Optional<List<String>> getLineHashes(Component component, String effectiveUuid) {
+    if (component.getType() != Component.Type.FILE) {
+      return Optional.empty();
+    }
+    init();
+    Batch batch = batchOf(effectiveUuid);
+    if (batch == null) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(batch.lineHashesByUuid.remove(effectiveUuid));
+  }
+
+  private void init() {
+    if (batches != null) {
+      return;
+    }
+    uuidsWithOpenIssues = baseIssuesLoader.loadUuidsOfComponentsWithOpenIssues();
+    List<String> uuids = new ArrayList<>();
+    collectFilesWithOpenIssues(treeRootHolder.getRoot(), uuids);
+    batches = new ArrayList<>();
+    batchIndexByUuid = new HashMap<>();
+    for (int i = 0; i < uuids.size(); i += batchSize) {
+      List<String> batch = uuids.subList(i, Math.min(i + batchSize, uuids.size()));
+      batch.forEach(uuid -> batchIndexByUuid.put(uuid, batches.size()));
+      batches.add(batch);
+    }
+  }
+
+  private void collectFilesWithOpenIssues(Component component, List<String> uuids) {
+    if (component.getType() == Component.Type.FILE) {
+      String effectiveUuid = movedFilesRepository.getOriginalFile(component).transform(OriginalFile::getUuid).or(component.getUuid());
+      if (uuidsWithOpenIssues.contains(effectiveUuid)) {
+        uuids.add(effectiveUuid);
+      }
+    }
+    for (Component child : component.getChildren()) {
+      collectFilesWithOpenIssues(child, uuids);
+    }
+  }
+
+  /**
+   * @return null if the uuid is not prefetched or if its batch has already been dropped
+   */
+  @CheckForNull
+  private Batch batchOf(String uuid) {
+    Integer batchIndex = batchIndexByUuid.get(uuid);
+    if (batchIndex == null || batchIndex < currentBatchIndex) {
+      return null;
+    }
+    if (batchIndex > currentBatchIndex) {
+      moveTo(batchIndex);
+    }
+    return waitFor(loadingBatches.get(batchIndex));
+  }
+
+  private void moveTo(int batchIndex) {
+    // batches of files already tracked are not needed anymore
+    Iterator<Map.Entry<Integer, Future<Batch>>> it = loadingBatches.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Integer, Future<Batch>> entry = it.next();
+      if (entry.getKey() < batchIndex) {
+        entry.getValue().cancel(true);
+        it.remove();
+      }
+    }
+    currentBatchIndex = batchIndex;
+    int lastIndex = Math.min(batchIndex + batchesAhead, batches.size() - 1);
+    for (int i = batchIndex; i <= lastIndex; i++) {
+      List<String> uuids = batches.get(i);
+      loadingBatches.computeIfAbsent(i, index -> executor().submit(() -> load(uuids)));
+    }
+  }
+
+  private Batch load(List<String> uuids) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      Batch batch = new Batch();
+      batch.issuesByUuid.putAll(baseIssuesLoader.loadUnpreparedForComponentUuids(dbSession, uuids));
+      batch.lineHashesByUuid.putAll(dbClient.fileSourceDao().selectLineHashesByFileUuids(dbSession, uuids));
+      for (String uuid : uuids) {
+        // issues may have been closed since the beginning of the task, file may have no source
+        batch.issuesByUuid.putIfAbsent(uuid, new ArrayList<>());
+        batch.lineHashesByUuid.putIfAbsent(uuid, emptyList());
+      }
+      return batch;
+    }
+  }
+
+  private static Batch waitFor(Future<Batch> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while loading base data of issue tracking", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to load base data of issue tracking", e.getCause());
+    }
+  }
+
+  private ExecutorService executor() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("CE_issue_tracking_prefetch-%d")
+        .build());
+    }
+    return executor;
+  }
+
+  private static class Batch {
+    // entries are removed when consumed, so that memory is released as soon as possible
+    private final Map<String, List<DefaultIssue>> issuesByUuid = new HashMap<>();
+    private final Map<String, List<String>> lineHashesByUuid = new HashMap<>();
+  }
+}
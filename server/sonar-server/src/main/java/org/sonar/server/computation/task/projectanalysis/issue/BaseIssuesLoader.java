@@ -20,7 +20,10 @@
 package org.sonar.server.computation.task.projectanalysis.issue;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.RuleStatus;
@@ -53,23 +56,41 @@ public class BaseIssuesLoader {
   public List<DefaultIssue> loadForComponentUuid(String componentUuid) {
     try (DbSession dbSession = dbClient.openSession(false)) {
       List<DefaultIssue> result = new ArrayList<>();
-      dbSession.getMapper(IssueMapper.class).scrollNonClosedByComponentUuid(componentUuid, resultContext -> {
-        DefaultIssue issue = (resultContext.getResultObject()).toDefaultIssue();
-
-        // TODO this field should be set outside this class
-        if (!isActive(issue.ruleKey()) || ruleRepository.getByKey(issue.ruleKey()).getStatus() == RuleStatus.REMOVED) {
-          issue.setOnDisabledRule(true);
-          // TODO to be improved, why setOnDisabledRule(true) is not enough ?
-          issue.setBeingClosed(true);
-        }
-        // FIXME
-        issue.setSelectedAt(System.currentTimeMillis());
-        result.add(issue);
-      });
+      dbSession.getMapper(IssueMapper.class).scrollNonClosedByComponentUuid(componentUuid,
+        resultContext -> result.add(prepare((resultContext.getResultObject()).toDefaultIssue())));
       return result;
     }
   }
 
+  /**
+   * Open issues of multiple components, grouped by component uuid. Components without open issues are
+   * not returned.
+   * <p>
+   * Only database is read, so that it can be called out of the thread of the task. Issues must then be
+   * completed with {@link #prepare(DefaultIssue)}.
+   * </p>
+   */
+  public Map<String, List<DefaultIssue>> loadUnpreparedForComponentUuids(DbSession dbSession, Collection<String> componentUuids) {
+    Map<String, List<DefaultIssue>> result = new HashMap<>();
+    dbClient.issueDao().scrollNonClosedByComponentUuids(dbSession, componentUuids, resultContext -> {
+      DefaultIssue issue = (resultContext.getResultObject()).toDefaultIssue();
+      result.computeIfAbsent(issue.componentUuid(), uuid -> new ArrayList<>()).add(issue);
+    });
+    return result;
+  }
+
+  public DefaultIssue prepare(DefaultIssue issue) {
+    // TODO this field should be set outside this class
+    if (!isActive(issue.ruleKey()) || ruleRepository.getByKey(issue.ruleKey()).getStatus() == RuleStatus.REMOVED) {
+      issue.setOnDisabledRule(true);
+      // TODO to be improved, why setOnDisabledRule(true) is not enough ?
+      issue.setBeingClosed(true);
+    }
+    // FIXME
+    issue.setSelectedAt(System.currentTimeMillis());
+    return issue;
+  }
+
   private boolean isActive(RuleKey ruleKey) {
     return activeRulesHolder.get(ruleKey).isPresent();
   }
@@ -20,14 +20,13 @@
 package org.sonar.server.computation.task.projectanalysis.issue;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.ImmutableMap;
 import java.util.Map;
 import javax.annotation.CheckForNull;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
-import org.sonar.db.rule.RuleDto;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
+import org.sonar.server.computation.task.projectanalysis.issue.RulesSnapshotCache.RulesSnapshot;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
@@ -41,10 +40,12 @@ public class RuleRepositoryImpl implements RuleRepository {
 
   private final DbClient dbClient;
   private final AnalysisMetadataHolder analysisMetadataHolder;
+  private final RulesSnapshotCache rulesSnapshotCache;
 
-  public RuleRepositoryImpl(DbClient dbClient, AnalysisMetadataHolder analysisMetadataHolder) {
+  public RuleRepositoryImpl(DbClient dbClient, AnalysisMetadataHolder analysisMetadataHolder, RulesSnapshotCache rulesSnapshotCache) {
     this.dbClient = dbClient;
     this.analysisMetadataHolder = analysisMetadataHolder;
+    this.rulesSnapshotCache = rulesSnapshotCache;
   }
 
   @Override
@@ -96,16 +97,10 @@ public class RuleRepositoryImpl implements RuleRepository {
   }
 
   private void loadRulesFromDb(DbSession dbSession) {
-    ImmutableMap.Builder<RuleKey, Rule> rulesByKeyBuilder = ImmutableMap.builder();
-    ImmutableMap.Builder<Integer, Rule> rulesByIdBuilder = ImmutableMap.builder();
     String organizationUuid = analysisMetadataHolder.getOrganization().getUuid();
-    for (RuleDto ruleDto : dbClient.ruleDao().selectAll(dbSession, organizationUuid)) {
-      Rule rule = new RuleImpl(ruleDto);
-      rulesByKeyBuilder.put(ruleDto.getKey(), rule);
-      rulesByIdBuilder.put(ruleDto.getId(), rule);
-    }
-    this.rulesByKey = rulesByKeyBuilder.build();
-    this.rulesById = rulesByIdBuilder.build();
+    RulesSnapshot snapshot = rulesSnapshotCache.get(dbSession, organizationUuid);
+    this.rulesByKey = snapshot.getRulesByKey();
+    this.rulesById = snapshot.getRulesById();
   }
 
 }
@@ -0,0 +1,93 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.rule.RuleDto;
+import org.sonar.server.property.InternalProperties;
+
+/**
+ * Rules of the organizations, shared by all the tasks of the Compute Engine so that they are not loaded
+ * from the database by each task.
+ * <p>
+ * The rules of an organization are loaded again only when {@link InternalProperties#RULES_VERSION}, which
+ * is changed by any write of rules, differs from the version of the rules kept in memory.
+ */
+public class RulesSnapshotCache {
+
+  private static final long MAX_ORGANIZATIONS = 10L;
+
+  private final DbClient dbClient;
+  private final Cache<String, RulesSnapshot> snapshotsByOrganization = CacheBuilder.newBuilder()
+    .maximumSize(MAX_ORGANIZATIONS)
+    .build();
+
+  public RulesSnapshotCache(DbClient dbClient) {
+    this.dbClient = dbClient;
+  }
+
+  public RulesSnapshot get(DbSession dbSession, String organizationUuid) {
+    // the version must be read before the rules, so that rules are never kept with a more recent version
+    String version = dbClient.internalPropertiesDao().selectByKey(dbSession, InternalProperties.RULES_VERSION).orElse("");
+    RulesSnapshot snapshot = snapshotsByOrganization.getIfPresent(organizationUuid);
+    if (snapshot == null || !snapshot.version.equals(version)) {
+      snapshot = load(dbSession, organizationUuid, version);
+      snapshotsByOrganization.put(organizationUuid, snapshot);
+    }
+    return snapshot;
+  }
+
+  private RulesSnapshot load(DbSession dbSession, String organizationUuid, String version) {
+    ImmutableMap.Builder<RuleKey, Rule> rulesByKey = ImmutableMap.builder();
+    ImmutableMap.Builder<Integer, Rule> rulesById = ImmutableMap.builder();
+    for (RuleDto ruleDto : dbClient.ruleDao().selectAll(dbSession, organizationUuid)) {
+      Rule rule = new RuleImpl(ruleDto);
+      rulesByKey.put(ruleDto.getKey(), rule);
+      rulesById.put(ruleDto.getId(), rule);
+    }
+    return new RulesSnapshot(version, rulesByKey.build(), rulesById.build());
+  }
+
+  public static final class RulesSnapshot {
+    private final String version;
+    private final Map<RuleKey, Rule> rulesByKey;
+    private final Map<Integer, Rule> rulesById;
+
+    private RulesSnapshot(String version, Map<RuleKey, Rule> rulesByKey, Map<Integer, Rule> rulesById) {
+      this.version = version;
+      this.rulesByKey = rulesByKey;
+      this.rulesById = rulesById;
+    }
+
+    public Map<RuleKey, Rule> getRulesByKey() {
+      return rulesByKey;
+    }
+
+    public Map<Integer, Rule> getRulesById() {
+      return rulesById;
+    }
+  }
+}
@@ -34,7 +34,8 @@ import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepo
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository.OriginalFile;
 
 /**
- * Factory of {@link Input} of base data for issue tracking. Data are lazy-loaded.
+ * Factory of {@link Input} of base data for issue tracking. Data are lazy-loaded, from {@link BaseInputPrefetcher}
+ * when prefetched, otherwise directly from database.
  */
 public class TrackerBaseInputFactory {
   private static final LineHashSequence EMPTY_LINE_HASH_SEQUENCE = new LineHashSequence(Collections.<String>emptyList());
@@ -42,11 +43,14 @@ public class TrackerBaseInputFactory {
   private final BaseIssuesLoader baseIssuesLoader;
   private final DbClient dbClient;
   private final MovedFilesRepository movedFilesRepository;
+  private final BaseInputPrefetcher prefetcher;
 
-  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository) {
+  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository,
+    BaseInputPrefetcher prefetcher) {
     this.baseIssuesLoader = baseIssuesLoader;
     this.dbClient = dbClient;
     this.movedFilesRepository = movedFilesRepository;
+    this.prefetcher = prefetcher;
   }
 
   public Input<DefaultIssue> create(Component component) {
@@ -69,18 +73,23 @@ public class TrackerBaseInputFactory {
         return EMPTY_LINE_HASH_SEQUENCE;
       }
 
+      List<String> hashes = prefetcher.getLineHashes(component, effectiveUuid).orElseGet(this::selectLineHashes);
+      if (hashes == null || hashes.isEmpty()) {
+        return EMPTY_LINE_HASH_SEQUENCE;
+      }
+      return new LineHashSequence(hashes);
+    }
+
+    @CheckForNull
+    private List<String> selectLineHashes() {
       try (DbSession session = dbClient.openSession(false)) {
-        List<String> hashes = dbClient.fileSourceDao().selectLineHashes(session, effectiveUuid);
-        if (hashes == null || hashes.isEmpty()) {
-          return EMPTY_LINE_HASH_SEQUENCE;
-        }
-        return new LineHashSequence(hashes);
+        return dbClient.fileSourceDao().selectLineHashes(session, effectiveUuid);
       }
     }
 
     @Override
     protected List<DefaultIssue> loadIssues() {
-      return baseIssuesLoader.loadForComponentUuid(effectiveUuid);
+      return prefetcher.getIssues(component, effectiveUuid).orElseGet(() -> baseIssuesLoader.loadForComponentUuid(effectiveUuid));
     }
   }
 }
@@ -0,0 +1,85 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.metric;
+
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.server.property.InternalProperties;
+
+import static com.google.common.collect.FluentIterable.from;
+
+/**
+ * Enabled metrics, shared by all the tasks of the Compute Engine so that they are not loaded
+ * from the database by each task.
+ * <p>
+ * Metrics are loaded again only when {@link InternalProperties#METRICS_VERSION}, which is changed
+ * by any write of metrics, differs from the version of the metrics kept in memory.
+ */
+public class MetricsSnapshotCache {
+
+  private final DbClient dbClient;
+  @CheckForNull
+  private volatile MetricsSnapshot snapshot;
+
+  public MetricsSnapshotCache(DbClient dbClient) {
+    this.dbClient = dbClient;
+  }
+
+  public MetricsSnapshot get(DbSession dbSession) {
+    // the version must be read before the metrics, so that metrics are never kept with a more recent version
+    String version = dbClient.internalPropertiesDao().selectByKey(dbSession, InternalProperties.METRICS_VERSION).orElse("");
+    MetricsSnapshot current = this.snapshot;
+    if (current == null || !current.version.equals(version)) {
+      current = load(dbSession, version);
+      this.snapshot = current;
+    }
+    return current;
+  }
+
+  private MetricsSnapshot load(DbSession dbSession, String version) {
+    List<Metric> metrics = from(dbClient.metricDao().selectEnabled(dbSession)).transform(MetricDtoToMetric.INSTANCE).toList();
+    return new MetricsSnapshot(version,
+      from(metrics).uniqueIndex(Metric::getKey),
+      from(metrics).uniqueIndex(metric -> (long) metric.getId()));
+  }
+
+  public static final class MetricsSnapshot {
+    private final String version;
+    private final Map<String, Metric> metricsByKey;
+    private final Map<Long, Metric> metricsById;
+
+    private MetricsSnapshot(String version, Map<String, Metric> metricsByKey, Map<Long, Metric> metricsById) {
+      this.version = version;
+      this.metricsByKey = metricsByKey;
+      this.metricsById = metricsById;
+    }
+
+    public Map<String, Metric> getMetricsByKey() {
+      return metricsByKey;
+    }
+
+    public Map<Long, Metric> getMetricsById() {
+      return metricsById;
+    }
+  }
+}
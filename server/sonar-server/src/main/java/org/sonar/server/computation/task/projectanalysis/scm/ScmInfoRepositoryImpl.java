@@ -20,8 +20,13 @@
 package org.sonar.server.computation.task.projectanalysis.scm;
 
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import javax.annotation.CheckForNull;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
@@ -32,26 +37,62 @@ import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetada
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.Component.Status;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
 
 import static java.util.Objects.requireNonNull;
 
+/**
+ * SCM info of files is read from report, or from database when scanner asked to copy SCM info of previous analysis.
+ * <p>
+ * When a file requires the database, the next files in the order of the component tree are read at the same time, so that
+ * database is requested by batches of files. Only SCM fields of the lines stored in database are decoded.
+ * </p>
+ * <p>
+ * The number of files which SCM info is kept in memory is bounded, so that memory does not depend on the size of project.
+ * </p>
+ */
 public class ScmInfoRepositoryImpl implements ScmInfoRepository {
 
   private static final Logger LOGGER = Loggers.get(ScmInfoRepositoryImpl.class);
 
+  /**
+   * Maximum number of files which SCM info is kept in memory. It must be greater than {@link #LOOKAHEAD_SIZE}, so
+   * that files read ahead are still in memory when requested.
+   */
+  private static final int CACHE_SIZE = 2_000;
+  /**
+   * Maximum number of files read ahead of the requested file
+   */
+  private static final int LOOKAHEAD_SIZE = 500;
+  /**
+   * Maximum number of files which SCM info is read from database by the same request
+   */
+  private static final int DB_BATCH_SIZE = 100;
+
   private final BatchReportReader batchReportReader;
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final DbClient dbClient;
   private final SourceHashRepository sourceHashRepository;
+  private final TreeRootHolder treeRootHolder;
+
+  private final Cache<Component, ScmInfo> scmInfoCache = CacheBuilder.newBuilder()
+    .maximumSize(CACHE_SIZE)
+    .build();
 
-  private final Map<Component, ScmInfo> scmInfoCache = new HashMap<>();
+  // files of the component tree, in the order of visit. Lazy-loaded.
+  @CheckForNull
+  private List<Component> files;
+  @CheckForNull
+  private Map<Component, Integer> indexOfFiles;
 
-  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient, SourceHashRepository sourceHashRepository) {
+  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient,
+    SourceHashRepository sourceHashRepository, TreeRootHolder treeRootHolder) {
     this.batchReportReader = batchReportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.dbClient = dbClient;
     this.sourceHashRepository = sourceHashRepository;
+    this.treeRootHolder = treeRootHolder;
   }
 
   @Override
@@ -64,14 +105,20 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     if (component.getType() != Component.Type.FILE) {
       return Optional.absent();
     }
-    ScmInfo scmInfo = scmInfoCache.get(component);
+    ScmInfo scmInfo = scmInfoCache.getIfPresent(component);
     if (scmInfo != null) {
       return optionalOf(scmInfo);
     }
 
-    scmInfo = getScmInfoForComponent(component);
-    scmInfoCache.put(component, scmInfo);
-    return optionalOf(scmInfo);
+    Map<Component, ScmInfo> scmInfoByFile = new HashMap<>();
+    List<Component> filesToReadFromDb = new ArrayList<>();
+    readFromReport(component, scmInfoByFile, filesToReadFromDb);
+    if (!filesToReadFromDb.isEmpty()) {
+      readAhead(component, scmInfoByFile, filesToReadFromDb);
+      scmInfoByFile.putAll(getScmInfoFromDb(filesToReadFromDb));
+    }
+    scmInfoCache.putAll(scmInfoByFile);
+    return optionalOf(scmInfoByFile.get(component));
   }
 
   private static Optional<ScmInfo> optionalOf(ScmInfo scmInfo) {
@@ -81,31 +128,79 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     return Optional.of(scmInfo);
   }
 
-  private ScmInfo getScmInfoForComponent(Component component) {
-    ScannerReport.Changesets changesets = batchReportReader.readChangesets(component.getReportAttributes().getRef());
-    if (changesets == null) {
-      LOGGER.trace("No SCM info for file '{}'", component.getKey());
-      return NoScmInfo.INSTANCE;
+  /**
+   * Reads the next files of the tree, until enough of them require the database
+   */
+  private void readAhead(Component component, Map<Component, ScmInfo> scmInfoByFile, List<Component> filesToReadFromDb) {
+    initFiles();
+    Integer index = indexOfFiles.get(component);
+    if (index == null) {
+      return;
+    }
+    int lastIndex = Math.min(index + LOOKAHEAD_SIZE, files.size() - 1);
+    for (int i = index + 1; i <= lastIndex && filesToReadFromDb.size() < DB_BATCH_SIZE; i++) {
+      Component file = files.get(i);
+      if (scmInfoCache.getIfPresent(file) == null) {
+        readFromReport(file, scmInfoByFile, filesToReadFromDb);
+      }
+    }
+  }
+
+  private void initFiles() {
+    if (files == null) {
+      files = new ArrayList<>();
+      indexOfFiles = new HashMap<>();
+      collectFiles(treeRootHolder.getRoot());
+    }
+  }
+
+  private void collectFiles(Component component) {
+    if (component.getType() == Component.Type.FILE) {
+      indexOfFiles.put(component, files.size());
+      files.add(component);
     }
-    if (changesets.getCopyFromPrevious()) {
-      return getScmInfoFromDb(component);
+    for (Component child : component.getChildren()) {
+      collectFiles(child);
     }
-    return getScmInfoFromReport(component, changesets);
   }
 
-  private ScmInfo getScmInfoFromDb(Component file) {
+  /**
+   * Adds the SCM info of file to {@code scmInfoByFile}, or adds the file to {@code filesToReadFromDb}
+   * if SCM info must be copied from previous analysis.
+   */
+  private void readFromReport(Component file, Map<Component, ScmInfo> scmInfoByFile, List<Component> filesToReadFromDb) {
+    ScannerReport.Changesets changesets = batchReportReader.readChangesets(file.getReportAttributes().getRef());
+    if (changesets == null) {
+      LOGGER.trace("No SCM info for file '{}'", file.getKey());
+      scmInfoByFile.put(file, NoScmInfo.INSTANCE);
+    } else if (changesets.getCopyFromPrevious()) {
+      filesToReadFromDb.add(file);
+    } else {
+      scmInfoByFile.put(file, getScmInfoFromReport(file, changesets));
+    }
+  }
+
+  private Map<Component, ScmInfo> getScmInfoFromDb(List<Component> files) {
+    Map<Component, ScmInfo> result = new HashMap<>();
+    files.forEach(file -> result.put(file, NoScmInfo.INSTANCE));
     if (analysisMetadataHolder.isFirstAnalysis()) {
-      return NoScmInfo.INSTANCE;
+      return result;
     }
 
-    LOGGER.trace("Reading SCM info from db for file '{}'", file.getKey());
+    Map<String, Component> filesByUuid = new HashMap<>();
+    for (Component file : files) {
+      LOGGER.trace("Reading SCM info from db for file '{}'", file.getKey());
+      filesByUuid.put(file.getUuid(), file);
+    }
     try (DbSession dbSession = dbClient.openSession(false)) {
-      FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, file.getUuid());
-      if (dto == null || !isDtoValid(file, dto)) {
-        return NoScmInfo.INSTANCE;
+      for (FileSourceDto dto : dbClient.fileSourceDao().selectScmDataByFileUuids(dbSession, filesByUuid.keySet())) {
+        Component file = filesByUuid.get(dto.getFileUuid());
+        if (isDtoValid(file, dto)) {
+          result.put(file, DbScmInfo.create(file, dto.getSourceScmData()).or(NoScmInfo.INSTANCE));
+        }
       }
-      return DbScmInfo.create(file, dto.getSourceData().getLinesList()).or(NoScmInfo.INSTANCE);
     }
+    return result;
   }
 
   private boolean isDtoValid(Component file, FileSourceDto dto) {
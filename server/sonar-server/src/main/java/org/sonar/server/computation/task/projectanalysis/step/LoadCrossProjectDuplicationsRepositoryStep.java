@@ -20,8 +20,15 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -80,23 +87,76 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   @Override
   public void execute() {
     if (crossProjectDuplicationStatusHolder.isEnabled()) {
-      new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor()).visit(treeRootHolder.getRoot());
+      Component root = treeRootHolder.getRoot();
+      HashesVisitor hashesVisitor = new HashesVisitor();
+      new DepthTraversalTypeAwareCrawler(hashesVisitor).visit(root);
+      Map<String, Multimap<String, DuplicationUnitDto>> candidatesByLanguage = selectCandidates(hashesVisitor.hashesByLanguage);
+      new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor(candidatesByLanguage)).visit(root);
     }
   }
 
+  /**
+   * Candidates of all the files of the project are loaded with one query per language, instead of one query per file.
+   * Hashes shared by several files are requested only once.
+   */
+  private Map<String, Multimap<String, DuplicationUnitDto>> selectCandidates(Map<String, Set<String>> hashesByLanguage) {
+    Map<String, Multimap<String, DuplicationUnitDto>> candidatesByLanguage = new HashMap<>();
+    Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
+    String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      for (Map.Entry<String, Set<String>> entry : hashesByLanguage.entrySet()) {
+        Multimap<String, DuplicationUnitDto> candidatesByHash = ArrayListMultimap.create();
+        for (DuplicationUnitDto dto : dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, entry.getKey(), entry.getValue())) {
+          candidatesByHash.put(dto.getHash(), dto);
+        }
+        LOGGER.trace("Found {} duplication candidates for {} hashes of language {}", candidatesByHash.size(), entry.getValue().size(), entry.getKey());
+        candidatesByLanguage.put(entry.getKey(), candidatesByHash);
+      }
+    }
+    return candidatesByLanguage;
+  }
+
   @Override
   public String getDescription() {
     return "Compute cross project duplications";
   }
 
+  private class HashesVisitor extends TypeAwareVisitorAdapter {
+    private final Map<String, Set<String>> hashesByLanguage = new HashMap<>();
+
+    private HashesVisitor() {
+      super(CrawlerDepthLimit.FILE, PRE_ORDER);
+    }
+
+    @Override
+    public void visitFile(Component file) {
+      String languageKey = file.getFileAttributes().getLanguageKey();
+      if (languageKey == null) {
+        return;
+      }
+      try (CloseableIterator<CpdTextBlock> blocksIt = reportReader.readCpdTextBlocks(file.getReportAttributes().getRef())) {
+        while (blocksIt.hasNext()) {
+          hashesByLanguage.computeIfAbsent(languageKey, k -> new HashSet<>()).add(blocksIt.next().getHash());
+        }
+      }
+    }
+  }
+
   private class CrossProjectDuplicationVisitor extends TypeAwareVisitorAdapter {
+    private final Map<String, Multimap<String, DuplicationUnitDto>> candidatesByLanguage;
 
-    private CrossProjectDuplicationVisitor() {
+    private CrossProjectDuplicationVisitor(Map<String, Multimap<String, DuplicationUnitDto>> candidatesByLanguage) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
+      this.candidatesByLanguage = candidatesByLanguage;
     }
 
     @Override
     public void visitFile(Component file) {
+      Multimap<String, DuplicationUnitDto> candidatesByHash = candidatesByLanguage.get(file.getFileAttributes().getLanguageKey());
+      if (candidatesByHash == null || candidatesByHash.isEmpty()) {
+        return;
+      }
+
       List<CpdTextBlock> cpdTextBlocks;
       try (CloseableIterator<CpdTextBlock> blocksIt = reportReader.readCpdTextBlocks(file.getReportAttributes().getRef())) {
         cpdTextBlocks = newArrayList(blocksIt);
@@ -106,8 +166,11 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
         }
       }
 
-      Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList();
-      List<DuplicationUnitDto> dtos = selectDuplicates(file, hashes);
+      Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toSet();
+      List<DuplicationUnitDto> dtos = new ArrayList<>();
+      for (String hash : hashes) {
+        dtos.addAll(candidatesByHash.get(hash));
+      }
       if (dtos.isEmpty()) {
         return;
       }
@@ -118,14 +181,6 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
 
       integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
     }
-
-    private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
-      try (DbSession dbSession = dbClient.openSession(false)) {
-        Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
-        String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
-        return dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, file.getFileAttributes().getLanguageKey(), hashes);
-      }
-    }
   }
 
   private enum CpdTextBlockToHash implements Function<CpdTextBlock, String> {
@@ -20,15 +20,29 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.Message;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ObjectUtils;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
@@ -45,7 +59,11 @@ import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthL
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
 import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepository;
+import org.sonar.server.computation.task.projectanalysis.duplication.InnerDuplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
 import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
 import org.sonar.server.computation.task.projectanalysis.scm.ScmInfo;
 import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepository;
@@ -64,6 +82,19 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
 
 public class PersistFileSourcesStep implements ComputationStep {
 
+  /**
+   * Number of threads computing, serializing and compressing the line data of files. Database writes are always done
+   * by the thread executing the step.
+   */
+  static final String WORKER_COUNT_PROPERTY = "sonar.ce.fileSources.workerCount";
+  /**
+   * Number of files written to the database between two commits.
+   */
+  static final String BATCH_SIZE_PROPERTY = "sonar.ce.fileSources.batchSize";
+  private static final int DEFAULT_WORKER_COUNT = 1;
+  private static final int DEFAULT_BATCH_SIZE = 1;
+
+
   private final DbClient dbClient;
   private final System2 system2;
   private final TreeRootHolder treeRootHolder;
@@ -72,9 +103,10 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
   private final AnalysisMetadataHolder analysisMetadataHolder;
+  private final Configuration config;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
-    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, AnalysisMetadataHolder analysisMetadataHolder) {
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, AnalysisMetadataHolder analysisMetadataHolder, Configuration config) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -83,27 +115,53 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
     this.analysisMetadataHolder = analysisMetadataHolder;
+    this.config = config;
   }
 
   @Override
   public void execute() {
+    int workerCount = Math.max(1, config.getInt(WORKER_COUNT_PROPERTY).orElse(DEFAULT_WORKER_COUNT));
+    int batchSize = Math.max(1, config.getInt(BATCH_SIZE_PROPERTY).orElse(DEFAULT_BATCH_SIZE));
+    ExecutorService executor = createExecutor(workerCount);
     // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
     try (DbSession dbSession = dbClient.openSession(false)) {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(dbSession))
+      FileSourceVisitor visitor = new FileSourceVisitor(dbSession, new ExecutorCompletionService<>(executor), 2 * workerCount, batchSize);
+      new DepthTraversalTypeAwareCrawler(visitor)
         .visit(treeRootHolder.getRoot());
+      visitor.flush();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static ExecutorService createExecutor(int workerCount) {
+    if (workerCount == 1) {
+      return MoreExecutors.newDirectExecutorService();
     }
+    return Executors.newFixedThreadPool(workerCount, new ThreadFactoryBuilder()
+      .setDaemon(true)
+      .setNameFormat("CE_file_sources-%d")
+      .build());
   }
 
   private class FileSourceVisitor extends TypeAwareVisitorAdapter {
 
     private final DbSession session;
+    private final CompletionService<FileSourceData> completionService;
+    private final int maxPendingFiles;
+    private final int batchSize;
 
     private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     private String projectUuid;
+    private int pendingFiles = 0;
+    private int uncommittedFiles = 0;
 
-    private FileSourceVisitor(DbSession session) {
+    private FileSourceVisitor(DbSession session, CompletionService<FileSourceData> completionService, int maxPendingFiles, int batchSize) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
+      this.completionService = completionService;
+      this.maxPendingFiles = maxPendingFiles;
+      this.batchSize = batchSize;
     }
 
     @Override
@@ -122,65 +180,277 @@ public class PersistFileSourcesStep implements ComputationStep {
         return;
       }
 
-      try (CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
-           LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file)) {
-        ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
-        ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
+      try {
+        // repositories are not thread-safe, they are only read by the crawling thread
+        Optional<ScmInfo> scmInfo = scmInfoRepository.getScmInfo(file);
+        Iterable<Duplication> duplications = duplicationRepository.getDuplications(file);
+        String inputHash = computeInputHash(file, scmInfo, duplications);
+        FileSourceDto previousDto = previousFileSourcesByUuid.get(file.getUuid());
+        if (previousDto != null && inputHash.equals(previousDto.getInputHash())) {
+          // neither the source nor any of the line data (coverage, highlighting, symbols, scm, duplications) changed
+          return;
+        }
+        completionService.submit(() -> computeSource(file, inputHash, scmInfo, duplications));
+        pendingFiles++;
       } catch (Exception e) {
         throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
       }
+      while (pendingFiles >= maxPendingFiles) {
+        persistNextComputedSource();
+      }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
-      DbFileSources.Data fileData = fileSourceData.getFileSourceData();
+    /**
+     * Persists the sources which are still being computed and commits the last batch.
+     */
+    private void flush() {
+      while (pendingFiles > 0) {
+        persistNextComputedSource();
+      }
+      if (uncommittedFiles > 0) {
+        session.commit();
+        uncommittedFiles = 0;
+      }
+    }
 
-      byte[] data = FileSourceDto.encodeSourceData(fileData);
-      String dataHash = DigestUtils.md5Hex(data);
-      String srcHash = fileSourceData.getSrcHash();
-      String lineHashes = fileSourceData.getLineHashes();
-      FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
+    private void persistNextComputedSource() {
+      FileSourceData fileSourceData;
+      try {
+        fileSourceData = completionService.take().get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while persisting sources", e);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause());
+        throw new IllegalStateException(e.getCause());
+      } finally {
+        pendingFiles--;
+      }
+      try {
+        persistSource(fileSourceData);
+        uncommittedFiles++;
+        if (uncommittedFiles >= batchSize) {
+          session.commit();
+          uncommittedFiles = 0;
+        }
+      } catch (Exception e) {
+        throw new IllegalStateException(String.format("Cannot persist sources of %s", fileSourceData.fileKey), e);
+      }
+    }
+
+    /**
+     * Digest of everything {@link ComputeFileSourceData} reads to build the line data of the file. It is much cheaper
+     * to compute than the line data itself, which must be built, serialized and compressed before its own hash is known.
+     */
+    private String computeInputHash(Component file, Optional<ScmInfo> scmInfo, Iterable<Duplication> duplications) {
+      InputDigest digest = new InputDigest();
+      int componentRef = file.getReportAttributes().getRef();
+      digest.putInt(file.getFileAttributes().getLines());
+      try (CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file)) {
+        while (linesIterator.hasNext()) {
+          digest.putEntry();
+          digest.putString(linesIterator.next());
+        }
+      }
+      digest.putEndOfSection();
+      digest.putMessages(reportReader.readComponentCoverage(componentRef));
+      digest.putMessages(reportReader.readComponentSyntaxHighlighting(componentRef));
+      digest.putMessages(reportReader.readComponentSymbols(componentRef));
+      if (scmInfo.isPresent()) {
+        for (Changeset changeset : scmInfo.get().getAllChangesets()) {
+          if (changeset == null) {
+            digest.putAbsentEntry();
+          } else {
+            digest.putEntry();
+            digest.putString(changeset.getRevision());
+            digest.putString(changeset.getAuthor());
+            digest.putLong(changeset.getDate());
+          }
+        }
+      } else {
+        digest.putAbsentEntry();
+      }
+      digest.putEndOfSection();
+      for (Duplication duplication : duplications) {
+        digest.putEntry();
+        digest.putTextBlock(duplication.getOriginal());
+        for (Duplicate duplicate : duplication.getDuplicates()) {
+          if (duplicate instanceof InnerDuplicate) {
+            digest.putEntry();
+            digest.putTextBlock(duplicate.getTextBlock());
+          }
+        }
+        digest.putEndOfSection();
+      }
+      digest.putEndOfSection();
+      return digest.toHex();
+    }
+
+    /**
+     * A row is always written, at least to update its input hash, as sources are computed only when the input hash changed.
+     */
+    private void persistSource(FileSourceData fileSourceData) {
+      FileSourceDto previousDto = previousFileSourcesByUuid.get(fileSourceData.fileUuid);
 
       if (previousDto == null) {
         FileSourceDto dto = new FileSourceDto()
           .setProjectUuid(projectUuid)
-          .setFileUuid(componentUuid)
+          .setFileUuid(fileSourceData.fileUuid)
           .setDataType(Type.SOURCE)
-          .setBinaryData(data)
-          .setSrcHash(srcHash)
-          .setDataHash(dataHash)
-          .setLineHashes(lineHashes)
+          .setBinaryData(fileSourceData.data)
+          .setSrcHash(fileSourceData.srcHash)
+          .setDataHash(fileSourceData.dataHash)
+          .setInputHash(fileSourceData.inputHash)
+          .setLineHashes(fileSourceData.lineHashes)
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
-          .setRevision(computeRevision(latestChange));
+          .setRevision(fileSourceData.revision);
         dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
+        return;
+      }
+
+      // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
+      boolean binaryDataUpdated = !fileSourceData.dataHash.equals(previousDto.getDataHash());
+      boolean srcHashUpdated = !fileSourceData.srcHash.equals(previousDto.getSrcHash());
+      boolean revisionUpdated = !ObjectUtils.equals(fileSourceData.revision, previousDto.getRevision());
+      if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
+        previousDto
+          .setBinaryData(fileSourceData.data)
+          .setDataHash(fileSourceData.dataHash)
+          .setSrcHash(fileSourceData.srcHash)
+          .setInputHash(fileSourceData.inputHash)
+          .setLineHashes(fileSourceData.lineHashes)
+          .setRevision(fileSourceData.revision)
+          .setUpdatedAt(system2.now());
+        dbClient.fileSourceDao().update(session, previousDto);
       } else {
-        // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
-        boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
-        boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
-        String revision = computeRevision(latestChange);
-        boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
-        if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
-          previousDto
-            .setBinaryData(data)
-            .setDataHash(dataHash)
-            .setSrcHash(srcHash)
-            .setLineHashes(lineHashes)
-            .setRevision(revision)
-            .setUpdatedAt(system2.now());
-          dbClient.fileSourceDao().update(session, previousDto);
-          session.commit();
-        }
+        // line data is the same but was built from different inputs, or input_hash is missing (progressive migration)
+        dbClient.fileSourceDao().updateInputHash(session, previousDto.getId(), fileSourceData.inputHash);
       }
     }
+  }
+
+  /**
+   * Executed by the workers: must not access any state shared with the crawling thread.
+   */
+  private FileSourceData computeSource(Component file, String inputHash, Optional<ScmInfo> scmInfo, Iterable<Duplication> duplications) {
+    try (CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
+      LineReaders lineReaders = new LineReaders(reportReader, scmInfo, duplications, file)) {
+      ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
+      ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
+      DbFileSources.Data fileData = fileSourceData.getFileSourceData();
+      byte[] data = FileSourceDto.encodeSourceData(fileData);
+      return new FileSourceData(file, inputHash, data, fileSourceData, computeRevision(lineReaders.getLatestChange()));
+    } catch (Exception e) {
+      throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
+    }
+  }
+
+  @CheckForNull
+  private static String computeRevision(@Nullable Changeset latestChange) {
+    if (latestChange == null) {
+      return null;
+    }
+    return latestChange.getRevision();
+  }
 
+  private static final class FileSourceData {
+    private final String fileUuid;
+    private final String fileKey;
+    private final String inputHash;
+    private final byte[] data;
+    private final String dataHash;
+    private final String srcHash;
+    private final String lineHashes;
     @CheckForNull
-    private String computeRevision(@Nullable Changeset latestChange) {
-      if (latestChange == null) {
-        return null;
+    private final String revision;
+
+    private FileSourceData(Component file, String inputHash, byte[] data, ComputeFileSourceData.Data fileSourceData, @Nullable String revision) {
+      this.fileUuid = file.getUuid();
+      this.fileKey = file.getKey();
+      this.inputHash = inputHash;
+      this.data = data;
+      this.dataHash = DigestUtils.md5Hex(data);
+      this.srcHash = fileSourceData.getSrcHash();
+      this.lineHashes = fileSourceData.getLineHashes();
+      this.revision = revision;
+    }
+  }
+
+  /**
+   * Digest of the inputs of line data. Values are written with their length and each section of entries ends
+   * with a marker, so that different inputs can't produce the same sequence of bytes.
+   */
+  private static final class InputDigest {
+    /**
+     * Must be incremented when the line data built from the same inputs changes, so that the existing rows are updated
+     */
+    private static final int VERSION = 1;
+    private static final byte END_OF_SECTION = 0;
+    private static final byte ENTRY = 1;
+    private static final byte ABSENT_ENTRY = 2;
+
+    private final MessageDigest digest = DigestUtils.getMd5Digest();
+    private final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+    private InputDigest() {
+      putInt(VERSION);
+    }
+
+    private void putEntry() {
+      digest.update(ENTRY);
+    }
+
+    private void putAbsentEntry() {
+      digest.update(ABSENT_ENTRY);
+    }
+
+    private void putEndOfSection() {
+      digest.update(END_OF_SECTION);
+    }
+
+    private void putInt(int value) {
+      buffer.clear();
+      digest.update(buffer.putInt(value).array(), 0, Integer.BYTES);
+    }
+
+    private void putLong(long value) {
+      buffer.clear();
+      digest.update(buffer.putLong(value).array(), 0, Long.BYTES);
+    }
+
+    private void putString(@Nullable String value) {
+      putBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void putBytes(@Nullable byte[] value) {
+      if (value == null) {
+        putInt(-1);
+      } else {
+        putInt(value.length);
+        digest.update(value);
       }
-      return latestChange.getRevision();
+    }
+
+    private void putTextBlock(TextBlock textBlock) {
+      putInt(textBlock.getStart());
+      putInt(textBlock.getEnd());
+    }
+
+    private void putMessages(CloseableIterator<? extends Message> messages) {
+      try {
+        while (messages.hasNext()) {
+          putEntry();
+          putBytes(messages.next().toByteArray());
+        }
+        putEndOfSection();
+      } finally {
+        messages.close();
+      }
+    }
+
+    private String toHex() {
+      return Hex.encodeHexString(digest.digest());
     }
   }
 
@@ -190,13 +460,12 @@ public class PersistFileSourcesStep implements ComputationStep {
     @CheckForNull
     private final ScmLineReader scmLineReader;
 
-    LineReaders(BatchReportReader reportReader, ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Component component) {
+    LineReaders(BatchReportReader reportReader, Optional<ScmInfo> scmInfoOptional, Iterable<Duplication> duplications, Component component) {
       int componentRef = component.getReportAttributes().getRef();
       CloseableIterator<ScannerReport.LineCoverage> coverageIt = reportReader.readComponentCoverage(componentRef);
       closeables.add(coverageIt);
       readers.add(new CoverageLineReader(coverageIt));
 
-      Optional<ScmInfo> scmInfoOptional = scmInfoRepository.getScmInfo(component);
       if (scmInfoOptional.isPresent()) {
         this.scmLineReader = new ScmLineReader(scmInfoOptional.get());
         readers.add(scmLineReader);
@@ -212,7 +481,7 @@ public class PersistFileSourcesStep implements ComputationStep {
       CloseableIterator<ScannerReport.Symbol> symbolsIt = reportReader.readComponentSymbols(componentRef);
       closeables.add(symbolsIt);
       readers.add(new SymbolsLineReader(component, symbolsIt, rangeOffsetConverter));
-      readers.add(new DuplicationLineReader(duplicationRepository.getDuplications(component)));
+      readers.add(new DuplicationLineReader(duplications));
     }
 
     List<LineReader> readers() {
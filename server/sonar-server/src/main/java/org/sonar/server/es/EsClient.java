@@ -20,6 +20,9 @@
 package org.sonar.server.es;
 
 import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequestBuilder;
 import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsRequestBuilder;
 import org.elasticsearch.action.admin.cluster.state.ClusterStateRequestBuilder;
@@ -77,6 +80,8 @@ public class EsClient implements Closeable {
   public static final Logger LOGGER = Loggers.get("es");
 
   private final Client nativeClient;
+  private final Map<String, AtomicLong> refreshCountByIndex = new ConcurrentHashMap<>();
+  private final AtomicLong allIndicesRefreshCount = new AtomicLong();
 
   public EsClient(Client nativeClient) {
     this.nativeClient = requireNonNull(nativeClient);
@@ -87,7 +92,7 @@ public class EsClient implements Closeable {
   }
 
   public RefreshRequestBuilder prepareRefresh(String... indices) {
-    return new ProxyRefreshRequestBuilder(nativeClient()).setIndices(indices);
+    return new ProxyRefreshRequestBuilder(nativeClient(), this::onRefreshed).setIndices(indices);
   }
 
   public FlushRequestBuilder prepareFlush(String... indices) {
@@ -157,7 +162,7 @@ public class EsClient implements Closeable {
   }
 
   public BulkRequestBuilder prepareBulk() {
-    return new ProxyBulkRequestBuilder(nativeClient());
+    return new ProxyBulkRequestBuilder(nativeClient(), this::onRefreshed);
   }
 
   public DeleteRequestBuilder prepareDelete(IndexType indexType, String id) {
@@ -192,6 +197,24 @@ public class EsClient implements Closeable {
     return (long) max.getValue();
   }
 
+  /**
+   * Number of refreshes of the index executed through this client, either explicitly or by bulk requests
+   * with a refresh policy. Refreshes requested by other clients, for example by other processes, are not counted.
+   */
+  public long getRefreshCount(String index) {
+    AtomicLong count = refreshCountByIndex.get(index);
+    return allIndicesRefreshCount.get() + (count == null ? 0L : count.get());
+  }
+
+  private void onRefreshed(String... indices) {
+    if (indices.length == 0) {
+      allIndicesRefreshCount.incrementAndGet();
+    }
+    for (String index : indices) {
+      refreshCountByIndex.computeIfAbsent(index, i -> new AtomicLong()).incrementAndGet();
+    }
+  }
+
   public Client nativeClient() {
     return nativeClient;
   }
@@ -0,0 +1,204 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
+import org.elasticsearch.action.admin.indices.stats.IndexStats;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.picocontainer.Startable;
+import org.sonar.api.utils.System2;
+import org.sonar.process.Jmx;
+
+/**
+ * Facets computed by search requests, so that the same aggregations are not computed again and again,
+ * for example by the facets of the home page of each organization.
+ * <p>
+ * Facets are cached by the JSON of the request computing them, which includes the query, the aggregations and the
+ * authorization filter of the user. They are valid as long as the index is not refreshed: a refresh is required
+ * for any change to be visible to searches, whatever the process that indexed the documents, and the indexers
+ * refresh the index when they commit. The number of refreshes of the index is therefore used as its version.
+ * <p>
+ * Reading the number of refreshes from the index stats requires a request to all the shards of the index, so it is
+ * read at most once per {@link #REFRESH_STATS_INTERVAL_IN_MS} for each index. The refreshes requested by this process
+ * are also counted locally by {@link EsClient}, so that its own changes invalidate the facets immediately, while
+ * the changes of the other processes, like the Compute Engine, are visible after this interval at most.
+ */
+public class FacetsCache implements FacetsCacheMBean, Startable {
+
+  static final String OBJECT_NAME = "SonarQube:name=FacetsCache";
+  private static final long MAX_SIZE = 1_000L;
+  private static final long EXPIRATION_IN_MINUTES = 10L;
+  static final long REFRESH_STATS_INTERVAL_IN_MS = 1_000L;
+
+  private final EsClient client;
+  private final System2 system2;
+  private final Map<String, RefreshStats> refreshStatsByIndex = new ConcurrentHashMap<>();
+  private final Cache<String, VersionedFacets> facetsByRequest = CacheBuilder.newBuilder()
+    .maximumSize(MAX_SIZE)
+    .expireAfterWrite(EXPIRATION_IN_MINUTES, TimeUnit.MINUTES)
+    .build();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  public FacetsCache(EsClient client) {
+    this(client, System2.INSTANCE);
+  }
+
+  @VisibleForTesting
+  FacetsCache(EsClient client, System2 system2) {
+    this.client = client;
+    this.system2 = system2;
+  }
+
+  @Override
+  public void start() {
+    Jmx.register(OBJECT_NAME, this);
+  }
+
+  @Override
+  public void stop() {
+    Jmx.unregister(OBJECT_NAME);
+  }
+
+  /**
+   * Executes the given request, unless its facets have already been computed since the last refresh of the index.
+   * The request must only define the query and the aggregations, as any other parameter is ignored by the cache key.
+   * A copy of the facets is returned, so it can be modified by the caller.
+   */
+  public Facets get(IndexType indexType, SearchRequestBuilder facetsRequest) {
+    String key = indexType.getIndex() + '/' + indexType.getType() + '/' + facetsRequest;
+    // the version must be read before executing the request, so that facets are never cached with a more recent version
+    Version version = getVersion(indexType.getIndex());
+    VersionedFacets cached = facetsByRequest.getIfPresent(key);
+    if (version != null && cached != null && cached.version.equals(version)) {
+      hitCount.incrementAndGet();
+      return copy(cached.facets);
+    }
+    missCount.incrementAndGet();
+    Facets facets = new Facets(facetsRequest.get());
+    if (version != null) {
+      facetsByRequest.put(key, new VersionedFacets(version, copy(facets)));
+    }
+    return facets;
+  }
+
+  @CheckForNull
+  private Version getVersion(String index) {
+    // the local count must be read first, so that a refresh of this process is never missed by both counts
+    long localRefreshes = client.getRefreshCount(index);
+    long now = system2.now();
+    RefreshStats stats = refreshStatsByIndex.get(index);
+    if (stats == null || now - stats.readAt >= REFRESH_STATS_INTERVAL_IN_MS) {
+      IndexStats indexStats = client.prepareStats(index).clear().setRefresh(true).get().getIndex(index);
+      if (indexStats == null) {
+        return null;
+      }
+      stats = new RefreshStats(indexStats.getTotal().getRefresh().getTotal(), now);
+      refreshStatsByIndex.put(index, stats);
+    }
+    return new Version(stats.refreshes, localRefreshes);
+  }
+
+  private static Facets copy(Facets facets) {
+    LinkedHashMap<String, LinkedHashMap<String, Long>> copy = new LinkedHashMap<>();
+    for (Map.Entry<String, LinkedHashMap<String, Long>> facet : facets.getAll().entrySet()) {
+      copy.put(facet.getKey(), new LinkedHashMap<>(facet.getValue()));
+    }
+    return new Facets(copy);
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  @Override
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  @Override
+  public double getHitRate() {
+    long hits = hitCount.get();
+    long requests = hits + missCount.get();
+    return requests == 0L ? 0.0D : ((double) hits / requests);
+  }
+
+  @Override
+  public long getSize() {
+    return facetsByRequest.size();
+  }
+
+  private static class RefreshStats {
+    private final long refreshes;
+    private final long readAt;
+
+    private RefreshStats(long refreshes, long readAt) {
+      this.refreshes = refreshes;
+      this.readAt = readAt;
+    }
+  }
+
+  private static class Version {
+    private final long refreshes;
+    private final long localRefreshes;
+
+    private Version(long refreshes, long localRefreshes) {
+      this.refreshes = refreshes;
+      this.localRefreshes = localRefreshes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Version other = (Version) o;
+      return refreshes == other.refreshes && localRefreshes == other.localRefreshes;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(refreshes, localRefreshes);
+    }
+  }
+
+  private static class VersionedFacets {
+    private final Version version;
+    private final Facets facets;
+
+    private VersionedFacets(Version version, Facets facets) {
+      this.version = version;
+      this.facets = facets;
+    }
+  }
+}
@@ -34,7 +34,14 @@ public class SearchIdResult<ID> {
   private final long total;
 
   public SearchIdResult(SearchResponse response, Function<String, ID> converter) {
-    this.facets = new Facets(response);
+    this(response, converter, new Facets(response));
+  }
+
+  /**
+   * @param facets facets computed by another request than {@code response}, for example read from {@link FacetsCache}
+   */
+  public SearchIdResult(SearchResponse response, Function<String, ID> converter, Facets facets) {
+    this.facets = facets;
     this.total = response.getHits().totalHits();
     this.ids = convertToIds(response.getHits(), converter);
   }
@@ -22,6 +22,7 @@ package org.sonar.server.es.request;
 import com.google.common.collect.LinkedHashMultiset;
 import com.google.common.collect.Multiset;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.bulk.BulkAction;
@@ -29,6 +30,7 @@ import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.unit.TimeValue;
@@ -37,15 +39,31 @@ import org.sonar.server.es.EsClient;
 
 public class ProxyBulkRequestBuilder extends BulkRequestBuilder {
 
+  private final Consumer<String[]> refreshListener;
+
   public ProxyBulkRequestBuilder(Client client) {
+    this(client, indices -> {
+    });
+  }
+
+  /**
+   * @param refreshListener called with the indices of the request once it is successfully executed,
+   *                        if its refresh policy is not {@link RefreshPolicy#NONE}
+   */
+  public ProxyBulkRequestBuilder(Client client, Consumer<String[]> refreshListener) {
     super(client, BulkAction.INSTANCE);
+    this.refreshListener = refreshListener;
   }
 
   @Override
   public BulkResponse get() {
     Profiler profiler = Profiler.createIfTrace(EsClient.LOGGER).start();
     try {
-      return super.execute().actionGet();
+      BulkResponse response = super.execute().actionGet();
+      if (request.getRefreshPolicy() != RefreshPolicy.NONE) {
+        refreshListener.accept(request.requests().stream().map(DocWriteRequest::index).distinct().toArray(String[]::new));
+      }
+      return response;
     } catch (Exception e) {
       throw new IllegalStateException(String.format("Fail to execute %s", toString()), e);
     } finally {
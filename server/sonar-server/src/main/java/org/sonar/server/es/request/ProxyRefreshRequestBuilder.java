@@ -19,6 +19,7 @@
  */
 package org.sonar.server.es.request;
 
+import java.util.function.Consumer;
 import org.apache.commons.lang.StringUtils;
 import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.admin.indices.refresh.RefreshAction;
@@ -31,15 +32,29 @@ import org.sonar.server.es.EsClient;
 
 public class ProxyRefreshRequestBuilder extends RefreshRequestBuilder {
 
+  private final Consumer<String[]> refreshListener;
+
   public ProxyRefreshRequestBuilder(Client client) {
+    this(client, indices -> {
+    });
+  }
+
+  /**
+   * @param refreshListener called with the refreshed indices, or with no indices if all of them are refreshed,
+   *                        once the request is successfully executed
+   */
+  public ProxyRefreshRequestBuilder(Client client, Consumer<String[]> refreshListener) {
     super(client.admin().indices(), RefreshAction.INSTANCE);
+    this.refreshListener = refreshListener;
   }
 
   @Override
   public RefreshResponse get() {
     Profiler profiler = Profiler.createIfTrace(EsClient.LOGGER).start();
     try {
-      return super.execute().actionGet();
+      RefreshResponse response = super.execute().actionGet();
+      refreshListener.accept(request.indices());
+      return response;
     } catch (Exception e) {
       throw new IllegalStateException(String.format("Fail to execute %s", toString()), e);
     } finally {
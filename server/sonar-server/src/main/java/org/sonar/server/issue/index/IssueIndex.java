@@ -26,6 +26,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -68,6 +69,9 @@ import org.sonar.db.organization.OrganizationDto;
 import org.sonar.server.es.BaseDoc;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.EsUtils;
+import org.sonar.server.es.Facets;
+import org.sonar.server.es.FacetsCache;
+import org.sonar.server.es.SearchIdResult;
 import org.sonar.server.es.SearchOptions;
 import org.sonar.server.es.Sorting;
 import org.sonar.server.es.StickyFacetBuilder;
@@ -151,12 +155,14 @@ public class IssueIndex {
   private final System2 system;
   private final UserSession userSession;
   private final AuthorizationTypeSupport authorizationTypeSupport;
+  private final FacetsCache facetsCache;
 
-  public IssueIndex(EsClient client, System2 system, UserSession userSession, AuthorizationTypeSupport authorizationTypeSupport) {
+  public IssueIndex(EsClient client, System2 system, UserSession userSession, AuthorizationTypeSupport authorizationTypeSupport, FacetsCache facetsCache) {
     this.client = client;
     this.system = system;
     this.userSession = userSession;
     this.authorizationTypeSupport = authorizationTypeSupport;
+    this.facetsCache = facetsCache;
 
     this.sorting = new Sorting();
     this.sorting.add(IssueQuery.SORT_BY_ASSIGNEE, IssueIndexDefinition.FIELD_ISSUE_ASSIGNEE);
@@ -342,22 +348,58 @@ public class IssueIndex {
     configureRouting(query, options, requestBuilder);
 
     QueryBuilder esQuery = matchAllQuery();
-    BoolQueryBuilder esFilter = boolQuery();
     Map<String, QueryBuilder> filters = createFilters(query);
+    requestBuilder.setQuery(createFilteredQuery(esQuery, filters));
+
+    configureStickyFacets(query, options, filters, esQuery, requestBuilder);
+    requestBuilder.setFetchSource(false);
+    return requestBuilder.get();
+  }
+
+  /**
+   * Same as {@link #search(IssueQuery, SearchOptions)}, except that facets are computed by a dedicated request,
+   * so that they can be read from {@link FacetsCache} whatever the requested page and sort.
+   */
+  public SearchIdResult<String> searchKeys(IssueQuery query, SearchOptions options) {
+    SearchRequestBuilder requestBuilder = client.prepareSearch(INDEX_TYPE_ISSUE);
+    configureSorting(query, requestBuilder);
+    configurePagination(options, requestBuilder);
+    Collection<String> projectUuids = query.projectUuids();
+    if (!projectUuids.isEmpty()) {
+      requestBuilder.setRouting(projectUuids.toArray(new String[projectUuids.size()]));
+    }
+
+    QueryBuilder esQuery = matchAllQuery();
+    Map<String, QueryBuilder> filters = createFilters(query);
+    QueryBuilder filteredQuery = createFilteredQuery(esQuery, filters);
+    requestBuilder.setQuery(filteredQuery).setFetchSource(false);
+    SearchResponse response = requestBuilder.get();
+
+    Facets facets;
+    if (options.getFacets().isEmpty()) {
+      facets = new Facets(new LinkedHashMap<>());
+    } else {
+      SearchRequestBuilder facetsRequest = client.prepareSearch(INDEX_TYPE_ISSUE)
+        .setQuery(filteredQuery)
+        .setFetchSource(false)
+        .setSize(0);
+      configureStickyFacets(query, options, filters, esQuery, facetsRequest);
+      facets = facetsCache.get(INDEX_TYPE_ISSUE, facetsRequest);
+    }
+    return new SearchIdResult<>(response, key -> key, facets);
+  }
+
+  private static QueryBuilder createFilteredQuery(QueryBuilder esQuery, Map<String, QueryBuilder> filters) {
+    BoolQueryBuilder esFilter = boolQuery();
     for (QueryBuilder filter : filters.values()) {
       if (filter != null) {
         esFilter.must(filter);
       }
     }
     if (esFilter.hasClauses()) {
-      requestBuilder.setQuery(boolQuery().must(esQuery).filter(esFilter));
-    } else {
-      requestBuilder.setQuery(esQuery);
+      return boolQuery().must(esQuery).filter(esFilter);
     }
-
-    configureStickyFacets(query, options, filters, esQuery, requestBuilder);
-    requestBuilder.setFetchSource(false);
-    return requestBuilder.get();
+    return esQuery;
   }
 
   private void configureSorting(IssueQuery query, SearchRequestBuilder esRequest) {
@@ -43,6 +43,7 @@ import org.sonar.server.es.Facets;
 import org.sonar.server.issue.ActionFinder;
 import org.sonar.server.issue.TransitionService;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.ws.ParallelLoader;
 import org.sonarqube.ws.client.issue.IssuesWsParameters;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
@@ -67,33 +68,54 @@ public class SearchResponseLoader {
   private final DbClient dbClient;
   private final ActionFinder actionService;
   private final TransitionService transitionService;
+  private final ParallelLoader parallelLoader;
 
-  public SearchResponseLoader(UserSession userSession, DbClient dbClient, ActionFinder actionService, TransitionService transitionService) {
+  public SearchResponseLoader(UserSession userSession, DbClient dbClient, ActionFinder actionService, TransitionService transitionService,
+    ParallelLoader parallelLoader) {
     this.userSession = userSession;
     this.dbClient = dbClient;
     this.actionService = actionService;
     this.transitionService = transitionService;
+    this.parallelLoader = parallelLoader;
   }
 
   /**
    * The issue keys are given by the multi-criteria search in Elasticsearch index.
+   * <p>
+   * Once issues are loaded, rules, components with their organizations and comments with users are loaded concurrently,
+   * each in its own DB session. The DB session of the issues is closed before, so that the calling thread never holds
+   * a connection while waiting for the other ones.
+   * </p>
    */
   public SearchResponseData load(Collector collector, @Nullable Facets facets) {
+    SearchResponseData result;
     try (DbSession dbSession = dbClient.openSession(false)) {
-      SearchResponseData result = new SearchResponseData(dbClient.issueDao().selectByOrderedKeys(dbSession, collector.getIssueKeys()));
-      collector.collect(result.getIssues());
-
-      loadRules(collector, dbSession, result);
-      // order is important - loading of comments complete the list of users: loadComments() is
-      // before loadUsers()
-      loadComments(collector, dbSession, result);
-      loadUsers(collector, dbSession, result);
-      loadComponents(collector, dbSession, result);
-      loadOrganizations(dbSession, result);
-      loadActionsAndTransitions(collector, result);
-      completeTotalEffortFromFacet(facets, result);
-      return result;
+      result = new SearchResponseData(dbClient.issueDao().selectByOrderedKeys(dbSession, collector.getIssueKeys()));
     }
+    collector.collect(result.getIssues());
+
+    // the collector is not thread-safe, rule keys are read before users are added by comments
+    List<RuleKey> ruleKeys = collector.getList(RULES);
+    // user session is bound to the thread of the request
+    String login = userSession.isLoggedIn() ? userSession.getLogin() : null;
+
+    parallelLoader.newBatch("issues")
+      .add(dbSession -> {
+        // order is important - loading of comments complete the list of users: loadComments() is
+        // before loadUsers()
+        loadComments(collector, dbSession, result, login);
+        loadUsers(collector, dbSession, result);
+      })
+      .add(dbSession -> loadRules(collector, ruleKeys, dbSession, result))
+      .add(dbSession -> {
+        loadComponents(collector, dbSession, result);
+        loadOrganizations(dbSession, result);
+      })
+      .execute();
+
+    loadActionsAndTransitions(collector, result);
+    completeTotalEffortFromFacet(facets, result);
+    return result;
   }
 
   /**
@@ -112,7 +134,7 @@ public class SearchResponseLoader {
       loadRules(preloadedResponseData, collector, dbSession, result);
       // order is important - loading of comments complete the list of users: loadComments() is
       // before loadUsers()
-      loadComments(collector, dbSession, result);
+      loadComments(collector, dbSession, result, userSession.isLoggedIn() ? userSession.getLogin() : null);
       loadUsers(preloadedResponseData, collector, dbSession, result);
       loadComponents(preloadedResponseData, collector, dbSession, result);
       loadOrganizations(dbSession, result);
@@ -200,26 +222,26 @@ public class SearchResponseLoader {
     }
   }
 
-  private void loadComments(Collector collector, DbSession dbSession, SearchResponseData result) {
+  private void loadComments(Collector collector, DbSession dbSession, SearchResponseData result, @Nullable String login) {
     if (collector.contains(COMMENTS)) {
       List<IssueChangeDto> comments = dbClient.issueChangeDao().selectByTypeAndIssueKeys(dbSession, collector.getIssueKeys(), IssueChangeDto.TYPE_COMMENT);
       result.setComments(comments);
       for (IssueChangeDto comment : comments) {
         collector.add(USERS, comment.getUserLogin());
-        if (canEditOrDelete(comment)) {
+        if (canEditOrDelete(comment, login)) {
           result.addUpdatableComment(comment.getKey());
         }
       }
     }
   }
 
-  private boolean canEditOrDelete(IssueChangeDto dto) {
-    return userSession.isLoggedIn() && userSession.getLogin().equals(dto.getUserLogin());
+  private static boolean canEditOrDelete(IssueChangeDto dto, @Nullable String login) {
+    return login != null && login.equals(dto.getUserLogin());
   }
 
-  private void loadRules(Collector collector, DbSession dbSession, SearchResponseData result) {
+  private void loadRules(Collector collector, List<RuleKey> ruleKeys, DbSession dbSession, SearchResponseData result) {
     if (collector.contains(RULES)) {
-      result.setRules(dbClient.ruleDao().selectDefinitionByKeys(dbSession, collector.getList(RULES)));
+      result.setRules(dbClient.ruleDao().selectDefinitionByKeys(dbSession, ruleKeys));
     }
   }
 
@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Multimap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -51,6 +52,8 @@ import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.server.es.DefaultIndexSettingsElement;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.Facets;
+import org.sonar.server.es.FacetsCache;
 import org.sonar.server.es.SearchIdResult;
 import org.sonar.server.es.SearchOptions;
 import org.sonar.server.es.StickyFacetBuilder;
@@ -152,10 +155,12 @@ public class ProjectMeasuresIndex {
 
   private final EsClient client;
   private final AuthorizationTypeSupport authorizationTypeSupport;
+  private final FacetsCache facetsCache;
 
-  public ProjectMeasuresIndex(EsClient client, AuthorizationTypeSupport authorizationTypeSupport) {
+  public ProjectMeasuresIndex(EsClient client, AuthorizationTypeSupport authorizationTypeSupport, FacetsCache facetsCache) {
     this.client = client;
     this.authorizationTypeSupport = authorizationTypeSupport;
+    this.facetsCache = facetsCache;
   }
 
   public SearchIdResult<String> search(ProjectMeasuresQuery query, SearchOptions searchOptions) {
@@ -170,9 +175,25 @@ public class ProjectMeasuresIndex {
     filters.values().forEach(esFilter::must);
     requestBuilder.setQuery(esFilter);
 
-    addFacets(requestBuilder, searchOptions, filters, query);
     addSort(query, requestBuilder);
-    return new SearchIdResult<>(requestBuilder.get(), id -> id);
+    return new SearchIdResult<>(requestBuilder.get(), id -> id, searchFacets(esFilter, filters, query, searchOptions));
+  }
+
+  /**
+   * Facets are computed by a dedicated request, so that they can be read from {@link FacetsCache} whatever the
+   * requested page and sort.
+   */
+  private Facets searchFacets(BoolQueryBuilder esFilter, Map<String, QueryBuilder> filters, ProjectMeasuresQuery query, SearchOptions searchOptions) {
+    if (searchOptions.getFacets().isEmpty()) {
+      return new Facets(new LinkedHashMap<>());
+    }
+    SearchRequestBuilder facetsRequest = client
+      .prepareSearch(INDEX_TYPE_PROJECT_MEASURES)
+      .setFetchSource(false)
+      .setSize(0)
+      .setQuery(esFilter);
+    addFacets(facetsRequest, searchOptions, filters, query);
+    return facetsCache.get(INDEX_TYPE_PROJECT_MEASURES, facetsRequest);
   }
 
   public ProjectMeasuresStatistics searchTelemetryStatistics() {
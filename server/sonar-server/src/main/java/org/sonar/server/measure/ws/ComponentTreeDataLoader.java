@@ -22,6 +22,7 @@ package org.sonar.server.measure.ws;
 import com.google.common.base.Joiner;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -37,6 +38,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -53,6 +55,7 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.measure.MeasureDto;
+import org.sonar.db.measure.MeasureQuery;
 import org.sonar.db.measure.MeasureTreeQuery;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.db.metric.MetricDtoFunctions;
@@ -60,7 +63,11 @@ import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.measure.ws.ComponentTreeData.Measure;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.ws.ParallelLoader;
 import org.sonarqube.ws.client.measure.ComponentTreeWsRequest;
+import static org.sonar.server.measure.ws.ComponentTreeAction.QUALIFIER_SORT;
+import static org.sonar.server.measure.ws.ComponentTreeAction.PATH_SORT;
+import static org.sonar.server.measure.ws.ComponentTreeAction.NAME_SORT;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -71,6 +78,8 @@ import static org.sonar.api.utils.Paging.offset;
 import static org.sonar.server.component.ComponentFinder.ParamNames.BASE_COMPONENT_ID_AND_KEY;
 import static org.sonar.server.component.ComponentFinder.ParamNames.DEVELOPER_ID_AND_KEY;
 import static org.sonar.server.measure.ws.ComponentTreeAction.LEAVES_STRATEGY;
+import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_PERIOD_SORT;
+import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.STRATEGIES;
 import static org.sonar.server.measure.ws.ComponentTreeAction.WITH_MEASURES_ONLY_METRIC_SORT_FILTER;
 import static org.sonar.server.measure.ws.SnapshotDtoToWsPeriods.snapshotToWsPeriods;
@@ -78,54 +87,105 @@ import static org.sonar.server.measure.ws.SnapshotDtoToWsPeriods.snapshotToWsPer
 public class ComponentTreeDataLoader {
   private static final Set<String> QUALIFIERS_ELIGIBLE_FOR_BEST_VALUE = ImmutableSet.of(Qualifiers.FILE, Qualifiers.UNIT_TEST_FILE);
   private static final Joiner COMA_JOINER = Joiner.on(", ");
+  private static final Map<String, ComponentTreeQuery.SortField> SORT_FIELDS_BY_SORT_PARAMETER = ImmutableMap.of(
+    NAME_SORT, ComponentTreeQuery.SortField.NAME,
+    PATH_SORT, ComponentTreeQuery.SortField.PATH,
+    QUALIFIER_SORT, ComponentTreeQuery.SortField.QUALIFIER);
 
   private final DbClient dbClient;
   private final ComponentFinder componentFinder;
   private final UserSession userSession;
   private final ResourceTypes resourceTypes;
+  private final ParallelLoader parallelLoader;
 
-  public ComponentTreeDataLoader(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession, ResourceTypes resourceTypes) {
+  public ComponentTreeDataLoader(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession, ResourceTypes resourceTypes,
+    ParallelLoader parallelLoader) {
     this.dbClient = dbClient;
     this.componentFinder = componentFinder;
     this.userSession = userSession;
     this.resourceTypes = resourceTypes;
+    this.parallelLoader = parallelLoader;
   }
 
+  /**
+   * The tree of components and the measures used to sort or filter it are loaded concurrently, then
+   * the measures of the requested page and the reference components (for example projects of a view) are
+   * loaded concurrently too.
+   * <p>
+   * When components are neither sorted nor filtered by a metric, only the requested page of components is
+   * loaded, sorted and paginated by the database. Otherwise the whole tree is loaded and sorted in memory,
+   * as the measures of the sort metric are not stored in the table of components.
+   */
   ComponentTreeData load(ComponentTreeWsRequest wsRequest) {
+    ComponentDto baseComponent;
+    Optional<SnapshotDto> baseSnapshot;
     try (DbSession dbSession = dbClient.openSession(false)) {
-      ComponentDto baseComponent = componentFinder.getByUuidOrKey(dbSession, wsRequest.getBaseComponentId(), wsRequest.getBaseComponentKey(), BASE_COMPONENT_ID_AND_KEY);
+      baseComponent = componentFinder.getByUuidOrKey(dbSession, wsRequest.getBaseComponentId(), wsRequest.getBaseComponentKey(), BASE_COMPONENT_ID_AND_KEY);
       checkPermissions(baseComponent);
-      Optional<SnapshotDto> baseSnapshot = dbClient.snapshotDao().selectLastAnalysisByRootComponentUuid(dbSession, baseComponent.projectUuid());
-      if (!baseSnapshot.isPresent()) {
-        return ComponentTreeData.builder()
-          .setBaseComponent(baseComponent)
-          .build();
-      }
-      Long developerId = searchDeveloperId(dbSession, wsRequest);
-
-      ComponentTreeQuery componentTreeQuery = toComponentTreeQuery(wsRequest, baseComponent);
-      List<ComponentDto> components = searchComponents(dbSession, componentTreeQuery);
-      List<MetricDto> metrics = searchMetrics(dbSession, wsRequest);
-      Table<String, MetricDto, Measure> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery,
-        components,
-        metrics, developerId);
-
-      components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
-      components = sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
-
-      int componentCount = components.size();
-      components = paginateComponents(components, wsRequest);
-
+      baseSnapshot = dbClient.snapshotDao().selectLastAnalysisByRootComponentUuid(dbSession, baseComponent.projectUuid());
+    }
+    if (!baseSnapshot.isPresent()) {
       return ComponentTreeData.builder()
         .setBaseComponent(baseComponent)
-        .setComponentsFromDb(components)
-        .setComponentCount(componentCount)
-        .setMeasuresByComponentUuidAndMetric(measuresByComponentUuidAndMetric)
-        .setMetrics(metrics)
-        .setPeriods(snapshotToWsPeriods(baseSnapshot.get()))
-        .setReferenceComponentsByUuid(searchReferenceComponentsById(dbSession, components))
         .build();
     }
+
+    boolean sortedAndPaginatedInDb = isSortedAndPaginatedInDb(wsRequest);
+    ComponentTreeQuery componentTreeQuery = toComponentTreeQuery(wsRequest, baseComponent, sortedAndPaginatedInDb);
+    AtomicReference<List<ComponentDto>> componentsRef = new AtomicReference<>();
+    AtomicReference<Integer> componentCountRef = new AtomicReference<>();
+    AtomicReference<Long> developerIdRef = new AtomicReference<>();
+    AtomicReference<List<MetricDto>> metricsRef = new AtomicReference<>();
+    AtomicReference<Table<String, MetricDto, Measure>> measuresRef = new AtomicReference<>();
+    parallelLoader.newBatch("component tree")
+      .add(dbSession -> {
+        developerIdRef.set(searchDeveloperId(dbSession, wsRequest));
+        metricsRef.set(searchMetrics(dbSession, wsRequest));
+        measuresRef.set(searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery,
+          searchSortAndFilterMetrics(metricsRef.get(), wsRequest), developerIdRef.get()));
+      })
+      .add(dbSession -> {
+        if (sortedAndPaginatedInDb) {
+          componentsRef.set(searchPageComponents(dbSession, componentTreeQuery, wsRequest));
+          componentCountRef.set(countComponents(dbSession, componentTreeQuery));
+        } else {
+          componentsRef.set(searchComponents(dbSession, componentTreeQuery));
+        }
+      })
+      .execute();
+    Long developerId = developerIdRef.get();
+    List<MetricDto> metrics = metricsRef.get();
+    List<MetricDto> sortAndFilterMetrics = searchSortAndFilterMetrics(metrics, wsRequest);
+    Table<String, MetricDto, Measure> measuresByComponentUuidAndMetric = measuresRef.get();
+
+    List<ComponentDto> pageComponents;
+    int componentCount;
+    if (sortedAndPaginatedInDb) {
+      pageComponents = componentsRef.get();
+      componentCount = componentCountRef.get();
+    } else {
+      List<ComponentDto> components = componentsRef.get();
+      addBestValuesToMeasures(measuresByComponentUuidAndMetric, components, sortAndFilterMetrics);
+      components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
+      components = sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
+      componentCount = components.size();
+      pageComponents = paginateComponents(components, wsRequest);
+    }
+    AtomicReference<Map<String, ComponentDto>> referenceComponentsRef = new AtomicReference<>();
+    parallelLoader.newBatch("component tree")
+      .add(dbSession -> addMeasuresOfPage(dbSession, baseComponent, pageComponents, metrics, sortAndFilterMetrics, developerId, measuresByComponentUuidAndMetric))
+      .add(dbSession -> referenceComponentsRef.set(searchReferenceComponentsById(dbSession, pageComponents)))
+      .execute();
+
+    return ComponentTreeData.builder()
+      .setBaseComponent(baseComponent)
+      .setComponentsFromDb(pageComponents)
+      .setComponentCount(componentCount)
+      .setMeasuresByComponentUuidAndMetric(measuresByComponentUuidAndMetric)
+      .setMetrics(metrics)
+      .setPeriods(snapshotToWsPeriods(baseSnapshot.get()))
+      .setReferenceComponentsByUuid(referenceComponentsRef.get())
+      .build();
   }
 
   @CheckForNull
@@ -158,6 +218,22 @@ public class ComponentTreeDataLoader {
     return dbClient.componentDao().selectDescendants(dbSession, componentTreeQuery);
   }
 
+  private List<ComponentDto> searchPageComponents(DbSession dbSession, ComponentTreeQuery componentTreeQuery, ComponentTreeWsRequest wsRequest) {
+    Collection<String> qualifiers = componentTreeQuery.getQualifiers();
+    if (qualifiers != null && qualifiers.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return dbClient.componentDao().selectDescendants(dbSession, componentTreeQuery, offset(wsRequest.getPage(), wsRequest.getPageSize()), wsRequest.getPageSize());
+  }
+
+  private int countComponents(DbSession dbSession, ComponentTreeQuery componentTreeQuery) {
+    Collection<String> qualifiers = componentTreeQuery.getQualifiers();
+    if (qualifiers != null && qualifiers.isEmpty()) {
+      return 0;
+    }
+    return dbClient.componentDao().countDescendants(dbSession, componentTreeQuery);
+  }
+
   private List<MetricDto> searchMetrics(DbSession dbSession, ComponentTreeWsRequest request) {
     List<String> metricKeys = requireNonNull(request.getMetricKeys());
     List<MetricDto> metrics = dbClient.metricDao().selectByKeys(dbSession, metricKeys);
@@ -178,9 +254,16 @@ public class ComponentTreeDataLoader {
     return metrics;
   }
 
+  /**
+   * Best values are not added, as the components of the tree may not be loaded yet.
+   */
   private Table<String, MetricDto, Measure> searchMeasuresByComponentUuidAndMetric(DbSession dbSession, ComponentDto baseComponent,
-    ComponentTreeQuery componentTreeQuery,
-    List<ComponentDto> components, List<MetricDto> metrics, @Nullable Long developerId) {
+    ComponentTreeQuery componentTreeQuery, List<MetricDto> metrics, @Nullable Long developerId) {
+
+    Table<String, MetricDto, Measure> measuresByComponentUuidAndMetric = HashBasedTable.create();
+    if (metrics.isEmpty()) {
+      return measuresByComponentUuidAndMetric;
+    }
 
     Map<Integer, MetricDto> metricsById = Maps.uniqueIndex(metrics, MetricDto::getId);
     MeasureTreeQuery measureQuery = MeasureTreeQuery.builder()
@@ -191,7 +274,6 @@ public class ComponentTreeDataLoader {
       .setMetricIds(new ArrayList<>(metricsById.keySet()))
       .build();
 
-    Table<String, MetricDto, Measure> measuresByComponentUuidAndMetric = HashBasedTable.create(components.size(), metrics.size());
     dbClient.measureDao().selectTreeByQuery(dbSession, baseComponent, measureQuery, result -> {
       MeasureDto measureDto = result.getResultObject();
       measuresByComponentUuidAndMetric.put(
@@ -200,11 +282,55 @@ public class ComponentTreeDataLoader {
         Measure.createFromMeasureDto(measureDto));
     });
 
-    addBestValuesToMeasures(measuresByComponentUuidAndMetric, components, metrics);
-
     return measuresByComponentUuidAndMetric;
   }
 
+  /**
+   * Only the metric used to sort or to filter components must be loaded for the whole tree. Measures of the other
+   * requested metrics are loaded afterwards for the components of the requested page.
+   */
+  private static List<MetricDto> searchSortAndFilterMetrics(List<MetricDto> metrics, ComponentTreeWsRequest wsRequest) {
+    String metricKeyToSort = wsRequest.getMetricSort();
+    List<String> sortParameters = wsRequest.getSort();
+    boolean sortedByMetric = sortParameters != null && (sortParameters.contains(METRIC_SORT) || sortParameters.contains(METRIC_PERIOD_SORT));
+    if (metricKeyToSort == null || (!sortedByMetric && !componentWithMeasuresOnly(wsRequest))) {
+      return Collections.emptyList();
+    }
+    return metrics.stream()
+      .filter(m -> metricKeyToSort.equals(m.getKey()))
+      .collect(MoreCollectors.toList(1));
+  }
+
+  private void addMeasuresOfPage(DbSession dbSession, ComponentDto baseComponent, List<ComponentDto> components, List<MetricDto> metrics,
+    List<MetricDto> sortAndFilterMetrics, @Nullable Long developerId, Table<String, MetricDto, Measure> measuresByComponentUuidAndMetric) {
+    Set<String> pageComponentUuids = new HashSet<>(components.size() + 1);
+    pageComponentUuids.add(baseComponent.uuid());
+    components.forEach(c -> pageComponentUuids.add(c.uuid()));
+    // measures of the sort metric are not needed anymore for the components outside of the page
+    measuresByComponentUuidAndMetric.rowKeySet().retainAll(pageComponentUuids);
+
+    List<MetricDto> otherMetrics = metrics.stream()
+      .filter(m -> !sortAndFilterMetrics.contains(m))
+      .collect(MoreCollectors.toList(metrics.size()));
+    if (otherMetrics.isEmpty()) {
+      return;
+    }
+
+    Map<Integer, MetricDto> metricsById = Maps.uniqueIndex(otherMetrics, MetricDto::getId);
+    MeasureQuery measureQuery = MeasureQuery.builder()
+      .setComponentUuids(baseComponent.projectUuid(), pageComponentUuids)
+      .setMetricIds(new ArrayList<>(metricsById.keySet()))
+      .setPersonId(developerId)
+      .build();
+    dbClient.measureDao().selectByQuery(dbSession, measureQuery)
+      .forEach(measureDto -> measuresByComponentUuidAndMetric.put(
+        measureDto.getComponentUuid(),
+        metricsById.get(measureDto.getMetricId()),
+        Measure.createFromMeasureDto(measureDto)));
+
+    addBestValuesToMeasures(measuresByComponentUuidAndMetric, components, otherMetrics);
+  }
+
   /**
    * Conditions for best value measure:
    * <ul>
@@ -253,6 +379,14 @@ public class ComponentTreeDataLoader {
     return WITH_MEASURES_ONLY_METRIC_SORT_FILTER.equals(wsRequest.getMetricSortFilter());
   }
 
+  private static boolean isSortedAndPaginatedInDb(ComponentTreeWsRequest wsRequest) {
+    List<String> sortParameters = wsRequest.getSort();
+    return sortParameters != null
+      && !sortParameters.isEmpty()
+      && SORT_FIELDS_BY_SORT_PARAMETER.keySet().containsAll(sortParameters)
+      && !componentWithMeasuresOnly(wsRequest);
+  }
+
   private static List<ComponentDto> sortComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
     Table<String, MetricDto, Measure> measuresByComponentUuidAndMetric) {
     return ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
@@ -286,13 +420,21 @@ public class ComponentTreeDataLoader {
     return new ArrayList<>(qualifiersIntersection);
   }
 
-  private ComponentTreeQuery toComponentTreeQuery(ComponentTreeWsRequest wsRequest, ComponentDto baseComponent) {
+  private ComponentTreeQuery toComponentTreeQuery(ComponentTreeWsRequest wsRequest, ComponentDto baseComponent, boolean sortedInDb) {
     List<String> childrenQualifiers = childrenQualifiers(wsRequest, baseComponent.qualifier());
 
     ComponentTreeQuery.Builder componentTreeQueryBuilder = ComponentTreeQuery.builder()
       .setBaseUuid(baseComponent.uuid())
       .setStrategy(STRATEGIES.get(wsRequest.getStrategy()));
 
+    if (sortedInDb) {
+      componentTreeQueryBuilder
+        .setSortFields(requireNonNull(wsRequest.getSort()).stream()
+          .map(SORT_FIELDS_BY_SORT_PARAMETER::get)
+          .collect(MoreCollectors.toList()))
+        .setAsc(wsRequest.getAsc());
+    }
+
     if (wsRequest.getQuery() != null) {
       componentTreeQueryBuilder.setNameOrKeyQuery(wsRequest.getQuery());
     }
@@ -24,43 +24,62 @@ import com.google.common.base.Predicate;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.cache.DistributedCache;
+import org.sonar.server.cache.DistributedCaches;
 
 import static com.google.common.collect.FluentIterable.from;
 
 public class DefaultMetricFinder implements MetricFinder {
 
+  public static final String CACHE_NAME = "metrics";
+  private static final long CACHE_MAX_SIZE = 5_000L;
+  private static final long CACHE_TTL_IN_SECONDS = 600L;
+
   private final DbClient dbClient;
+  private final DistributedCache<MetricDto> cache;
 
-  public DefaultMetricFinder(DbClient dbClient) {
+  public DefaultMetricFinder(DbClient dbClient, DistributedCaches caches) {
     this.dbClient = dbClient;
+    this.cache = caches.create(CACHE_NAME, CACHE_MAX_SIZE, CACHE_TTL_IN_SECONDS);
   }
 
   @Override
   public Metric findById(int id) {
-    try (DbSession session = dbClient.openSession(false)) {
-      MetricDto dto = dbClient.metricDao().selectById(session, id);
-      if (dto != null && dto.isEnabled()) {
-        return ToMetric.INSTANCE.apply(dto);
+    MetricDto dto = cache.get("id:" + id, cacheKey -> {
+      try (DbSession session = dbClient.openSession(false)) {
+        return dbClient.metricDao().selectById(session, id);
       }
-      return null;
-    }
+    });
+    return toEnabledMetric(dto);
   }
 
   @Override
   public Metric findByKey(String key) {
-    try (DbSession session = dbClient.openSession(false)) {
-      MetricDto dto = dbClient.metricDao().selectByKey(session, key);
-      if (dto != null && dto.isEnabled()) {
-        return ToMetric.INSTANCE.apply(dto);
+    MetricDto dto = cache.get("key:" + key, cacheKey -> {
+      try (DbSession session = dbClient.openSession(false)) {
+        return dbClient.metricDao().selectByKey(session, key);
       }
-      return null;
+    });
+    return toEnabledMetric(dto);
+  }
+
+  /**
+   * Cached DTOs are shared, so a new {@link Metric} is created on each call, as it can be modified by the caller.
+   */
+  @CheckForNull
+  private static Metric toEnabledMetric(@Nullable MetricDto dto) {
+    if (dto != null && dto.isEnabled()) {
+      return ToMetric.INSTANCE.apply(dto);
     }
+    return null;
   }
 
   @Override
@@ -26,10 +26,14 @@ import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.core.util.Uuids;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.measure.custom.CustomMeasureDto;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.cache.DistributedCaches;
+import org.sonar.server.metric.DefaultMetricFinder;
+import org.sonar.server.property.InternalProperties;
 import org.sonar.server.user.UserSession;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -53,10 +57,12 @@ public class CreateAction implements MetricsWsAction {
 
   private final DbClient dbClient;
   private final UserSession userSession;
+  private final DistributedCaches caches;
 
-  public CreateAction(DbClient dbClient, UserSession userSession) {
+  public CreateAction(DbClient dbClient, UserSession userSession, DistributedCaches caches) {
     this.dbClient = dbClient;
     this.userSession = userSession;
+    this.caches = caches;
   }
 
   @Override
@@ -107,6 +113,7 @@ public class CreateAction implements MetricsWsAction {
       } else {
         updateMetric(dbSession, metricInDb, metricTemplate);
       }
+      caches.invalidateAll(DefaultMetricFinder.CACHE_NAME);
 
       JsonWriter json = response.newJsonWriter();
       writeMetric(json, metricInDb);
@@ -142,6 +149,7 @@ public class CreateAction implements MetricsWsAction {
       .setDescription(metricTemplate.getDescription())
       .setEnabled(true);
     dbClient.metricDao().update(dbSession, metricInDb);
+    dbClient.internalPropertiesDao().update(dbSession, InternalProperties.METRICS_VERSION, Uuids.create());
     dbSession.commit();
   }
 
@@ -161,6 +169,7 @@ public class CreateAction implements MetricsWsAction {
       .setDeleteHistoricalData(false);
 
     dbClient.metricDao().insert(dbSession, metric);
+    dbClient.internalPropertiesDao().update(dbSession, InternalProperties.METRICS_VERSION, Uuids.create());
     dbSession.commit();
     return metric;
   }
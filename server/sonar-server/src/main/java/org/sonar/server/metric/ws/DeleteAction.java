@@ -24,9 +24,13 @@ import java.util.List;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
+import org.sonar.core.util.Uuids;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.cache.DistributedCaches;
+import org.sonar.server.metric.DefaultMetricFinder;
+import org.sonar.server.property.InternalProperties;
 import org.sonar.server.user.UserSession;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -37,10 +41,12 @@ public class DeleteAction implements MetricsWsAction {
 
   private final DbClient dbClient;
   private final UserSession userSession;
+  private final DistributedCaches caches;
 
-  public DeleteAction(DbClient dbClient, UserSession userSession) {
+  public DeleteAction(DbClient dbClient, UserSession userSession, DistributedCaches caches) {
     this.dbClient = dbClient;
     this.userSession = userSession;
+    this.caches = caches;
   }
 
   @Override
@@ -69,8 +75,10 @@ public class DeleteAction implements MetricsWsAction {
       dbClient.metricDao().disableCustomByIds(dbSession, ids);
       dbClient.customMeasureDao().deleteByMetricIds(dbSession, ids);
       dbClient.gateConditionDao().deleteConditionsWithInvalidMetrics(dbSession);
+      dbClient.internalPropertiesDao().update(dbSession, InternalProperties.METRICS_VERSION, Uuids.create());
       dbSession.commit();
     }
+    caches.invalidateAll(DefaultMetricFinder.CACHE_NAME);
 
     response.noContent();
   }
@@ -26,10 +26,14 @@ import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.core.util.Uuids;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.measure.custom.CustomMeasureDto;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.cache.DistributedCaches;
+import org.sonar.server.metric.DefaultMetricFinder;
+import org.sonar.server.property.InternalProperties;
 import org.sonar.server.user.UserSession;
 import org.sonar.server.util.MetricKeyValidator;
 
@@ -54,10 +58,12 @@ public class UpdateAction implements MetricsWsAction {
 
   private final DbClient dbClient;
   private final UserSession userSession;
+  private final DistributedCaches caches;
 
-  public UpdateAction(DbClient dbClient, UserSession userSession) {
+  public UpdateAction(DbClient dbClient, UserSession userSession, DistributedCaches caches) {
     this.dbClient = dbClient;
     this.userSession = userSession;
+    this.caches = caches;
   }
 
   @Override
@@ -105,6 +111,7 @@ public class UpdateAction implements MetricsWsAction {
       checkMetricInDbAndTemplate(dbSession, metricInDb, metricTemplate);
 
       updateMetricInDb(dbSession, metricInDb, metricTemplate);
+      caches.invalidateAll(DefaultMetricFinder.CACHE_NAME);
       JsonWriter json = response.newJsonWriter();
       writeMetric(json, metricInDb);
       json.close();
@@ -163,6 +170,7 @@ public class UpdateAction implements MetricsWsAction {
       metricInDb.setDescription(description);
     }
     dbClient.metricDao().update(dbSession, metricInDb);
+    dbClient.internalPropertiesDao().update(dbSession, InternalProperties.METRICS_VERSION, Uuids.create());
     dbSession.commit();
   }
 
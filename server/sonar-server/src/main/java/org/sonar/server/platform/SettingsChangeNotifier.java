@@ -21,23 +21,28 @@ package org.sonar.server.platform;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.sonar.api.config.GlobalPropertyChangeHandler;
+import org.sonar.server.cache.DistributedCaches;
+import org.sonar.server.setting.DatabaseSettingLoader;
 
 import javax.annotation.Nullable;
 
 public class SettingsChangeNotifier {
 
+  private final DistributedCaches caches;
   @VisibleForTesting
   GlobalPropertyChangeHandler[] changeHandlers;
 
-  public SettingsChangeNotifier(GlobalPropertyChangeHandler[] changeHandlers) {
+  public SettingsChangeNotifier(DistributedCaches caches, GlobalPropertyChangeHandler[] changeHandlers) {
+    this.caches = caches;
     this.changeHandlers = changeHandlers;
   }
 
-  public SettingsChangeNotifier() {
-    this(new GlobalPropertyChangeHandler[0]);
+  public SettingsChangeNotifier(DistributedCaches caches) {
+    this(caches, new GlobalPropertyChangeHandler[0]);
   }
 
   public void onGlobalPropertyChange(String key, @Nullable String value) {
+    caches.invalidateAll(DatabaseSettingLoader.CACHE_NAME);
     GlobalPropertyChangeHandler.PropertyChange change = GlobalPropertyChangeHandler.PropertyChange.create(key, value);
     for (GlobalPropertyChangeHandler changeHandler : changeHandlers) {
       changeHandler.onChange(change);
@@ -29,6 +29,7 @@ import org.sonar.api.internal.SonarRuntimeImpl;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.Version;
 import org.sonar.api.utils.internal.TempFolderCleaner;
+import org.sonar.ce.cluster.HazelcastClientWrapperImpl;
 import org.sonar.core.config.ConfigurationProvider;
 import org.sonar.core.config.CorePropertyDefinitions;
 import org.sonar.core.util.UuidFactoryImpl;
@@ -38,10 +39,14 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DefaultDatabase;
 import org.sonar.db.purge.PurgeProfiler;
 import org.sonar.db.semaphore.SemaphoresImpl;
+import org.sonar.process.ProcessProperties;
 import org.sonar.process.logging.LogbackHelper;
 import org.sonar.server.app.ProcessCommandWrapperImpl;
 import org.sonar.server.app.RestartFlagHolderImpl;
 import org.sonar.server.app.WebServerProcessLogging;
+import org.sonar.server.cache.DistributedCaches;
+import org.sonar.server.cache.HazelcastCacheInvalidationBus;
+import org.sonar.server.cache.StandaloneCacheInvalidationBus;
 import org.sonar.server.issue.index.IssueIndex;
 import org.sonar.server.platform.LogServerVersion;
 import org.sonar.server.platform.Platform;
@@ -123,6 +128,14 @@ public class PlatformLevel1 extends PlatformLevel {
 
     // cluster
     add(ClusterImpl.class);
+
+    // caches
+    if (Boolean.parseBoolean(properties.getProperty(ProcessProperties.CLUSTER_ENABLED))) {
+      add(HazelcastClientWrapperImpl.class, HazelcastCacheInvalidationBus.class);
+    } else {
+      add(StandaloneCacheInvalidationBus.class);
+    }
+    add(DistributedCaches.class);
   }
 
   private void addExtraRootComponents() {
@@ -217,6 +217,7 @@ import org.sonar.server.view.index.ViewIndexDefinition;
 import org.sonar.server.view.index.ViewIndexer;
 import org.sonar.server.webhook.ws.WebhooksWsModule;
 import org.sonar.server.ws.DeprecatedPropertiesWsFilter;
+import org.sonar.server.ws.ParallelLoader;
 import org.sonar.server.ws.WebServiceEngine;
 import org.sonar.server.ws.WebServiceFilter;
 import org.sonar.server.ws.WebServiceReroutingFilter;
@@ -327,6 +328,7 @@ public class PlatformLevel4 extends PlatformLevel {
       // web services
       WebServiceEngine.class,
       WebServicesWsModule.class,
+      ParallelLoader.class,
       WebServiceFilter.class,
       DeprecatedPropertiesWsFilter.class,
       WebServiceReroutingFilter.class,
@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableSet;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.server.ws.Request;
@@ -30,15 +31,16 @@ import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.server.ws.WebService.Param;
 import org.sonar.api.web.UserRole;
-import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.component.SnapshotQuery;
+import org.sonar.db.event.EventDto;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.user.UserSession;
 import org.sonar.server.ws.KeyExamples;
+import org.sonar.server.ws.ParallelLoader;
 import org.sonarqube.ws.ProjectAnalyses;
 import org.sonarqube.ws.client.projectanalysis.EventCategory;
 import org.sonarqube.ws.client.projectanalysis.SearchRequest;
@@ -63,11 +65,13 @@ public class SearchAction implements ProjectAnalysesWsAction {
   private final DbClient dbClient;
   private final ComponentFinder componentFinder;
   private final UserSession userSession;
+  private final ParallelLoader parallelLoader;
 
-  public SearchAction(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession) {
+  public SearchAction(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession, ParallelLoader parallelLoader) {
     this.dbClient = dbClient;
     this.componentFinder = componentFinder;
     this.userSession = userSession;
+    this.parallelLoader = parallelLoader;
   }
 
   @Override
@@ -121,38 +125,43 @@ public class SearchAction implements ProjectAnalysesWsAction {
       .build();
   }
 
+  /**
+   * Analyses and events are loaded concurrently. Events are loaded for the whole project rather than for
+   * the loaded analyses, so that both queries are independent. Events of other analyses are ignored.
+   */
   private SearchData load(SearchRequest request) {
+    SearchData.Builder searchResults = SearchData.builder(request);
     try (DbSession dbSession = dbClient.openSession(false)) {
-      SearchData.Builder searchResults = SearchData.builder(dbSession, request);
-      addProject(searchResults);
-      checkPermission(searchResults.getProject());
-      addAnalyses(searchResults);
-      addEvents(searchResults);
-      return searchResults.build();
+      addProject(dbSession, searchResults);
     }
+    checkPermission(searchResults.getProject());
+    AtomicReference<List<SnapshotDto>> analyses = new AtomicReference<>();
+    AtomicReference<List<EventDto>> events = new AtomicReference<>();
+    parallelLoader.newBatch("project analyses")
+      .add(dbSession -> analyses.set(searchAnalyses(dbSession, searchResults)))
+      .add(dbSession -> events.set(dbClient.eventDao().selectByComponentUuid(dbSession, searchResults.getProject().uuid())))
+      .execute();
+    searchResults.setAnalyses(analyses.get());
+    searchResults.setEvents(events.get());
+    return searchResults.build();
   }
 
-  private void addAnalyses(SearchData.Builder data) {
+  private List<SnapshotDto> searchAnalyses(DbSession dbSession, SearchData.Builder data) {
     SnapshotQuery dbQuery = new SnapshotQuery()
       .setComponentUuid(data.getProject().uuid())
       .setStatus(SnapshotDto.STATUS_PROCESSED)
       .setSort(BY_DATE, DESC);
     setNullable(data.getRequest().getFrom(), from -> dbQuery.setCreatedAfter(parseStartingDateOrDateTime(from).getTime()));
     setNullable(data.getRequest().getTo(), to -> dbQuery.setCreatedBefore(parseEndingDateOrDateTime(to).getTime() + 1_000L));
-    data.setAnalyses(dbClient.snapshotDao().selectAnalysesByQuery(data.getDbSession(), dbQuery));
-  }
-
-  private void addEvents(SearchData.Builder data) {
-    List<String> analyses = data.getAnalyses().stream().map(SnapshotDto::getUuid).collect(MoreCollectors.toList());
-    data.setEvents(dbClient.eventDao().selectByAnalysisUuids(data.getDbSession(), analyses));
+    return dbClient.snapshotDao().selectAnalysesByQuery(dbSession, dbQuery);
   }
 
   private void checkPermission(ComponentDto project) {
     userSession.checkComponentPermission(UserRole.USER, project);
   }
 
-  private void addProject(SearchData.Builder data) {
-    ComponentDto project = componentFinder.getByKey(data.getDbSession(), data.getRequest().getProject());
+  private void addProject(DbSession dbSession, SearchData.Builder data) {
+    ComponentDto project = componentFinder.getByKey(dbSession, data.getRequest().getProject());
     checkArgument(Scopes.PROJECT.equals(project.scope()) && ALLOWED_QUALIFIERS.contains(project.qualifier()), "A project or application is required");
     data.setProject(project);
   }
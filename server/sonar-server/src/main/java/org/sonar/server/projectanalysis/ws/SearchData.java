@@ -25,7 +25,6 @@ import java.util.function.Predicate;
 import java.util.stream.Stream;
 import org.sonar.api.utils.Paging;
 import org.sonar.core.util.stream.MoreCollectors;
-import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.event.EventDto;
@@ -51,20 +50,18 @@ class SearchData {
     return events.stream().collect(MoreCollectors.index(EventDto::getAnalysisUuid));
   }
 
-  static Builder builder(DbSession dbSession, SearchRequest request) {
-    return new Builder(dbSession, request);
+  static Builder builder(SearchRequest request) {
+    return new Builder(request);
   }
 
   static class Builder {
-    private final DbSession dbSession;
     private final SearchRequest request;
     private ComponentDto project;
     private List<SnapshotDto> analyses;
     private int countAnalyses;
     private List<EventDto> events;
 
-    private Builder(DbSession dbSession, SearchRequest request) {
-      this.dbSession = dbSession;
+    private Builder(SearchRequest request) {
       this.request = request;
     }
 
@@ -92,10 +89,6 @@ class SearchData {
       return this;
     }
 
-    DbSession getDbSession() {
-      return dbSession;
-    }
-
     SearchRequest getRequest() {
       return request;
     }
@@ -104,10 +97,6 @@ class SearchData {
       return project;
     }
 
-    List<SnapshotDto> getAnalyses() {
-      return analyses;
-    }
-
     private void filterByCategory() {
       ListMultimap<String, String> eventCategoriesByAnalysisUuid = events.stream()
         .collect(MoreCollectors.index(EventDto::getAnalysisUuid, EventDto::getCategory));
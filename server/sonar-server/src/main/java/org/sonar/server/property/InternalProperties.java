@@ -36,6 +36,22 @@ public interface InternalProperties {
 
   String ES_INDEX_INITIALIZING_PREFIX = "es.initializing.";
 
+  /**
+   * Random value changed in the same transaction as any change of rules, including their metadata.
+   * Allows the Compute Engine to know whether the rules it keeps in memory are outdated.
+   * Created at startup by the registration of rules, then changed with {@link org.sonar.db.property.InternalPropertiesDao#update}
+   * so that concurrent changes of rules don't conflict on it.
+   */
+  String RULES_VERSION = "rules.version";
+
+  /**
+   * Random value changed in the same transaction as any change of metrics.
+   * Allows the Compute Engine to know whether the metrics it keeps in memory are outdated.
+   * Created at startup by the registration of metrics, then changed with {@link org.sonar.db.property.InternalPropertiesDao#update}
+   * so that concurrent changes of metrics don't conflict on it.
+   */
+  String METRICS_VERSION = "metrics.version";
+
   /**
    * Read the value of the specified property.
    *
@@ -75,13 +75,22 @@ public class DefaultRuleFinder implements RuleFinder {
   @Override
   @CheckForNull
   public org.sonar.api.rules.Rule findByKey(RuleKey key) {
+    StoredRule rule = selectByKey(key);
+    return rule == null ? null : toRule(rule);
+  }
+
+  /**
+   * Same as {@link #findByKey(RuleKey)}, but returns the rule as stored in database
+   */
+  @CheckForNull
+  StoredRule selectByKey(RuleKey key) {
     try (DbSession dbSession = dbClient.openSession(false)) {
       String defaultOrganizationUuid = defaultOrganizationProvider.get().getUuid();
       OrganizationDto defaultOrganization = dbClient.organizationDao().selectByUuid(dbSession, defaultOrganizationUuid)
         .orElseThrow(() -> new IllegalStateException(String.format("Cannot find default organization '%s'", defaultOrganizationUuid)));
       Optional<RuleDto> rule = ruleDao.selectByKey(dbSession, defaultOrganization, key);
       if (rule.isPresent() && rule.get().getStatus() != RuleStatus.REMOVED) {
-        return toRule(rule.get(), ruleDao.selectRuleParamsByRuleKey(dbSession, rule.get().getKey()));
+        return new StoredRule(rule.get(), ruleDao.selectRuleParamsByRuleKey(dbSession, rule.get().getKey()));
       } else {
         return null;
       }
@@ -128,6 +137,13 @@ public class DefaultRuleFinder implements RuleFinder {
     return rules;
   }
 
+  /**
+   * Creates a new {@link org.sonar.api.rules.Rule} on each call, as callers are allowed to modify it
+   */
+  static org.sonar.api.rules.Rule toRule(StoredRule rule) {
+    return toRule(rule.rule, rule.params);
+  }
+
   private static org.sonar.api.rules.Rule toRule(RuleDto rule, List<RuleParamDto> params) {
     String severity = rule.getSeverityString();
     String description = rule.getDescription();
@@ -165,6 +181,16 @@ public class DefaultRuleFinder implements RuleFinder {
     return apiRule;
   }
 
+  static final class StoredRule {
+    private final RuleDto rule;
+    private final List<RuleParamDto> params;
+
+    StoredRule(RuleDto rule, List<RuleParamDto> params) {
+      this.rule = rule;
+      this.params = params;
+    }
+  }
+
   private enum RuleDtoToKey implements Function<RuleDto, RuleKey> {
     INSTANCE;
 
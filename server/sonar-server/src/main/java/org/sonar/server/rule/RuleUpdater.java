@@ -46,6 +46,7 @@ import org.sonar.db.qualityprofile.OrgActiveRuleDto;
 import org.sonar.db.rule.RuleDefinitionDto;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleParamDto;
+import org.sonar.server.cache.DistributedCaches;
 import org.sonar.server.rule.index.RuleIndexer;
 import org.sonar.server.user.UserSession;
 
@@ -61,11 +62,13 @@ public class RuleUpdater {
   private final DbClient dbClient;
   private final RuleIndexer ruleIndexer;
   private final System2 system;
+  private final DistributedCaches caches;
 
-  public RuleUpdater(DbClient dbClient, RuleIndexer ruleIndexer, System2 system) {
+  public RuleUpdater(DbClient dbClient, RuleIndexer ruleIndexer, System2 system, DistributedCaches caches) {
     this.dbClient = dbClient;
     this.ruleIndexer = ruleIndexer;
     this.system = system;
+    this.caches = caches;
   }
 
   /**
@@ -82,6 +85,7 @@ public class RuleUpdater {
     update(dbSession, rule);
     updateParameters(dbSession, organization, update, rule);
     ruleIndexer.commitAndIndex(dbSession, rule.getKey(), organization);
+    caches.invalidate(WebServerRuleFinderImpl.CACHE_NAME, rule.getKey().toString());
 
     return true;
   }
@@ -27,18 +27,30 @@ import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.RuleQuery;
 import org.sonar.db.DbClient;
+import org.sonar.server.cache.DistributedCache;
+import org.sonar.server.cache.DistributedCaches;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 
 public class WebServerRuleFinderImpl implements WebServerRuleFinder {
+  /**
+   * Rules found by key out of the startup of the server, when {@link CachingRuleFinder} is not used.
+   * Rules are cached as stored in database, and a new {@link Rule} is returned to each caller.
+   */
+  public static final String CACHE_NAME = "rules";
+  private static final long CACHE_MAX_SIZE = 10_000L;
+  private static final long CACHE_TTL_IN_SECONDS = 300L;
+
   private final DbClient dbClient;
-  private final RuleFinder defaultFinder;
+  private final DefaultRuleFinder defaultFinder;
+  private final DistributedCache<DefaultRuleFinder.StoredRule> cache;
   @VisibleForTesting
   RuleFinder delegate;
 
-  public WebServerRuleFinderImpl(DbClient dbClient, DefaultOrganizationProvider defaultOrganizationProvider) {
+  public WebServerRuleFinderImpl(DbClient dbClient, DefaultOrganizationProvider defaultOrganizationProvider, DistributedCaches caches) {
     this.dbClient = dbClient;
     this.defaultFinder = new DefaultRuleFinder(dbClient, defaultOrganizationProvider);
     this.delegate = this.defaultFinder;
+    this.cache = caches.create(CACHE_NAME, CACHE_MAX_SIZE, CACHE_TTL_IN_SECONDS);
   }
 
   @Override
@@ -61,13 +73,18 @@ public class WebServerRuleFinderImpl implements WebServerRuleFinder {
   @Override
   @CheckForNull
   public Rule findByKey(String repositoryKey, String key) {
-    return delegate.findByKey(repositoryKey, key);
+    return findByKey(RuleKey.of(repositoryKey, key));
   }
 
   @Override
   @CheckForNull
   public Rule findByKey(RuleKey key) {
-    return delegate.findByKey(key);
+    RuleFinder finder = this.delegate;
+    if (finder instanceof CachingRuleFinder) {
+      return finder.findByKey(key);
+    }
+    DefaultRuleFinder.StoredRule rule = cache.get(key.toString(), k -> defaultFinder.selectByKey(key));
+    return rule == null ? null : DefaultRuleFinder.toRule(rule);
   }
 
   @Override
@@ -27,6 +27,7 @@ import java.util.Objects;
 import java.util.Set;
 import org.elasticsearch.action.index.IndexRequest;
 import org.sonar.api.rule.RuleKey;
+import org.sonar.core.util.Uuids;
 import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -43,6 +44,7 @@ import org.sonar.server.es.IndexingListener;
 import org.sonar.server.es.IndexingResult;
 import org.sonar.server.es.OneToOneResilientIndexingListener;
 import org.sonar.server.es.ResilientIndexer;
+import org.sonar.server.property.InternalProperties;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Arrays.asList;
@@ -101,6 +103,7 @@ public class RuleIndexer implements ResilientIndexer {
       .collect(MoreCollectors.toArrayList());
 
     dbClient.esQueueDao().insert(dbSession, items);
+    updateRulesVersion(dbSession);
     dbSession.commit();
     postCommit(dbSession, items);
   }
@@ -111,10 +114,15 @@ public class RuleIndexer implements ResilientIndexer {
   public void commitAndIndex(DbSession dbSession, RuleKey ruleKey, OrganizationDto organization) {
     List<EsQueueDto> items = asList(createQueueDtoForRule(ruleKey), createQueueDtoForRuleExtension(ruleKey, organization));
     dbClient.esQueueDao().insert(dbSession, items);
+    updateRulesVersion(dbSession);
     dbSession.commit();
     postCommit(dbSession, items);
   }
 
+  private void updateRulesVersion(DbSession dbSession) {
+    dbClient.internalPropertiesDao().update(dbSession, InternalProperties.RULES_VERSION, Uuids.create());
+  }
+
   /**
    * This method is used by the Byteman script of integration tests.
    */
@@ -28,7 +28,9 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.rule.RuleDefinitionDto;
+import org.sonar.server.cache.DistributedCaches;
 import org.sonar.server.qualityprofile.RuleActivator;
+import org.sonar.server.rule.WebServerRuleFinderImpl;
 import org.sonar.server.rule.index.RuleIndexer;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -42,13 +44,15 @@ public class DeleteAction implements RulesWsAction {
   private final DbClient dbClient;
   private final RuleActivator ruleActivator;
   private final RuleWsSupport ruleWsSupport;
+  private final DistributedCaches caches;
 
-  public DeleteAction(System2 system2, RuleIndexer ruleIndexer, DbClient dbClient, RuleActivator ruleActivator, RuleWsSupport ruleWsSupport) {
+  public DeleteAction(System2 system2, RuleIndexer ruleIndexer, DbClient dbClient, RuleActivator ruleActivator, RuleWsSupport ruleWsSupport, DistributedCaches caches) {
     this.system2 = system2;
     this.ruleIndexer = ruleIndexer;
     this.dbClient = dbClient;
     this.ruleActivator = ruleActivator;
     this.ruleWsSupport = ruleWsSupport;
+    this.caches = caches;
   }
 
   @Override
@@ -90,5 +94,6 @@ public class DeleteAction implements RulesWsAction {
       dbClient.ruleDao().update(dbSession, rule);
       ruleIndexer.commitAndIndex(dbSession, ruleKey);
     }
+    caches.invalidate(WebServerRuleFinderImpl.CACHE_NAME, ruleKey.toString());
   }
 }
@@ -22,6 +22,7 @@ package org.sonar.server.search;
 import org.sonar.core.platform.Module;
 import org.sonar.server.es.EsClientProvider;
 import org.sonar.server.es.EsClientStopper;
+import org.sonar.server.es.FacetsCache;
 import org.sonar.server.permission.index.AuthorizationTypeSupport;
 
 public class EsSearchModule extends Module {
@@ -30,5 +31,6 @@ public class EsSearchModule extends Module {
     add(AuthorizationTypeSupport.class);
     add(new EsClientProvider());
     add(EsClientStopper.class);
+    add(FacetsCache.class);
   }
 }
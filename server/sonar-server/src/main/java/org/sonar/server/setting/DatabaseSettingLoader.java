@@ -20,22 +20,40 @@
 package org.sonar.server.setting;
 
 import com.google.common.collect.ImmutableMap;
+import javax.annotation.CheckForNull;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.property.PropertyDto;
+import org.sonar.server.cache.DistributedCache;
+import org.sonar.server.cache.DistributedCaches;
 
 import static org.apache.commons.lang.StringUtils.defaultString;
 
 public class DatabaseSettingLoader implements SettingLoader {
 
+  /**
+   * Global settings are cached for a short time only, as some of them are updated
+   * without invalidating the cache, for example by startup tasks.
+   */
+  public static final String CACHE_NAME = "settings";
+  private static final long CACHE_MAX_SIZE = 10_000L;
+  private static final long CACHE_TTL_IN_SECONDS = 30L;
+
   private final DbClient dbClient;
+  private final DistributedCache<String> cache;
 
-  public DatabaseSettingLoader(DbClient dbClient) {
+  public DatabaseSettingLoader(DbClient dbClient, DistributedCaches caches) {
     this.dbClient = dbClient;
+    this.cache = caches.create(CACHE_NAME, CACHE_MAX_SIZE, CACHE_TTL_IN_SECONDS);
   }
 
   @Override
   public String load(String key) {
+    return cache.get(key, this::loadFromDb);
+  }
+
+  @CheckForNull
+  private String loadFromDb(String key) {
     PropertyDto dto = dbClient.propertiesDao().selectGlobalProperty(key);
     if (dto != null) {
       return defaultString(dto.getValue());
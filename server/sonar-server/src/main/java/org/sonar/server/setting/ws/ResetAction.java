@@ -33,7 +33,9 @@ import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.server.cache.DistributedCaches;
 import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.setting.DatabaseSettingLoader;
 import org.sonar.server.setting.ws.SettingValidations.SettingData;
 import org.sonar.server.user.UserSession;
 import org.sonarqube.ws.client.setting.ResetRequest;
@@ -52,10 +54,12 @@ public class ResetAction implements SettingsWsAction {
   private final UserSession userSession;
   private final PropertyDefinitions definitions;
   private final SettingValidations validations;
+  private final DistributedCaches caches;
 
   public ResetAction(DbClient dbClient, ComponentFinder componentFinder, SettingsUpdater settingsUpdater, UserSession userSession, PropertyDefinitions definitions,
-    SettingValidations validations) {
+    SettingValidations validations, DistributedCaches caches) {
     this.dbClient = dbClient;
+    this.caches = caches;
     this.settingsUpdater = settingsUpdater;
     this.userSession = userSession;
     this.componentFinder = componentFinder;
@@ -105,6 +109,9 @@ public class ResetAction implements SettingsWsAction {
         settingsUpdater.deleteGlobalSettings(dbSession, keys);
       }
       dbSession.commit();
+      if (!component.isPresent()) {
+        caches.invalidateAll(DatabaseSettingLoader.CACHE_NAME);
+      }
       response.noContent();
     }
   }
@@ -19,65 +19,71 @@
  */
 package org.sonar.server.source;
 
-import com.google.common.collect.Lists;
-
-import java.util.Arrays;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
+/**
+ * Parses the serialized highlighting and symbol references of a source. Entities are read in a single pass, without
+ * splitting the serialized data, then tags are sorted by offset once per load. Sorting is stable so that tags sharing
+ * the same offset keep their order of declaration.
+ */
 class DecorationDataHolder {
 
-  private static final String ENTITY_SEPARATOR = ";";
-  private static final String FIELD_SEPARATOR = ",";
+  private static final char ENTITY_SEPARATOR = ';';
+  private static final char FIELD_SEPARATOR = ',';
   private static final String SYMBOL_PREFIX = "sym-";
   private static final String HIGHLIGHTABLE = "sym";
+  private static final Comparator<OpeningHtmlTag> BY_START_OFFSET = Comparator.comparingInt(OpeningHtmlTag::getStartOffset);
 
-  private List<OpeningHtmlTag> openingTagsEntries;
+  private final List<OpeningHtmlTag> openingTagsEntries;
   private int openingTagsIndex;
-  private List<Integer> closingTagsOffsets;
+  private final List<Integer> closingTagsOffsets;
   private int closingTagsIndex;
 
   DecorationDataHolder() {
-    openingTagsEntries = Lists.newArrayList();
-    closingTagsOffsets = Lists.newArrayList();
+    openingTagsEntries = new ArrayList<>();
+    closingTagsOffsets = new ArrayList<>();
   }
 
   void loadSymbolReferences(String symbolsReferences) {
-    String[] symbols = symbolsReferences.split(ENTITY_SEPARATOR);
-    for (String symbol : symbols) {
-      String[] symbolFields = symbol.split(FIELD_SEPARATOR);
-      int declarationStartOffset = Integer.parseInt(symbolFields[0]);
-      int declarationEndOffset = Integer.parseInt(symbolFields[1]);
+    FieldReader fields = new FieldReader(symbolsReferences);
+    while (fields.nextEntity()) {
+      int declarationStartOffset = fields.nextInt();
+      int declarationEndOffset = fields.nextInt();
       int symbolLength = declarationEndOffset - declarationStartOffset;
-      String[] symbolOccurrences = Arrays.copyOfRange(symbolFields, 2, symbolFields.length);
-      loadSymbolOccurrences(declarationStartOffset, symbolLength, symbolOccurrences);
+      String cssClass = symbolCssClass(declarationStartOffset);
+      while (fields.hasNextField()) {
+        addSymbolOccurrence(fields.nextInt(), symbolLength, cssClass);
+      }
     }
+    sortTags();
   }
 
   void loadLineSymbolReferences(String symbolsReferences) {
-    String[] symbols = symbolsReferences.split(ENTITY_SEPARATOR);
-    for (String symbol : symbols) {
-      String[] symbolFields = symbol.split(FIELD_SEPARATOR);
-      int startOffset = Integer.parseInt(symbolFields[0]);
-      int endOffset = Integer.parseInt(symbolFields[1]);
-      int symbolLength = endOffset - startOffset;
-      int symbolId = Integer.parseInt(symbolFields[2]);
-      loadSymbolOccurrences(symbolId, symbolLength, new String[] { Integer.toString(startOffset) });
+    FieldReader fields = new FieldReader(symbolsReferences);
+    while (fields.nextEntity()) {
+      int startOffset = fields.nextInt();
+      int endOffset = fields.nextInt();
+      int symbolId = fields.nextInt();
+      addSymbolOccurrence(startOffset, endOffset - startOffset, symbolCssClass(symbolId));
     }
+    sortTags();
   }
 
-
   void loadSyntaxHighlightingData(String syntaxHighlightingRules) {
-    String[] rules = syntaxHighlightingRules.split(ENTITY_SEPARATOR);
-    for (String rule : rules) {
-      String[] ruleFields = rule.split(FIELD_SEPARATOR);
-      int startOffset = Integer.parseInt(ruleFields[0]);
-      int endOffset = Integer.parseInt(ruleFields[1]);
+    FieldReader fields = new FieldReader(syntaxHighlightingRules);
+    while (fields.nextEntity()) {
+      int startOffset = fields.nextInt();
+      int endOffset = fields.nextInt();
+      String cssClass = fields.nextString();
       if (startOffset < endOffset) {
-        insertAndPreserveOrder(new OpeningHtmlTag(startOffset, ruleFields[2]), openingTagsEntries);
-        insertAndPreserveOrder(endOffset, closingTagsOffsets);
+        openingTagsEntries.add(new OpeningHtmlTag(startOffset, cssClass));
+        closingTagsOffsets.add(endOffset);
       }
     }
+    sortTags();
   }
 
   List<OpeningHtmlTag> getOpeningTagsEntries() {
@@ -104,30 +110,87 @@ class DecorationDataHolder {
     closingTagsIndex++;
   }
 
-  private void loadSymbolOccurrences(int declarationStartOffset, int symbolLength, String[] symbolOccurrences) {
-    for (String symbolOccurrence : symbolOccurrences) {
-      int occurrenceStartOffset = Integer.parseInt(symbolOccurrence);
-      int occurrenceEndOffset = occurrenceStartOffset + symbolLength;
-      insertAndPreserveOrder(new OpeningHtmlTag(occurrenceStartOffset, SYMBOL_PREFIX + declarationStartOffset + " " + HIGHLIGHTABLE), openingTagsEntries);
-      insertAndPreserveOrder(occurrenceEndOffset, closingTagsOffsets);
-    }
+  private static String symbolCssClass(int symbolId) {
+    return SYMBOL_PREFIX + symbolId + " " + HIGHLIGHTABLE;
   }
 
-  private void insertAndPreserveOrder(OpeningHtmlTag newEntry, List<OpeningHtmlTag> openingHtmlTags) {
-    int insertionIndex = 0;
-    Iterator<OpeningHtmlTag> tagIterator = openingHtmlTags.iterator();
-    while (tagIterator.hasNext() && tagIterator.next().getStartOffset() <= newEntry.getStartOffset()) {
-      insertionIndex++;
-    }
-    openingHtmlTags.add(insertionIndex, newEntry);
+  private void addSymbolOccurrence(int occurrenceStartOffset, int symbolLength, String cssClass) {
+    openingTagsEntries.add(new OpeningHtmlTag(occurrenceStartOffset, cssClass));
+    closingTagsOffsets.add(occurrenceStartOffset + symbolLength);
   }
 
-  private void insertAndPreserveOrder(int newOffset, List<Integer> orderedOffsets) {
-    int insertionIndex = 0;
-    Iterator<Integer> entriesIterator = orderedOffsets.iterator();
-    while (entriesIterator.hasNext() && entriesIterator.next() <= newOffset) {
-      insertionIndex++;
+  private void sortTags() {
+    // List#sort is stable: tags loaded with the same offset are kept in their order of declaration
+    openingTagsEntries.sort(BY_START_OFFSET);
+    Collections.sort(closingTagsOffsets);
+  }
+
+  /**
+   * Reads the fields of entities serialized as {@code field,field,...;field,field,...;}. Empty entities are ignored.
+   */
+  private static final class FieldReader {
+    private final String data;
+    private int entityEnd = -1;
+    private int position;
+
+    private FieldReader(String data) {
+      this.data = data;
+    }
+
+    boolean nextEntity() {
+      int entityStart = entityEnd + 1;
+      while (entityStart < data.length()) {
+        int separator = data.indexOf(ENTITY_SEPARATOR, entityStart);
+        entityEnd = separator < 0 ? data.length() : separator;
+        if (entityEnd > entityStart) {
+          position = entityStart;
+          return true;
+        }
+        entityStart = entityEnd + 1;
+      }
+      entityEnd = data.length();
+      return false;
+    }
+
+    boolean hasNextField() {
+      return position < entityEnd;
+    }
+
+    int nextInt() {
+      int fieldEnd = fieldEnd();
+      int index = position;
+      boolean negative = index < fieldEnd && data.charAt(index) == '-';
+      if (negative) {
+        index++;
+      }
+      if (index == fieldEnd) {
+        throw new NumberFormatException("For input string: \"" + data.substring(position, fieldEnd) + "\"");
+      }
+      int value = 0;
+      for (; index < fieldEnd; index++) {
+        int digit = data.charAt(index) - '0';
+        if (digit < 0 || digit > 9) {
+          throw new NumberFormatException("For input string: \"" + data.substring(position, fieldEnd) + "\"");
+        }
+        value = value * 10 + digit;
+      }
+      position = fieldEnd + 1;
+      return negative ? -value : value;
+    }
+
+    String nextString() {
+      int fieldEnd = fieldEnd();
+      String value = data.substring(position, fieldEnd);
+      position = fieldEnd + 1;
+      return value;
+    }
+
+    private int fieldEnd() {
+      if (position > entityEnd) {
+        throw new IllegalArgumentException("Missing field in decoration data: " + data);
+      }
+      int separator = data.indexOf(FIELD_SEPARATOR, position);
+      return separator < 0 || separator > entityEnd ? entityEnd : separator;
     }
-    orderedOffsets.add(insertionIndex, newOffset);
   }
 }
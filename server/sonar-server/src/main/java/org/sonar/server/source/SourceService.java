@@ -19,8 +19,16 @@
  */
 package org.sonar.server.source;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import javax.annotation.CheckForNull;
 import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -31,12 +39,32 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 public class SourceService {
 
+  /**
+   * Maximum number of characters of the HTML lines kept in cache
+   */
+  private static final long HTML_CACHE_MAX_WEIGHT = 20_000_000L;
+
   private final DbClient dbClient;
   private final HtmlSourceDecorator htmlDecorator;
 
+  /**
+   * HTML sources of the lines of a file, keyed by file UUID and data hash. A new analysis of the file changes its
+   * data hash, so stale entries are never read again and are eventually evicted.
+   */
+  private final Cache<String, HtmlLines> htmlLinesCache;
+
   public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator) {
+    this(dbClient, htmlDecorator, HTML_CACHE_MAX_WEIGHT);
+  }
+
+  @VisibleForTesting
+  SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator, long htmlCacheMaxWeight) {
     this.dbClient = dbClient;
     this.htmlDecorator = htmlDecorator;
+    this.htmlLinesCache = CacheBuilder.newBuilder()
+      .maximumWeight(htmlCacheMaxWeight)
+      .weigher((String key, HtmlLines htmlLines) -> htmlLines.weigh())
+      .build();
   }
 
   /**
@@ -57,12 +85,41 @@ public class SourceService {
   }
 
   public Optional<Iterable<String>> getLinesAsHtml(DbSession dbSession, String fileUuid, int from, int toInclusive) {
-    return getLines(dbSession, fileUuid, from, toInclusive, lineToHtml());
+    return getLinesWithHtml(dbSession, fileUuid, from, toInclusive, (line, html) -> html);
+  }
+
+  /**
+   * Returns a range of lines, each one being converted by {@code function} from its raw db data and its source decorated as HTML.
+   * @see #getLines(DbSession, String, int, int)
+   */
+  public <E> Optional<Iterable<E>> getLinesWithHtml(DbSession dbSession, String fileUuid, int from, int toInclusive,
+    BiFunction<DbFileSources.Line, String, E> function) {
+    verifyRange(from, toInclusive);
+    FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
+    if (dto == null) {
+      return Optional.empty();
+    }
+    List<DbFileSources.Line> lines = dto.getSourceData().getLinesList();
+    String cacheKey = htmlLinesCacheKey(dto);
+    HtmlLines htmlLines = cacheKey == null ? null : getCachedHtmlLines(cacheKey, dto, lines);
+    long limit = (toInclusive - from) + 1L;
+    List<E> result = new ArrayList<>();
+    for (int i = 0; i < lines.size() && result.size() < limit; i++) {
+      DbFileSources.Line line = lines.get(i);
+      if (line.hasLine() && line.getLine() >= from) {
+        String html = htmlLines == null ? toHtml(line) : htmlLines.get(i, line, this::toHtml);
+        result.add(function.apply(line, html));
+      }
+    }
+    if (htmlLines != null && htmlLines.isWeightOutdated()) {
+      // weight is computed by the cache when an entry is put only
+      htmlLinesCache.put(cacheKey, htmlLines);
+    }
+    return Optional.of(result);
   }
 
   private <E> Optional<Iterable<E>> getLines(DbSession dbSession, String fileUuid, int from, int toInclusive, Function<DbFileSources.Line, E> function) {
-    verifyLine(from);
-    checkArgument(toInclusive >= from, String.format("Line number must greater than or equal to %d, got %d", from, toInclusive));
+    verifyRange(from, toInclusive);
     FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
     if (dto == null) {
       return Optional.empty();
@@ -74,12 +131,84 @@ public class SourceService {
       .collect(MoreCollectors.toList()));
   }
 
+  /**
+   * Returns {@code null} if the data hash is unknown, in which case lines are not cached.
+   */
+  @CheckForNull
+  private static String htmlLinesCacheKey(FileSourceDto dto) {
+    String dataHash = dto.getDataHash();
+    return dataHash == null ? null : (dto.getFileUuid() + ':' + dataHash);
+  }
+
+  /**
+   * Lines are decorated the first time they are requested, so that browsing a large file page after page
+   * decorates each of its lines once.
+   */
+  private HtmlLines getCachedHtmlLines(String cacheKey, FileSourceDto dto, List<DbFileSources.Line> lines) {
+    try {
+      return htmlLinesCache.get(cacheKey, () -> new HtmlLines(lines.size()));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to load HTML lines of file " + dto.getFileUuid(), e.getCause());
+    }
+  }
+
+  private static void verifyRange(int from, int toInclusive) {
+    verifyLine(from);
+    checkArgument(toInclusive >= from, String.format("Line number must greater than or equal to %d, got %d", from, toInclusive));
+  }
+
   private static void verifyLine(int line) {
     checkArgument(line >= 1, String.format("Line number must start at 1, got %d", line));
   }
 
-  private Function<DbFileSources.Line, String> lineToHtml() {
-    return line -> htmlDecorator.getDecoratedSourceAsHtml(line.getSource(), line.getHighlighting(), line.getSymbols());
+  @CheckForNull
+  private String toHtml(DbFileSources.Line line) {
+    return htmlDecorator.getDecoratedSourceAsHtml(line.getSource(), line.getHighlighting(), line.getSymbols());
+  }
+
+  /**
+   * HTML sources of the lines of a file, which are decorated only when requested. Weight is the number of lines
+   * plus the number of characters of the decorated lines, which are several times larger than the raw sources.
+   * As lines are decorated after the entry is put in cache, the entry is put again when its weight increased.
+   */
+  private static final class HtmlLines {
+    private final String[] htmlLines;
+    private final boolean[] decorated;
+    private long htmlLength = 0L;
+    private int weight;
+
+    private HtmlLines(int lineCount) {
+      this.htmlLines = new String[lineCount];
+      this.decorated = new boolean[lineCount];
+      this.weight = computeWeight();
+    }
+
+    @CheckForNull
+    private synchronized String get(int index, DbFileSources.Line line, Function<DbFileSources.Line, String> decorator) {
+      if (!decorated[index]) {
+        String html = decorator.apply(line);
+        htmlLines[index] = html;
+        decorated[index] = true;
+        htmlLength += html == null ? 0 : html.length();
+      }
+      return htmlLines[index];
+    }
+
+    /**
+     * Called by the cache when the entry is put
+     */
+    private synchronized int weigh() {
+      weight = computeWeight();
+      return weight;
+    }
+
+    private synchronized boolean isWeightOutdated() {
+      return weight != computeWeight();
+    }
+
+    private int computeWeight() {
+      return (int) Math.min(htmlLines.length + htmlLength, Integer.MAX_VALUE);
+    }
   }
 
 }
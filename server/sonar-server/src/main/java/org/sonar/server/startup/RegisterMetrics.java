@@ -32,9 +32,11 @@ import org.sonar.api.measures.Metrics;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
+import org.sonar.core.util.Uuids;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.property.InternalProperties;
 
 import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Iterables.concat;
@@ -68,6 +70,7 @@ public class RegisterMetrics {
     try (DbSession session = dbClient.openSession(false)) {
       save(session, metrics);
       sanitizeQualityGates(session);
+      dbClient.internalPropertiesDao().update(session, InternalProperties.METRICS_VERSION, Uuids.create());
       session.commit();
     }
     profiler.stopDebug();
@@ -27,10 +27,12 @@ import org.sonar.db.user.UserTokenDto;
 public class UserTokenAuthenticator {
   private final TokenGenerator tokenGenerator;
   private final DbClient dbClient;
+  private final UserTokenCache userTokenCache;
 
-  public UserTokenAuthenticator(TokenGenerator tokenGenerator, DbClient dbClient) {
+  public UserTokenAuthenticator(TokenGenerator tokenGenerator, DbClient dbClient, UserTokenCache userTokenCache) {
     this.tokenGenerator = tokenGenerator;
     this.dbClient = dbClient;
+    this.userTokenCache = userTokenCache;
   }
 
   /**
@@ -40,10 +42,17 @@ public class UserTokenAuthenticator {
    */
   public java.util.Optional<String> authenticate(String token) {
     String tokenHash = tokenGenerator.hash(token);
+    java.util.Optional<String> cachedLogin = userTokenCache.getLogin(tokenHash);
+    if (cachedLogin.isPresent()) {
+      return cachedLogin;
+    }
+    long cacheGeneration = userTokenCache.getGeneration();
     try (DbSession dbSession = dbClient.openSession(false)) {
       Optional<UserTokenDto> userToken = dbClient.userTokenDao().selectByTokenHash(dbSession, tokenHash);
       if (userToken.isPresent()) {
-        return java.util.Optional.of(userToken.get().getLogin());
+        String login = userToken.get().getLogin();
+        userTokenCache.put(tokenHash, login, cacheGeneration);
+        return java.util.Optional.of(login);
       }
       return java.util.Optional.empty();
     }
@@ -0,0 +1,139 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.usertoken;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.picocontainer.Startable;
+import org.sonar.process.Jmx;
+import org.sonar.server.cache.CacheInvalidationBus;
+
+/**
+ * Logins of the users authenticated by a token, by token hash. It saves a database request on every call
+ * authenticated by a token.
+ * <p>
+ * Entries are removed when the tokens of a user are revoked. The invalidation is published on the
+ * {@link CacheInvalidationBus}, so that the other nodes of a cluster remove their entries too. Entries
+ * also expire after a short delay, in case an invalidation is not received.
+ * <p>
+ * A login read from database before an invalidation must not be cached after it, else a revoked token would
+ * stay valid until expiration. That's why each invalidation increments the generation of the cache, which is
+ * checked by {@link #put(String, String, long)}.
+ */
+public class UserTokenCache implements UserTokenCacheMBean, Startable {
+
+  static final String OBJECT_NAME = "SonarQube:name=UserTokenCache";
+  static final String CACHE_NAME = "userTokens";
+  private static final long MAX_SIZE = 10_000L;
+  private static final long EXPIRATION_IN_SECONDS = 60L;
+
+  private final Cache<String, String> loginsByTokenHash = CacheBuilder.newBuilder()
+    .maximumSize(MAX_SIZE)
+    .expireAfterWrite(EXPIRATION_IN_SECONDS, TimeUnit.SECONDS)
+    .recordStats()
+    .build();
+  private final CacheInvalidationBus bus;
+  // guarded by this
+  private long generation = 0L;
+
+  public UserTokenCache(CacheInvalidationBus bus) {
+    this.bus = bus;
+    bus.addListener(this::onInvalidation);
+  }
+
+  @Override
+  public void start() {
+    Jmx.register(OBJECT_NAME, this);
+  }
+
+  @Override
+  public void stop() {
+    Jmx.unregister(OBJECT_NAME);
+  }
+
+  public Optional<String> getLogin(String tokenHash) {
+    return Optional.ofNullable(loginsByTokenHash.getIfPresent(tokenHash));
+  }
+
+  /**
+   * Must be read before loading the login of a token from database
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * @param generation the generation read before loading the login from database. Login is not cached if
+   *                   an invalidation occurred since.
+   */
+  public synchronized void put(String tokenHash, String login, long generation) {
+    if (generation == this.generation) {
+      loginsByTokenHash.put(tokenHash, login);
+    }
+  }
+
+  /**
+   * Must be called when one or all the tokens of a user are revoked, when the user is deactivated
+   * or when the login of the user changes.
+   */
+  public void invalidateLogin(String login) {
+    invalidateLocally(login);
+    bus.publish(CACHE_NAME, login);
+  }
+
+  private void onInvalidation(String cacheName, @Nullable String login) {
+    if (!CACHE_NAME.equals(cacheName)) {
+      return;
+    }
+    if (login == null) {
+      invalidateAll();
+    } else {
+      invalidateLocally(login);
+    }
+  }
+
+  private synchronized void invalidateLocally(String login) {
+    generation++;
+    loginsByTokenHash.asMap().values().removeIf(login::equals);
+  }
+
+  private synchronized void invalidateAll() {
+    generation++;
+    loginsByTokenHash.invalidateAll();
+  }
+
+  @Override
+  public long getHitCount() {
+    return loginsByTokenHash.stats().hitCount();
+  }
+
+  @Override
+  public long getMissCount() {
+    return loginsByTokenHash.stats().missCount();
+  }
+
+  @Override
+  public long getSize() {
+    return loginsByTokenHash.size();
+  }
+}
@@ -34,6 +34,7 @@ public class UserTokenModule extends Module {
       RevokeAction.class,
       SearchAction.class,
       UserTokenAuthenticator.class,
+      UserTokenCache.class,
       TokenGeneratorImpl.class);
   }
 }
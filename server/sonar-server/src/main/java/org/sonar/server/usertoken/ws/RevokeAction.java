@@ -25,6 +25,7 @@ import org.sonar.api.server.ws.WebService;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.usertoken.UserTokenCache;
 import org.sonarqube.ws.client.usertoken.RevokeWsRequest;
 
 import static org.sonarqube.ws.client.usertoken.UserTokensWsParameters.ACTION_REVOKE;
@@ -34,10 +35,12 @@ import static org.sonarqube.ws.client.usertoken.UserTokensWsParameters.PARAM_NAM
 public class RevokeAction implements UserTokensWsAction {
   private final DbClient dbClient;
   private final UserSession userSession;
+  private final UserTokenCache userTokenCache;
 
-  public RevokeAction(DbClient dbClient, UserSession userSession) {
+  public RevokeAction(DbClient dbClient, UserSession userSession, UserTokenCache userTokenCache) {
     this.dbClient = dbClient;
     this.userSession = userSession;
+    this.userTokenCache = userTokenCache;
   }
 
   @Override
@@ -72,6 +75,7 @@ public class RevokeAction implements UserTokensWsAction {
       dbClient.userTokenDao().deleteByLoginAndName(dbSession, request.getLogin(), request.getName());
       dbSession.commit();
     }
+    userTokenCache.invalidateLogin(request.getLogin());
   }
 
   private RevokeWsRequest toRevokeWsRequest(Request request) {
@@ -0,0 +1,199 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Buffers the body of a successful response in order to send it with an entity tag (header {@code ETag}). Body
+ * is not sent, and status is 304, when the tag equals the header {@code If-None-Match} of the request.
+ * <p>
+ * Response can be stored by clients, for example the persistent cache of scanners, but must be revalidated
+ * before being reused.
+ * </p>
+ * <p>
+ * At most {@link #MAX_BUFFER_SIZE} bytes are buffered. A bigger body is streamed to client without entity tag,
+ * with the cache headers initially set by the web service.
+ * </p>
+ */
+class EtagResponse extends HttpServletResponseWrapper {
+
+  static final String CACHE_CONTROL = "Cache-Control";
+  static final String CACHE_CONTROL_VALUE = "private, no-cache";
+  static final int MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+
+  private final HttpServletRequest request;
+  private final int maxBufferSize;
+  private final BufferOutputStream buffer = new BufferOutputStream();
+  private PrintWriter writer;
+  private String cacheControl;
+  private int status = SC_OK;
+
+  EtagResponse(HttpServletRequest request, HttpServletResponse response) {
+    this(request, response, MAX_BUFFER_SIZE);
+  }
+
+  EtagResponse(HttpServletRequest request, HttpServletResponse response, int maxBufferSize) {
+    super(response);
+    this.request = request;
+    this.maxBufferSize = maxBufferSize;
+  }
+
+  @Override
+  public void setHeader(String name, String value) {
+    if (CACHE_CONTROL.equalsIgnoreCase(name)) {
+      // headers preventing storage of responses, see ServletResponse, are replaced, unless body is streamed
+      cacheControl = value;
+      super.setHeader(name, buffer.isStreamed() ? value : CACHE_CONTROL_VALUE);
+    } else {
+      super.setHeader(name, value);
+    }
+  }
+
+  @Override
+  public void setStatus(int sc) {
+    super.setStatus(sc);
+    this.status = sc;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() {
+    return buffer;
+  }
+
+  @Override
+  public PrintWriter getWriter() {
+    if (writer == null) {
+      String encoding = getCharacterEncoding();
+      writer = new PrintWriter(new OutputStreamWriter(buffer, encoding == null ? UTF_8 : Charset.forName(encoding)));
+    }
+    return writer;
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    buffer.reset();
+    status = SC_OK;
+  }
+
+  @Override
+  public void resetBuffer() {
+    super.resetBuffer();
+    buffer.reset();
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    // buffered body is sent by finish()
+    if (buffer.isStreamed()) {
+      buffer.flush();
+    }
+  }
+
+  /**
+   * Sends the buffered body, if needed.
+   */
+  void finish() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    }
+    if (buffer.isStreamed()) {
+      buffer.flush();
+      return;
+    }
+    HttpServletResponse response = (HttpServletResponse) getResponse();
+    if (status != SC_OK) {
+      buffer.bytes.writeTo(response.getOutputStream());
+      return;
+    }
+    String etag = format("\"%s\"", DigestUtils.sha1Hex(buffer.bytes.toByteArray()));
+    response.setHeader("ETag", etag);
+    if (etag.equals(request.getHeader("If-None-Match"))) {
+      response.setStatus(SC_NOT_MODIFIED);
+      return;
+    }
+    response.setContentLength(buffer.bytes.size());
+    buffer.bytes.writeTo(response.getOutputStream());
+  }
+
+  private class BufferOutputStream extends ServletOutputStream {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    // not null when the body is too big to be buffered
+    private OutputStream streamedOutput;
+
+    private boolean isStreamed() {
+      return streamedOutput != null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      OutputStream output = streamedOutput;
+      if (output == null && bytes.size() + len > maxBufferSize) {
+        output = startStreaming();
+      }
+      if (output == null) {
+        bytes.write(b, off, len);
+      } else {
+        output.write(b, off, len);
+      }
+    }
+
+    private OutputStream startStreaming() throws IOException {
+      HttpServletResponse response = (HttpServletResponse) getResponse();
+      if (cacheControl != null) {
+        response.setHeader(CACHE_CONTROL, cacheControl);
+      }
+      streamedOutput = response.getOutputStream();
+      bytes.writeTo(streamedOutput);
+      bytes.reset();
+      return streamedOutput;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (streamedOutput != null) {
+        streamedOutput.flush();
+      }
+    }
+
+    private void reset() {
+      bytes.reset();
+    }
+  }
+}
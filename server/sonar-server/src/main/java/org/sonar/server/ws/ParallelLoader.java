@@ -0,0 +1,181 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import org.picocontainer.Startable;
+import org.sonar.api.config.Configuration;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Loads independent data of a web service response concurrently, for example rules, components and users
+ * referenced by a page of issues.
+ * <p>
+ * Each task of a {@link Batch} is given its own DB session, which is opened before the task is executed and closed
+ * just after. Sessions must be used for reads only, they are never committed. Tasks must not access
+ * {@link org.sonar.server.user.UserSession}, which is bound to the thread of the request: required information
+ * must be read before the batch is executed.
+ * </p>
+ * <p>
+ * The first task is executed by the calling thread, so that a batch with a single task does not involve any other
+ * thread. When all the threads of the pool are busy, tasks are executed by the calling thread too: the loading
+ * is then sequential instead of being rejected.
+ * </p>
+ * <p>
+ * Remaining tasks are cancelled, and their threads interrupted, as soon as a task fails, the calling thread is
+ * interrupted or the time budget of the batch is exhausted.
+ * </p>
+ */
+public class ParallelLoader implements Startable {
+
+  static final String PROPERTY_THREADS = "sonar.web.parallelLoading.threads";
+  static final String PROPERTY_TIMEOUT = "sonar.web.parallelLoading.timeoutInSeconds";
+  static final int DEFAULT_THREADS = 16;
+  static final long DEFAULT_TIMEOUT_IN_SECONDS = 60L;
+
+  private final DbClient dbClient;
+  private final long defaultTimeoutInMs;
+  private final ThreadPoolExecutor executor;
+
+  public ParallelLoader(DbClient dbClient, Configuration config) {
+    this.dbClient = dbClient;
+    int threads = config.getInt(PROPERTY_THREADS).orElse(DEFAULT_THREADS);
+    checkArgument(threads > 0, "Property %s must be positive. Got %s", PROPERTY_THREADS, threads);
+    long timeoutInSeconds = config.getLong(PROPERTY_TIMEOUT).orElse(DEFAULT_TIMEOUT_IN_SECONDS);
+    checkArgument(timeoutInSeconds > 0, "Property %s must be positive. Got %s", PROPERTY_TIMEOUT, timeoutInSeconds);
+    this.defaultTimeoutInMs = TimeUnit.SECONDS.toMillis(timeoutInSeconds);
+    this.executor = new ThreadPoolExecutor(0, threads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+      new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("Ws_loader-%d")
+        .build(),
+      new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * @param name used in error messages, for example "issues"
+   */
+  public Batch newBatch(String name) {
+    return new Batch(name, defaultTimeoutInMs);
+  }
+
+  public class Batch {
+    private final String name;
+    private final List<Consumer<DbSession>> tasks = new ArrayList<>();
+    private long timeoutInMs;
+    private boolean executed = false;
+
+    private Batch(String name, long timeoutInMs) {
+      this.name = name;
+      this.timeoutInMs = timeoutInMs;
+    }
+
+    public Batch add(Consumer<DbSession> task) {
+      checkState(!executed, "Batch [%s] is already executed", name);
+      tasks.add(task);
+      return this;
+    }
+
+    /**
+     * Overrides the time budget given by the property {@value ParallelLoader#PROPERTY_TIMEOUT}. Time is measured from the
+     * call to {@link #execute()}.
+     */
+    public Batch setTimeout(long timeout, TimeUnit unit) {
+      checkArgument(timeout > 0, "Timeout must be positive. Got %s", timeout);
+      this.timeoutInMs = unit.toMillis(timeout);
+      return this;
+    }
+
+    /**
+     * Executes all the tasks and waits for their completion. Unchecked exceptions raised by tasks are
+     * propagated as-is.
+     *
+     * @throws IllegalStateException if the time budget is exhausted or if the calling thread is interrupted
+     */
+    public void execute() {
+      checkState(!executed, "Batch [%s] is already executed", name);
+      executed = true;
+      if (tasks.isEmpty()) {
+        return;
+      }
+      long deadline = System.currentTimeMillis() + timeoutInMs;
+      List<Future<?>> futures = new ArrayList<>(tasks.size() - 1);
+      try {
+        for (Consumer<DbSession> task : tasks.subList(1, tasks.size())) {
+          futures.add(executor.submit(() -> run(task)));
+        }
+        run(tasks.get(0));
+        for (Future<?> future : futures) {
+          waitFor(future, deadline);
+        }
+      } finally {
+        // no-op on completed tasks
+        futures.forEach(f -> f.cancel(true));
+      }
+    }
+
+    private void run(Consumer<DbSession> task) {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        task.accept(dbSession);
+      }
+    }
+
+    private void waitFor(Future<?> future, long deadline) {
+      try {
+        future.get(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(String.format("Interrupted while loading %s", name), e);
+      } catch (TimeoutException e) {
+        throw new IllegalStateException(String.format("Fail to load %s in less than %d ms", name, timeoutInMs), e);
+      } catch (CancellationException e) {
+        throw new IllegalStateException(String.format("Loading of %s has been cancelled", name), e);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause());
+        throw new IllegalStateException(String.format("Fail to load %s", name), e.getCause());
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import com.google.protobuf.Message;
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.server.ws.Response;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.sonarqube.ws.MediaTypes.PROTOBUF;
+
+/**
+ * Writes the elements of a response as a sequence of delimited protobuf messages
+ * (see {@link Message#writeDelimitedTo(OutputStream)}) one by one, for example while iterating a DB cursor,
+ * so that the whole result does not have to be loaded in memory before being sent.
+ * <p>
+ * Output is buffered. It can be flushed every N messages with {@link #setFlushInterval(int)}, so that clients
+ * can start consuming the response before it's completed.
+ * </p>
+ */
+public class ProtobufStreamWriter implements AutoCloseable {
+
+  private final OutputStream output;
+  private int flushInterval = 0;
+  private int count = 0;
+
+  private ProtobufStreamWriter(OutputStream output) {
+    this.output = new BufferedOutputStream(output);
+  }
+
+  /**
+   * Protobuf delimited messages, whatever the media type accepted by the request.
+   */
+  public static ProtobufStreamWriter delimited(Response response) {
+    response.stream().setMediaType(PROTOBUF);
+    return new ProtobufStreamWriter(response.stream().output());
+  }
+
+  /**
+   * @param flushInterval number of messages between two flushes of the output. Zero, the default value, means
+   *                      that output is flushed only when its buffer is full and when the writer is closed.
+   */
+  public ProtobufStreamWriter setFlushInterval(int flushInterval) {
+    checkArgument(flushInterval >= 0, "Flush interval must be positive or zero");
+    this.flushInterval = flushInterval;
+    return this;
+  }
+
+  public ProtobufStreamWriter write(Message message) {
+    try {
+      message.writeDelimitedTo(output);
+      count++;
+      if (flushInterval > 0 && count % flushInterval == 0) {
+        output.flush();
+      }
+      return this;
+    } catch (Exception e) {
+      throw new IllegalStateException("Error while writing protobuf message", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      output.flush();
+    } catch (Exception e) {
+      throw new IllegalStateException("Error while writing protobuf message", e);
+    } finally {
+      IOUtils.closeQuietly(output);
+    }
+  }
+}
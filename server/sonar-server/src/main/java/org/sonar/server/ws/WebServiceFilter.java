@@ -19,6 +19,7 @@
  */
 package org.sonar.server.ws;
 
+import com.google.common.collect.ImmutableSet;
 import java.io.IOException;
 import java.util.Set;
 import java.util.function.Function;
@@ -33,6 +34,7 @@ import org.sonar.api.web.ServletFilter;
 import org.sonar.core.util.stream.MoreCollectors;
 
 import static java.util.stream.Stream.concat;
+import static org.apache.commons.lang.StringUtils.substringBeforeLast;
 import static org.sonar.server.property.ws.PropertiesWs.CONTROLLER_PROPERTIES;
 import static org.sonar.server.ws.WebServiceReroutingFilter.MOVED_WEB_SERVICES;
 
@@ -47,6 +49,19 @@ import static org.sonar.server.ws.WebServiceReroutingFilter.MOVED_WEB_SERVICES;
  */
 public class WebServiceFilter extends ServletFilter {
 
+  /**
+   * Web services called by scanners at the beginning of each analysis. Their responses are sent with
+   * an entity tag, so that they can be stored and revalidated by the persistent cache of scanners.
+   * Web services that can return secured settings, like api/settings/values and batch/project, are not
+   * part of them: their responses must not be stored.
+   */
+  static final Set<String> ETAG_WEB_SERVICES = ImmutableSet.of(
+    "/api/metrics/search",
+    "/api/plugins/installed",
+    "/api/qualityprofiles/search",
+    "/api/rules/list",
+    "/api/rules/search");
+
   private final WebServiceEngine webServiceEngine;
   private final Set<String> includeUrls;
   private final Set<String> excludeUrls;
@@ -82,8 +97,13 @@ public class WebServiceFilter extends ServletFilter {
     HttpServletRequest request = (HttpServletRequest) servletRequest;
     HttpServletResponse response = (HttpServletResponse) servletResponse;
     ServletRequest wsRequest = new ServletRequest(request);
-    ServletResponse wsResponse = new ServletResponse(response);
-    webServiceEngine.execute(wsRequest, wsResponse);
+    if ("GET".equals(request.getMethod()) && ETAG_WEB_SERVICES.contains(substringBeforeLast(wsRequest.getPath(), "."))) {
+      EtagResponse etagResponse = new EtagResponse(request, response);
+      webServiceEngine.execute(wsRequest, new ServletResponse(etagResponse));
+      etagResponse.finish();
+    } else {
+      webServiceEngine.execute(wsRequest, new ServletResponse(response));
+    }
   }
 
   @Override
@@ -0,0 +1,214 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.cache;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.config.internal.MapSettings;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DistributedCachesTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private MapSettings settings = new MapSettings();
+  private CacheInvalidationBus bus = new StandaloneCacheInvalidationBus();
+  private DistributedCaches underTest = new DistributedCaches(settings.asConfig(), bus);
+
+  @Test
+  public void get_loads_value_once() {
+    DistributedCache<String> cache = underTest.create("foo", 10, 60);
+    AtomicInteger loadings = new AtomicInteger();
+
+    assertThat(cache.get("a", key -> key + loadings.incrementAndGet())).isEqualTo("a1");
+    assertThat(cache.get("a", key -> key + loadings.incrementAndGet())).isEqualTo("a1");
+    assertThat(cache.get("b", key -> key + loadings.incrementAndGet())).isEqualTo("b2");
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(2);
+    assertThat(cache.getSize()).isEqualTo(2);
+  }
+
+  @Test
+  public void caches_are_disabled_when_process_is_not_notified_of_changes_made_by_other_processes() {
+    settings.setProperty("sonar.cache.foo.ttlInSeconds", 60);
+    underTest = new DistributedCaches(settings.asConfig(), new StandaloneCacheInvalidationBus(false));
+    DistributedCache<String> cache = underTest.create("foo", 10, 60);
+    AtomicInteger loadings = new AtomicInteger();
+
+    assertThat(cache.get("a", key -> key + loadings.incrementAndGet())).isEqualTo("a1");
+    assertThat(cache.get("a", key -> key + loadings.incrementAndGet())).isEqualTo("a2");
+    assertThat(cache.getTtlInSeconds()).isZero();
+  }
+
+  @Test
+  public void null_values_are_cached() {
+    DistributedCache<String> cache = underTest.create("foo", 10, 60);
+    AtomicInteger loadings = new AtomicInteger();
+
+    assertThat(cache.get("a", key -> {
+      loadings.incrementAndGet();
+      return null;
+    })).isNull();
+    assertThat(cache.get("a", key -> "not loaded")).isNull();
+    assertThat(loadings.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void invalidate_key() {
+    DistributedCache<String> cache = underTest.create("foo", 10, 60);
+    cache.get("a", key -> "old");
+    cache.get("b", key -> "old");
+
+    underTest.invalidate("foo", "a");
+
+    assertThat(cache.get("a", key -> "new")).isEqualTo("new");
+    assertThat(cache.get("b", key -> "new")).isEqualTo("old");
+    assertThat(cache.getInvalidationCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void invalidate_all_keys() {
+    DistributedCache<String> cache = underTest.create("foo", 10, 60);
+    cache.get("a", key -> "old");
+    cache.get("b", key -> "old");
+
+    underTest.invalidateAll("foo");
+
+    assertThat(cache.get("a", key -> "new")).isEqualTo("new");
+    assertThat(cache.get("b", key -> "new")).isEqualTo("new");
+  }
+
+  @Test
+  public void invalidations_are_published_on_bus() {
+    CacheInvalidationBus bus = mock(CacheInvalidationBus.class);
+    DistributedCache<String> cache = new DistributedCaches(settings.asConfig(), bus).create("foo", 10, 60);
+
+    cache.invalidate("a");
+    cache.invalidateAll();
+
+    verify(bus).publish("foo", "a");
+    verify(bus).publish("foo", null);
+  }
+
+  @Test
+  public void invalidations_received_from_bus_are_applied_to_cache_with_same_name() {
+    CacheInvalidationBus bus = mock(CacheInvalidationBus.class);
+    when(bus.isNotifiedOfOtherProcesses()).thenReturn(true);
+    underTest = new DistributedCaches(settings.asConfig(), bus);
+    ArgumentCaptor<CacheInvalidationBus.Listener> listener = ArgumentCaptor.forClass(CacheInvalidationBus.Listener.class);
+    verify(bus).addListener(listener.capture());
+    DistributedCache<String> foo = underTest.create("foo", 10, 60);
+    DistributedCache<String> bar = underTest.create("bar", 10, 60);
+    foo.get("a", key -> "old");
+    bar.get("a", key -> "old");
+
+    listener.getValue().onInvalidation("foo", "a");
+    listener.getValue().onInvalidation("unknown", null);
+
+    assertThat(foo.get("a", key -> "new")).isEqualTo("new");
+    assertThat(bar.get("a", key -> "new")).isEqualTo("old");
+  }
+
+  @Test
+  public void size_and_ttl_can_be_overridden_by_settings() {
+    settings.setProperty("sonar.cache.foo.maxSize", "5");
+    settings.setProperty("sonar.cache.foo.ttlInSeconds", "0");
+    underTest = new DistributedCaches(settings.asConfig(), bus);
+
+    DistributedCache<String> foo = underTest.create("foo", 10, 60);
+    DistributedCache<String> bar = underTest.create("bar", 10, 60);
+
+    assertThat(foo.getMaxSize()).isEqualTo(5);
+    assertThat(foo.getTtlInSeconds()).isEqualTo(0);
+    assertThat(bar.getMaxSize()).isEqualTo(10);
+    assertThat(bar.getTtlInSeconds()).isEqualTo(60);
+  }
+
+  @Test
+  public void ttl_of_zero_disables_cache() {
+    settings.setProperty("sonar.cache.foo.ttlInSeconds", "0");
+    underTest = new DistributedCaches(settings.asConfig(), bus);
+    DistributedCache<String> cache = underTest.create("foo", 10, 60);
+
+    assertThat(cache.get("a", key -> "old")).isEqualTo("old");
+    assertThat(cache.get("a", key -> "new")).isEqualTo("new");
+  }
+
+  @Test
+  public void fail_to_create_cache_if_name_contains_separator() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Invalid cache name: 'foo:bar'");
+
+    underTest.create("foo:bar", 10, 60);
+  }
+
+  @Test
+  public void fail_to_create_cache_with_negative_size() {
+    settings.setProperty("sonar.cache.foo.maxSize", "-1");
+    underTest = new DistributedCaches(settings.asConfig(), bus);
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Max size of cache 'foo' must be positive or zero: -1");
+
+    underTest.create("foo", 10, 60);
+  }
+
+  @Test
+  public void loading_failure_is_propagated() {
+    DistributedCache<String> cache = underTest.create("foo", 10, 60);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to load value of key [a] in cache [foo]");
+
+    cache.get("a", key -> {
+      throw new IllegalArgumentException("boom");
+    });
+  }
+
+  @Test
+  public void caches_are_registered_in_jmx_while_started() throws Exception {
+    underTest.create("foo", 10, 60);
+    underTest.start();
+    try {
+      underTest.create("bar", 10, 60);
+
+      assertThat(isRegisteredInJmx("foo")).isTrue();
+      assertThat(isRegisteredInJmx("bar")).isTrue();
+    } finally {
+      underTest.stop();
+    }
+    assertThat(isRegisteredInJmx("foo")).isFalse();
+  }
+
+  private static boolean isRegisteredInJmx(String cacheName) throws MalformedObjectNameException {
+    return ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName("SonarQube:name=DistributedCache,cache=" + cacheName));
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.cache;
+
+import java.util.function.Consumer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import org.sonar.ce.cluster.HazelcastClientWrapper;
+
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.sonar.process.cluster.ClusterObjectKeys.CACHE_INVALIDATIONS;
+
+public class HazelcastCacheInvalidationBusTest {
+
+  private static final String CLIENT_UUID = "client-1";
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private HazelcastClientWrapper hazelcastClientWrapper = mock(HazelcastClientWrapper.class);
+  private CacheInvalidationBus.Listener listener = mock(CacheInvalidationBus.Listener.class);
+  private HazelcastCacheInvalidationBus underTest = new HazelcastCacheInvalidationBus(hazelcastClientWrapper);
+
+  @Test
+  public void publish_invalidation_of_key() {
+    start();
+
+    underTest.publish("rules", "java:S001");
+
+    verify(hazelcastClientWrapper).publish(CACHE_INVALIDATIONS, CLIENT_UUID + ":rules:java:S001");
+  }
+
+  @Test
+  public void publish_invalidation_of_all_keys() {
+    start();
+
+    underTest.publish("settings", null);
+
+    verify(hazelcastClientWrapper).publish(CACHE_INVALIDATIONS, CLIENT_UUID + ":settings");
+  }
+
+  @Test
+  public void notify_listeners_of_invalidations_received_from_other_clients() {
+    underTest.addListener(listener);
+    Consumer<String> messageListener = start();
+
+    messageListener.accept("client-2:rules:java:S001");
+    messageListener.accept("client-2:settings");
+
+    verify(listener).onInvalidation("rules", "java:S001");
+    verify(listener).onInvalidation("settings", null);
+  }
+
+  @Test
+  public void ignore_invalidations_published_by_current_client() {
+    underTest.addListener(listener);
+    Consumer<String> messageListener = start();
+
+    messageListener.accept(CLIENT_UUID + ":rules:java:S001");
+    messageListener.accept(CLIENT_UUID + ":settings");
+
+    verifyZeroInteractions(listener);
+  }
+
+  @Test
+  public void fail_to_publish_if_not_started() {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Cache invalidation bus is not started");
+
+    underTest.publish("settings", null);
+  }
+
+  private Consumer<String> start() {
+    when(hazelcastClientWrapper.getClientUUID()).thenReturn(CLIENT_UUID);
+    underTest.start();
+
+    ArgumentCaptor<Consumer> captor = ArgumentCaptor.forClass(Consumer.class);
+    verify(hazelcastClientWrapper).addMessageListener(eq(CACHE_INVALIDATIONS), captor.capture());
+    return captor.getValue();
+  }
+}
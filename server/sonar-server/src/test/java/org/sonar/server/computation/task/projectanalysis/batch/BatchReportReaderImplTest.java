@@ -21,12 +21,15 @@ package org.sonar.server.computation.task.projectanalysis.batch;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
 
@@ -287,6 +290,31 @@ public class BatchReportReaderImplTest {
     res.close();
   }
 
+  @Test
+  public void read_segmented_report() throws IOException {
+    File dir = tempFolder.newDir();
+    ScannerReportWriter segmentedWriter = new ScannerReportWriter(dir, FileStructure.Layout.SEGMENTED);
+    segmentedWriter.writeMetadata(ScannerReport.Metadata.newBuilder().build());
+    try (OutputStream output = segmentedWriter.newSourceOutput(COMPONENT_REF)) {
+      output.write("1\n2\n3".getBytes(StandardCharsets.UTF_8));
+    }
+    segmentedWriter.writeTests(COMPONENT_REF, of(TEST_1, TEST_2));
+    segmentedWriter.writeCoverageDetails(COMPONENT_REF, of(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2));
+    segmentedWriter.close();
+    underTest = new BatchReportReaderImpl(new ImmutableBatchReportDirectoryHolder(dir));
+
+    try (CloseableIterator<String> res = underTest.readFileSource(COMPONENT_REF).get()) {
+      assertThat(res).containsExactly("1", "2", "3");
+    }
+    try (CloseableIterator<ScannerReport.Test> res = underTest.readTests(COMPONENT_REF)) {
+      assertThat(res).containsExactly(TEST_1, TEST_2);
+    }
+    try (CloseableIterator<ScannerReport.CoverageDetail> res = underTest.readCoverageDetails(COMPONENT_REF)) {
+      assertThat(res).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
+    }
+    assertThat(underTest.readFileSource(COMPONENT_REF + 1)).isEmpty();
+  }
+
   @Test
   public void readTests_returns_empty_CloseableIterator_when_file_does_not_exist() {
     assertThat(underTest.readTests(COMPONENT_REF)).isEmpty();
@@ -0,0 +1,176 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.common.base.Optional;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.issue.IssueDto;
+import org.sonar.db.rule.RuleDefinitionDto;
+import org.sonar.db.source.FileSourceDto;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
+import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRulesHolderRule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+
+public class BaseInputPrefetcherTest {
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
+  @Rule
+  public RuleRepositoryRule ruleRepository = new RuleRepositoryRule();
+  @Rule
+  public ActiveRulesHolderRule activeRulesHolder = new ActiveRulesHolderRule();
+
+  private MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
+  private MapSettings settings = new MapSettings();
+  private RuleDefinitionDto rule;
+  private ComponentDto project;
+  private ComponentDto file1;
+  private ComponentDto file2;
+  private ComponentDto file3;
+  private Component projectComponent;
+  private Component file1Component;
+  private Component file2Component;
+  private Component file3Component;
+
+  @Before
+  public void setUp() {
+    when(movedFilesRepository.getOriginalFile(any(Component.class))).thenReturn(Optional.absent());
+    rule = db.rules().insert();
+    project = db.components().insertPrivateProject();
+    file1 = db.components().insertComponent(newFileDto(project));
+    file2 = db.components().insertComponent(newFileDto(project));
+    file3 = db.components().insertComponent(newFileDto(project));
+    file1Component = ReportComponent.builder(Component.Type.FILE, 2).setUuid(file1.uuid()).build();
+    file2Component = ReportComponent.builder(Component.Type.FILE, 3).setUuid(file2.uuid()).build();
+    file3Component = ReportComponent.builder(Component.Type.FILE, 4).setUuid(file3.uuid()).build();
+    projectComponent = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(project.uuid())
+      .addChildren(file1Component, file2Component, file3Component)
+      .build();
+    treeRootHolder.setRoot(projectComponent);
+  }
+
+  @Test
+  public void prefetch_issues_and_line_hashes_of_files_having_open_issues() {
+    IssueDto issue1 = db.issues().insert(rule, project, file1, i -> i.setStatus("OPEN").setResolution(null));
+    IssueDto issue2 = db.issues().insert(rule, project, file1, i -> i.setStatus("OPEN").setResolution(null));
+    db.issues().insert(rule, project, file2, i -> i.setStatus("CLOSED").setResolution("FIXED"));
+    IssueDto issue3 = db.issues().insert(rule, project, file3, i -> i.setStatus("OPEN").setResolution(null));
+    insertLineHashes(file1, "hash1\nhash2");
+    insertLineHashes(file2, "hash3");
+    settings.setProperty(BaseInputPrefetcher.BATCH_SIZE_PROPERTY, 1);
+    BaseInputPrefetcher underTest = newPrefetcher();
+
+    assertThat(underTest.getIssues(file1Component, file1.uuid()).get()).extracting(DefaultIssue::key).containsOnly(issue1.getKey(), issue2.getKey());
+    assertThat(underTest.getLineHashes(file1Component, file1.uuid()).get()).containsExactly("hash1", "hash2");
+    // file without open issues
+    assertThat(underTest.getIssues(file2Component, file2.uuid()).get()).isEmpty();
+    assertThat(underTest.getLineHashes(file2Component, file2.uuid())).isEmpty();
+    // file without source
+    assertThat(underTest.getIssues(file3Component, file3.uuid()).get()).extracting(DefaultIssue::key).containsOnly(issue3.getKey());
+    assertThat(underTest.getLineHashes(file3Component, file3.uuid()).get()).isEmpty();
+    underTest.stop();
+  }
+
+  @Test
+  public void prefetched_issues_are_prepared_for_tracking() {
+    db.issues().insert(rule, project, file1, i -> i.setStatus("OPEN").setResolution(null));
+    BaseInputPrefetcher underTest = newPrefetcher();
+
+    List<DefaultIssue> issues = underTest.getIssues(file1Component, file1.uuid()).get();
+
+    // rule is not active
+    assertThat(issues).extracting(DefaultIssue::isOnDisabledRule).containsExactly(true);
+    assertThat(issues).extracting(DefaultIssue::isBeingClosed).containsExactly(true);
+    assertThat(issues.get(0).selectedAt()).isNotNull();
+    underTest.stop();
+  }
+
+  @Test
+  public void data_is_consumed_only_once() {
+    db.issues().insert(rule, project, file1, i -> i.setStatus("OPEN").setResolution(null));
+    insertLineHashes(file1, "hash1");
+    BaseInputPrefetcher underTest = newPrefetcher();
+
+    assertThat(underTest.getIssues(file1Component, file1.uuid()).get()).hasSize(1);
+    assertThat(underTest.getLineHashes(file1Component, file1.uuid()).get()).hasSize(1);
+
+    assertThat(underTest.getIssues(file1Component, file1.uuid())).isEmpty();
+    assertThat(underTest.getLineHashes(file1Component, file1.uuid())).isEmpty();
+    underTest.stop();
+  }
+
+  @Test
+  public void data_of_files_visited_out_of_order_is_not_prefetched() {
+    db.issues().insert(rule, project, file1, i -> i.setStatus("OPEN").setResolution(null));
+    db.issues().insert(rule, project, file3, i -> i.setStatus("OPEN").setResolution(null));
+    settings.setProperty(BaseInputPrefetcher.BATCH_SIZE_PROPERTY, 1);
+    BaseInputPrefetcher underTest = newPrefetcher();
+
+    assertThat(underTest.getIssues(file3Component, file3.uuid()).get()).hasSize(1);
+
+    // batch of file1 has been dropped
+    assertThat(underTest.getIssues(file1Component, file1.uuid())).isEmpty();
+    underTest.stop();
+  }
+
+  @Test
+  public void data_of_other_components_than_files_is_not_prefetched() {
+    db.issues().insert(rule, project, project, i -> i.setStatus("OPEN").setResolution(null));
+    BaseInputPrefetcher underTest = newPrefetcher();
+
+    assertThat(underTest.getIssues(projectComponent, project.uuid())).isEmpty();
+    assertThat(underTest.getLineHashes(projectComponent, project.uuid())).isEmpty();
+    underTest.stop();
+  }
+
+  private BaseInputPrefetcher newPrefetcher() {
+    BaseIssuesLoader baseIssuesLoader = new BaseIssuesLoader(treeRootHolder, db.getDbClient(), ruleRepository, activeRulesHolder);
+    return new BaseInputPrefetcher(treeRootHolder, movedFilesRepository, baseIssuesLoader, db.getDbClient(), settings.asConfig());
+  }
+
+  private void insertLineHashes(ComponentDto file, String lineHashes) {
+    db.getDbClient().fileSourceDao().insert(db.getSession(), new FileSourceDto()
+      .setProjectUuid(project.uuid())
+      .setFileUuid(file.uuid())
+      .setLineHashes(lineHashes)
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setCreatedAt(1_500_000_000_000L)
+      .setUpdatedAt(1_500_000_000_000L));
+    db.commit();
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.rule.RuleDefinitionDto;
+import org.sonar.server.computation.task.projectanalysis.issue.RulesSnapshotCache.RulesSnapshot;
+import org.sonar.server.property.InternalProperties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RulesSnapshotCacheTest {
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private DbSession dbSession = db.getSession();
+  private RulesSnapshotCache underTest = new RulesSnapshotCache(db.getDbClient());
+
+  @Test
+  public void load_rules_of_organization() {
+    RuleDefinitionDto rule = db.rules().insert();
+    String organizationUuid = db.getDefaultOrganization().getUuid();
+
+    RulesSnapshot snapshot = underTest.get(dbSession, organizationUuid);
+
+    assertThat(snapshot.getRulesByKey()).containsOnlyKeys(rule.getKey());
+    assertThat(snapshot.getRulesById()).containsOnlyKeys(rule.getId());
+    assertThat(snapshot.getRulesById().get(rule.getId())).isSameAs(snapshot.getRulesByKey().get(rule.getKey()));
+  }
+
+  @Test
+  public void snapshot_is_reused_while_version_of_rules_does_not_change() {
+    db.rules().insert();
+    String organizationUuid = db.getDefaultOrganization().getUuid();
+    RulesSnapshot snapshot = underTest.get(dbSession, organizationUuid);
+
+    db.rules().insert();
+
+    assertThat(underTest.get(dbSession, organizationUuid)).isSameAs(snapshot);
+  }
+
+  @Test
+  public void rules_are_loaded_again_when_version_changes() {
+    db.rules().insert();
+    String organizationUuid = db.getDefaultOrganization().getUuid();
+    RulesSnapshot snapshot = underTest.get(dbSession, organizationUuid);
+
+    RuleDefinitionDto newRule = db.rules().insert();
+    updateVersion("v2");
+
+    RulesSnapshot reloaded = underTest.get(dbSession, organizationUuid);
+    assertThat(reloaded).isNotSameAs(snapshot);
+    assertThat(reloaded.getRulesByKey()).hasSize(2).containsKey(newRule.getKey());
+    assertThat(underTest.get(dbSession, organizationUuid)).isSameAs(reloaded);
+  }
+
+  private void updateVersion(String version) {
+    db.getDbClient().internalPropertiesDao().update(dbSession, InternalProperties.RULES_VERSION, version);
+    db.commit();
+  }
+}
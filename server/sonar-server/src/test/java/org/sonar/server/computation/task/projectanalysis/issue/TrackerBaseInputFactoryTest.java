@@ -22,6 +22,8 @@ package org.sonar.server.computation.task.projectanalysis.issue;
 import com.google.common.base.Optional;
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.tracking.Input;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.source.FileSourceDao;
@@ -29,10 +31,15 @@ import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class TrackerBaseInputFactoryTest {
@@ -45,8 +52,9 @@ public class TrackerBaseInputFactoryTest {
   private FileSourceDao fileSourceDao = mock(FileSourceDao.class);
 
   private MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
+  private BaseInputPrefetcher prefetcher = mock(BaseInputPrefetcher.class);
 
-  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, dbClient, movedFilesRepository);
+  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, dbClient, movedFilesRepository, prefetcher);
 
   @Before
   public void setUp() throws Exception {
@@ -54,6 +62,8 @@ public class TrackerBaseInputFactoryTest {
     when(dbClient.fileSourceDao()).thenReturn(fileSourceDao);
     when(movedFilesRepository.getOriginalFile(any(Component.class)))
       .thenReturn(Optional.<MovedFilesRepository.OriginalFile>absent());
+    when(prefetcher.getIssues(any(Component.class), anyString())).thenReturn(java.util.Optional.empty());
+    when(prefetcher.getLineHashes(any(Component.class), anyString())).thenReturn(java.util.Optional.empty());
   }
 
   @Test
@@ -97,4 +107,17 @@ public class TrackerBaseInputFactoryTest {
     verify(baseIssuesLoader).loadForComponentUuid(originalUuid);
     verify(baseIssuesLoader, times(0)).loadForComponentUuid(FILE_UUID);
   }
+
+  @Test
+  public void create_returns_Input_which_retrieves_prefetched_issues_and_lines_hashes() {
+    DefaultIssue issue = new DefaultIssue();
+    when(prefetcher.getIssues(FILE, FILE_UUID)).thenReturn(java.util.Optional.of(singletonList(issue)));
+    when(prefetcher.getLineHashes(FILE, FILE_UUID)).thenReturn(java.util.Optional.of(asList("hash1", "hash2")));
+
+    Input<DefaultIssue> input = underTest.create(FILE);
+
+    assertThat(input.getIssues()).containsExactly(issue);
+    assertThat(input.getLineHashSequence().length()).isEqualTo(2);
+    verifyZeroInteractions(baseIssuesLoader, fileSourceDao);
+  }
 }
@@ -39,7 +39,7 @@ public class MetricRepositoryImplTest {
   public final ExpectedException expectedException = ExpectedException.none();
 
   private DbClient dbClient = dbTester.getDbClient();
-  private MetricRepositoryImpl underTest = new MetricRepositoryImpl(dbClient);
+  private MetricRepositoryImpl underTest = new MetricRepositoryImpl(dbClient, new MetricsSnapshotCache(dbClient));
 
   @Test(expected = NullPointerException.class)
   public void getByKey_throws_NPE_if_arg_is_null() {
@@ -0,0 +1,82 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.metric;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.metric.MetricDto;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricsSnapshotCache.MetricsSnapshot;
+import org.sonar.server.property.InternalProperties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.metric.MetricTesting.newMetricDto;
+
+public class MetricsSnapshotCacheTest {
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private DbSession dbSession = db.getSession();
+  private MetricsSnapshotCache underTest = new MetricsSnapshotCache(db.getDbClient());
+
+  @Test
+  public void load_enabled_metrics() {
+    MetricDto enabled = insertMetric(newMetricDto().setEnabled(true));
+    insertMetric(newMetricDto().setEnabled(false));
+
+    MetricsSnapshot snapshot = underTest.get(dbSession);
+
+    assertThat(snapshot.getMetricsByKey()).containsOnlyKeys(enabled.getKey());
+    assertThat(snapshot.getMetricsById()).containsOnlyKeys((long) enabled.getId());
+  }
+
+  @Test
+  public void snapshot_is_reused_while_version_of_metrics_does_not_change() {
+    insertMetric(newMetricDto().setEnabled(true));
+    MetricsSnapshot snapshot = underTest.get(dbSession);
+
+    insertMetric(newMetricDto().setEnabled(true));
+
+    assertThat(underTest.get(dbSession)).isSameAs(snapshot);
+  }
+
+  @Test
+  public void metrics_are_loaded_again_when_version_changes() {
+    insertMetric(newMetricDto().setEnabled(true));
+    MetricsSnapshot snapshot = underTest.get(dbSession);
+
+    MetricDto newMetric = insertMetric(newMetricDto().setEnabled(true));
+    db.getDbClient().internalPropertiesDao().update(dbSession, InternalProperties.METRICS_VERSION, "v2");
+    db.commit();
+
+    MetricsSnapshot reloaded = underTest.get(dbSession);
+    assertThat(reloaded).isNotSameAs(snapshot);
+    assertThat(reloaded.getMetricsByKey()).hasSize(2).containsKey(newMetric.getKey());
+  }
+
+  private MetricDto insertMetric(MetricDto metric) {
+    db.getDbClient().metricDao().insert(dbSession, metric);
+    db.commit();
+    return metric;
+  }
+}
@@ -32,6 +32,7 @@ import java.util.List;
 
 import javax.annotation.Nullable;
 
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -52,6 +53,8 @@ import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.Component.Status;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepositoryImpl;
@@ -67,6 +70,11 @@ public class ScmInfoRepositoryImplTest {
 
   static final int FILE_REF = 1;
   static final Component FILE = builder(Component.Type.FILE, FILE_REF).setKey("FILE_KEY").setUuid("FILE_UUID").build();
+  static final int FILE_2_REF = 2;
+  static final Component FILE_2 = builder(Component.Type.FILE, FILE_2_REF).setKey("FILE_2_KEY").setUuid("FILE_2_UUID").build();
+  static final Component PROJECT = builder(Component.Type.PROJECT, 3).setKey("PROJECT_KEY").setUuid("PROJECT_UUID")
+    .addChildren(FILE)
+    .build();
   static final long DATE_1 = 123456789L;
   static final long DATE_2 = 1234567810L;
 
@@ -86,11 +94,18 @@ public class ScmInfoRepositoryImplTest {
   public AnalysisMetadataHolderRule analysisMetadataHolder = new AnalysisMetadataHolderRule();
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
 
   DbClient dbClient = dbTester.getDbClient();
 
   ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(reportReader, analysisMetadataHolder, dbClient,
-    new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)));
+    new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)), treeRootHolder);
+
+  @Before
+  public void setUp() {
+    treeRootHolder.setRoot(PROJECT);
+  }
 
   @Test
   public void dont_check_hash_for_unmodified_files_incremental_analysis() {
@@ -235,11 +250,12 @@ public class ScmInfoRepositoryImplTest {
     AnalysisMetadataHolder analysisMetadataHolder = mock(AnalysisMetadataHolder.class);
     DbClient dbClient = mock(DbClient.class);
     SourceHashRepository sourceHashRepository = mock(SourceHashRepository.class);
-    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
+    TreeRootHolder treeRootHolder = mock(TreeRootHolder.class);
+    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository, treeRootHolder);
 
     assertThat(underTest.getScmInfo(component)).isAbsent();
 
-    verifyNoMoreInteractions(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
+    verifyNoMoreInteractions(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository, treeRootHolder);
   }
 
   @Test
@@ -256,6 +272,41 @@ public class ScmInfoRepositoryImplTest {
     assertThat(logTester.logs(TRACE)).isEmpty();
   }
 
+  @Test
+  public void read_in_db_at_the_same_time_the_next_files_having_CopyFromPrevious_true() throws Exception {
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    analysisMetadataHolder.setIncrementalAnalysis(false);
+    addFileSourceInDb("henry", DATE_1, "rev-1", computeSourceHash(1));
+    addFileSourceInReport(1);
+    addCopyFromPreviousChangesetInReport();
+    dbTester.getDbClient().fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
+      .setFileUuid(FILE_2.getUuid())
+      .setProjectUuid("PROJECT_UUID")
+      .setSourceData(DbFileSources.Data.newBuilder()
+        .addLines(DbFileSources.Line.newBuilder().setLine(1).setScmAuthor("paul").setScmDate(DATE_2).setScmRevision("rev-2"))
+        .build())
+      .setSrcHash(computeSourceHash(1)));
+    dbTester.commit();
+    reportReader.putFileSourceLines(FILE_2_REF, generateLines(1));
+    reportReader.putChangesets(ScannerReport.Changesets.newBuilder()
+      .setComponentRef(FILE_2_REF)
+      .setCopyFromPrevious(true)
+      .build());
+
+    TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(builder(Component.Type.PROJECT, 3).setUuid("PROJECT_UUID")
+      .addChildren(FILE, FILE_2)
+      .build());
+    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(reportReader, analysisMetadataHolder, dbClient,
+      new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)), treeRootHolder);
+
+    assertThat(underTest.getScmInfo(FILE).get().getChangesetForLine(1).getAuthor()).isEqualTo("henry");
+    assertThat(logTester.logs(TRACE)).containsOnly("Reading SCM info from db for file 'FILE_KEY'", "Reading SCM info from db for file 'FILE_2_KEY'");
+    logTester.clear();
+
+    assertThat(underTest.getScmInfo(FILE_2).get().getChangesetForLine(1).getAuthor()).isEqualTo("paul");
+    assertThat(logTester.logs(TRACE)).isEmpty();
+  }
+
   @Test
   public void not_read_in_db_on_first_analysis_when_CopyFromPrevious_is_true() throws Exception {
     analysisMetadataHolder.setBaseAnalysis(null);
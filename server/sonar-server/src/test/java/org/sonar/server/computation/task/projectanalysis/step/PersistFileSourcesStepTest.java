@@ -30,6 +30,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -87,6 +88,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   @Rule
   public AnalysisMetadataHolderRule analysisMetadataHolder = new AnalysisMetadataHolderRule().setIncrementalAnalysis(false);
 
+  private MapSettings settings = new MapSettings();
   private DbClient dbClient = dbTester.getDbClient();
   private DbSession session = dbTester.getSession();
 
@@ -96,7 +98,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   public void setup() {
     when(system2.now()).thenReturn(NOW);
     underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository,
-      duplicationRepository, analysisMetadataHolder);
+      duplicationRepository, analysisMetadataHolder, settings.asConfig());
   }
 
   @Override
@@ -128,6 +130,35 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(data.getLines(1).getSource()).isEqualTo("line2");
   }
 
+  @Test
+  public void persist_sources_of_many_files_with_several_workers_and_batched_commits() {
+    settings.setProperty(PersistFileSourcesStep.WORKER_COUNT_PROPERTY, 3);
+    settings.setProperty(PersistFileSourcesStep.BATCH_SIZE_PROPERTY, 4);
+    int nbFiles = 10;
+    ReportComponent.Builder module = ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY");
+    ScannerReport.Component.Builder reportModule = ScannerReport.Component.newBuilder().setRef(2).setType(ComponentType.MODULE);
+    for (int i = 0; i < nbFiles; i++) {
+      int ref = 10 + i;
+      module.addChildren(ReportComponent.builder(Component.Type.FILE, ref).setUuid("FILE_" + i).setKey("MODULE_KEY:src/Foo" + i + ".java")
+        .setFileAttributes(new FileAttributes(false, null, 1)).build());
+      reportModule.addChildRef(ref);
+      reportReader.putComponent(ScannerReport.Component.newBuilder().setRef(ref).setType(ComponentType.FILE).setLines(1).build());
+      fileSourceRepository.addLine(ref, "content of file " + i);
+    }
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(module.build()).build());
+    reportReader.putComponent(ScannerReport.Component.newBuilder().setRef(1).setType(ComponentType.PROJECT).addChildRef(2).build());
+    reportReader.putComponent(reportModule.build());
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(nbFiles);
+    for (int i = 0; i < nbFiles; i++) {
+      FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i);
+      assertThat(fileSourceDto.getProjectUuid()).isEqualTo(PROJECT_UUID);
+      assertThat(fileSourceDto.getSourceData().getLines(0).getSource()).isEqualTo("content of file " + i);
+    }
+  }
+
   @Test
   public void dont_persist_unchanged_sources_if_incremental() {
     analysisMetadataHolder.setIncrementalAnalysis(true);
@@ -330,6 +361,65 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(past);
   }
 
+  @Test
+  public void persist_input_hash() {
+    initBasicReport(1);
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getInputHash()).isNotEmpty();
+  }
+
+  @Test
+  public void do_not_compute_sources_when_input_hash_has_not_changed() {
+    initBasicReport(1);
+    underTest.execute();
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    // line data would be updated if it were computed again
+    dbClient.fileSourceDao().update(session, fileSourceDto.setDataHash("OTHER_HASH"));
+    session.commit();
+
+    underTest.execute();
+
+    assertThat(dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID).getDataHash()).isEqualTo("OTHER_HASH");
+  }
+
+  @Test
+  public void compute_sources_when_line_data_has_changed() {
+    initBasicReport(1);
+    underTest.execute();
+    String inputHash = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID).getInputHash();
+
+    reportReader.putCoverage(FILE1_REF, newArrayList(ScannerReport.LineCoverage.newBuilder()
+      .setLine(1)
+      .setConditions(10)
+      .setHits(true)
+      .setCoveredConditions(2)
+      .build()));
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getInputHash()).isNotEqualTo(inputHash);
+    assertThat(fileSourceDto.getSourceData().getLines(0).getLineHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void update_only_input_hash_when_line_data_has_not_changed() {
+    initBasicReport(1);
+    underTest.execute();
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    dbClient.fileSourceDao().updateInputHash(session, fileSourceDto.getId(), "OLD_INPUT_HASH");
+    session.commit();
+    when(system2.now()).thenReturn(NOW + 1000L);
+
+    underTest.execute();
+
+    FileSourceDto reloaded = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(reloaded.getInputHash()).isEqualTo(fileSourceDto.getInputHash());
+    assertThat(reloaded.getUpdatedAt()).isEqualTo(NOW);
+  }
+
   @Test
   public void update_sources_when_source_updated() {
     // Existing sources
@@ -91,6 +91,19 @@ public class EsTester extends ExternalResource {
   private static final Set<String> NO_TEMPLATES_SURVIVING_WIPE = Collections.emptySet();
   private static EsTestCluster cluster;
   private final List<IndexDefinition> indexDefinitions;
+  // EsClient which do not hold any reference to client returned by cluster and does not close them, to avoid leaks.
+  // The same instance is shared by the test, so that the refreshes it executes are counted once for all.
+  private final EsClient client = new EsClient() {
+    @Override
+    public Client nativeClient() {
+      return cluster.client();
+    }
+
+    @Override
+    public void close() {
+      // do nothing
+    }
+  };
 
   public EsTester(IndexDefinition... defs) {
     this.indexDefinitions = asList(defs);
@@ -250,7 +263,7 @@ public class EsTester extends ExternalResource {
 
   public void putDocuments(IndexType indexType, BaseDoc... docs) {
     try {
-      BulkRequestBuilder bulk = cluster.client().prepareBulk()
+      BulkRequestBuilder bulk = client().prepareBulk()
         .setRefreshPolicy(REFRESH_IMMEDIATE);
       for (BaseDoc doc : docs) {
         bulk.add(new IndexRequest(indexType.getIndex(), indexType.getType(), doc.getId())
@@ -330,18 +343,7 @@ public class EsTester extends ExternalResource {
   }
 
   public EsClient client() {
-    // EsClient which do not hold any reference to client returned by cluster and does not close them, to avoid leaks
-    return new EsClient() {
-      @Override
-      public Client nativeClient() {
-        return cluster.client();
-      }
-
-      @Override
-      public void close() {
-        // do nothing
-      }
-    };
+    return client;
   }
 
   public EsTester lockWrites(IndexType index) {
@@ -0,0 +1,120 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.terms;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.server.es.DefaultIndexSettings.REFRESH_IMMEDIATE;
+import static org.sonar.server.es.FacetsCache.REFRESH_STATS_INTERVAL_IN_MS;
+import static org.sonar.server.es.FakeIndexDefinition.INDEX_TYPE_FAKE;
+import static org.sonar.server.es.FakeIndexDefinition.INT_FIELD;
+import static org.sonar.server.es.FakeIndexDefinition.newDoc;
+
+public class FacetsCacheTest {
+
+  @Rule
+  public EsTester es = new EsTester(new FakeIndexDefinition());
+
+  private System2 system2 = mock(System2.class);
+  private FacetsCache underTest = new FacetsCache(es.client(), system2);
+
+  @Test
+  public void facets_are_computed_once_until_index_is_refreshed() {
+    es.putDocuments(INDEX_TYPE_FAKE, newDoc(1), newDoc(1), newDoc(2));
+
+    assertThat(underTest.get(INDEX_TYPE_FAKE, newFacetsRequest()).get("ints")).containsOnly(entry("1", 2L), entry("2", 1L));
+    assertThat(underTest.get(INDEX_TYPE_FAKE, newFacetsRequest()).get("ints")).containsOnly(entry("1", 2L), entry("2", 1L));
+    assertThat(underTest.getMissCount()).isEqualTo(1L);
+    assertThat(underTest.getHitCount()).isEqualTo(1L);
+    assertThat(underTest.getHitRate()).isEqualTo(0.5D);
+    assertThat(underTest.getSize()).isEqualTo(1L);
+
+    // documents are visible once the index is refreshed
+    es.putDocuments(INDEX_TYPE_FAKE, newDoc(3));
+
+    assertThat(underTest.get(INDEX_TYPE_FAKE, newFacetsRequest()).get("ints")).containsOnly(entry("1", 2L), entry("2", 1L), entry("3", 1L));
+    assertThat(underTest.getMissCount()).isEqualTo(2L);
+    assertThat(underTest.getHitCount()).isEqualTo(1L);
+  }
+
+  @Test
+  public void refreshes_of_other_processes_are_read_from_index_stats_at_most_once_per_interval() {
+    when(system2.now()).thenReturn(1_000L);
+    es.putDocuments(INDEX_TYPE_FAKE, newDoc(1));
+    assertThat(underTest.get(INDEX_TYPE_FAKE, newFacetsRequest()).get("ints")).containsOnly(entry("1", 1L));
+
+    // refresh which is not executed through the EsClient of the process, as done by the Compute Engine
+    es.client().nativeClient().prepareIndex(INDEX_TYPE_FAKE.getIndex(), INDEX_TYPE_FAKE.getType(), "2")
+      .setSource(newDoc(2).getFields())
+      .setRefreshPolicy(REFRESH_IMMEDIATE)
+      .get();
+
+    when(system2.now()).thenReturn(1_000L + REFRESH_STATS_INTERVAL_IN_MS - 1L);
+    assertThat(underTest.get(INDEX_TYPE_FAKE, newFacetsRequest()).get("ints")).containsOnly(entry("1", 1L));
+    assertThat(underTest.getHitCount()).isEqualTo(1L);
+
+    when(system2.now()).thenReturn(1_000L + REFRESH_STATS_INTERVAL_IN_MS);
+    assertThat(underTest.get(INDEX_TYPE_FAKE, newFacetsRequest()).get("ints")).containsOnly(entry("1", 1L), entry("2", 1L));
+    assertThat(underTest.getMissCount()).isEqualTo(2L);
+  }
+
+  @Test
+  public void facets_are_cached_by_request() {
+    es.putDocuments(INDEX_TYPE_FAKE, newDoc(1), newDoc(2));
+
+    underTest.get(INDEX_TYPE_FAKE, newFacetsRequest());
+    Facets facets = underTest.get(INDEX_TYPE_FAKE, newFacetsRequest().setQuery(termQuery(INT_FIELD, 2)));
+
+    assertThat(facets.get("ints")).containsOnly(entry("2", 1L));
+    assertThat(underTest.getMissCount()).isEqualTo(2L);
+    assertThat(underTest.getSize()).isEqualTo(2L);
+  }
+
+  @Test
+  public void returned_facets_can_be_modified_without_altering_cache() {
+    es.putDocuments(INDEX_TYPE_FAKE, newDoc(1));
+
+    underTest.get(INDEX_TYPE_FAKE, newFacetsRequest()).get("ints").put("4", 0L);
+    underTest.get(INDEX_TYPE_FAKE, newFacetsRequest()).get("ints").put("5", 0L);
+
+    assertThat(underTest.get(INDEX_TYPE_FAKE, newFacetsRequest()).get("ints")).containsOnly(entry("1", 1L));
+    assertThat(underTest.getHitCount()).isEqualTo(2L);
+  }
+
+  @Test
+  public void hit_rate_is_zero_when_cache_has_not_been_requested() {
+    assertThat(underTest.getHitRate()).isEqualTo(0D);
+  }
+
+  private SearchRequestBuilder newFacetsRequest() {
+    return es.client().prepareSearch(INDEX_TYPE_FAKE)
+      .setSize(0)
+      .addAggregation(terms("ints").field(INT_FIELD));
+  }
+}
@@ -37,6 +37,7 @@ import org.sonar.db.component.ComponentTesting;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.es.Facets;
+import org.sonar.server.es.FacetsCache;
 import org.sonar.server.es.SearchOptions;
 import org.sonar.server.issue.IssueDocTesting;
 import org.sonar.server.issue.IssueQuery;
@@ -76,7 +77,7 @@ public class IssueIndexDebtTest {
     System2 system = mock(System2.class);
     when(system.getDefaultTimeZone()).thenReturn(TimeZone.getTimeZone("+01:00"));
     when(system.now()).thenReturn(System.currentTimeMillis());
-    underTest = new IssueIndex(es.client(), system, userSessionRule, new AuthorizationTypeSupport(userSessionRule));
+    underTest = new IssueIndex(es.client(), system, userSessionRule, new AuthorizationTypeSupport(userSessionRule), new FacetsCache(es.client()));
   }
 
   @Test
@@ -44,6 +44,7 @@ import org.sonar.db.user.UserDto;
 import org.sonar.server.component.ws.FilterParser.Operator;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.es.Facets;
+import org.sonar.server.es.FacetsCache;
 import org.sonar.server.es.SearchIdResult;
 import org.sonar.server.es.SearchOptions;
 import org.sonar.server.measure.index.ProjectMeasuresQuery.MetricCriterion;
@@ -111,7 +112,7 @@ public class ProjectMeasuresIndexTest {
 
   private ProjectMeasuresIndexer projectMeasureIndexer = new ProjectMeasuresIndexer(null, es.client());
   private PermissionIndexerTester authorizationIndexerTester = new PermissionIndexerTester(es, projectMeasureIndexer);
-  private ProjectMeasuresIndex underTest = new ProjectMeasuresIndex(es.client(), new AuthorizationTypeSupport(userSession));
+  private ProjectMeasuresIndex underTest = new ProjectMeasuresIndex(es.client(), new AuthorizationTypeSupport(userSession), new FacetsCache(es.client()));
 
   @Test
   public void return_empty_if_no_projects() {
@@ -26,6 +26,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.server.ws.WebService.Param;
@@ -47,12 +48,14 @@ import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.i18n.I18nRule;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.ws.ParallelLoader;
 import org.sonar.server.ws.WsActionTester;
 import org.sonarqube.ws.Common;
 import org.sonarqube.ws.WsMeasures;
 import org.sonarqube.ws.WsMeasures.ComponentTreeWsResponse;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.api.measures.CoreMetrics.NEW_SECURITY_RATING_KEY;
 import static org.sonar.api.measures.Metric.ValueType.DISTRIB;
 import static org.sonar.api.measures.Metric.ValueType.FLOAT;
@@ -97,7 +100,8 @@ public class ComponentTreeActionTest {
 
   private WsActionTester ws = new WsActionTester(
     new ComponentTreeAction(
-      new ComponentTreeDataLoader(dbClient, new ComponentFinder(dbClient, resourceTypes), userSession, resourceTypes),
+      new ComponentTreeDataLoader(dbClient, new ComponentFinder(dbClient, resourceTypes), userSession, resourceTypes,
+        new ParallelLoader(dbClient, new MapSettings().asConfig())),
       i18n, resourceTypes));
 
   @Before
@@ -292,6 +296,70 @@ public class ComponentTreeActionTest {
     assertThat(response.getPaging().getTotal()).isEqualTo(9);
   }
 
+  @Test
+  public void load_measures_of_other_metrics_only_for_the_page_when_sorting_by_metric() {
+    ComponentDto projectDto = newPrivateProjectDto(db.getDefaultOrganization(), "project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(projectDto);
+    ComponentDto file1 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-1"));
+    ComponentDto file2 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-2"));
+    ComponentDto file3 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-3"));
+    MetricDto ncloc = insertNclocMetric();
+    MetricDto coverage = insertCoverageMetric();
+    dbClient.measureDao().insert(dbSession,
+      newMeasureDto(ncloc, file1, projectSnapshot).setValue(1.0d),
+      newMeasureDto(ncloc, file2, projectSnapshot).setValue(2.0d),
+      newMeasureDto(ncloc, file3, projectSnapshot).setValue(3.0d),
+      newMeasureDto(coverage, file1, projectSnapshot).setValue(10.0d),
+      newMeasureDto(coverage, file2, projectSnapshot).setValue(20.0d),
+      newMeasureDto(coverage, file3, projectSnapshot).setValue(30.0d),
+      newMeasureDto(coverage, projectDto, projectSnapshot).setValue(25.0d));
+    db.commit();
+
+    ComponentTreeWsResponse response = ws.newRequest()
+      .setParam(PARAM_BASE_COMPONENT_ID, "project-uuid")
+      .setParam(Param.SORT, METRIC_SORT)
+      .setParam(PARAM_METRIC_SORT, "ncloc")
+      .setParam(PARAM_METRIC_KEYS, "ncloc,coverage")
+      .setParam(Param.ASCENDING, "false")
+      .setParam(Param.PAGE, "1")
+      .setParam(Param.PAGE_SIZE, "2")
+      .executeProtobuf(ComponentTreeWsResponse.class);
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("file-uuid-3", "file-uuid-2");
+    assertThat(response.getComponentsList().get(0).getMeasuresList()).extracting("metric", "value")
+      .containsOnly(tuple("ncloc", "3"), tuple("coverage", "30.0"));
+    assertThat(response.getComponentsList().get(1).getMeasuresList()).extracting("metric", "value")
+      .containsOnly(tuple("ncloc", "2"), tuple("coverage", "20.0"));
+    assertThat(response.getBaseComponent().getMeasuresList()).extracting("metric", "value").containsOnly(tuple("coverage", "25.0"));
+    assertThat(response.getPaging().getTotal()).isEqualTo(3);
+  }
+
+  @Test
+  public void paginate_components_sorted_by_name() {
+    ComponentDto projectDto = newPrivateProjectDto(db.getDefaultOrganization(), "project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(projectDto);
+    componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-3").setName("File C"));
+    ComponentDto file1 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-1").setName("file a"));
+    componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-2").setName("FILE B"));
+    MetricDto ncloc = insertNclocMetric();
+    dbClient.measureDao().insert(dbSession, newMeasureDto(ncloc, file1, projectSnapshot).setValue(1.0d));
+    db.commit();
+
+    ComponentTreeWsResponse response = ws.newRequest()
+      .setParam(PARAM_BASE_COMPONENT_ID, "project-uuid")
+      .setParam(Param.SORT, NAME_SORT)
+      .setParam(PARAM_METRIC_KEYS, "ncloc")
+      .setParam(Param.ASCENDING, "false")
+      .setParam(Param.PAGE, "2")
+      .setParam(Param.PAGE_SIZE, "2")
+      .executeProtobuf(ComponentTreeWsResponse.class);
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("file-uuid-1");
+    assertThat(response.getComponentsList().get(0).getMeasuresList()).extracting("metric", "value").containsOnly(tuple("ncloc", "1"));
+    assertThat(response.getPaging().getPageIndex()).isEqualTo(2);
+    assertThat(response.getPaging().getTotal()).isEqualTo(3);
+  }
+
   @Test
   public void sort_by_metric_value() {
     ComponentDto projectDto = newPrivateProjectDto(db.getDefaultOrganization(), "project-uuid");
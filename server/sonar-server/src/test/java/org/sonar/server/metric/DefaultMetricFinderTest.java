@@ -26,6 +26,8 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.cache.DistributedCaches;
+import org.sonar.server.cache.TestDistributedCaches;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.db.metric.MetricTesting.newMetricDto;
@@ -36,7 +38,8 @@ public class DefaultMetricFinderTest {
   @Rule
   public DbTester db = DbTester.create(System2.INSTANCE);
 
-  private DefaultMetricFinder underTest = new DefaultMetricFinder(db.getDbClient());
+  private DistributedCaches caches = TestDistributedCaches.create();
+  private DefaultMetricFinder underTest = new DefaultMetricFinder(db.getDbClient(), caches);
 
   @Test
   public void findAll_enabled() {
@@ -77,4 +80,30 @@ public class DefaultMetricFinderTest {
 
     assertThat(underTest.findByKey(secondMetric.getKey())).extracting(Metric::getKey).containsExactly(secondMetric.getKey());
   }
+
+  @Test
+  public void findByKey_and_findById_are_cached_until_metrics_are_invalidated() {
+    MetricDto metric = db.getDbClient().metricDao().insert(db.getSession(), newMetricDto().setShortName("Old name"));
+    db.commit();
+    assertThat(underTest.findByKey(metric.getKey()).getName()).isEqualTo("Old name");
+    assertThat(underTest.findById(metric.getId()).getName()).isEqualTo("Old name");
+
+    db.getDbClient().metricDao().update(db.getSession(), metric.setShortName("New name"));
+    db.commit();
+    assertThat(underTest.findByKey(metric.getKey()).getName()).isEqualTo("Old name");
+    assertThat(underTest.findById(metric.getId()).getName()).isEqualTo("Old name");
+
+    caches.invalidateAll(DefaultMetricFinder.CACHE_NAME);
+    assertThat(underTest.findByKey(metric.getKey()).getName()).isEqualTo("New name");
+    assertThat(underTest.findById(metric.getId()).getName()).isEqualTo("New name");
+  }
+
+  @Test
+  public void disabled_metrics_are_not_returned_from_cache() {
+    MetricDto metric = db.getDbClient().metricDao().insert(db.getSession(), newMetricDto().setEnabled(false));
+    db.commit();
+
+    assertThat(underTest.findByKey(metric.getKey())).isNull();
+    assertThat(underTest.findById(metric.getId())).isNull();
+  }
 }
@@ -31,6 +31,7 @@ import org.sonar.db.DbTester;
 import org.sonar.db.measure.custom.CustomMeasureTesting;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.db.metric.MetricTesting;
+import org.sonar.server.cache.TestDistributedCaches;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.ServerException;
 import org.sonar.server.exceptions.UnauthorizedException;
@@ -65,7 +66,7 @@ public class CreateActionTest {
 
   @Before
   public void setUp() {
-    ws = new WsTester(new MetricsWs(new CreateAction(dbClient, userSessionRule)));
+    ws = new WsTester(new MetricsWs(new CreateAction(dbClient, userSessionRule, TestDistributedCaches.create())));
     userSessionRule.logIn().setSystemAdministrator();
   }
 
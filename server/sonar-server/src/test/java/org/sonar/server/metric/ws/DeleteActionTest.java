@@ -30,6 +30,7 @@ import org.sonar.db.measure.custom.CustomMeasureDto;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.db.qualitygate.QualityGateConditionDto;
 import org.sonar.db.qualitygate.QualityGateDto;
+import org.sonar.server.cache.TestDistributedCaches;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.UnauthorizedException;
 import org.sonar.server.tester.UserSessionRule;
@@ -52,7 +53,7 @@ public class DeleteActionTest {
   public DbTester db = DbTester.create(System2.INSTANCE);
 
   private DbClient dbClient = db.getDbClient();
-  private WsActionTester ws = new WsActionTester(new DeleteAction(dbClient, userSessionRule));
+  private WsActionTester ws = new WsActionTester(new DeleteAction(dbClient, userSessionRule, TestDistributedCaches.create()));
 
   @Test
   public void delete_by_keys() {
@@ -23,6 +23,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.db.DbClient;
+import org.sonar.server.cache.DistributedCaches;
+import org.sonar.server.cache.TestDistributedCaches;
 import org.sonar.server.user.UserSession;
 import org.sonar.server.ws.WsTester;
 
@@ -37,11 +39,12 @@ public class MetricsWsTest {
   public void setUp() {
     DbClient dbClient = mock(DbClient.class);
     UserSession userSession = mock(UserSession.class);
+    DistributedCaches caches = TestDistributedCaches.create();
     ws = new WsTester(new MetricsWs(
       new SearchAction(dbClient),
-      new CreateAction(dbClient, userSession),
-      new UpdateAction(dbClient, userSession),
-      new DeleteAction(dbClient, userSession),
+      new CreateAction(dbClient, userSession, caches),
+      new UpdateAction(dbClient, userSession, caches),
+      new DeleteAction(dbClient, userSession, caches),
       new TypesAction(),
       new DomainsAction(dbClient)));
   }
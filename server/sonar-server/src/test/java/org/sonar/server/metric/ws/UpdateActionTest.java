@@ -29,6 +29,7 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.cache.TestDistributedCaches;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.ServerException;
 import org.sonar.server.exceptions.UnauthorizedException;
@@ -65,7 +66,7 @@ public class UpdateActionTest {
 
   @Before
   public void setUp() {
-    ws = new WsTester(new MetricsWs(new UpdateAction(dbClient, userSessionRule)));
+    ws = new WsTester(new MetricsWs(new UpdateAction(dbClient, userSessionRule, TestDistributedCaches.create())));
     userSessionRule.logIn().setSystemAdministrator();
   }
 
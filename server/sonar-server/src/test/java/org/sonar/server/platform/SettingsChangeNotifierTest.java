@@ -22,6 +22,7 @@ package org.sonar.server.platform;
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
 import org.sonar.api.config.GlobalPropertyChangeHandler;
+import org.sonar.server.cache.TestDistributedCaches;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.argThat;
@@ -32,7 +33,7 @@ public class SettingsChangeNotifierTest {
   @Test
   public void onGlobalPropertyChange() {
     GlobalPropertyChangeHandler handler = mock(GlobalPropertyChangeHandler.class);
-    SettingsChangeNotifier notifier = new SettingsChangeNotifier(new GlobalPropertyChangeHandler[] {handler});
+    SettingsChangeNotifier notifier = new SettingsChangeNotifier(TestDistributedCaches.create(), new GlobalPropertyChangeHandler[] {handler});
 
     notifier.onGlobalPropertyChange("foo", "bar");
 
@@ -47,7 +48,7 @@ public class SettingsChangeNotifierTest {
 
   @Test
   public void no_handlers() {
-    SettingsChangeNotifier notifier = new SettingsChangeNotifier();
+    SettingsChangeNotifier notifier = new SettingsChangeNotifier(TestDistributedCaches.create());
 
     assertThat(notifier.changeHandlers).isEmpty();
 
@@ -40,6 +40,7 @@ import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleDto.Format;
 import org.sonar.db.rule.RuleParamDto;
 import org.sonar.db.rule.RuleTesting;
+import org.sonar.server.cache.TestDistributedCaches;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.es.SearchOptions;
 import org.sonar.server.exceptions.BadRequestException;
@@ -73,7 +74,7 @@ public class RuleCreatorTest {
   private DbSession dbSession = dbTester.getSession();
 
   private RuleCreator underTest = new RuleCreator(system2, new RuleIndexer(es.client(), dbTester.getDbClient()), dbTester.getDbClient(), newFullTypeValidations(),
-    TestDefaultOrganizationProvider.from(dbTester));
+    TestDefaultOrganizationProvider.from(dbTester), TestDistributedCaches.create());
 
   @Test
   public void create_custom_rule() {
@@ -47,6 +47,7 @@ import org.sonar.db.rule.RuleDefinitionDto;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleParamDto;
 import org.sonar.db.rule.RuleTesting;
+import org.sonar.server.cache.TestDistributedCaches;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.es.SearchOptions;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
@@ -84,7 +85,7 @@ public class RuleUpdaterTest {
   private DbSession dbSession = db.getSession();
   private TestDefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.from(db);
 
-  private RuleUpdater underTest = new RuleUpdater(db.getDbClient(), ruleIndexer, system2);
+  private RuleUpdater underTest = new RuleUpdater(db.getDbClient(), ruleIndexer, system2, TestDistributedCaches.create());
 
   @Test
   public void do_not_update_rule_with_removed_status() {
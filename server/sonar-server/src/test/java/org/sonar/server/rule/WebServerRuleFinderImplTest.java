@@ -19,26 +19,47 @@
  */
 package org.sonar.server.rule;
 
+import java.util.Collections;
+import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.organization.OrganizationDao;
+import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.rule.RuleDao;
+import org.sonar.db.rule.RuleTesting;
+import org.sonar.server.cache.DistributedCaches;
+import org.sonar.server.cache.TestDistributedCaches;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.sonar.db.organization.OrganizationTesting.newOrganizationDto;
 
 public class WebServerRuleFinderImplTest {
 
   private DbClient dbClient = mock(DbClient.class);
+  private RuleDao ruleDao = mock(RuleDao.class);
   private TestDefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.fromUuid("1111");
-  private WebServerRuleFinderImpl underTest = new WebServerRuleFinderImpl(dbClient, defaultOrganizationProvider);
+  private DistributedCaches caches = TestDistributedCaches.create();
+  private WebServerRuleFinderImpl underTest;
 
   @Before
   public void setUp() throws Exception {
-    when(dbClient.ruleDao()).thenReturn(mock(RuleDao.class));
+    when(dbClient.ruleDao()).thenReturn(ruleDao);
+    OrganizationDao organizationDao = mock(OrganizationDao.class);
+    when(organizationDao.selectByUuid(any(DbSession.class), eq("1111"))).thenReturn(Optional.of(newOrganizationDto().setUuid("1111")));
+    when(dbClient.organizationDao()).thenReturn(organizationDao);
+    underTest = new WebServerRuleFinderImpl(dbClient, defaultOrganizationProvider, caches);
   }
 
   @Test
@@ -62,4 +83,48 @@ public class WebServerRuleFinderImplTest {
 
     assertThat(underTest.delegate).isSameAs(nonCachingDelegate);
   }
+
+  @Test
+  public void findByKey_is_cached_until_rule_is_invalidated() {
+    RuleKey ruleKey = RuleKey.of("java", "S001");
+    mockRule(ruleKey);
+
+    assertThat(underTest.findByKey(ruleKey).getKey()).isEqualTo("S001");
+    assertThat(underTest.findByKey("java", "S001").getKey()).isEqualTo("S001");
+    verify(ruleDao, times(1)).selectByKey(any(DbSession.class), any(OrganizationDto.class), eq(ruleKey));
+
+    caches.invalidate(WebServerRuleFinderImpl.CACHE_NAME, ruleKey.toString());
+
+    assertThat(underTest.findByKey(ruleKey).getKey()).isEqualTo("S001");
+    verify(ruleDao, times(2)).selectByKey(any(DbSession.class), any(OrganizationDto.class), eq(ruleKey));
+  }
+
+  @Test
+  public void findByKey_returns_a_new_rule_to_each_caller() {
+    RuleKey ruleKey = RuleKey.of("java", "S001");
+    mockRule(ruleKey);
+
+    Rule rule = underTest.findByKey(ruleKey);
+    rule.setName("modified by caller");
+
+    Rule otherRule = underTest.findByKey(ruleKey);
+    assertThat(otherRule).isNotSameAs(rule);
+    assertThat(otherRule.getName()).isEqualTo("Rule S001");
+    verify(ruleDao, times(1)).selectByKey(any(DbSession.class), any(OrganizationDto.class), eq(ruleKey));
+  }
+
+  @Test
+  public void missing_rules_are_cached() {
+    RuleKey ruleKey = RuleKey.of("java", "missing");
+    when(ruleDao.selectByKey(any(DbSession.class), any(OrganizationDto.class), eq(ruleKey))).thenReturn(Optional.empty());
+
+    assertThat(underTest.findByKey(ruleKey)).isNull();
+    assertThat(underTest.findByKey(ruleKey)).isNull();
+    verify(ruleDao, times(1)).selectByKey(any(DbSession.class), any(OrganizationDto.class), eq(ruleKey));
+  }
+
+  private void mockRule(RuleKey ruleKey) {
+    when(ruleDao.selectByKey(any(DbSession.class), any(OrganizationDto.class), eq(ruleKey))).thenReturn(Optional.of(RuleTesting.newDto(ruleKey)));
+    when(ruleDao.selectRuleParamsByRuleKey(any(DbSession.class), eq(ruleKey))).thenReturn(Collections.emptyList());
+  }
 }
@@ -21,6 +21,7 @@ package org.sonar.server.rule.index;
 
 import com.google.common.collect.ImmutableSet;
 import java.util.Collections;
+import java.util.Optional;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.config.internal.MapSettings;
@@ -35,6 +36,7 @@ import org.sonar.db.rule.RuleDefinitionDto;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleTesting;
 import org.sonar.server.es.EsTester;
+import org.sonar.server.property.InternalProperties;
 
 import static com.google.common.collect.Sets.newHashSet;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -73,6 +75,18 @@ public class RuleIndexerTest {
     assertThat(esTester.countDocuments(RuleIndexDefinition.INDEX_TYPE_RULE)).isEqualTo(0L);
   }
 
+  @Test
+  public void commitAndIndex_changes_version_of_rules() {
+    dbClient.ruleDao().insert(dbSession, rule);
+    underTest.commitAndIndex(dbSession, rule.getKey());
+    Optional<String> version = dbClient.internalPropertiesDao().selectByKey(dbSession, InternalProperties.RULES_VERSION);
+    assertThat(version).isPresent();
+
+    underTest.commitAndIndex(dbSession, rule.getKey());
+
+    assertThat(dbClient.internalPropertiesDao().selectByKey(dbSession, InternalProperties.RULES_VERSION)).isPresent().isNotEqualTo(version);
+  }
+
   @Test
   public void index() {
     dbClient.ruleDao().insert(dbSession, rule);
@@ -25,6 +25,8 @@ import org.junit.Test;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 import org.sonar.db.property.PropertyDto;
+import org.sonar.server.cache.DistributedCaches;
+import org.sonar.server.cache.TestDistributedCaches;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.MapEntry.entry;
@@ -36,7 +38,8 @@ public class DatabaseSettingLoaderTest {
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
 
-  private DatabaseSettingLoader underTest = new DatabaseSettingLoader(dbTester.getDbClient());
+  private DistributedCaches caches = TestDistributedCaches.create();
+  private DatabaseSettingLoader underTest = new DatabaseSettingLoader(dbTester.getDbClient(), caches);
 
   @Test
   public void test_load() {
@@ -46,6 +49,18 @@ public class DatabaseSettingLoaderTest {
     assertThat(underTest.load("missing")).isNull();
   }
 
+  @Test
+  public void load_is_cached_until_settings_are_invalidated() {
+    insertPropertyIntoDb(A_KEY, "foo");
+    assertThat(underTest.load(A_KEY)).isEqualTo("foo");
+
+    insertPropertyIntoDb(A_KEY, "bar");
+    assertThat(underTest.load(A_KEY)).isEqualTo("foo");
+
+    caches.invalidateAll(DatabaseSettingLoader.CACHE_NAME);
+    assertThat(underTest.load(A_KEY)).isEqualTo("bar");
+  }
+
   @Test
   public void null_value_in_db_is_considered_as_empty_string() {
     insertPropertyIntoDb(A_KEY, null);
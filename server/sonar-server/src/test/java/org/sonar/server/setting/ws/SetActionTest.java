@@ -47,6 +47,7 @@ import org.sonar.db.property.PropertyDbTester;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.db.property.PropertyQuery;
 import org.sonar.scanner.protocol.GsonHelper;
+import org.sonar.server.cache.TestDistributedCaches;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.component.TestComponentFinder;
 import org.sonar.server.exceptions.BadRequestException;
@@ -980,6 +981,7 @@ public class SetActionTest {
     private boolean wasCalled = false;
 
     private FakeSettingsNotifier(DbClient dbClient) {
+      super(TestDistributedCaches.create());
       this.dbClient = dbClient;
     }
 
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.source;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import java.io.IOException;
 import java.util.List;
@@ -34,7 +35,10 @@ import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.source.index.FileSourceTesting;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SourceServiceTest {
@@ -91,6 +95,54 @@ public class SourceServiceTest {
     assertThat(lines).containsExactly("HTML_5", "HTML_6", "HTML_7");
   }
 
+  @Test
+  public void get_range_of_lines_with_html() throws Exception {
+    when(htmlDecorator.getDecoratedSourceAsHtml("SOURCE_5", "HIGHLIGHTING_5", "SYMBOLS_5")).thenReturn("HTML_5");
+    when(htmlDecorator.getDecoratedSourceAsHtml("SOURCE_6", "HIGHLIGHTING_6", "SYMBOLS_6")).thenReturn("HTML_6");
+
+    Optional<Iterable<String>> linesOpt = underTest.getLinesWithHtml(dbTester.getSession(), FILE_UUID, 5, 6, (line, html) -> line.getLine() + ":" + html);
+    assertThat(linesOpt.isPresent()).isTrue();
+    assertThat(linesOpt.get()).containsExactly("5:HTML_5", "6:HTML_6");
+  }
+
+  @Test
+  public void html_lines_are_decorated_once_per_data_hash() throws Exception {
+    insertFileWithDataHash("OTHER_FILE_UUID", "HASH_1");
+    when(htmlDecorator.getDecoratedSourceAsHtml(anyString(), anyString(), anyString())).thenAnswer(invocation -> "HTML_" + invocation.getArguments()[0]);
+
+    assertThat(underTest.getLinesAsHtml(dbTester.getSession(), "OTHER_FILE_UUID", 1, 2).get()).containsExactly("HTML_SOURCE_1", "HTML_SOURCE_2");
+    verify(htmlDecorator, times(2)).getDecoratedSourceAsHtml(anyString(), anyString(), anyString());
+    assertThat(underTest.getLinesAsHtml(dbTester.getSession(), "OTHER_FILE_UUID", 9, 10).get()).containsExactly("HTML_SOURCE_9", "HTML_SOURCE_10");
+    assertThat(underTest.getLinesAsHtml(dbTester.getSession(), "OTHER_FILE_UUID", 1, 2).get()).containsExactly("HTML_SOURCE_1", "HTML_SOURCE_2");
+    verify(htmlDecorator, times(4)).getDecoratedSourceAsHtml(anyString(), anyString(), anyString());
+
+    dbTester.getDbClient().fileSourceDao().update(dbTester.getSession(), dbTester.getDbClient().fileSourceDao().selectSourceByFileUuid(dbTester.getSession(), "OTHER_FILE_UUID")
+      .setDataHash("HASH_2"));
+    dbTester.commit();
+
+    assertThat(underTest.getLinesAsHtml(dbTester.getSession(), "OTHER_FILE_UUID", 1, 1).get()).containsExactly("HTML_SOURCE_1");
+    verify(htmlDecorator, times(5)).getDecoratedSourceAsHtml(anyString(), anyString(), anyString());
+  }
+
+  @Test
+  public void html_lines_are_evicted_when_their_decorated_sources_exceed_max_weight_of_cache() throws Exception {
+    insertFileWithDataHash("OTHER_FILE_UUID", "HASH_1");
+    // raw sources are less than 100 characters long, whereas decorated lines are 1_000 characters long
+    when(htmlDecorator.getDecoratedSourceAsHtml(anyString(), anyString(), anyString())).thenReturn(Strings.repeat("x", 100));
+    underTest = new SourceService(dbTester.getDbClient(), htmlDecorator, 1_000L);
+
+    underTest.getLinesAsHtml(dbTester.getSession(), "OTHER_FILE_UUID", 1, 1);
+    underTest.getLinesAsHtml(dbTester.getSession(), "OTHER_FILE_UUID", 1, 1);
+    verify(htmlDecorator, times(1)).getDecoratedSourceAsHtml(anyString(), anyString(), anyString());
+
+    underTest.getLinesAsHtml(dbTester.getSession(), "OTHER_FILE_UUID", 1, 10);
+    verify(htmlDecorator, times(10)).getDecoratedSourceAsHtml(anyString(), anyString(), anyString());
+
+    // 10 lines and 1_000 characters of HTML do not fit in cache
+    underTest.getLinesAsHtml(dbTester.getSession(), "OTHER_FILE_UUID", 1, 1);
+    verify(htmlDecorator, times(11)).getDecoratedSourceAsHtml(anyString(), anyString(), anyString());
+  }
+
   @Test
   public void getLines_fails_if_range_starts_at_zero() {
     expectedException.expect(IllegalArgumentException.class);
@@ -120,4 +172,12 @@ public class SourceServiceTest {
     assertThat(lines.isPresent()).isFalse();
   }
 
+  private void insertFileWithDataHash(String fileUuid, String dataHash) throws IOException {
+    FileSourceDto dto = new FileSourceDto();
+    dto.setFileUuid(fileUuid).setProjectUuid("PROJECT_UUID").setDataHash(dataHash);
+    dto.setSourceData(FileSourceTesting.newFakeData(10).build());
+    dbTester.getDbClient().fileSourceDao().insert(dbTester.getSession(), dto);
+    dbTester.commit();
+  }
+
 }
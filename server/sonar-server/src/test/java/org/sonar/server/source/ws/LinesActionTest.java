@@ -84,7 +84,7 @@ public class LinesActionTest {
     sourceService = new SourceService(dbTester.getDbClient(), htmlSourceDecorator);
     componentDao = new ComponentDao();
     wsTester = new WsTester(new SourcesWs(
-      new LinesAction(TestComponentFinder.from(dbTester), dbTester.getDbClient(), sourceService, htmlSourceDecorator, userSessionRule)));
+      new LinesAction(TestComponentFinder.from(dbTester), dbTester.getDbClient(), sourceService, userSessionRule)));
     project = ComponentTesting.newPrivateProjectDto(dbTester.organizations().insert(), PROJECT_UUID);
     file = newFileDto(project, null, FILE_UUID).setDbKey(FILE_KEY);
   }
@@ -37,6 +37,7 @@ import org.sonar.db.property.PropertyDto;
 import org.sonar.db.property.PropertyQuery;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.cache.StandaloneCacheInvalidationBus;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
@@ -48,6 +49,7 @@ import org.sonar.server.tester.UserSessionRule;
 import org.sonar.server.user.index.UserIndex;
 import org.sonar.server.user.index.UserIndexDefinition;
 import org.sonar.server.user.index.UserIndexer;
+import org.sonar.server.usertoken.UserTokenCache;
 import org.sonar.server.ws.TestResponse;
 import org.sonar.server.ws.WsActionTester;
 
@@ -86,9 +88,10 @@ public class DeactivateActionTest {
   private DbClient dbClient = db.getDbClient();
   private UserIndexer userIndexer = new UserIndexer(dbClient, esTester.client());
   private DbSession dbSession = db.getSession();
+  private UserTokenCache userTokenCache = new UserTokenCache(new StandaloneCacheInvalidationBus());
 
   private WsActionTester ws = new WsActionTester(new DeactivateAction(
-    dbClient, userIndexer, userSession, new UserJsonWriter(userSession), defaultOrganizationProvider));
+    dbClient, userIndexer, userSession, new UserJsonWriter(userSession), defaultOrganizationProvider, userTokenCache));
 
   @Test
   public void deactivate_user_and_delete_his_related_data() {
@@ -131,6 +134,17 @@ public class DeactivateActionTest {
     assertThat(db.getDbClient().userTokenDao().selectByLogin(dbSession, user.getLogin())).isEmpty();
   }
 
+  @Test
+  public void deactivate_user_removes_tokens_from_cache() {
+    logInAsSystemAdministrator();
+    UserDto user = insertUser(newUserDto());
+    userTokenCache.put("token-hash", user.getLogin(), userTokenCache.getGeneration());
+
+    deactivate(user.getLogin()).getInput();
+
+    assertThat(userTokenCache.getLogin("token-hash")).isEmpty();
+  }
+
   @Test
   public void deactivate_user_deletes_his_properties() {
     logInAsSystemAdministrator();
@@ -20,6 +20,9 @@
 package org.sonar.server.usertoken;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.sonar.db.user.UserTokenTesting.newUserToken;
@@ -32,6 +35,7 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
+import org.sonar.server.cache.StandaloneCacheInvalidationBus;
 
 public class UserTokenAuthenticatorTest {
   static final String GRACE_HOPPER = "grace.hopper";
@@ -46,7 +50,9 @@ public class UserTokenAuthenticatorTest {
   DbSession dbSession = db.getSession();
   TokenGenerator tokenGenerator = mock(TokenGenerator.class);
 
-  UserTokenAuthenticator underTest = new UserTokenAuthenticator(tokenGenerator, db.getDbClient());
+  UserTokenCache userTokenCache = new UserTokenCache(new StandaloneCacheInvalidationBus());
+
+  UserTokenAuthenticator underTest = new UserTokenAuthenticator(tokenGenerator, db.getDbClient(), userTokenCache);
 
   @Test
   public void return_login_when_token_hash_found_in_db() {
@@ -63,6 +69,55 @@ public class UserTokenAuthenticatorTest {
     assertThat(login.get()).isEqualTo(GRACE_HOPPER);
   }
 
+  @Test
+  public void return_login_from_cache_when_token_has_already_been_authenticated() {
+    String token = "known-token";
+    String tokenHash = "123456789";
+    when(tokenGenerator.hash(token)).thenReturn(tokenHash);
+    dbClient.userTokenDao().insert(dbSession, newUserToken().setLogin(GRACE_HOPPER).setTokenHash(tokenHash));
+    db.commit();
+    underTest.authenticate(token);
+    dbClient.userTokenDao().deleteByLogin(dbSession, GRACE_HOPPER);
+    db.commit();
+
+    Optional<String> login = underTest.authenticate(token);
+
+    assertThat(login).contains(GRACE_HOPPER);
+    assertThat(userTokenCache.getHitCount()).isEqualTo(1);
+    assertThat(userTokenCache.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void do_not_cache_unknown_token() {
+    String token = "token";
+    String tokenHash = "123456789";
+    when(tokenGenerator.hash(token)).thenReturn(tokenHash);
+    assertThat(underTest.authenticate(token)).isEmpty();
+
+    dbClient.userTokenDao().insert(dbSession, newUserToken().setLogin(GRACE_HOPPER).setTokenHash(tokenHash));
+    db.commit();
+
+    assertThat(underTest.authenticate(token)).contains(GRACE_HOPPER);
+  }
+
+  @Test
+  public void do_not_cache_token_revoked_while_being_authenticated() {
+    String token = "known-token";
+    String tokenHash = "123456789";
+    when(tokenGenerator.hash(token)).thenReturn(tokenHash);
+    DbClient revokingDbClient = mock(DbClient.class, RETURNS_DEEP_STUBS);
+    when(revokingDbClient.userTokenDao().selectByTokenHash(any(DbSession.class), eq(tokenHash))).thenAnswer(invocation -> {
+      // token is revoked after being read
+      userTokenCache.invalidateLogin(GRACE_HOPPER);
+      return com.google.common.base.Optional.of(newUserToken().setLogin(GRACE_HOPPER).setTokenHash(tokenHash));
+    });
+    underTest = new UserTokenAuthenticator(tokenGenerator, revokingDbClient, userTokenCache);
+
+    assertThat(underTest.authenticate(token)).contains(GRACE_HOPPER);
+
+    assertThat(userTokenCache.getLogin(tokenHash)).isEmpty();
+  }
+
   @Test
   public void return_absent_if_token_hash_is_not_found() {
     Optional<String> login = underTest.authenticate("unknown-token");
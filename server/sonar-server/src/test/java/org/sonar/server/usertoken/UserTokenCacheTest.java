@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.usertoken;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.server.cache.CacheInvalidationBus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class UserTokenCacheTest {
+
+  private CacheInvalidationBus bus = mock(CacheInvalidationBus.class);
+  private UserTokenCache underTest = new UserTokenCache(bus);
+
+  @Test
+  public void invalidateLogin_removes_tokens_of_user_and_publishes_invalidation_to_other_nodes() {
+    underTest.put("hash1", "john", underTest.getGeneration());
+    underTest.put("hash2", "john", underTest.getGeneration());
+    underTest.put("hash3", "jane", underTest.getGeneration());
+
+    underTest.invalidateLogin("john");
+
+    assertThat(underTest.getLogin("hash1")).isEmpty();
+    assertThat(underTest.getLogin("hash2")).isEmpty();
+    assertThat(underTest.getLogin("hash3")).contains("jane");
+    verify(bus).publish(UserTokenCache.CACHE_NAME, "john");
+  }
+
+  @Test
+  public void invalidations_received_from_other_nodes_remove_tokens_of_user() {
+    CacheInvalidationBus.Listener listener = captureListener();
+    underTest.put("hash1", "john", underTest.getGeneration());
+    underTest.put("hash2", "jane", underTest.getGeneration());
+
+    listener.onInvalidation(UserTokenCache.CACHE_NAME, "john");
+    listener.onInvalidation("other", "jane");
+
+    assertThat(underTest.getLogin("hash1")).isEmpty();
+    assertThat(underTest.getLogin("hash2")).contains("jane");
+  }
+
+  @Test
+  public void invalidation_of_all_keys_received_from_other_nodes_clears_cache() {
+    CacheInvalidationBus.Listener listener = captureListener();
+    underTest.put("hash1", "john", underTest.getGeneration());
+
+    listener.onInvalidation(UserTokenCache.CACHE_NAME, null);
+
+    assertThat(underTest.getSize()).isZero();
+  }
+
+  @Test
+  public void login_loaded_before_an_invalidation_is_not_cached() {
+    long generation = underTest.getGeneration();
+    underTest.invalidateLogin("john");
+
+    underTest.put("hash1", "john", generation);
+
+    assertThat(underTest.getLogin("hash1")).isEmpty();
+  }
+
+  @Test
+  public void login_loaded_before_an_invalidation_received_from_other_nodes_is_not_cached() {
+    CacheInvalidationBus.Listener listener = captureListener();
+    long generation = underTest.getGeneration();
+    listener.onInvalidation(UserTokenCache.CACHE_NAME, null);
+
+    underTest.put("hash1", "john", generation);
+    underTest.put("hash2", "jane", underTest.getGeneration());
+
+    assertThat(underTest.getLogin("hash1")).isEmpty();
+    assertThat(underTest.getLogin("hash2")).contains("jane");
+  }
+
+  private CacheInvalidationBus.Listener captureListener() {
+    ArgumentCaptor<CacheInvalidationBus.Listener> captor = ArgumentCaptor.forClass(CacheInvalidationBus.Listener.class);
+    verify(bus).addListener(captor.capture());
+    return captor.getValue();
+  }
+}
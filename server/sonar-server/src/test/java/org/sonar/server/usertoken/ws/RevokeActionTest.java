@@ -29,9 +29,11 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.user.UserTokenDto;
+import org.sonar.server.cache.StandaloneCacheInvalidationBus;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.UnauthorizedException;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.usertoken.UserTokenCache;
 import org.sonar.server.ws.TestRequest;
 import org.sonar.server.ws.WsActionTester;
 
@@ -55,12 +57,13 @@ public class RevokeActionTest {
 
   private DbClient dbClient = db.getDbClient();
   private final DbSession dbSession = db.getSession();
+  private UserTokenCache userTokenCache = new UserTokenCache(new StandaloneCacheInvalidationBus());
   private WsActionTester ws;
 
   @Before
   public void setUp() {
     ws = new WsActionTester(
-      new RevokeAction(dbClient, userSession));
+      new RevokeAction(dbClient, userSession, userTokenCache));
   }
 
   @Test
@@ -78,6 +81,19 @@ public class RevokeActionTest {
     assertThat(dbClient.userTokenDao().selectByLogin(dbSession, ADA_LOVELACE)).extracting("name").containsOnly("token-to-delete");
   }
 
+  @Test
+  public void remove_tokens_of_user_from_cache() {
+    logInAsSystemAdministrator();
+    insertUserToken(newUserToken().setLogin(GRACE_HOPPER).setName("token-to-delete"));
+    userTokenCache.put("grace-token-hash", GRACE_HOPPER, userTokenCache.getGeneration());
+    userTokenCache.put("ada-token-hash", ADA_LOVELACE, userTokenCache.getGeneration());
+
+    newRequest(GRACE_HOPPER, "token-to-delete");
+
+    assertThat(userTokenCache.getLogin("grace-token-hash")).isEmpty();
+    assertThat(userTokenCache.getLogin("ada-token-hash")).contains(ADA_LOVELACE);
+  }
+
   @Test
   public void user_can_delete_its_own_tokens() {
     userSession.logIn(GRACE_HOPPER);
@@ -24,8 +24,10 @@ import org.junit.Test;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
+import org.sonar.server.cache.StandaloneCacheInvalidationBus;
 import org.sonar.server.user.UserSession;
 import org.sonar.server.usertoken.TokenGenerator;
+import org.sonar.server.usertoken.UserTokenCache;
 import org.sonar.server.ws.WsTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -45,7 +47,7 @@ public class UserTokensWsTest {
 
     ws = new WsTester(new UserTokensWs(
       new GenerateAction(dbClient, userSession, system, tokenGenerator),
-      new RevokeAction(dbClient, userSession),
+      new RevokeAction(dbClient, userSession, new UserTokenCache(new StandaloneCacheInvalidationBus())),
       new SearchAction(dbClient, userSession)));
   }
 
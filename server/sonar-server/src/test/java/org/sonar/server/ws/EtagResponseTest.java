@@ -0,0 +1,84 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EtagResponseTest {
+
+  private HttpServletRequest request = mock(HttpServletRequest.class);
+  private HttpServletResponse response = mock(HttpServletResponse.class);
+  private ServletOutputStream output = mock(ServletOutputStream.class);
+
+  @Before
+  public void setUp() throws Exception {
+    when(response.getOutputStream()).thenReturn(output);
+  }
+
+  @Test
+  public void send_etag_of_body_written_with_writer() throws Exception {
+    when(response.getCharacterEncoding()).thenReturn("UTF-8");
+    EtagResponse underTest = new EtagResponse(request, response);
+
+    underTest.getWriter().write("m\u00e9trics");
+    underTest.finish();
+
+    byte[] bytes = "m\u00e9trics".getBytes(StandardCharsets.UTF_8);
+    verify(response).setHeader("ETag", "\"" + DigestUtils.sha1Hex(bytes) + "\"");
+    verify(response).setContentLength(bytes.length);
+    verify(output).write(any(byte[].class), eq(0), eq(bytes.length));
+  }
+
+  @Test
+  public void stream_body_without_etag_when_bigger_than_buffer() throws Exception {
+    EtagResponse underTest = new EtagResponse(request, response, 4);
+    underTest.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
+
+    underTest.getOutputStream().write("abc".getBytes(StandardCharsets.UTF_8));
+    verify(output, never()).write(any(byte[].class), anyInt(), anyInt());
+    underTest.getOutputStream().write("defgh".getBytes(StandardCharsets.UTF_8));
+    underTest.finish();
+
+    InOrder inOrder = inOrder(response, output);
+    inOrder.verify(response).setHeader("Cache-Control", "private, no-cache");
+    inOrder.verify(response).setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
+    inOrder.verify(output).write(any(byte[].class), eq(0), eq(3));
+    inOrder.verify(output).write(any(byte[].class), eq(0), eq(5));
+    verify(response, never()).setHeader(eq("ETag"), anyString());
+    verify(response, never()).setContentLength(anyInt());
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ParallelLoaderTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private DbClient dbClient = mock(DbClient.class);
+  private MapSettings settings = new MapSettings();
+  private ParallelLoader underTest = new ParallelLoader(dbClient, settings.asConfig());
+
+  @After
+  public void tearDown() {
+    underTest.stop();
+  }
+
+  @Test
+  public void execute_each_task_with_its_own_session() {
+    DbSession session1 = mock(DbSession.class);
+    DbSession session2 = mock(DbSession.class);
+    DbSession session3 = mock(DbSession.class);
+    when(dbClient.openSession(false)).thenReturn(session1, session2, session3);
+    Set<DbSession> usedSessions = ConcurrentHashMap.newKeySet();
+
+    underTest.newBatch("foo")
+      .add(usedSessions::add)
+      .add(usedSessions::add)
+      .add(usedSessions::add)
+      .execute();
+
+    assertThat(usedSessions).containsOnly(session1, session2, session3);
+    verify(dbClient, times(3)).openSession(false);
+    verify(session1).close();
+    verify(session2).close();
+    verify(session3).close();
+    verify(session1, times(0)).commit();
+  }
+
+  @Test
+  public void first_task_is_executed_by_calling_thread() {
+    when(dbClient.openSession(false)).thenReturn(mock(DbSession.class));
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    underTest.newBatch("foo")
+      .add(s -> threads.add(Thread.currentThread().getName()))
+      .execute();
+
+    assertThat(threads).containsExactly(Thread.currentThread().getName());
+  }
+
+  @Test
+  public void execute_empty_batch() {
+    underTest.newBatch("foo").execute();
+
+    verify(dbClient, times(0)).openSession(false);
+  }
+
+  @Test
+  public void propagate_runtime_exception_of_task() {
+    when(dbClient.openSession(false)).thenReturn(mock(DbSession.class));
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("bad request");
+
+    underTest.newBatch("foo")
+      .add(s -> {
+        // nothing to do
+      })
+      .add(s -> {
+        throw new IllegalArgumentException("bad request");
+      })
+      .execute();
+  }
+
+  @Test
+  public void cancel_other_tasks_when_a_task_fails() throws InterruptedException {
+    when(dbClient.openSession(false)).thenReturn(mock(DbSession.class));
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+
+    try {
+      underTest.newBatch("foo")
+        .add(s -> {
+          awaitQuietly(started);
+          throw new IllegalStateException("failure");
+        })
+        .add(s -> {
+          started.countDown();
+          try {
+            Thread.sleep(60_000L);
+          } catch (InterruptedException e) {
+            interrupted.countDown();
+          }
+        })
+        .execute();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("failure");
+    }
+
+    assertThat(interrupted.await(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void fail_and_cancel_tasks_when_timeout_is_reached() throws InterruptedException {
+    when(dbClient.openSession(false)).thenReturn(mock(DbSession.class));
+    CountDownLatch interrupted = new CountDownLatch(1);
+    AtomicBoolean failed = new AtomicBoolean(false);
+
+    try {
+      underTest.newBatch("foo")
+        .setTimeout(100, TimeUnit.MILLISECONDS)
+        .add(s -> {
+          // nothing to do
+        })
+        .add(s -> {
+          try {
+            Thread.sleep(60_000L);
+          } catch (InterruptedException e) {
+            interrupted.countDown();
+          }
+        })
+        .execute();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to load foo in less than 100 ms");
+      failed.set(true);
+    }
+
+    assertThat(failed.get()).isTrue();
+    assertThat(interrupted.await(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void execute_tasks_in_calling_thread_when_pool_is_saturated() {
+    settings.setProperty("sonar.web.parallelLoading.threads", 1);
+    underTest.stop();
+    underTest = new ParallelLoader(dbClient, settings.asConfig());
+    when(dbClient.openSession(false)).thenReturn(mock(DbSession.class));
+    CountDownLatch release = new CountDownLatch(1);
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    underTest.newBatch("foo")
+      .add(s -> release.countDown())
+      .add(s -> awaitQuietly(release))
+      .add(s -> threads.add(Thread.currentThread().getName()))
+      .execute();
+
+    assertThat(threads).containsExactly(Thread.currentThread().getName());
+  }
+
+  @Test
+  public void fail_if_batch_is_executed_twice() {
+    ParallelLoader.Batch batch = underTest.newBatch("foo");
+    batch.execute();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Batch [foo] is already executed");
+
+    batch.execute();
+  }
+
+  @Test
+  public void fail_if_number_of_threads_is_not_positive() {
+    settings.setProperty("sonar.web.parallelLoading.threads", 0);
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Property sonar.web.parallelLoading.threads must be positive. Got 0");
+
+    new ParallelLoader(dbClient, settings.asConfig());
+  }
+
+  @Test
+  public void fail_if_timeout_is_not_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Timeout must be positive. Got 0");
+
+    underTest.newBatch("foo").setTimeout(0, TimeUnit.SECONDS);
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.core.util.Protobuf;
+import org.sonarqube.ws.Issues;
+import org.sonarqube.ws.MediaTypes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProtobufStreamWriterTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private DumbResponse response = new DumbResponse();
+
+  @Test
+  public void write_delimited_protobuf_messages() {
+    try (ProtobufStreamWriter writer = ProtobufStreamWriter.delimited(response)) {
+      writer.write(Issues.Issue.newBuilder().setKey("I1").build());
+      writer.write(Issues.Issue.newBuilder().setKey("I2").build());
+    }
+
+    assertThat(response.stream().mediaType()).isEqualTo(MediaTypes.PROTOBUF);
+    assertThat(Protobuf.readStream(new ByteArrayInputStream(response.getFlushedOutput()), Issues.Issue.parser()))
+      .extracting(Issues.Issue::getKey)
+      .containsExactly("I1", "I2");
+  }
+
+  @Test
+  public void write_no_messages() {
+    try (ProtobufStreamWriter writer = ProtobufStreamWriter.delimited(response)) {
+      // nothing to write
+    }
+
+    assertThat(response.stream().mediaType()).isEqualTo(MediaTypes.PROTOBUF);
+    assertThat(response.getFlushedOutput()).isEmpty();
+  }
+
+  @Test
+  public void flush_output_every_flush_interval() throws IOException {
+    ProtobufStreamWriter writer = ProtobufStreamWriter.delimited(response).setFlushInterval(2);
+
+    writer.write(Issues.Issue.newBuilder().setKey("I1").build());
+    assertThat(response.getFlushedOutput()).isEmpty();
+
+    writer.write(Issues.Issue.newBuilder().setKey("I2").build());
+    assertThat(response.getFlushedOutput()).isNotEmpty();
+    writer.close();
+  }
+
+  @Test
+  public void fail_if_flush_interval_is_negative() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Flush interval must be positive or zero");
+
+    ProtobufStreamWriter.delimited(response).setFlushInterval(-1);
+  }
+}
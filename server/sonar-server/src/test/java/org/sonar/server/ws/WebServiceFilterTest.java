@@ -19,12 +19,14 @@
  */
 package org.sonar.server.ws;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -34,10 +36,16 @@ import org.sonar.api.server.ws.RequestHandler;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.sonar.server.ws.WebServiceFilterTest.WsUrl.newWsUrl;
 
@@ -106,6 +114,72 @@ public class WebServiceFilterTest {
     verify(webServiceEngine).execute(any(ServletRequest.class), any(org.sonar.server.ws.ServletResponse.class));
   }
 
+  @Test
+  public void send_etag_of_web_services_called_by_scanners() throws Exception {
+    underTest = new WebServiceFilter(webServiceEngine);
+    mockGetRequest("/api/metrics/search.protobuf");
+    mockResponseBody("metrics");
+
+    underTest.doFilter(request, response, chain);
+
+    verify(response).setHeader("Cache-Control", "private, no-cache");
+    verify(response).setHeader("ETag", "\"" + DigestUtils.sha1Hex("metrics") + "\"");
+    verify(response).setContentLength(7);
+    verify(responseOutput).write(any(byte[].class), eq(0), eq(7));
+  }
+
+  @Test
+  public void send_304_when_etag_matches() throws Exception {
+    underTest = new WebServiceFilter(webServiceEngine);
+    mockGetRequest("/api/metrics/search");
+    when(request.getHeader("If-None-Match")).thenReturn("\"" + DigestUtils.sha1Hex("metrics") + "\"");
+    mockResponseBody("metrics");
+
+    underTest.doFilter(request, response, chain);
+
+    verify(response).setStatus(304);
+    verifyZeroInteractions(responseOutput);
+  }
+
+  @Test
+  public void do_not_send_etag_of_other_web_services() throws Exception {
+    underTest = new WebServiceFilter(webServiceEngine);
+    mockGetRequest("/api/issues/search");
+    mockResponseBody("issues");
+
+    underTest.doFilter(request, response, chain);
+
+    verify(response, never()).setHeader(eq("ETag"), anyString());
+    verify(response).setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
+  }
+
+  @Test
+  public void do_not_send_etag_of_web_services_returning_secured_settings() throws Exception {
+    underTest = new WebServiceFilter(webServiceEngine);
+    mockResponseBody("settings");
+
+    for (String path : asList("/api/settings/values.protobuf", "/batch/project.protobuf")) {
+      mockGetRequest(path);
+      underTest.doFilter(request, response, chain);
+    }
+
+    verify(response, never()).setHeader(eq("ETag"), anyString());
+    verify(response, never()).setHeader("Cache-Control", "private, no-cache");
+  }
+
+  private void mockGetRequest(String path) {
+    when(request.getMethod()).thenReturn("GET");
+    when(request.getRequestURI()).thenReturn(path);
+  }
+
+  private void mockResponseBody(String body) {
+    doAnswer(invocation -> {
+      Response wsResponse = (Response) invocation.getArguments()[1];
+      wsResponse.stream().output().write(body.getBytes(StandardCharsets.UTF_8));
+      return null;
+    }).when(webServiceEngine).execute(any(Request.class), any(Response.class));
+  }
+
   private void initWebServiceEngine(WsUrl... wsUrls) {
     List<WebService.Controller> controllers = new ArrayList<>();
 
@@ -112,8 +112,11 @@ public class ComponentContainer implements ContainerPopulator.Container {
    */
   protected ComponentContainer(ComponentContainer parent) {
     this.parent = parent;
-    this.pico = parent.pico.makeChildContainer();
-    this.parent.children.add(this);
+    // child containers can be created and stopped concurrently, for example when modules are scanned in parallel
+    synchronized (parent.children) {
+      this.pico = parent.pico.makeChildContainer();
+      this.parent.children.add(this);
+    }
     this.propertyDefinitions = parent.propertyDefinitions;
     this.componentKeys = new ComponentKeys();
     addSingleton(this);
@@ -193,7 +196,7 @@ public class ComponentContainer implements ContainerPopulator.Container {
   private void stopChildren() {
     // loop over a copy of list of children in reverse order, both to stop last added child first and because children
     // remove themselves from the list of children of their parent (ie. changing this.children)
-    Lists.reverse(new ArrayList<>(this.children))
+    Lists.reverse(getChildren())
       .forEach(ComponentContainer::stopComponents);
   }
 
@@ -294,14 +297,16 @@ public class ComponentContainer implements ContainerPopulator.Container {
 
   public ComponentContainer removeChild(ComponentContainer childToBeRemoved) {
     requireNonNull(childToBeRemoved);
-    Iterator<ComponentContainer> childrenIterator = children.iterator();
-    while (childrenIterator.hasNext()) {
-      ComponentContainer child = childrenIterator.next();
-      if (child == childToBeRemoved) {
-        if (pico.removeChildContainer(child.pico)) {
-          childrenIterator.remove();
+    synchronized (children) {
+      Iterator<ComponentContainer> childrenIterator = children.iterator();
+      while (childrenIterator.hasNext()) {
+        ComponentContainer child = childrenIterator.next();
+        if (child == childToBeRemoved) {
+          if (pico.removeChildContainer(child.pico)) {
+            childrenIterator.remove();
+          }
+          break;
         }
-        break;
       }
     }
     return this;
@@ -329,7 +334,9 @@ public class ComponentContainer implements ContainerPopulator.Container {
   }
 
   public List<ComponentContainer> getChildren() {
-    return copyOf(children);
+    synchronized (children) {
+      return copyOf(children);
+    }
   }
 
   public MutablePicoContainer getPicoContainer() {
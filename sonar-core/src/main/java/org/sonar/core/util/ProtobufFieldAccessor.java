@@ -0,0 +1,43 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.util;
+
+import com.google.protobuf.Message;
+
+/**
+ * Reads the value of a field of Protocol Buffers messages.
+ *
+ * @see ProtobufFieldAccessors
+ */
+interface ProtobufFieldAccessor {
+
+  /**
+   * Whether a singular field is present. Must not be called on repeated fields.
+   */
+  boolean has(Message message);
+
+  /**
+   * Value of a singular field, or {@link java.util.Collection} of values of a repeated field.
+   * Values of enum fields are either {@link com.google.protobuf.Descriptors.EnumValueDescriptor}
+   * or {@link com.google.protobuf.ProtocolMessageEnum}.
+   */
+  Object get(Message message);
+
+}
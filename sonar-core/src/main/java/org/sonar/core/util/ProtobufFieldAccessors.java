@@ -0,0 +1,225 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.util;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import com.google.protobuf.ProtocolMessageEnum;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Creates the {@link ProtobufFieldAccessor} of fields of Protocol Buffers messages.
+ * <p>
+ * When possible, fields are read through the accessors generated by protoc ({@code hasFoo()}, {@code getFoo()}
+ * and {@code getFooList()}), which are bound once per field with {@link LambdaMetafactory}. That avoids the reflection
+ * of {@link Message#hasField(Descriptors.FieldDescriptor)} and {@link Message#getField(Descriptors.FieldDescriptor)}
+ * on every call. Messages without generated accessors (map fields, proto3 scalar fields, dynamic messages, classes
+ * not visible from this class loader, ...) fall back to reflection.
+ * </p>
+ */
+final class ProtobufFieldAccessors {
+
+  private ProtobufFieldAccessors() {
+    // only statics
+  }
+
+  static ProtobufFieldAccessor of(Message message, Descriptors.FieldDescriptor fieldDescriptor) {
+    if (!fieldDescriptor.isMapField()) {
+      try {
+        ProtobufFieldAccessor accessor = generate(message.getClass(), fieldDescriptor);
+        if (accessor != null) {
+          // fail fast, for example if the message class is not visible from this class loader
+          Message defaultInstance = message.getDefaultInstanceForType();
+          if (!fieldDescriptor.isRepeated()) {
+            accessor.has(defaultInstance);
+          }
+          accessor.get(defaultInstance);
+          return accessor;
+        }
+      } catch (ReflectiveOperationException | LambdaConversionException | LinkageError e) {
+        // the field can still be read by reflection
+      }
+    }
+    return new ReflectionAccessor(fieldDescriptor);
+  }
+
+  @CheckForNull
+  private static ProtobufFieldAccessor generate(Class<? extends Message> messageClass, Descriptors.FieldDescriptor fieldDescriptor)
+    throws ReflectiveOperationException, LambdaConversionException {
+    Class<?> valueClass = valueClassOf(fieldDescriptor.getJavaType());
+    if (valueClass == null) {
+      return null;
+    }
+    String camelCaseName = toCamelCase(fieldDescriptor.getName());
+    if (fieldDescriptor.isRepeated()) {
+      Method getter = findMethod(messageClass, "get" + camelCaseName + "List", List.class);
+      return getter == null ? null : new GeneratedAccessor(null, toFunction(getter));
+    }
+    Method hasser = findMethod(messageClass, "has" + camelCaseName, boolean.class);
+    Method getter = findMethod(messageClass, "get" + camelCaseName, valueClass);
+    if (hasser == null || getter == null) {
+      return null;
+    }
+    return new GeneratedAccessor(toPredicate(hasser), toFunction(getter));
+  }
+
+  /**
+   * Only the types supported by {@link ProtobufJsonFormat}. The others are read by reflection, so that
+   * the JSON format fails with the expected error.
+   */
+  @CheckForNull
+  private static Class<?> valueClassOf(Descriptors.FieldDescriptor.JavaType javaType) {
+    switch (javaType) {
+      case INT:
+        return int.class;
+      case LONG:
+        return long.class;
+      case DOUBLE:
+        return double.class;
+      case BOOLEAN:
+        return boolean.class;
+      case STRING:
+        return String.class;
+      case ENUM:
+        return ProtocolMessageEnum.class;
+      case MESSAGE:
+        return Message.class;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Only the methods generated by protoc in the message class are accepted, so that a field can't be bound to a
+   * method of {@link Message} or {@link Object}, like {@code getClass()} for a field named "class".
+   */
+  @CheckForNull
+  private static Method findMethod(Class<?> messageClass, String name, Class<?> expectedReturnType) {
+    try {
+      Method method = messageClass.getMethod(name);
+      boolean generated = method.getDeclaringClass().equals(messageClass);
+      return generated && expectedReturnType.isAssignableFrom(method.getReturnType()) ? method : null;
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Same conversion of field names as protoc, for example "foo_bar2baz" is converted to "FooBar2Baz".
+   */
+  static String toCamelCase(String fieldName) {
+    StringBuilder sb = new StringBuilder(fieldName.length());
+    boolean capitalizeNext = true;
+    for (int i = 0; i < fieldName.length(); i++) {
+      char c = fieldName.charAt(i);
+      if (c >= 'a' && c <= 'z') {
+        sb.append(capitalizeNext ? Character.toUpperCase(c) : c);
+        capitalizeNext = false;
+      } else if (c >= 'A' && c <= 'Z') {
+        sb.append(c);
+        capitalizeNext = false;
+      } else if (c >= '0' && c <= '9') {
+        sb.append(c);
+        capitalizeNext = true;
+      } else {
+        capitalizeNext = true;
+      }
+    }
+    return sb.toString();
+  }
+
+  private static Function<Message, Object> toFunction(Method getter) throws ReflectiveOperationException, LambdaConversionException {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    MethodHandle handle = lookup.unreflect(getter);
+    CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+      MethodType.methodType(Object.class, Object.class), handle, handle.type().wrap());
+    return (Function<Message, Object>) newLambda(callSite);
+  }
+
+  private static Predicate<Message> toPredicate(Method hasser) throws ReflectiveOperationException, LambdaConversionException {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    MethodHandle handle = lookup.unreflect(hasser);
+    CallSite callSite = LambdaMetafactory.metafactory(lookup, "test", MethodType.methodType(Predicate.class),
+      MethodType.methodType(boolean.class, Object.class), handle, handle.type());
+    return (Predicate<Message>) newLambda(callSite);
+  }
+
+  private static Object newLambda(CallSite callSite) throws InvocationTargetException {
+    try {
+      return callSite.getTarget().invoke();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      // MethodHandle#invoke() declares Throwable, but the factory of a lambda does not throw checked exceptions
+      throw new InvocationTargetException(e);
+    }
+  }
+
+  static class ReflectionAccessor implements ProtobufFieldAccessor {
+    private final Descriptors.FieldDescriptor fieldDescriptor;
+
+    private ReflectionAccessor(Descriptors.FieldDescriptor fieldDescriptor) {
+      this.fieldDescriptor = fieldDescriptor;
+    }
+
+    @Override
+    public boolean has(Message message) {
+      return message.hasField(fieldDescriptor);
+    }
+
+    @Override
+    public Object get(Message message) {
+      return message.getField(fieldDescriptor);
+    }
+  }
+
+  static class GeneratedAccessor implements ProtobufFieldAccessor {
+    @CheckForNull
+    private final Predicate<Message> hasser;
+    private final Function<Message, Object> getter;
+
+    private GeneratedAccessor(@Nullable Predicate<Message> hasser, Function<Message, Object> getter) {
+      this.hasser = hasser;
+      this.getter = getter;
+    }
+
+    @Override
+    public boolean has(Message message) {
+      return hasser != null && hasser.test(message);
+    }
+
+    @Override
+    public Object get(Message message) {
+      return getter.apply(message);
+    }
+  }
+}
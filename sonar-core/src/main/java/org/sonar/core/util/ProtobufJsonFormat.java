@@ -20,12 +20,14 @@
 package org.sonar.core.util;
 
 import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.MapEntry;
 import com.google.protobuf.Message;
+import com.google.protobuf.ProtocolMessageEnum;
 import java.io.StringWriter;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.sonar.api.utils.text.JsonWriter;
 
 /**
@@ -132,23 +134,38 @@ public class ProtobufJsonFormat {
   }
 
   static class MessageType {
-    private static final Map<Class<? extends Message>, MessageType> TYPES_BY_CLASS = new HashMap<>();
+    private static final Map<Class<? extends Message>, MessageType> TYPES_BY_CLASS = new ConcurrentHashMap<>();
+    private static final Map<Descriptors.Descriptor, MessageType> DYNAMIC_TYPES_BY_DESCRIPTOR = new ConcurrentHashMap<>();
 
     private final Descriptors.FieldDescriptor[] fieldDescriptors;
+    private final ProtobufFieldAccessor[] fieldAccessors;
+    private final Descriptors.FieldDescriptor[] mapValueDescriptors;
     private final boolean doesWrapRepeated;
 
-    private MessageType(Descriptors.Descriptor descriptor) {
+    private MessageType(Message message) {
+      Descriptors.Descriptor descriptor = message.getDescriptorForType();
       this.fieldDescriptors = descriptor.getFields().toArray(new Descriptors.FieldDescriptor[descriptor.getFields().size()]);
+      this.fieldAccessors = new ProtobufFieldAccessor[fieldDescriptors.length];
+      this.mapValueDescriptors = new Descriptors.FieldDescriptor[fieldDescriptors.length];
+      for (int i = 0; i < fieldDescriptors.length; i++) {
+        fieldAccessors[i] = ProtobufFieldAccessors.of(message, fieldDescriptors[i]);
+        if (fieldDescriptors[i].isMapField()) {
+          mapValueDescriptors[i] = fieldDescriptors[i].getMessageType().findFieldByName("value");
+        }
+      }
       this.doesWrapRepeated = fieldDescriptors.length == 1 && fieldDescriptors[0].isRepeated() && descriptor.getName().equalsIgnoreCase(fieldDescriptors[0].getName());
     }
 
     static MessageType of(Message message) {
-      MessageType type = TYPES_BY_CLASS.get(message.getClass());
-      if (type == null) {
-        type = new MessageType(message.getDescriptorForType());
-        TYPES_BY_CLASS.put(message.getClass(), type);
+      if (message instanceof DynamicMessage) {
+        // all the dynamic messages have the same class, whatever their type
+        return DYNAMIC_TYPES_BY_DESCRIPTOR.computeIfAbsent(message.getDescriptorForType(), d -> new MessageType(message));
       }
-      return type;
+      return TYPES_BY_CLASS.computeIfAbsent(message.getClass(), c -> new MessageType(message));
+    }
+
+    ProtobufFieldAccessor[] fieldAccessors() {
+      return fieldAccessors;
     }
   }
 
@@ -169,17 +186,19 @@ public class ProtobufJsonFormat {
 
   private static void writeMessage(Message message, JsonWriter writer) {
     MessageType type = MessageType.of(message);
-    for (Descriptors.FieldDescriptor fieldDescriptor : type.fieldDescriptors) {
+    for (int i = 0; i < type.fieldDescriptors.length; i++) {
+      Descriptors.FieldDescriptor fieldDescriptor = type.fieldDescriptors[i];
+      ProtobufFieldAccessor fieldAccessor = type.fieldAccessors[i];
       if (fieldDescriptor.isRepeated()) {
         writer.name(fieldDescriptor.getName());
         if (fieldDescriptor.isMapField()) {
-          writeMap((Collection<MapEntry>) message.getField(fieldDescriptor), writer);
+          writeMap((Collection<MapEntry>) fieldAccessor.get(message), type.mapValueDescriptors[i], writer);
         } else {
-          writeArray(writer, fieldDescriptor, (Collection) message.getField(fieldDescriptor));
+          writeArray(writer, fieldDescriptor, (Collection) fieldAccessor.get(message));
         }
-      } else if (message.hasField(fieldDescriptor)) {
+      } else if (fieldAccessor.has(message)) {
         writer.name(fieldDescriptor.getName());
-        Object fieldValue = message.getField(fieldDescriptor);
+        Object fieldValue = fieldAccessor.get(message);
         writeFieldValue(fieldDescriptor, fieldValue, writer);
       }
     }
@@ -193,12 +212,11 @@ public class ProtobufJsonFormat {
     writer.endArray();
   }
 
-  private static void writeMap(Collection<MapEntry> mapEntries, JsonWriter writer) {
+  private static void writeMap(Collection<MapEntry> mapEntries, Descriptors.FieldDescriptor valueDescriptor, JsonWriter writer) {
     writer.beginObject();
     for (MapEntry mapEntry : mapEntries) {
       // Key fields are always double-quoted in json
       writer.name(mapEntry.getKey().toString());
-      Descriptors.FieldDescriptor valueDescriptor = mapEntry.getDescriptorForType().findFieldByName("value");
       writeFieldValue(valueDescriptor, mapEntry.getValue(), writer);
     }
     writer.endObject();
@@ -222,7 +240,7 @@ public class ProtobufJsonFormat {
         writer.value((String) value);
         break;
       case ENUM:
-        writer.value(((Descriptors.EnumValueDescriptor) value).getName());
+        writer.value(enumValueName(value));
         break;
       case MESSAGE:
         writeMessageValue((Message) value, writer);
@@ -232,14 +250,25 @@ public class ProtobufJsonFormat {
     }
   }
 
+  /**
+   * Values of enum fields are {@link Descriptors.EnumValueDescriptor} when read by reflection and
+   * generated enums when read by generated accessors.
+   */
+  private static String enumValueName(Object value) {
+    if (value instanceof Descriptors.EnumValueDescriptor) {
+      return ((Descriptors.EnumValueDescriptor) value).getName();
+    }
+    return ((ProtocolMessageEnum) value).getValueDescriptor().getName();
+  }
+
   private static void writeMessageValue(Message message, JsonWriter writer) {
     MessageType messageType = MessageType.of(message);
     if (messageType.doesWrapRepeated) {
       Descriptors.FieldDescriptor repeatedDescriptor = messageType.fieldDescriptors[0];
       if (repeatedDescriptor.isMapField()) {
-        writeMap((Collection<MapEntry>) message.getField(repeatedDescriptor), writer);
+        writeMap((Collection<MapEntry>) messageType.fieldAccessors[0].get(message), messageType.mapValueDescriptors[0], writer);
       } else {
-        writeArray(writer, repeatedDescriptor, (Collection) message.getField(repeatedDescriptor));
+        writeArray(writer, repeatedDescriptor, (Collection) messageType.fieldAccessors[0].get(message));
       }
     } else {
       writer.beginObject();
@@ -20,6 +20,9 @@
 package org.sonar.core.util;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
 import java.io.StringWriter;
 import org.junit.Rule;
 import org.junit.Test;
@@ -210,6 +213,71 @@ public class ProtobufJsonFormatTest {
     assertThat(toJson(msg.build())).isEqualTo("{\"catalogs\":{\"numbers\":{\"one\":\"un\",\"two\":\"deux\"}}}");
   }
 
+  @Test
+  public void read_fields_with_generated_accessors() {
+    ProtobufFieldAccessor[] accessors = ProtobufJsonFormat.MessageType.of(PrimitiveTypeMsg.getDefaultInstance()).fieldAccessors();
+
+    // stringField, intField, longField, doubleField, booleanField, enumField
+    for (int i = 0; i < 6; i++) {
+      assertThat(accessors[i]).isInstanceOf(ProtobufFieldAccessors.GeneratedAccessor.class);
+    }
+    // bytes are not supported by the JSON format
+    assertThat(accessors[6]).isInstanceOf(ProtobufFieldAccessors.ReflectionAccessor.class);
+    // nested
+    assertThat(accessors[7]).isInstanceOf(ProtobufFieldAccessors.GeneratedAccessor.class);
+    assertThat(ProtobufJsonFormat.MessageType.of(TestArray.getDefaultInstance()).fieldAccessors())
+      .hasOnlyElementsOfType(ProtobufFieldAccessors.GeneratedAccessor.class);
+  }
+
+  @Test
+  public void read_map_fields_by_reflection() {
+    assertThat(ProtobufJsonFormat.MessageType.of(TestMap.getDefaultInstance()).fieldAccessors())
+      .hasOnlyElementsOfType(ProtobufFieldAccessors.ReflectionAccessor.class);
+  }
+
+  @Test
+  public void convert_field_names_to_camel_case_as_protoc() {
+    assertThat(ProtobufFieldAccessors.toCamelCase("label")).isEqualTo("Label");
+    assertThat(ProtobufFieldAccessors.toCamelCase("stringField")).isEqualTo("StringField");
+    assertThat(ProtobufFieldAccessors.toCamelCase("effort_total")).isEqualTo("EffortTotal");
+    assertThat(ProtobufFieldAccessors.toCamelCase("foo_bar2baz")).isEqualTo("FooBar2Baz");
+  }
+
+  @Test
+  public void write_same_json_as_reflection_when_fields_are_read_with_generated_accessors() throws Exception {
+    assertSameJsonAsReflection(PrimitiveTypeMsg.newBuilder()
+      .setStringField("")
+      .setIntField(-1)
+      .setLongField(Long.MAX_VALUE)
+      .setDoubleField(1.0E10)
+      .setBooleanField(false)
+      .setEnumField(org.sonar.core.test.Test.FakeEnum.BLUE)
+      .setNested(NestedMsg.newBuilder().setLabel("nested"))
+      .build());
+    assertSameJsonAsReflection(PrimitiveTypeMsg.newBuilder()
+      .setIntField(Integer.MIN_VALUE)
+      .setDoubleField(-0.0)
+      .setBooleanField(true)
+      .build());
+    assertSameJsonAsReflection(PrimitiveTypeMsg.getDefaultInstance());
+    assertSameJsonAsReflection(TestArray.newBuilder()
+      .addStrings("one").addStrings("two")
+      .addNesteds(NestedMsg.newBuilder().setLabel("nested"))
+      .build());
+    assertSameJsonAsReflection(TestArray.getDefaultInstance());
+  }
+
+  /**
+   * Dynamic messages have no generated accessors, so all their fields are read by reflection
+   */
+  private static void assertSameJsonAsReflection(Message msg) throws InvalidProtocolBufferException {
+    DynamicMessage dynamicMsg = DynamicMessage.parseFrom(msg.getDescriptorForType(), msg.toByteString());
+    assertThat(ProtobufJsonFormat.MessageType.of(dynamicMsg).fieldAccessors())
+      .hasOnlyElementsOfType(ProtobufFieldAccessors.ReflectionAccessor.class);
+
+    assertThat(toJson(msg)).isEqualTo(toJson(dynamicMsg));
+  }
+
   @Test
   public void constructor_is_private() throws Exception {
     assertThat(TestUtils.hasOnlyPrivateConstructors(ProtobufJsonFormat.class)).isTrue();
@@ -0,0 +1,201 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.detector.suffixarray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.ClonePart;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+
+/**
+ * Blocks of all resources of an index, laid out one after another in a single text.
+ * <p>
+ * Blocks of a resource are ordered by index. A resource is split in several segments when indexes of its blocks are not
+ * consecutive, and each segment is considered to be followed by a unique terminator, so that a clone never spans two
+ * segments. Data is stored in flat arrays in the same way as in {@link org.sonar.duplications.index.PackedMemoryCloneIndex}.
+ * </p>
+ */
+final class BlocksText {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+  private static final Comparator<Block> BLOCK_COMPARATOR = (o1, o2) -> o1.getIndexInFile() - o2.getIndexInFile();
+
+  private static final int RESOURCE = 0;
+  private static final int INDEX_IN_FILE = 1;
+  private static final int START_LINE = 2;
+  private static final int END_LINE = 3;
+  private static final int START_UNIT = 4;
+  private static final int END_UNIT = 5;
+  private static final int BLOCK_INTS = 6;
+
+  private final List<String> resourceIds = new ArrayList<>();
+  private int hashInts;
+  private int size;
+  private int[] blockData = new int[DEFAULT_INITIAL_CAPACITY * BLOCK_INTS];
+  private int[] hashData;
+  private int[] segmentEnds;
+
+  private BlocksText() {
+  }
+
+  static BlocksText create(CloneIndex index) {
+    BlocksText text = new BlocksText();
+    Iterator<ResourceBlocks> it = index.iterator();
+    while (it.hasNext()) {
+      ResourceBlocks resourceBlocks = it.next();
+      text.add(resourceBlocks.resourceId(), resourceBlocks.blocks());
+    }
+    text.computeSegments();
+    return text;
+  }
+
+  private void add(String resourceId, Collection<Block> blocks) {
+    if (blocks.isEmpty()) {
+      return;
+    }
+    int resource = resourceIds.size();
+    resourceIds.add(resourceId);
+    List<Block> sortedBlocks = new ArrayList<>(blocks);
+    sortedBlocks.sort(BLOCK_COMPARATOR);
+    for (Block block : sortedBlocks) {
+      add(resource, block);
+    }
+  }
+
+  private void add(int resource, Block block) {
+    int[] hash = block.getBlockHash().toIntArray();
+    if (hashData == null) {
+      hashInts = hash.length;
+      hashData = new int[DEFAULT_INITIAL_CAPACITY * hashInts];
+    } else if (hash.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+    }
+    ensureCapacity();
+
+    System.arraycopy(hash, 0, hashData, size * hashInts, hashInts);
+    int offset = size * BLOCK_INTS;
+    blockData[offset + RESOURCE] = resource;
+    blockData[offset + INDEX_IN_FILE] = block.getIndexInFile();
+    blockData[offset + START_LINE] = block.getStartLine();
+    blockData[offset + END_LINE] = block.getEndLine();
+    blockData[offset + START_UNIT] = block.getStartUnit();
+    blockData[offset + END_UNIT] = block.getEndUnit();
+    size++;
+  }
+
+  private void ensureCapacity() {
+    int capacity = blockData.length / BLOCK_INTS;
+    if (size < capacity) {
+      return;
+    }
+    int newCapacity = (capacity * 3) / 2 + 1;
+    blockData = Arrays.copyOf(blockData, newCapacity * BLOCK_INTS);
+    hashData = Arrays.copyOf(hashData, newCapacity * hashInts);
+  }
+
+  private void computeSegments() {
+    segmentEnds = new int[size];
+    int end = size;
+    for (int i = size - 1; i >= 0; i--) {
+      if (i + 1 < size && !isFollowedBy(i, i + 1)) {
+        end = i + 1;
+      }
+      segmentEnds[i] = end;
+    }
+  }
+
+  private boolean isFollowedBy(int i, int j) {
+    return resource(i) == resource(j) && blockData[j * BLOCK_INTS + INDEX_IN_FILE] == blockData[i * BLOCK_INTS + INDEX_IN_FILE] + 1;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return exclusive end of the segment, which contains block at position {@code i}
+   */
+  int segmentEnd(int i) {
+    return segmentEnds[i];
+  }
+
+  /**
+   * @return true if block at position {@code i} is the first one of its segment
+   */
+  boolean isSegmentStart(int i) {
+    return i == 0 || segmentEnds[i - 1] != segmentEnds[i];
+  }
+
+  int resource(int i) {
+    return blockData[i * BLOCK_INTS + RESOURCE];
+  }
+
+  String resourceId(int i) {
+    return resourceIds.get(resource(i));
+  }
+
+  /**
+   * Compares hashes of blocks at positions {@code i} and {@code j}.
+   */
+  int compareHashes(int i, int j) {
+    int i2 = i * hashInts;
+    int j2 = j * hashInts;
+    for (int k = 0; k < hashInts; k++, i2++, j2++) {
+      if (hashData[i2] != hashData[j2]) {
+        return hashData[i2] < hashData[j2] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * @return value of first byte of hash of block at position {@code i}, such that order of values is consistent with {@link #compareHashes(int, int)}
+   */
+  int firstHashByte(int i) {
+    return (hashData[i * hashInts] >> 24) + 128;
+  }
+
+  /**
+   * @return part, which starts from block at position {@code start} and has {@code length} blocks
+   */
+  ClonePart newClonePart(int start, int length) {
+    int end = start + length - 1;
+    return new ClonePart(resourceId(start),
+      blockData[start * BLOCK_INTS + INDEX_IN_FILE],
+      blockData[start * BLOCK_INTS + START_LINE],
+      blockData[end * BLOCK_INTS + END_LINE]);
+  }
+
+  /**
+   * @return length in units of part, which starts from block at position {@code start} and has {@code length} blocks
+   */
+  int lengthInUnits(int start, int length) {
+    int end = start + length - 1;
+    return blockData[end * BLOCK_INTS + END_UNIT] - blockData[start * BLOCK_INTS + START_UNIT] + 1;
+  }
+
+}
@@ -0,0 +1,379 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.detector.suffixarray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import org.sonar.duplications.index.DataUtils;
+
+/**
+ * <a href="http://en.wikipedia.org/wiki/Suffix_array">Suffix array</a> of {@link BlocksText} together with array of longest common prefixes.
+ * <p>
+ * Construction is done by prefix doubling: suffixes are sorted by hash of first block in one pass, which gives buckets of equal hashes,
+ * and then at each round buckets of suffixes with equal prefix of length h are refined by comparing the ranks of their prefixes at
+ * distance h, which gives buckets of equal prefix of length 2h. Buckets are independent ranges of hashes,
+ * so that they can be sorted and refined in parallel.
+ * </p>
+ * <p>
+ * Running time - O(N * log(L)), where N is the number of blocks and L is the length of the longest repeated sequence.
+ * </p>
+ */
+final class SuffixArray {
+
+  private static final int HASH_PARTITIONS = 256;
+
+  /**
+   * Minimal number of suffixes to sort in a round to use more than one partition.
+   */
+  private static final int MIN_PARALLEL_SIZE = 10_000;
+
+  private final BlocksText text;
+  private final int size;
+  @Nullable
+  private final ExecutorService executor;
+  private final int partitions;
+
+  private final int[] suffixes;
+  private final int[] ranks;
+  private final int[] symbols;
+  private final int[] lcp;
+  private long[] keys;
+
+  private SuffixArray(BlocksText text, @Nullable ExecutorService executor, int partitions) {
+    this.text = text;
+    this.size = text.size();
+    this.executor = executor;
+    this.partitions = executor == null ? 1 : partitions;
+    this.suffixes = new int[size];
+    this.ranks = new int[size];
+    this.symbols = new int[size];
+    this.lcp = new int[size];
+  }
+
+  /**
+   * @param executor executor to sort partitions in parallel, or {@code null} to sort them in the current thread
+   * @param partitions number of partitions to split the work in, when {@code executor} is provided
+   */
+  static SuffixArray create(BlocksText text, @Nullable ExecutorService executor, int partitions) {
+    SuffixArray suffixArray = new SuffixArray(text, executor, partitions);
+    suffixArray.sort();
+    suffixArray.computeLcp();
+    return suffixArray;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return position in text of the suffix with rank {@code r}
+   */
+  int suffix(int r) {
+    return suffixes[r];
+  }
+
+  /**
+   * @return length of longest common prefix of suffixes with ranks {@code r - 1} and {@code r}, and 0 for {@code r = 0}
+   */
+  int lcp(int r) {
+    return lcp[r];
+  }
+
+  /**
+   * @return rank of hash of block at position {@code i}, blocks with equal hashes having equal ranks
+   */
+  int symbol(int i) {
+    return symbols[i];
+  }
+
+  private void sort() {
+    Buckets unsorted = sortByHash();
+    System.arraycopy(ranks, 0, symbols, 0, size);
+    keys = new long[size];
+    for (int h = 1; !unsorted.isEmpty(); h *= 2) {
+      unsorted = refine(unsorted, h);
+    }
+    keys = null;
+  }
+
+  /**
+   * Sorts suffixes by hash of first block: suffixes are distributed by first byte of hash into partitions,
+   * which are sorted independently, and then ranks are assigned in one pass over equal hashes.
+   *
+   * @return buckets, which contain more than one suffix
+   */
+  private Buckets sortByHash() {
+    int[] starts = new int[HASH_PARTITIONS + 1];
+    for (int i = 0; i < size; i++) {
+      starts[text.firstHashByte(i) + 1]++;
+    }
+    for (int k = 0; k < HASH_PARTITIONS; k++) {
+      starts[k + 1] += starts[k];
+    }
+    int[] bounds = Arrays.copyOf(starts, HASH_PARTITIONS + 1);
+    for (int i = 0; i < size; i++) {
+      suffixes[starts[text.firstHashByte(i)]++] = i;
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int[] range : split(bounds, HASH_PARTITIONS)) {
+      tasks.add(() -> {
+        for (int k = range[0]; k < range[1]; k++) {
+          DataUtils.sort(new ByHash(bounds[k], bounds[k + 1]));
+        }
+        return null;
+      });
+    }
+    invokeAll(tasks);
+
+    Buckets unsorted = new Buckets();
+    int start = 0;
+    for (int r = 0; r < size; r++) {
+      if (r > 0 && text.compareHashes(suffixes[r - 1], suffixes[r]) != 0) {
+        unsorted.addIfNotSingleton(start, r);
+        start = r;
+      }
+      ranks[suffixes[r]] = start;
+    }
+    unsorted.addIfNotSingleton(start, size);
+    return unsorted;
+  }
+
+  /**
+   * Refines buckets of suffixes with equal prefixes of length {@code h} into buckets of suffixes with equal prefixes of length {@code 2h}.
+   * Suffixes, which end before {@code h}, are distinguished by terminator of their segment.
+   *
+   * @return buckets, which still contain more than one suffix
+   */
+  private Buckets refine(Buckets unsorted, int h) {
+    List<int[]> chunks = split(unsorted.bounds(), unsorted.size());
+
+    // keys must be computed from ranks of previous round before any update
+    List<Callable<Void>> keyTasks = new ArrayList<>(chunks.size());
+    for (int[] chunk : chunks) {
+      keyTasks.add(() -> {
+        for (int b = chunk[0]; b < chunk[1]; b++) {
+          for (int r = unsorted.start(b); r < unsorted.end(b); r++) {
+            int i = suffixes[r];
+            int segmentEnd = text.segmentEnd(i);
+            int key = i + h < segmentEnd ? ranks[i + h] : (-1 - segmentEnd);
+            keys[r] = ((long) key << 32) | i;
+          }
+        }
+        return null;
+      });
+    }
+    invokeAll(keyTasks);
+
+    List<Callable<Buckets>> sortTasks = new ArrayList<>(chunks.size());
+    for (int[] chunk : chunks) {
+      sortTasks.add(() -> {
+        Buckets result = new Buckets();
+        for (int b = chunk[0]; b < chunk[1]; b++) {
+          sortBucket(unsorted.start(b), unsorted.end(b), result);
+        }
+        return result;
+      });
+    }
+    Buckets result = new Buckets();
+    for (Buckets buckets : invokeAll(sortTasks)) {
+      result.addAll(buckets);
+    }
+    return result;
+  }
+
+  private void sortBucket(int from, int to, Buckets result) {
+    Arrays.sort(keys, from, to);
+    int start = from;
+    for (int r = from; r < to; r++) {
+      if (r > from && (int) (keys[r] >> 32) != (int) (keys[r - 1] >> 32)) {
+        result.addIfNotSingleton(start, r);
+        start = r;
+      }
+      int i = (int) keys[r];
+      suffixes[r] = i;
+      ranks[i] = start;
+    }
+    result.addIfNotSingleton(start, to);
+  }
+
+  /**
+   * Kasai's algorithm - O(N).
+   */
+  private void computeLcp() {
+    int h = 0;
+    for (int i = 0; i < size; i++) {
+      int r = ranks[i];
+      if (r == 0) {
+        h = 0;
+        continue;
+      }
+      int j = suffixes[r - 1];
+      int iEnd = text.segmentEnd(i);
+      int jEnd = text.segmentEnd(j);
+      while (i + h < iEnd && j + h < jEnd && symbols[i + h] == symbols[j + h]) {
+        h++;
+      }
+      lcp[r] = h;
+      if (h > 0) {
+        h--;
+      }
+    }
+  }
+
+  /**
+   * Splits {@code count} consecutive items into at most {@link #partitions} ranges of items with roughly equal total weight.
+   *
+   * @param bounds bounds of items, such that weight of item k is {@code bounds[k + 1] - bounds[k]}
+   * @return list of ranges of items {@code [from, to)}
+   */
+  private List<int[]> split(int[] bounds, int count) {
+    List<int[]> ranges = new ArrayList<>();
+    if (count == 0) {
+      return ranges;
+    }
+    int total = bounds[count] - bounds[0];
+    int n = total < MIN_PARALLEL_SIZE ? 1 : partitions;
+    int from = 0;
+    for (int k = 1; k <= n && from < count; k++) {
+      long limit = bounds[0] + (long) total * k / n;
+      int to = from + 1;
+      while (to < count && (k == n || bounds[to + 1] <= limit)) {
+        to++;
+      }
+      ranges.add(new int[] {from, to});
+      from = to;
+    }
+    return ranges;
+  }
+
+  private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+    List<T> results = new ArrayList<>(tasks.size());
+    try {
+      if (executor == null || tasks.size() < 2) {
+        for (Callable<T> task : tasks) {
+          results.add(task.call());
+        }
+      } else {
+        for (Future<T> future : executor.invokeAll(tasks)) {
+          results.add(future.get());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during construction of suffix array", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to construct suffix array", e.getCause());
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to construct suffix array", e);
+    }
+    return results;
+  }
+
+  private class ByHash implements DataUtils.Sortable {
+    private final int from;
+    private final int size;
+
+    ByHash(int from, int to) {
+      this.from = from;
+      this.size = to - from;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void swap(int i, int j) {
+      int tmp = suffixes[from + i];
+      suffixes[from + i] = suffixes[from + j];
+      suffixes[from + j] = tmp;
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      return text.compareHashes(suffixes[from + i], suffixes[from + j]) < 0;
+    }
+  }
+
+  /**
+   * Ranges {@code [start, end)} of ranks of suffixes, which are not yet distinguished.
+   */
+  private static class Buckets {
+    private int[] data = new int[16];
+    private int size;
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    int size() {
+      return size;
+    }
+
+    int start(int b) {
+      return data[2 * b];
+    }
+
+    int end(int b) {
+      return data[2 * b + 1];
+    }
+
+    void addIfNotSingleton(int start, int end) {
+      if (end - start > 1) {
+        ensureCapacity(size + 1);
+        data[2 * size] = start;
+        data[2 * size + 1] = end;
+        size++;
+      }
+    }
+
+    void addAll(Buckets other) {
+      ensureCapacity(size + other.size);
+      System.arraycopy(other.data, 0, data, 2 * size, 2 * other.size);
+      size += other.size;
+    }
+
+    /**
+     * @return bounds as expected by {@link SuffixArray#split(int[], int)}, where weight of bucket is its number of suffixes
+     */
+    int[] bounds() {
+      int[] bounds = new int[size + 1];
+      for (int b = 0; b < size; b++) {
+        bounds[b + 1] = bounds[b] + end(b) - start(b);
+      }
+      return bounds;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (2 * capacity > data.length) {
+        data = Arrays.copyOf(data, Math.max(2 * capacity, (data.length * 3) / 2));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,291 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.detector.suffixarray;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.sonar.duplications.detector.ContainsInComparator;
+import org.sonar.duplications.index.CloneGroup;
+import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.ClonePart;
+
+/**
+ * Detects clones between all resources of an index at once, instead of building a suffix-tree per resource
+ * as {@link org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm} does.
+ * <p>
+ * Each inner node of the suffix-tree of a resource corresponds to an interval of the {@link SuffixArray} of the whole project,
+ * whose suffixes share a common prefix, which can not be extended to the right for all of them.
+ * Such intervals are enumerated in one pass over the array of longest common prefixes. Intervals, whose sequence of blocks
+ * can be extended to the left for all suffixes, are skipped, because they would be covered by another clone group.
+ * Remaining clone groups are filtered in the same way as by {@link org.sonar.duplications.detector.suffixtree.DuplicationsCollector},
+ * so that result for each resource is the same as the one of
+ * {@link org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm#detect(CloneIndex, java.util.Collection)}.
+ * </p>
+ */
+public final class SuffixArrayCloneDetectionAlgorithm {
+
+  private final BlocksText text;
+  private final SuffixArray suffixArray;
+
+  private final Map<Long, List<Group>> groupsByResources = new HashMap<>();
+  private final List<Group> groups = new ArrayList<>();
+
+  private SuffixArrayCloneDetectionAlgorithm(BlocksText text, SuffixArray suffixArray) {
+    this.text = text;
+    this.suffixArray = suffixArray;
+  }
+
+  /**
+   * Performs detection in the current thread.
+   *
+   * @see #detect(CloneIndex, int)
+   */
+  public static Map<String, List<CloneGroup>> detect(CloneIndex cloneIndex) {
+    return detect(cloneIndex, 1);
+  }
+
+  /**
+   * Performs detection of clones among all resources of index.
+   *
+   * @param threads number of threads to use for construction of suffix array
+   * @return clone groups by resource, with the same order of parts as for
+   * {@link org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm}. Resources without clones are not present.
+   */
+  public static Map<String, List<CloneGroup>> detect(CloneIndex cloneIndex, int threads) {
+    BlocksText text = BlocksText.create(cloneIndex);
+    if (text.size() == 0) {
+      return Collections.emptyMap();
+    }
+    ExecutorService executor = null;
+    if (threads > 1) {
+      executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+        .setNameFormat("cpd-%d")
+        .setDaemon(true)
+        .build());
+    }
+    try {
+      SuffixArrayCloneDetectionAlgorithm algorithm = new SuffixArrayCloneDetectionAlgorithm(text, SuffixArray.create(text, executor, threads));
+      algorithm.findClones();
+      return algorithm.getResult();
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  private void findClones() {
+    int[] changesOfPredecessor = computeChangesOfPredecessor();
+    Intervals candidates = new Intervals();
+
+    // bottom-up traversal of intervals of longest common prefixes
+    int size = suffixArray.size();
+    int[] stackLcp = new int[size + 1];
+    int[] stackStart = new int[size + 1];
+    int top = 0;
+    for (int r = 1; r <= size; r++) {
+      int lcp = r < size ? suffixArray.lcp(r) : 0;
+      int start = r - 1;
+      while (lcp < stackLcp[top]) {
+        start = stackStart[top];
+        if (changesOfPredecessor[r - 1] > changesOfPredecessor[start]) {
+          candidates.add(stackLcp[top], start, r);
+        }
+        top--;
+      }
+      if (lcp > stackLcp[top]) {
+        top++;
+        stackLcp[top] = lcp;
+        stackStart[top] = start;
+      }
+    }
+
+    for (int c : candidates.sortedByLengthDesc()) {
+      filter(candidates.length(c), candidates.start(c), candidates.end(c));
+    }
+  }
+
+  /**
+   * Interval of suffixes is left-maximal if their predecessors are not all the same,
+   * where predecessor of a suffix, which starts a segment, is unique.
+   *
+   * @return array, where element {@code r} is the number of changes of predecessor in suffixes with ranks {@code [0, r]},
+   * so that interval {@code [start, end)} is left-maximal if element {@code end - 1} is greater than element {@code start}
+   */
+  private int[] computeChangesOfPredecessor() {
+    int size = suffixArray.size();
+    int[] changes = new int[size];
+    int previous = 0;
+    for (int r = 0; r < size; r++) {
+      int i = suffixArray.suffix(r);
+      int predecessor = text.isSegmentStart(i) ? (-1 - i) : suffixArray.symbol(i - 1);
+      if (r > 0) {
+        changes[r] = changes[r - 1] + (predecessor == previous ? 0 : 1);
+      }
+      previous = predecessor;
+    }
+    return changes;
+  }
+
+  /**
+   * Saves group, if it is not covered by one of previously saved groups.
+   * As in {@link org.sonar.duplications.detector.suffixtree.DuplicationsCollector}, groups are processed in descending order of length,
+   * so that only previously saved groups can cover current group. Group can be covered only by a group with the same set of resources.
+   */
+  private void filter(int length, int start, int end) {
+    int[] parts = new int[end - start];
+    for (int r = start; r < end; r++) {
+      parts[r - start] = suffixArray.suffix(r);
+    }
+    Arrays.sort(parts);
+
+    Group current = new Group(length, parts);
+    long resources = resourcesKey(parts);
+    List<Group> sameResources = groupsByResources.computeIfAbsent(resources, k -> new ArrayList<>());
+    for (Group earlier : sameResources) {
+      if (earlier.covers(current)) {
+        return;
+      }
+    }
+    sameResources.add(current);
+    groups.add(current);
+  }
+
+  private long resourcesKey(int[] parts) {
+    long key = 1;
+    int previous = -1;
+    for (int i : parts) {
+      int resource = text.resource(i);
+      if (resource != previous) {
+        key = 31 * key + resource;
+        previous = resource;
+      }
+    }
+    return key;
+  }
+
+  private Map<String, List<CloneGroup>> getResult() {
+    Map<String, List<CloneGroup>> result = new HashMap<>();
+    for (Group group : groups) {
+      List<ClonePart> parts = new ArrayList<>(group.parts.length);
+      for (int i : group.parts) {
+        parts.add(text.newClonePart(i, group.length));
+      }
+      Collections.sort(parts, ContainsInComparator.CLONEPART_COMPARATOR);
+      List<ClonePart> immutableParts = ImmutableList.copyOf(parts);
+
+      // parts are sorted by position, so first part of each resource is its origin
+      int previous = -1;
+      for (int i : group.parts) {
+        int resource = text.resource(i);
+        if (resource != previous) {
+          CloneGroup cloneGroup = CloneGroup.builder()
+            .setLength(group.length)
+            .setLengthInUnits(text.lengthInUnits(i, group.length))
+            .setOrigin(text.newClonePart(i, group.length))
+            .setParts(immutableParts)
+            .build();
+          result.computeIfAbsent(text.resourceId(i), k -> new ArrayList<>()).add(cloneGroup);
+          previous = resource;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static class Group {
+    private final int length;
+    private final int[] parts;
+
+    Group(int length, int[] parts) {
+      this.length = length;
+      this.parts = parts;
+    }
+
+    /**
+     * Checks that every part of other group is included in a part of this group - O(|this| + |other|).
+     * Parts do not cross boundaries of segments, so inclusion of positions implies the same resource.
+     */
+    boolean covers(Group other) {
+      int j = 0;
+      for (int i : other.parts) {
+        while (j < parts.length && parts[j] + length < i + other.length) {
+          j++;
+        }
+        if (j == parts.length || parts[j] > i) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Intervals {@code [start, end)} of ranks of suffixes, which share a common prefix of given length.
+   */
+  private static class Intervals {
+    private int[] data = new int[48];
+    private int size;
+
+    void add(int length, int start, int end) {
+      if (3 * size + 3 > data.length) {
+        data = Arrays.copyOf(data, (data.length * 3) / 2);
+      }
+      data[3 * size] = length;
+      data[3 * size + 1] = start;
+      data[3 * size + 2] = end;
+      size++;
+    }
+
+    int length(int c) {
+      return data[3 * c];
+    }
+
+    int start(int c) {
+      return data[3 * c + 1];
+    }
+
+    int end(int c) {
+      return data[3 * c + 2];
+    }
+
+    int[] sortedByLengthDesc() {
+      long[] keys = new long[size];
+      for (int c = 0; c < size; c++) {
+        keys[c] = ((long) (Integer.MAX_VALUE - length(c)) << 32) | c;
+      }
+      Arrays.sort(keys);
+      int[] sorted = new int[size];
+      for (int c = 0; c < size; c++) {
+        sorted[c] = (int) keys[c];
+      }
+      return sorted;
+    }
+  }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * External merge sort of a file of records, each record being a fixed number of ints.
+ * <p>
+ * Input is split into runs of at most {@code runSize} records, which are sorted in memory by {@link DataUtils#sort(DataUtils.Sortable)}
+ * and written to temporary files, and then runs are merged. So heap consumption depends only on size of run and number of runs.
+ * </p>
+ */
+final class ExternalSort {
+
+  @FunctionalInterface
+  interface RecordComparator {
+    int compare(int[] a, int aOffset, int[] b, int bOffset);
+  }
+
+  private final int recordInts;
+  private final int runSize;
+  private final RecordComparator comparator;
+
+  ExternalSort(int recordInts, int runSize, RecordComparator comparator) {
+    this.recordInts = recordInts;
+    this.runSize = runSize;
+    this.comparator = comparator;
+  }
+
+  /**
+   * Sorts first {@code size} records of file {@code input} into file {@code output}.
+   */
+  void sort(File input, int size, File output) throws IOException {
+    List<File> runs = new ArrayList<>();
+    try {
+      try (DataInputStream in = open(input)) {
+        int[] buffer = new int[Math.min(size, runSize) * recordInts];
+        for (int remaining = size; remaining > 0; remaining -= runSize) {
+          int count = Math.min(remaining, runSize);
+          for (int i = 0; i < count * recordInts; i++) {
+            buffer[i] = in.readInt();
+          }
+          DataUtils.sort(new Run(buffer, count));
+          File run = new File(output.getParentFile(), output.getName() + "." + runs.size());
+          runs.add(run);
+          try (DataOutputStream out = create(run)) {
+            for (int i = 0; i < count * recordInts; i++) {
+              out.writeInt(buffer[i]);
+            }
+          }
+        }
+      }
+
+      if (runs.size() == 1) {
+        Files.move(runs.get(0).toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } else {
+        merge(runs, output);
+      }
+    } finally {
+      for (File run : runs) {
+        Files.deleteIfExists(run.toPath());
+      }
+    }
+  }
+
+  private void merge(List<File> runs, File output) throws IOException {
+    PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()), (r1, r2) -> comparator.compare(r1.record, 0, r2.record, 0));
+    try (DataOutputStream out = create(output)) {
+      for (File run : runs) {
+        RunReader reader = new RunReader(run);
+        if (reader.next()) {
+          queue.add(reader);
+        }
+      }
+      while (!queue.isEmpty()) {
+        RunReader reader = queue.poll();
+        for (int value : reader.record) {
+          out.writeInt(value);
+        }
+        if (reader.next()) {
+          queue.add(reader);
+        }
+      }
+    } finally {
+      for (RunReader reader : queue) {
+        reader.in.close();
+      }
+    }
+  }
+
+  private static DataInputStream open(File file) throws IOException {
+    return new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+  }
+
+  private static DataOutputStream create(File file) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+  }
+
+  private class RunReader {
+    private final DataInputStream in;
+    private final long size;
+    private final int[] record = new int[recordInts];
+    private long read;
+
+    RunReader(File run) throws IOException {
+      this.in = open(run);
+      this.size = run.length() / (4L * recordInts);
+    }
+
+    /**
+     * Reads next record and closes run when there is no more records.
+     */
+    boolean next() throws IOException {
+      if (read == size) {
+        in.close();
+        return false;
+      }
+      for (int i = 0; i < recordInts; i++) {
+        record[i] = in.readInt();
+      }
+      read++;
+      return true;
+    }
+  }
+
+  private class Run implements DataUtils.Sortable {
+    private final int[] data;
+    private final int size;
+
+    Run(int[] data, int size) {
+      this.data = data;
+      this.size = size;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void swap(int i, int j) {
+      i *= recordInts;
+      j *= recordInts;
+      for (int k = 0; k < recordInts; k++, i++, j++) {
+        int x = data[i];
+        data[i] = data[j];
+        data[j] = x;
+      }
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      return comparator.compare(data, i * recordInts, data, j * recordInts) < 0;
+    }
+  }
+
+}
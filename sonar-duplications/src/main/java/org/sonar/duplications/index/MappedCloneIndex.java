@@ -0,0 +1,406 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
+import org.sonar.duplications.DuplicationsException;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+
+/**
+ * Provides an index, which keeps blocks out of heap, so that heap consumption does not depend on number of blocks.
+ * <p>
+ * Blocks are appended to a file in given directory. Before first query this file is sorted by hash and by resource
+ * using {@link ExternalSort}, and sorted files are memory-mapped, so that queries are performed by {@link DataUtils#binarySearch(DataUtils.Sortable)}
+ * directly on mapped data. Only identifiers of resources are kept in heap.
+ * </p>
+ * <p>
+ * Index must be closed to release files.
+ * </p>
+ */
+public class MappedCloneIndex extends AbstractCloneIndex implements Closeable {
+
+  /**
+   * Number of blocks sorted in heap at once.
+   */
+  private static final int DEFAULT_RUN_SIZE = 64 * 1024;
+
+  private static final int RESOURCE = 0;
+  private static final int INDEX_IN_FILE = 1;
+  private static final int START_LINE = 2;
+  private static final int END_LINE = 3;
+  private static final int START_UNIT = 4;
+  private static final int END_UNIT = 5;
+  private static final int BLOCK_INTS = 6;
+
+  private final int hashInts;
+  private final int recordInts;
+  private final int runSize;
+
+  private final File blocksFile;
+  private final File byHashFile;
+  private final File byResourceFile;
+  private final DataOutputStream blocksOutput;
+
+  private final List<String> resourceIds = new ArrayList<>();
+  private final Map<String, Integer> resourceIndexes = new HashMap<>();
+
+  /**
+   * Current number of blocks in index.
+   */
+  private int size;
+
+  /**
+   * Indicates that index requires sorting to perform queries.
+   */
+  private boolean sorted;
+
+  private MappedRecords byHash;
+  private MappedRecords byResource;
+
+  private final Block.Builder blockBuilder = Block.builder();
+
+  public MappedCloneIndex(File dir) {
+    this(dir, 8, DEFAULT_RUN_SIZE);
+  }
+
+  /**
+   * @param dir directory to store files of index
+   * @param hashBytes size of hash in bytes
+   * @param runSize number of blocks to sort in heap at once
+   */
+  public MappedCloneIndex(File dir, int hashBytes, int runSize) {
+    this.hashInts = hashBytes / 4;
+    this.recordInts = hashInts + BLOCK_INTS;
+    this.runSize = runSize;
+    this.blocksFile = new File(dir, "blocks.dat");
+    this.byHashFile = new File(dir, "blocks-by-hash.dat");
+    this.byResourceFile = new File(dir, "blocks-by-resource.dat");
+    try {
+      Files.createDirectories(dir.toPath());
+      this.blocksOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(blocksFile)));
+    } catch (IOException e) {
+      throw new DuplicationsException("Fail to create clone index in " + dir, e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that this implementation allows insertion of two blocks with same index for one resource.</strong>
+   * </p>
+   */
+  @Override
+  public void insert(Block block) {
+    int[] hash = block.getBlockHash().toIntArray();
+    if (hash.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+    }
+    int resource = resourceIndexes.computeIfAbsent(block.getResourceId(), resourceId -> {
+      resourceIds.add(resourceId);
+      return resourceIds.size() - 1;
+    });
+    try {
+      for (int h : hash) {
+        blocksOutput.writeInt(h);
+      }
+      blocksOutput.writeInt(resource);
+      blocksOutput.writeInt(block.getIndexInFile());
+      blocksOutput.writeInt(block.getStartLine());
+      blocksOutput.writeInt(block.getEndLine());
+      blocksOutput.writeInt(block.getStartUnit());
+      blocksOutput.writeInt(block.getEndUnit());
+    } catch (IOException e) {
+      throw new DuplicationsException("Fail to write block to " + blocksFile, e);
+    }
+    sorted = false;
+    size++;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Blocks are sorted by index.
+   * </p>
+   */
+  @Override
+  public Collection<Block> getByResourceId(String resourceId) {
+    Integer resource = resourceIndexes.get(resourceId);
+    List<Block> result = new ArrayList<>();
+    if (resource == null) {
+      return result;
+    }
+    ensureSorted();
+
+    int index = DataUtils.binarySearch(new ResourceSearch(resource));
+    while (index < size && byResource.get(index, hashInts + RESOURCE) == resource) {
+      result.add(createBlock(byResource, index, resourceId, null));
+      index++;
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
+    int[] hash = sequenceHash.toIntArray();
+    if (hash.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+    }
+    ensureSorted();
+
+    HashSearch search = new HashSearch(hash);
+    int index = DataUtils.binarySearch(search);
+
+    List<Block> result = new ArrayList<>();
+    while (index < size && !search.isLess(size, index)) {
+      // extract block (note that there is no need to extract hash)
+      String resourceId = resourceIds.get(byHash.get(index, hashInts + RESOURCE));
+      result.add(createBlock(byHash, index, resourceId, sequenceHash));
+      index++;
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Iterator<ResourceBlocks> iterator() {
+    ensureSorted();
+    return new ResourceIterator();
+  }
+
+  @Override
+  public int noResources() {
+    return resourceIds.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    blocksOutput.close();
+    byHash = null;
+    byResource = null;
+    sorted = false;
+    Files.deleteIfExists(blocksFile.toPath());
+    Files.deleteIfExists(byHashFile.toPath());
+    Files.deleteIfExists(byResourceFile.toPath());
+  }
+
+  private Block createBlock(MappedRecords records, int index, String resourceId, @Nullable ByteArray byteHash) {
+    ByteArray blockHash;
+    if (byteHash == null) {
+      int[] hash = new int[hashInts];
+      for (int j = 0; j < hashInts; j++) {
+        hash[j] = records.get(index, j);
+      }
+      blockHash = new ByteArray(hash);
+    } else {
+      blockHash = byteHash;
+    }
+
+    return blockBuilder
+      .setResourceId(resourceId)
+      .setBlockHash(blockHash)
+      .setIndexInFile(records.get(index, hashInts + INDEX_IN_FILE))
+      .setLines(records.get(index, hashInts + START_LINE), records.get(index, hashInts + END_LINE))
+      .setUnit(records.get(index, hashInts + START_UNIT), records.get(index, hashInts + END_UNIT))
+      .build();
+  }
+
+  /**
+   * Performs sorting, if necessary.
+   */
+  private void ensureSorted() {
+    if (sorted) {
+      return;
+    }
+    try {
+      blocksOutput.flush();
+      new ExternalSort(recordInts, runSize, this::compareByHash).sort(blocksFile, size, byHashFile);
+      new ExternalSort(recordInts, runSize, this::compareByResource).sort(blocksFile, size, byResourceFile);
+      byHash = new MappedRecords(byHashFile, size, recordInts);
+      byResource = new MappedRecords(byResourceFile, size, recordInts);
+    } catch (IOException e) {
+      throw new DuplicationsException("Fail to sort blocks of " + blocksFile, e);
+    }
+    sorted = true;
+  }
+
+  private int compareByHash(int[] a, int aOffset, int[] b, int bOffset) {
+    for (int k = 0; k < hashInts; k++) {
+      int c = Integer.compare(a[aOffset + k], b[bOffset + k]);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+
+  private int compareByResource(int[] a, int aOffset, int[] b, int bOffset) {
+    int c = Integer.compare(a[aOffset + hashInts + RESOURCE], b[bOffset + hashInts + RESOURCE]);
+    if (c != 0) {
+      return c;
+    }
+    return Integer.compare(a[aOffset + hashInts + INDEX_IN_FILE], b[bOffset + hashInts + INDEX_IN_FILE]);
+  }
+
+  /**
+   * Read-only view of a memory-mapped file of records.
+   * A file can be bigger than the maximal size of a mapping, so it is mapped by segments.
+   */
+  private static class MappedRecords {
+    private final int recordInts;
+    private final int recordsPerSegment;
+    private final IntBuffer[] segments;
+
+    MappedRecords(File file, int size, int recordInts) throws IOException {
+      this.recordInts = recordInts;
+      this.recordsPerSegment = Integer.MAX_VALUE / (4 * recordInts);
+      this.segments = new IntBuffer[(size + recordsPerSegment - 1) / recordsPerSegment];
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        long segmentBytes = 4L * recordInts * recordsPerSegment;
+        for (int s = 0; s < segments.length; s++) {
+          long position = s * segmentBytes;
+          segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentBytes, channel.size() - position)).asIntBuffer();
+        }
+      }
+    }
+
+    int get(int index, int field) {
+      return segments[index / recordsPerSegment].get((index % recordsPerSegment) * recordInts + field);
+    }
+  }
+
+  /**
+   * Sortable by hash, where value for search is stored in position {@link #size()}, as expected by {@link DataUtils#binarySearch(DataUtils.Sortable)}.
+   */
+  private class HashSearch implements DataUtils.Sortable {
+    private final int[] hash;
+
+    HashSearch(int[] hash) {
+      this.hash = hash;
+    }
+
+    private int hashInt(int index, int k) {
+      return index == size ? hash[k] : byHash.get(index, k);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void swap(int i, int j) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      for (int k = 0; k < hashInts; k++) {
+        int c = Integer.compare(hashInt(i, k), hashInt(j, k));
+        if (c != 0) {
+          return c < 0;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Sortable by resource, where value for search is stored in position {@link #size()}, as expected by {@link DataUtils#binarySearch(DataUtils.Sortable)}.
+   */
+  private class ResourceSearch implements DataUtils.Sortable {
+    private final int resource;
+
+    ResourceSearch(int resource) {
+      this.resource = resource;
+    }
+
+    private int resource(int index) {
+      return index == size ? resource : byResource.get(index, hashInts + RESOURCE);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void swap(int i, int j) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      return resource(i) < resource(j);
+    }
+  }
+
+  private class ResourceIterator implements Iterator<ResourceBlocks> {
+    private int index = 0;
+
+    @Override
+    public boolean hasNext() {
+      return index < size;
+    }
+
+    @Override
+    public ResourceBlocks next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      int resource = byResource.get(index, hashInts + RESOURCE);
+      String resourceId = resourceIds.get(resource);
+      List<Block> blocks = new ArrayList<>();
+
+      // while we are at the same resource, keep going
+      do {
+        blocks.add(createBlock(byResource, index, resourceId, null));
+        index++;
+      } while (hasNext() && byResource.get(index, hashInts + RESOURCE) == resource);
+
+      return new ResourceBlocks(resourceId, blocks);
+    }
+  }
+
+}
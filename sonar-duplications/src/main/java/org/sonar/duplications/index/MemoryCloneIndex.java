@@ -51,7 +51,9 @@ public class MemoryCloneIndex implements CloneIndex {
 
   @Override
   public Iterator<ResourceBlocks> iterator() {
-    throw new UnsupportedOperationException();
+    return byResource.asMap().entrySet().stream()
+      .map(entry -> new ResourceBlocks(entry.getKey(), entry.getValue()))
+      .iterator();
   }
 
   @Override
@@ -0,0 +1,194 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.detector.suffixarray;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.BlockChunker;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.detector.DetectorTestCase;
+import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm;
+import org.sonar.duplications.index.CloneGroup;
+import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.MemoryCloneIndex;
+import org.sonar.duplications.index.PackedMemoryCloneIndex;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+import org.sonar.duplications.java.JavaStatementBuilder;
+import org.sonar.duplications.java.JavaTokenProducer;
+import org.sonar.duplications.statement.StatementChunker;
+import org.sonar.duplications.token.TokenChunker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class SuffixArrayCloneDetectionAlgorithmTest extends DetectorTestCase {
+
+  private static final TokenChunker TOKEN_CHUNKER = JavaTokenProducer.build();
+  private static final StatementChunker STATEMENT_CHUNKER = JavaStatementBuilder.build();
+  private static final BlockChunker BLOCK_CHUNKER = new BlockChunker(5);
+
+  /**
+   * Other detectors ignore blocks of the file, which come from index, so index is completed by the blocks of the file
+   * and clones are detected among all resources of index.
+   */
+  @Override
+  protected List<CloneGroup> detect(CloneIndex index, Block[] fileBlocks) {
+    if (fileBlocks.length == 0) {
+      return Collections.emptyList();
+    }
+    String resourceId = fileBlocks[0].getResourceId();
+    CloneIndex projectIndex = new MemoryCloneIndex();
+    Iterator<ResourceBlocks> it = index.iterator();
+    while (it.hasNext()) {
+      ResourceBlocks resourceBlocks = it.next();
+      if (!resourceId.equals(resourceBlocks.resourceId())) {
+        resourceBlocks.blocks().forEach(projectIndex::insert);
+      }
+    }
+    for (Block block : fileBlocks) {
+      projectIndex.insert(block);
+    }
+    return SuffixArrayCloneDetectionAlgorithm.detect(projectIndex).getOrDefault(resourceId, Collections.emptyList());
+  }
+
+  /**
+   * Given: file with repeated hashes
+   * Expected: index is read once, without queries by hash
+   */
+  @Override
+  @Test
+  public void only_one_query_of_index_for_each_unique_hash() {
+    CloneIndex index = spy(createIndex());
+    detect(index, newBlocks("a", "1 2 1 2"));
+
+    verify(index).iterator();
+    verifyNoMoreInteractions(index);
+  }
+
+  /**
+   * See SONAR-3060
+   */
+  @Test
+  public void huge() {
+    Block[] fileBlocks = new Block[5000];
+    for (int i = 0; i < 5000; i++) {
+      fileBlocks[i] = newBlock("x", new ByteArray("01"), i);
+    }
+    List<CloneGroup> result = detect(createIndex(), fileBlocks);
+
+    assertThat(result).hasSize(1);
+    assertThat(result.get(0).getCloneUnitLength()).isEqualTo(4999);
+  }
+
+  @Test
+  public void same_clone_groups_as_suffix_tree_for_random_blocks() {
+    Random random = new Random(42);
+    for (int n = 0; n < 500; n++) {
+      CloneIndex index = new PackedMemoryCloneIndex();
+      int resources = 1 + random.nextInt(5);
+      int hashes = 1 + random.nextInt(4);
+      for (int r = 0; r < resources; r++) {
+        int blocks = 1 + random.nextInt(25);
+        for (int i = 0; i < blocks; i++) {
+          index.insert(Block.builder()
+            .setResourceId("r" + r)
+            .setBlockHash(new ByteArray((long) random.nextInt(hashes)))
+            .setIndexInFile(i)
+            .setLines(i, i + LINES_PER_BLOCK)
+            .setUnit(i, i + random.nextInt(3))
+            .build());
+        }
+      }
+
+      assertSameCloneGroupsAsSuffixTree(index);
+    }
+  }
+
+  @Test
+  public void same_clone_groups_as_suffix_tree_for_sample_projects() throws IOException {
+    CloneIndex index = new PackedMemoryCloneIndex();
+    for (Path file : findJavaFiles()) {
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+        BLOCK_CHUNKER.chunk(file.toString(), STATEMENT_CHUNKER.chunk(TOKEN_CHUNKER.chunk(reader))).forEach(index::insert);
+      }
+    }
+
+    int groups = assertSameCloneGroupsAsSuffixTree(index);
+    assertThat(groups).isGreaterThan(0);
+  }
+
+  @Test
+  public void same_clone_groups_when_suffix_array_is_constructed_in_parallel() {
+    CloneIndex index = new PackedMemoryCloneIndex();
+    Random random = new Random(42);
+    for (int r = 0; r < 20; r++) {
+      for (int i = 0; i < 2000; i++) {
+        index.insert(newBlock("r" + r, new ByteArray((long) random.nextInt(50)), i));
+      }
+    }
+
+    assertThat(SuffixArrayCloneDetectionAlgorithm.detect(index, 4)).isEqualTo(SuffixArrayCloneDetectionAlgorithm.detect(index));
+  }
+
+  /**
+   * @return total number of clone groups
+   */
+  private static int assertSameCloneGroupsAsSuffixTree(CloneIndex index) {
+    Map<String, List<CloneGroup>> result = SuffixArrayCloneDetectionAlgorithm.detect(index);
+
+    int groups = 0;
+    Iterator<ResourceBlocks> it = index.iterator();
+    while (it.hasNext()) {
+      ResourceBlocks resourceBlocks = it.next();
+      List<CloneGroup> expected = SuffixTreeCloneDetectionAlgorithm.detect(index, resourceBlocks.blocks());
+      List<CloneGroup> actual = result.getOrDefault(resourceBlocks.resourceId(), Collections.emptyList());
+      assertThat(actual).as(resourceBlocks.resourceId()).hasSameSizeAs(expected).containsOnlyElementsOf(expected);
+      groups += expected.size();
+    }
+    return groups;
+  }
+
+  private static List<Path> findJavaFiles() throws IOException {
+    File dir = new File("../tests/projects");
+    if (!dir.exists()) {
+      // IntellijIDEA resolves path from root module basedir
+      dir = new File("tests/projects");
+    }
+    try (Stream<Path> paths = Files.walk(dir.toPath())) {
+      return paths.filter(path -> path.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+    }
+  }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedCloneIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File dir;
+  private MappedCloneIndex index;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = temp.newFolder();
+    // small runs to force merge of several sorted runs
+    index = new MappedCloneIndex(dir, 8, 2);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    index.close();
+  }
+
+  @Test
+  public void test() {
+    index.insert(newBlock("a", 1, 1));
+    index.insert(newBlock("a", 2, 2));
+    index.insert(newBlock("b", 1, 1));
+    index.insert(newBlock("c", 1, 1));
+    index.insert(newBlock("d", 1, 1));
+    index.insert(newBlock("e", 1, 1));
+    index.insert(newBlock("e", 2, 2));
+    index.insert(newBlock("e", 3, 3));
+
+    assertThat(index.noResources()).isEqualTo(5);
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(5);
+    assertThat(index.getBySequenceHash(new ByteArray(2L))).hasSize(2);
+    assertThat(index.getBySequenceHash(new ByteArray(3L))).hasSize(1);
+    assertThat(index.getBySequenceHash(new ByteArray(4L))).isEmpty();
+    assertThat(index.getByResourceId("a")).hasSize(2);
+    assertThat(index.getByResourceId("b")).hasSize(1);
+    assertThat(index.getByResourceId("e")).hasSize(3);
+    assertThat(index.getByResourceId("does not exist")).isEmpty();
+  }
+
+  @Test
+  public void blocks_of_resource_are_sorted_by_index() {
+    index.insert(newBlock("a", 7, 3));
+    index.insert(newBlock("a", -2, 1));
+    index.insert(newBlock("b", 1, 1));
+    index.insert(newBlock("a", 5, 2));
+
+    Collection<Block> blocks = index.getByResourceId("a");
+
+    assertThat(blocks).extracting(Block::getIndexInFile).containsExactly(1, 2, 3);
+    assertThat(blocks).extracting(Block::getBlockHash).containsExactly(new ByteArray(-2L), new ByteArray(5L), new ByteArray(7L));
+  }
+
+  @Test
+  public void restore_all_fields_of_blocks() {
+    Block block = Block.builder()
+      .setResourceId("a")
+      .setBlockHash(new ByteArray(42L))
+      .setIndexInFile(3)
+      .setLines(10, 15)
+      .setUnit(100, 150)
+      .build();
+    index.insert(block);
+
+    Block fromIndex = index.getByResourceId("a").iterator().next();
+
+    assertThat(fromIndex).isEqualTo(block);
+    assertThat(fromIndex.getStartLine()).isEqualTo(10);
+    assertThat(fromIndex.getEndLine()).isEqualTo(15);
+    assertThat(fromIndex.getStartUnit()).isEqualTo(100);
+    assertThat(fromIndex.getEndUnit()).isEqualTo(150);
+  }
+
+  /**
+   * When: query by a hash value.
+   * Expected: all blocks should have same hash, which presented in the form of the same object.
+   */
+  @Test
+  public void should_construct_blocks_with_normalized_hash() {
+    index.insert(newBlock("a", 1, 1));
+    index.insert(newBlock("b", 1, 1));
+    index.insert(newBlock("c", 1, 1));
+    ByteArray requestedHash = new ByteArray(1L);
+    Collection<Block> blocks = index.getBySequenceHash(requestedHash);
+    assertThat(blocks).hasSize(3);
+    for (Block block : blocks) {
+      assertThat(block.getBlockHash()).isSameAs(requestedHash);
+    }
+  }
+
+  @Test
+  public void iterate() {
+    index.insert(newBlock("a", 1, 1));
+    index.insert(newBlock("c", 1, 1));
+    index.insert(newBlock("b", 1, 1));
+    index.insert(newBlock("c", 2, 2));
+    index.insert(newBlock("a", 2, 2));
+
+    List<ResourceBlocks> resourcesBlocks = new ArrayList<>();
+    Iterator<ResourceBlocks> it = index.iterator();
+    while (it.hasNext()) {
+      resourcesBlocks.add(it.next());
+    }
+
+    assertThat(resourcesBlocks).extracting(ResourceBlocks::resourceId).containsExactly("a", "c", "b");
+    assertThat(resourcesBlocks.get(0).blocks()).hasSize(2);
+    assertThat(resourcesBlocks.get(1).blocks()).hasSize(2);
+    assertThat(resourcesBlocks.get(2).blocks()).hasSize(1);
+  }
+
+  @Test
+  public void insert_after_query() {
+    index.insert(newBlock("a", 1, 1));
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(1);
+
+    index.insert(newBlock("b", 1, 1));
+    index.insert(newBlock("b", 2, 2));
+
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(2);
+    assertThat(index.getByResourceId("b")).hasSize(2);
+  }
+
+  @Test
+  public void same_results_as_packed_memory_index() {
+    PackedMemoryCloneIndex packedIndex = new PackedMemoryCloneIndex();
+    for (int i = 0; i < 1000; i++) {
+      Block block = newBlock("r" + (i % 13), (i * 31) % 97 - 48, i);
+      packedIndex.insert(block);
+      index.insert(block);
+    }
+
+    for (long hash = -50; hash < 50; hash++) {
+      assertThat(index.getBySequenceHash(new ByteArray(hash))).containsOnlyElementsOf(packedIndex.getBySequenceHash(new ByteArray(hash)))
+        .hasSameSizeAs(packedIndex.getBySequenceHash(new ByteArray(hash)));
+    }
+    for (int r = 0; r < 13; r++) {
+      assertThat(index.getByResourceId("r" + r)).containsOnlyElementsOf(packedIndex.getByResourceId("r" + r))
+        .hasSameSizeAs(packedIndex.getByResourceId("r" + r));
+    }
+  }
+
+  @Test
+  public void close_deletes_files() throws IOException {
+    index.insert(newBlock("a", 1, 1));
+    index.getBySequenceHash(new ByteArray(1L));
+    assertThat(dir.list()).isNotEmpty();
+
+    index.close();
+
+    assertThat(dir.list()).isEmpty();
+  }
+
+  /**
+   * Given: index, which accepts blocks with 4-byte hash.
+   * Expected: exception during insertion of block with 8-byte hash.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void attempt_to_insert_hash_of_incorrect_size() {
+    MappedCloneIndex index = new MappedCloneIndex(dir, 4, 1);
+    index.insert(newBlock("a", 1, 1));
+  }
+
+  /**
+   * Given: index, which accepts blocks with 4-byte hash.
+   * Expected: exception during search by 8-byte hash.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void attempt_to_find_hash_of_incorrect_size() {
+    MappedCloneIndex index = new MappedCloneIndex(dir, 4, 1);
+    index.getBySequenceHash(new ByteArray(1L));
+  }
+
+  private static Block newBlock(String resourceId, long hash, int indexInFile) {
+    return Block.builder()
+      .setResourceId(resourceId)
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(indexInFile)
+      .setLines(indexInFile, indexInFile + 1)
+      .build();
+  }
+
+}
@@ -42,11 +42,23 @@ public class FileCacheBuilder {
   }
 
   public FileCache build() {
+    File cacheDir = new File(resolveUserHome(), "cache");
+    return FileCache.create(cacheDir, logger);
+  }
+
+  /**
+   * Base directory of the persistent caches of HTTP responses, in the same user home as the file cache. Directory is
+   * not created.
+   */
+  public File buildHttpCacheDir() {
+    return new File(resolveUserHome(), "http_cache");
+  }
+
+  private File resolveUserHome() {
     if (userHome == null) {
       userHome = findHome();
     }
-    File cacheDir = new File(userHome, "cache");
-    return FileCache.create(cacheDir, logger);
+    return userHome;
   }
   
   private static File findHome() {
@@ -41,6 +41,15 @@ public class FileCacheBuilderTest {
     assertThat(cache.getDir().getParentFile()).isEqualTo(userHome);
   }
 
+  @Test
+  public void http_cache_dir_is_in_user_home() throws Exception {
+    File userHome = temp.newFolder();
+    File dir = new FileCacheBuilder(mock(Logger.class)).setUserHome(userHome).buildHttpCacheDir();
+
+    assertThat(dir.getName()).isEqualTo("http_cache");
+    assertThat(dir.getParentFile()).isEqualTo(userHome);
+  }
+
   @Test
   public void user_home_property_can_be_null() {
     FileCache cache = new FileCacheBuilder(mock(Logger.class)).setUserHome((String) null).build();
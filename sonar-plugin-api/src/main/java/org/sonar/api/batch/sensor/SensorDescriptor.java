@@ -96,4 +96,12 @@ public interface SensorDescriptor {
    * @since 6.5
    */
   SensorDescriptor onlyWhenConfiguration(Predicate<Configuration> predicate);
+
+  /**
+   * This sensor can be executed concurrently with other thread-safe sensors that work on other languages.
+   * It only reads and saves data of files of the languages declared with {@link #onlyOnLanguages(String...)},
+   * and does not share mutable state with other sensors. Ignored if no language is declared.
+   * @since 6.6
+   */
+  SensorDescriptor threadSafe();
 }
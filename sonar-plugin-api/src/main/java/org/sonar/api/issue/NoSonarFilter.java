@@ -19,9 +19,10 @@
  */
 package org.sonar.api.issue;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.fs.InputFile;
@@ -36,19 +37,21 @@ import org.sonar.api.scan.issue.filter.IssueFilterChain;
  * Plugins, via {@link ScannerSide}s, must feed this filter by registering the
  * lines that contain "NOSONAR". Note that filters are disabled for the issues reported by
  * end-users from UI or web services.
+ * <br>
+ * Lines can be registered by sensors executed concurrently, while issues of other files are filtered.
  *
  * @since 3.6
  */
 public class NoSonarFilter implements IssueFilter {
 
-  private final Map<String, Set<Integer>> noSonarLinesByResource = new HashMap<>();
+  private final Map<String, Set<Integer>> noSonarLinesByResource = new ConcurrentHashMap<>();
 
   /**
    * @deprecated since 5.0 use {@link #noSonarInFile(InputFile, Set)}
    */
   @Deprecated
   public NoSonarFilter addComponent(String componentKey, Set<Integer> noSonarLines) {
-    noSonarLinesByResource.put(componentKey, noSonarLines);
+    register(componentKey, noSonarLines);
     return this;
   }
 
@@ -59,10 +62,18 @@ public class NoSonarFilter implements IssueFilter {
    * @since 5.0
    */
   public NoSonarFilter noSonarInFile(InputFile inputFile, Set<Integer> noSonarLines) {
-    noSonarLinesByResource.put(((DefaultInputFile) inputFile).key(), noSonarLines);
+    register(((DefaultInputFile) inputFile).key(), noSonarLines);
     return this;
   }
 
+  private void register(String componentKey, @Nullable Set<Integer> noSonarLines) {
+    if (noSonarLines == null) {
+      noSonarLinesByResource.remove(componentKey);
+    } else {
+      noSonarLinesByResource.put(componentKey, noSonarLines);
+    }
+  }
+
   @Override
   public boolean accept(FilterableIssue issue, IssueFilterChain chain) {
     boolean accepted = true;
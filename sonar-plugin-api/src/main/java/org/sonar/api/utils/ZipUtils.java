@@ -198,6 +198,19 @@ public final class ZipUtils {
     }
   }
 
+  /**
+   * Compresses a directory into a stream, for example to send it over network without
+   * storing the zip file on disk. The stream is not closed.
+   *
+   * @since 6.6
+   */
+  public static void zipDir(File dir, OutputStream out) throws IOException {
+    ZipOutputStream zout = new ZipOutputStream(out);
+    doZipDir(dir, zout);
+    zout.finish();
+    zout.flush();
+  }
+
   private static void doZip(String entryName, InputStream in, ZipOutputStream out) throws IOException {
     ZipEntry entry = new ZipEntry(entryName);
     out.putNextEntry(entry);
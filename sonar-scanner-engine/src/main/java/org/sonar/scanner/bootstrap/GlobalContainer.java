@@ -87,6 +87,7 @@ public class GlobalContainer extends ComponentContainer {
       StoragesManager.class,
       MutableGlobalSettings.class,
       new GlobalConfigurationProvider(),
+      HttpCacheDirectory.class,
       new ScannerWsClientProvider(),
       DefaultServer.class,
       new GlobalTempFolderProvider(),
@@ -0,0 +1,128 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.CheckForNull;
+import org.picocontainer.Startable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.home.cache.DirectoryLock;
+import org.sonar.home.cache.FileCacheBuilder;
+
+/**
+ * Directory of the persistent cache of HTTP responses. The OkHttp cache supports a single instance per directory,
+ * whereas the user home is shared by all the analyses executed on the same machine. Each analysis locks one of
+ * the sub-directories of {@code <user home>/http_cache} until it stops, so that concurrent analyses use different
+ * sub-directories. No cache is used when all of them are locked.
+ * <p>
+ * File locks are held by the process, and closing any channel on a lock file releases all the locks of the process
+ * on this file. That's why the directories locked by the analyses executed in the same JVM are registered, and their
+ * lock files are never opened again until they are unlocked.
+ * </p>
+ */
+public class HttpCacheDirectory implements Startable {
+
+  static final int MAX_DIRECTORIES = 8;
+  private static final Logger LOG = Loggers.get(HttpCacheDirectory.class);
+  private static final Set<File> LOCKED_IN_JVM = ConcurrentHashMap.newKeySet();
+
+  private final GlobalProperties settings;
+  private boolean initialized = false;
+  private File directory;
+  private DirectoryLock lock;
+
+  public HttpCacheDirectory(GlobalProperties settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * Locks a directory, if not already done.
+   * @return the locked directory, or {@code null} if all directories are locked by other analyses
+   */
+  @CheckForNull
+  public synchronized File get() {
+    if (!initialized) {
+      initialized = true;
+      directory = lockDirectory();
+    }
+    return directory;
+  }
+
+  @CheckForNull
+  private File lockDirectory() {
+    File baseDir = new FileCacheBuilder(new Slf4jLogger()).setUserHome(settings.property("sonar.userHome")).buildHttpCacheDir();
+    for (int i = 0; i < MAX_DIRECTORIES; i++) {
+      File dir = new File(baseDir, String.valueOf(i));
+      try {
+        Files.createDirectories(dir.toPath());
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to create directory " + dir, e);
+      }
+      if (!LOCKED_IN_JVM.add(dir.getAbsoluteFile())) {
+        // locked by another analysis executed in the same JVM
+        continue;
+      }
+      DirectoryLock candidate = new DirectoryLock(dir.toPath(), new Slf4jLogger());
+      if (tryLock(candidate)) {
+        lock = candidate;
+        return dir;
+      }
+      LOCKED_IN_JVM.remove(dir.getAbsoluteFile());
+    }
+    LOG.debug("HTTP cache is not used, all its directories are locked by other analyses");
+    return null;
+  }
+
+  private static boolean tryLock(DirectoryLock lock) {
+    try {
+      if (lock.tryLock()) {
+        return true;
+      }
+    } catch (OverlappingFileLockException e) {
+      // locked in the same JVM by another component. The channel is not closed, as it would release this other lock.
+      return false;
+    }
+    // locked by another process, this process does not hold any lock on the file
+    lock.unlock();
+    return false;
+  }
+
+  @Override
+  public void start() {
+    // directory is locked when needed
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (lock != null) {
+      lock.unlock();
+      lock = null;
+      LOCKED_IN_JVM.remove(directory.getAbsoluteFile());
+    }
+    directory = null;
+    initialized = false;
+  }
+}
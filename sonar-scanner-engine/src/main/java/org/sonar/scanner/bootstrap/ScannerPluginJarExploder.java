@@ -20,9 +20,9 @@
 package org.sonar.scanner.bootstrap;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import org.apache.commons.io.FileUtils;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.utils.ZipUtils;
 import org.sonar.core.platform.ExplodedPlugin;
@@ -51,27 +51,29 @@ public class ScannerPluginJarExploder extends PluginJarExploder {
     }
   }
 
+  /**
+   * Libraries of plugins are extracted once in the user cache, next to the JAR file. As the JAR file is stored
+   * in a directory named by its hash, the extracted directory can be reused by all the following analyses.
+   * <p>
+   * The directory is extracted in a temporary location then atomically renamed, so readers never see a partially
+   * extracted directory and don't need any lock. Concurrent processes may extract the same plugin, only the first
+   * rename wins.
+   */
   private File unzipFile(File cachedFile) throws IOException {
     String filename = cachedFile.getName();
     File destDir = new File(cachedFile.getParentFile(), filename + "_unzip");
-    File lockFile = new File(cachedFile.getParentFile(), filename + "_unzip.lock");
     if (!destDir.exists()) {
-      FileOutputStream out = new FileOutputStream(lockFile);
+      File tempDir = fileCache.createTempDir();
       try {
-        java.nio.channels.FileLock lock = out.getChannel().lock();
-        try {
-          // Recheck in case of concurrent processes
-          if (!destDir.exists()) {
-            File tempDir = fileCache.createTempDir();
-            ZipUtils.unzip(cachedFile, tempDir, newLibFilter());
-            FileUtils.moveDirectory(tempDir, destDir);
-          }
-        } finally {
-          lock.release();
+        ZipUtils.unzip(cachedFile, tempDir, newLibFilter());
+        Files.move(tempDir.toPath(), destDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        if (!destDir.exists()) {
+          throw e;
         }
+        // extracted concurrently by another process
       } finally {
-        out.close();
-        deleteQuietly(lockFile);
+        deleteQuietly(tempDir);
       }
     }
     return destDir;
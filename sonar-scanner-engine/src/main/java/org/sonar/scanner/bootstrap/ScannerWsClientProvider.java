@@ -19,6 +19,7 @@
  */
 package org.sonar.scanner.bootstrap;
 
+import java.io.File;
 import org.picocontainer.injectors.ProviderAdapter;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.ScannerSide;
@@ -36,10 +37,13 @@ public class ScannerWsClientProvider extends ProviderAdapter {
   static final int CONNECT_TIMEOUT_MS = 5_000;
   static final String READ_TIMEOUT_SEC_PROPERTY = "sonar.ws.timeout";
   static final int DEFAULT_READ_TIMEOUT_SEC = 60;
+  static final String HTTP_CACHE_ENABLED_PROPERTY = "sonar.ws.cache.enabled";
+  static final long HTTP_CACHE_MAX_SIZE_BYTES = 100L * 1024 * 1024;
 
   private ScannerWsClient wsClient;
 
-  public synchronized ScannerWsClient provide(final GlobalProperties settings, final EnvironmentInformation env, GlobalMode globalMode) {
+  public synchronized ScannerWsClient provide(final GlobalProperties settings, final EnvironmentInformation env, GlobalMode globalMode,
+    HttpCacheDirectory httpCacheDirectory) {
     if (wsClient == null) {
       String url = defaultIfBlank(settings.property("sonar.host.url"), CoreProperties.SERVER_BASE_URL_DEFAULT_VALUE);
       HttpConnector.Builder connectorBuilder = HttpConnector.newBuilder();
@@ -53,6 +57,14 @@ public class ScannerWsClientProvider extends ProviderAdapter {
         .url(url)
         .credentials(login, settings.property(CoreProperties.PASSWORD));
 
+      // responses of server are revalidated with conditional requests (ETag, Last-Modified)
+      if (!globalMode.isMediumTest() && !"false".equalsIgnoreCase(settings.property(HTTP_CACHE_ENABLED_PROPERTY))) {
+        File cacheDir = httpCacheDirectory.get();
+        if (cacheDir != null) {
+          connectorBuilder.cache(cacheDir, HTTP_CACHE_MAX_SIZE_BYTES);
+        }
+      }
+
       // OkHttp detect 'http.proxyHost' java property, but credentials should be filled
       final String proxyUser = System.getProperty("http.proxyUser", "");
       if (!proxyUser.isEmpty()) {
@@ -22,13 +22,16 @@ package org.sonar.scanner.cpd;
 import static com.google.common.collect.FluentIterable.from;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.CheckForNull;
 
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
@@ -36,6 +39,7 @@ import org.sonar.api.batch.fs.internal.DefaultInputComponent;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.duplications.block.Block;
+import org.sonar.duplications.detector.suffixarray.SuffixArrayCloneDetectionAlgorithm;
 import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
@@ -92,6 +96,20 @@ public class CpdExecutor {
       LOG.info("{} {} had no CPD blocks", filesWithoutBlocks, pluralize(filesWithoutBlocks));
     }
     progressReport.start(String.format("Calculating CPD for %d %s", total, pluralize(total)));
+    try {
+      if (settings.isProjectWideDetectionEnabled()) {
+        runProjectWideCpdAnalysis();
+      } else {
+        runCpdAnalysisByFile(timeout);
+      }
+      progressReport.stop("CPD calculation finished");
+    } catch (Exception e) {
+      progressReport.stop("");
+      throw e;
+    }
+  }
+
+  private void runCpdAnalysisByFile(long timeout) {
     ExecutorService executorService = Executors.newSingleThreadExecutor();
     try {
       Iterator<ResourceBlocks> it = index.iterator();
@@ -101,24 +119,38 @@ public class CpdExecutor {
         runCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
         count++;
       }
-      progressReport.stop("CPD calculation finished");
-    } catch (Exception e) {
-      progressReport.stop("");
-      throw e;
     } finally {
       executorService.shutdown();
     }
   }
 
+  /**
+   * Detects duplications of all files at once, so that there is no timeout by file.
+   */
+  private void runProjectWideCpdAnalysis() {
+    progressReport.message("Detection of duplications in all files");
+    Map<String, List<CloneGroup>> duplicationsByFile = SuffixArrayCloneDetectionAlgorithm.detect(index, Runtime.getRuntime().availableProcessors());
+
+    Iterator<ResourceBlocks> it = index.iterator();
+    while (it.hasNext()) {
+      String componentKey = it.next().resourceId();
+      DefaultInputComponent component = getComponent(componentKey);
+      if (component != null) {
+        progressReport.message(String.format("%d/%d - current file: %s", count, total, ((InputFile) component).absolutePath()));
+        saveFilteredDuplications(component, duplicationsByFile.getOrDefault(componentKey, Collections.emptyList()));
+      }
+      count++;
+    }
+  }
+
   private static String pluralize(int files) {
     return files == 1 ? "file" : "files";
   }
 
   @VisibleForTesting
   void runCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
-    DefaultInputComponent component = (DefaultInputComponent) componentStore.getByKey(componentKey);
+    DefaultInputComponent component = getComponent(componentKey);
     if (component == null) {
-      LOG.error("Resource not found in component store: {}. Skipping CPD computation for it", componentKey);
       return;
     }
 
@@ -138,6 +170,20 @@ public class CpdExecutor {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
     }
 
+    saveFilteredDuplications(component, duplications);
+  }
+
+  @CheckForNull
+  private DefaultInputComponent getComponent(String componentKey) {
+    DefaultInputComponent component = (DefaultInputComponent) componentStore.getByKey(componentKey);
+    if (component == null) {
+      LOG.error("Resource not found in component store: {}. Skipping CPD computation for it", componentKey);
+    }
+    return component;
+  }
+
+  private void saveFilteredDuplications(DefaultInputComponent component, List<CloneGroup> duplications) {
+    InputFile inputFile = (InputFile) component;
     List<CloneGroup> filtered;
     if (!"java".equalsIgnoreCase(inputFile.language())) {
       int minTokens = settings.getMinimumTokens(inputFile.language());
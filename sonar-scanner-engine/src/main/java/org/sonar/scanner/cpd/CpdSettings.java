@@ -26,6 +26,10 @@ import org.sonar.api.config.Configuration;
 import org.sonar.duplications.block.BlockChunker;
 
 public class CpdSettings {
+  static final String PROJECT_WIDE_DETECTION_PROP_KEY = "sonar.cpd.projectWideDetection";
+  static final String MAPPED_INDEX_THRESHOLD_PROP_KEY = "sonar.cpd.mappedIndexThreshold";
+  private static final int DEFAULT_MAPPED_INDEX_THRESHOLD = 500_000;
+
   private final Configuration settings;
   private final String branch;
 
@@ -40,6 +44,21 @@ public class CpdSettings {
       && StringUtils.isBlank(branch);
   }
 
+  /**
+   * Whether duplications of all files are detected at once by {@link org.sonar.duplications.detector.suffixarray.SuffixArrayCloneDetectionAlgorithm},
+   * instead of file by file with a timeout.
+   */
+  public boolean isProjectWideDetectionEnabled() {
+    return settings.getBoolean(PROJECT_WIDE_DETECTION_PROP_KEY).orElse(false);
+  }
+
+  /**
+   * Number of blocks above which the index of blocks is stored in memory-mapped files instead of heap.
+   */
+  public int getMappedIndexThreshold() {
+    return settings.getInt(MAPPED_INDEX_THRESHOLD_PROP_KEY).orElse(DEFAULT_MAPPED_INDEX_THRESHOLD);
+  }
+
   /**
    * Not applicable to Java, as the {@link BlockChunker} that it uses does not record start and end units of each block. 
    * Also, it uses statements instead of tokens. 
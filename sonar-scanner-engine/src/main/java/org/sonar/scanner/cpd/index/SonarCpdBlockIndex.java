@@ -19,48 +19,60 @@
  */
 package org.sonar.scanner.cpd.index;
 
+import java.io.IOException;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.sonar.api.batch.fs.InputFile;
+import org.picocontainer.Startable;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.utils.TempFolder;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.AbstractCloneIndex;
 import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.MappedCloneIndex;
 import org.sonar.duplications.index.PackedMemoryCloneIndex;
 import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import org.sonar.scanner.cpd.CpdSettings;
 import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.report.BufferedReportWriter;
 import org.sonar.scanner.report.ReportPublisher;
 
-public class SonarCpdBlockIndex extends AbstractCloneIndex {
+public class SonarCpdBlockIndex extends AbstractCloneIndex implements Startable {
   private static final Logger LOG = Loggers.get(SonarCpdBlockIndex.class);
-  private final CloneIndex mem = new PackedMemoryCloneIndex();
+  private CloneIndex mem = new PackedMemoryCloneIndex();
   private final ReportPublisher publisher;
   // Files already tokenized
-  private final Set<InputFile> indexedFiles = new HashSet<>();
+  private final Set<InputFile> indexedFiles = ConcurrentHashMap.newKeySet();
   private final CpdSettings settings;
+  private final TempFolder tempFolder;
+  private int noBlocks = 0;
 
-  public SonarCpdBlockIndex(ReportPublisher publisher, CpdSettings settings) {
+  public SonarCpdBlockIndex(ReportPublisher publisher, CpdSettings settings, TempFolder tempFolder) {
     this.publisher = publisher;
     this.settings = settings;
+    this.tempFolder = tempFolder;
   }
 
+  /**
+   * Can be called concurrently by sensors.
+   */
   public void insert(InputFile inputFile, Collection<Block> blocks) {
     if (settings.isCrossProjectDuplicationEnabled()) {
       int id = ((DefaultInputFile) inputFile).batchId();
-      if (publisher.getWriter().hasComponentData(FileStructure.Domain.CPD_TEXT_BLOCKS, id)) {
-        throw new UnsupportedOperationException("Trying to save CPD tokens twice for the same file is not supported: " + inputFile.absolutePath());
+      BufferedReportWriter writer = publisher.getBufferedWriter();
+      if (writer.hasComponentData(FileStructure.Domain.CPD_TEXT_BLOCKS, id)) {
+        throw cpdTokensSavedTwice(inputFile);
       }
       final ScannerReport.CpdTextBlock.Builder builder = ScannerReport.CpdTextBlock.newBuilder();
-      publisher.getWriter().writeCpdTextBlocks(id, blocks.stream().map(block -> {
+      boolean written = writer.writeCpdTextBlocks(id, blocks.stream().map(block -> {
         builder.clear();
         builder.setStartLine(block.getStartLine());
         builder.setEndLine(block.getEndLine());
@@ -69,16 +81,47 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
         builder.setHash(block.getBlockHash().toHexString());
         return builder.build();
       }).collect(Collectors.toList()));
+      if (!written) {
+        // saved concurrently by another thread
+        throw cpdTokensSavedTwice(inputFile);
+      }
     }
+    insertInIndex(inputFile, blocks);
+  }
+
+  private synchronized void insertInIndex(InputFile inputFile, Collection<Block> blocks) {
     for (Block block : blocks) {
       mem.insert(block);
     }
+    noBlocks += blocks.size();
+    if (noBlocks > settings.getMappedIndexThreshold() && !(mem instanceof MappedCloneIndex)) {
+      switchToMappedIndex();
+    }
     if (blocks.isEmpty()) {
       LOG.debug("Not enough content in '{}' to have CPD blocks, it will not be part of the duplication detection", inputFile.relativePath());
     }
     indexedFiles.add(inputFile);
   }
 
+  private static UnsupportedOperationException cpdTokensSavedTwice(InputFile inputFile) {
+    return new UnsupportedOperationException("Trying to save CPD tokens twice for the same file is not supported: " + inputFile.absolutePath());
+  }
+
+  /**
+   * Moves blocks out of heap, so that memory used by the index does not grow with the size of the project.
+   */
+  private void switchToMappedIndex() {
+    LOG.debug("More than {} CPD blocks, index is moved to disk", settings.getMappedIndexThreshold());
+    MappedCloneIndex mapped = new MappedCloneIndex(tempFolder.newDir("cpd"));
+    Iterator<ResourceBlocks> it = mem.iterator();
+    while (it.hasNext()) {
+      for (Block block : it.next().blocks()) {
+        mapped.insert(block);
+      }
+    }
+    mem = mapped;
+  }
+
   public int noIndexedFiles() {
     return indexedFiles.size();
   }
@@ -116,4 +159,20 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
     return mem.noResources();
   }
 
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    if (mem instanceof MappedCloneIndex) {
+      try {
+        ((MappedCloneIndex) mem).close();
+      } catch (IOException e) {
+        LOG.warn("Fail to delete CPD index", e);
+      }
+    }
+  }
+
 }
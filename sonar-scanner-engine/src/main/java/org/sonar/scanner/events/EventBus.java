@@ -36,9 +36,10 @@ public class EventBus {
   }
 
   /**
-   * Fires the given event.
+   * Fires the given event. Handlers receive one event at a time, even when events are fired by sensors
+   * executed concurrently.
    */
-  public void fireEvent(BatchEvent event) {
+  public synchronized void fireEvent(BatchEvent event) {
     doFireEvent(event);
   }
 
@@ -48,8 +48,9 @@ public class DefaultIndex {
   private final InputComponentStore componentStore;
   private final MeasureCache measureCache;
   private final MetricFinder metricFinder;
-  // caches
-  private DefaultSensorStorage sensorStorage;
+  // caches. Storage of the last started module: modules can be scanned concurrently, but saving measures
+  // only depends on project level components, so it's valid for components of any module.
+  private volatile DefaultSensorStorage sensorStorage;
 
   private InputComponentTree tree;
 
@@ -34,6 +34,7 @@ import org.sonar.scanner.issue.IssueCache;
 import org.sonar.scanner.issue.IssueTransformer;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReportReader;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
 import org.sonar.scanner.report.ReportPublisher;
 import org.sonar.scanner.scan.filesystem.InputComponentStore;
 import org.sonar.scanner.util.ProgressReport;
@@ -65,7 +66,9 @@ public class IssueTransition {
       localIssueTracking.init();
     }
 
-    ScannerReportReader reader = new ScannerReportReader(reportPublisher.getReportDir().toFile());
+    ScannerReportWriter writer = reportPublisher.getWriter();
+    writer.flush();
+    ScannerReportReader reader = new ScannerReportReader(reportPublisher.getReportDir().toFile(), writer.getLayout());
     int nbComponents = inputComponentStore.all().size();
 
     if (nbComponents == 0) {
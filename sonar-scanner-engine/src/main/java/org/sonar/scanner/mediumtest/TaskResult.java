@@ -21,6 +21,7 @@ package org.sonar.scanner.mediumtest;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -29,7 +30,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.CheckForNull;
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.AnalysisMode;
@@ -43,6 +43,7 @@ import org.sonar.api.batch.sensor.highlighting.TypeOfText;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.scanner.issue.IssueCache;
 import org.sonar.scanner.issue.tracking.TrackedIssue;
+import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReport.Component;
 import org.sonar.scanner.protocol.output.ScannerReport.Metadata;
@@ -64,6 +65,7 @@ public class TaskResult implements org.sonar.scanner.mediumtest.ScanTaskObserver
   private Map<String, Component> reportComponents = new HashMap<>();
   private Map<String, InputDir> inputDirs = new HashMap<>();
   private ScannerReportReader reader;
+  private File reportDir;
 
   @Override
   public void scanTaskCompleted(ProjectScanContainer container) {
@@ -73,7 +75,9 @@ public class TaskResult implements org.sonar.scanner.mediumtest.ScanTaskObserver
     }
 
     ReportPublisher reportPublisher = container.getComponentByType(ReportPublisher.class);
-    reader = new ScannerReportReader(reportPublisher.getReportDir().toFile());
+    reportDir = reportPublisher.getReportDir().toFile();
+    // metadata, which gives the layout, is not written in issues mode
+    reader = new ScannerReportReader(reportDir, reportPublisher.getWriter().getLayout());
     if (!container.getComponentByType(AnalysisMode.class).isIssues()) {
       Metadata readMetadata = getReportReader().readMetadata();
       int rootComponentRef = readMetadata.getRootComponentRef();
@@ -101,6 +105,10 @@ public class TaskResult implements org.sonar.scanner.mediumtest.ScanTaskObserver
     return reader;
   }
 
+  public File analysisLog() {
+    return new FileStructure(reportDir).analysisLog();
+  }
+
   private void storeFs(ProjectScanContainer container) {
     InputComponentStore inputFileCache = container.getComponentByType(InputComponentStore.class);
     for (InputFile inputPath : inputFileCache.allFiles()) {
@@ -261,7 +269,7 @@ public class TaskResult implements org.sonar.scanner.mediumtest.ScanTaskObserver
 
   public ScannerReport.Test firstTestExecutionForName(InputFile testFile, String testName) {
     int ref = reportComponents.get(((DefaultInputFile) testFile).key()).getRef();
-    try (InputStream inputStream = FileUtils.openInputStream(getReportReader().readTests(ref))) {
+    try (InputStream inputStream = getReportReader().openTests(ref)) {
       ScannerReport.Test test = ScannerReport.Test.parser().parseDelimitedFrom(inputStream);
       while (test != null) {
         if (test.getName().equals(testName)) {
@@ -277,7 +285,7 @@ public class TaskResult implements org.sonar.scanner.mediumtest.ScanTaskObserver
 
   public ScannerReport.CoverageDetail coveragePerTestFor(InputFile testFile, String testName) {
     int ref = reportComponents.get(((DefaultInputFile) testFile).key()).getRef();
-    try (InputStream inputStream = FileUtils.openInputStream(getReportReader().readCoverageDetails(ref))) {
+    try (InputStream inputStream = getReportReader().openCoverageDetails(ref)) {
       ScannerReport.CoverageDetail details = ScannerReport.CoverageDetail.parser().parseDelimitedFrom(inputStream);
       while (details != null) {
         if (details.getTestName().equals(testName)) {
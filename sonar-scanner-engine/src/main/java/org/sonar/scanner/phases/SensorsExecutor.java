@@ -20,9 +20,18 @@
 package org.sonar.scanner.phases;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
@@ -32,6 +41,7 @@ import org.sonar.api.batch.fs.internal.SensorStrategy;
 import org.sonar.api.resources.Project;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
+import org.sonar.scanner.sensor.SensorWrapper;
 
 @ScannerSide
 public class SensorsExecutor {
@@ -77,9 +87,70 @@ public class SensorsExecutor {
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(allSensors), false));
   }
 
+  /**
+   * Consecutive thread-safe sensors that work on different languages are executed concurrently.
+   * Others are executed one after the other, in the order of the dictionary.
+   */
   private void execute(SensorContext context, Collection<Sensor> sensors) {
+    List<Sensor> concurrentSensors = new ArrayList<>();
+    Set<String> concurrentLanguages = new HashSet<>();
     for (Sensor sensor : sensors) {
-      executeSensor(context, sensor);
+      boolean threadSafe = isThreadSafe(sensor);
+      if (!threadSafe || !Collections.disjoint(concurrentLanguages, ((SensorWrapper) sensor).languages())) {
+        executeConcurrently(context, concurrentSensors);
+        concurrentSensors.clear();
+        concurrentLanguages.clear();
+      }
+      if (threadSafe) {
+        concurrentSensors.add(sensor);
+        concurrentLanguages.addAll(((SensorWrapper) sensor).languages());
+      } else {
+        executeSensor(context, sensor);
+      }
+    }
+    executeConcurrently(context, concurrentSensors);
+  }
+
+  private static boolean isThreadSafe(Sensor sensor) {
+    return sensor instanceof SensorWrapper && ((SensorWrapper) sensor).isThreadSafe() && !((SensorWrapper) sensor).languages().isEmpty();
+  }
+
+  private void executeConcurrently(SensorContext context, List<Sensor> sensors) {
+    if (sensors.size() <= 1) {
+      sensors.forEach(sensor -> executeSensor(context, sensor));
+      return;
+    }
+    int threads = Math.min(sensors.size(), Runtime.getRuntime().availableProcessors());
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("Sensor-%d").build());
+    try {
+      List<Future<?>> tasks = new ArrayList<>(sensors.size());
+      for (Sensor sensor : sensors) {
+        tasks.add(executorService.submit(() -> executeSensor(context, sensor)));
+      }
+      for (Future<?> task : tasks) {
+        task.get();
+      }
+    } catch (ExecutionException e) {
+      // Unwrap ExecutionException
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } finally {
+      executorService.shutdownNow();
+      awaitTermination(executorService);
+    }
+  }
+
+  /**
+   * Sensors still running after the failure of another one must be completed before the failure is propagated,
+   * so that they don't change the data of the module once its analysis is over.
+   */
+  private static void awaitTermination(ExecutorService executorService) {
+    try {
+      executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
   }
 
@@ -25,7 +25,9 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TreeSet;
@@ -62,6 +64,11 @@ public class AnalysisContextReportPublisher {
 
   private ScannerReportWriter writer;
 
+  // modules can be scanned concurrently, but their settings are dumped in the order of the sequential scan
+  private final Map<DefaultInputModule, String> pendingModuleSettings = new HashMap<>();
+  private List<DefaultInputModule> modulesInScanOrder;
+  private int nextModuleIndex = 0;
+
   public AnalysisContextReportPublisher(AnalysisMode mode, ScannerPluginRepository pluginRepo, System2 system,
     ProjectRepositories projectRepos, GlobalConfiguration globalSettings, InputModuleHierarchy hierarchy) {
     this.mode = mode;
@@ -124,27 +131,69 @@ public class AnalysisContextReportPublisher {
     }
   }
 
-  public void dumpModuleSettings(DefaultInputModule module) {
+  public synchronized void dumpModuleSettings(DefaultInputModule module) {
     if (mode.isIssues()) {
       return;
     }
 
+    StringBuilder settings = new StringBuilder();
+    Map<String, String> moduleSpecificProps = collectModuleSpecificProps(module);
+    settings.append(String.format("Settings for module: %s", module.key())).append('\n');
+    for (String prop : new TreeSet<>(moduleSpecificProps.keySet())) {
+      if (isSystemProp(prop) || isEnvVariable(prop) || !isSqProp(prop)) {
+        continue;
+      }
+      dumpPropIfNotSensitive(settings, prop, moduleSpecificProps.get(prop));
+    }
+
+    List<DefaultInputModule> scanOrder = modulesInScanOrder();
+    if (!scanOrder.contains(module)) {
+      appendToAnalysisLog(settings);
+      return;
+    }
+    pendingModuleSettings.put(module, settings.toString());
+    StringBuilder nextSettings = new StringBuilder();
+    while (nextModuleIndex < scanOrder.size() && pendingModuleSettings.containsKey(scanOrder.get(nextModuleIndex))) {
+      nextSettings.append(pendingModuleSettings.remove(scanOrder.get(nextModuleIndex)));
+      nextModuleIndex++;
+    }
+    appendToAnalysisLog(nextSettings);
+  }
+
+  private List<DefaultInputModule> modulesInScanOrder() {
+    if (modulesInScanOrder == null) {
+      modulesInScanOrder = new ArrayList<>();
+      DefaultInputModule root = hierarchy.root();
+      if (root != null) {
+        addInScanOrder(root, modulesInScanOrder);
+      }
+    }
+    return modulesInScanOrder;
+  }
+
+  /**
+   * Same order as {@link org.sonar.scanner.scan.ProjectScanContainer}: children first.
+   */
+  private void addInScanOrder(DefaultInputModule module, List<DefaultInputModule> modules) {
+    for (DefaultInputModule child : hierarchy.children(module)) {
+      addInScanOrder(child, modules);
+    }
+    modules.add(module);
+  }
+
+  private void appendToAnalysisLog(CharSequence text) {
+    if (text.length() == 0) {
+      return;
+    }
     File analysisLog = writer.getFileStructure().analysisLog();
     try (BufferedWriter fileWriter = Files.newBufferedWriter(analysisLog.toPath(), StandardCharsets.UTF_8, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
-      Map<String, String> moduleSpecificProps = collectModuleSpecificProps(module);
-      fileWriter.append(String.format("Settings for module: %s", module.key())).append('\n');
-      for (String prop : new TreeSet<>(moduleSpecificProps.keySet())) {
-        if (isSystemProp(prop) || isEnvVariable(prop) || !isSqProp(prop)) {
-          continue;
-        }
-        dumpPropIfNotSensitive(fileWriter, prop, moduleSpecificProps.get(prop));
-      }
+      fileWriter.append(text);
     } catch (IOException e) {
       throw new IllegalStateException("Unable to write analysis log", e);
     }
   }
 
-  private static void dumpPropIfNotSensitive(BufferedWriter fileWriter, String prop, String value) throws IOException {
+  private static void dumpPropIfNotSensitive(Appendable fileWriter, String prop, String value) throws IOException {
     fileWriter.append(String.format(KEY_VALUE_FORMAT, prop, sensitive(prop) ? "******" : value)).append('\n');
   }
 
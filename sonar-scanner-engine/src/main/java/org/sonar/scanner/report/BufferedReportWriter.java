@@ -0,0 +1,210 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.report;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.Message;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.concurrent.ThreadSafe;
+import org.sonar.core.util.Protobuf;
+import org.sonar.scanner.protocol.output.FileStructure.Domain;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
+
+/**
+ * Buffers data of components saved by sensors, that may be executed concurrently. Messages are serialized
+ * by the calling thread, then written to the report in batches by a background thread. When the given budget
+ * of bytes is waiting in memory, callers are blocked until data is written.
+ * <p>
+ * Like {@link ScannerReportWriter#hasComponentData(Domain, int)}, data of a component can be written only once
+ * per domain. Data is visible in the report only after {@link #flush()}.
+ */
+@ThreadSafe
+public class BufferedReportWriter {
+
+  static final int DEFAULT_BUDGET = 32 * 1024 * 1024;
+
+  private final ScannerReportWriter writer;
+  private final int batchSize;
+  private final Semaphore availableBytes;
+  private final Set<Long> writtenComponents = ConcurrentHashMap.newKeySet();
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+  private final ExecutorService executorService;
+
+  // guarded by this
+  private List<ComponentData> batch = new ArrayList<>();
+  private int batchBytes = 0;
+
+  public BufferedReportWriter(ScannerReportWriter writer) {
+    this(writer, DEFAULT_BUDGET);
+  }
+
+  BufferedReportWriter(ScannerReportWriter writer, int budget) {
+    this.writer = writer;
+    // a batch waiting to be full never holds more than half of the budget, so that callers can't wait for each other
+    this.batchSize = Math.max(1, budget / 2);
+    this.availableBytes = new Semaphore(budget);
+    this.executorService = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("ReportWriter-%d").setDaemon(true).build());
+  }
+
+  public boolean hasComponentData(Domain domain, int componentRef) {
+    return writtenComponents.contains(key(domain, componentRef));
+  }
+
+  /**
+   * @return false if highlighting of the component was already written
+   */
+  public boolean writeComponentSyntaxHighlighting(int componentRef, Iterable<ScannerReport.SyntaxHighlightingRule> syntaxHighlightingRules) {
+    return write(Domain.SYNTAX_HIGHLIGHTINGS, componentRef, syntaxHighlightingRules);
+  }
+
+  /**
+   * @return false if symbols of the component were already written
+   */
+  public boolean writeComponentSymbols(int componentRef, Iterable<ScannerReport.Symbol> symbols) {
+    return write(Domain.SYMBOLS, componentRef, symbols);
+  }
+
+  /**
+   * @return false if CPD blocks of the component were already written
+   */
+  public boolean writeCpdTextBlocks(int componentRef, Iterable<ScannerReport.CpdTextBlock> blocks) {
+    return write(Domain.CPD_TEXT_BLOCKS, componentRef, blocks);
+  }
+
+  private <M extends Message> boolean write(Domain domain, int componentRef, Iterable<M> messages) {
+    checkFailure();
+    if (!writtenComponents.add(key(domain, componentRef))) {
+      return false;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Protobuf.writeStream(messages, out);
+    ComponentData data = new ComponentData(domain, componentRef, out.toByteArray(), batchSize);
+    availableBytes.acquireUninterruptibly(data.reservedBytes);
+
+    List<ComponentData> fullBatch = null;
+    synchronized (this) {
+      batch.add(data);
+      batchBytes += data.reservedBytes;
+      if (batchBytes >= batchSize) {
+        fullBatch = batch;
+        batch = new ArrayList<>();
+        batchBytes = 0;
+      }
+    }
+    if (fullBatch != null) {
+      submit(fullBatch);
+    }
+    return true;
+  }
+
+  /**
+   * Writes all the buffered data to the report and waits for completion.
+   */
+  public void flush() {
+    List<ComponentData> pendingBatch;
+    synchronized (this) {
+      pendingBatch = batch;
+      batch = new ArrayList<>();
+      batchBytes = 0;
+    }
+    try {
+      // batches are written in order by a single thread
+      executorService.submit(() -> {
+        writeBatch(pendingBatch);
+        writer.flush();
+      }).get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to write report", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+    checkFailure();
+  }
+
+  public void close() {
+    executorService.shutdownNow();
+  }
+
+  private void submit(List<ComponentData> fullBatch) {
+    executorService.execute(() -> {
+      try {
+        writeBatch(fullBatch);
+      } catch (RuntimeException e) {
+        failure.compareAndSet(null, e);
+      }
+    });
+  }
+
+  private void writeBatch(List<ComponentData> dataList) {
+    RuntimeException error = null;
+    for (ComponentData data : dataList) {
+      try {
+        if (error == null) {
+          writer.writeComponentData(data.domain, data.componentRef, data.bytes);
+        }
+      } catch (RuntimeException e) {
+        error = e;
+      } finally {
+        // always released, so that callers are not blocked after a failure
+        availableBytes.release(data.reservedBytes);
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  private void checkFailure() {
+    RuntimeException e = failure.get();
+    if (e != null) {
+      throw new IllegalStateException("Fail to write report", e);
+    }
+  }
+
+  private static long key(Domain domain, int componentRef) {
+    return ((long) domain.ordinal() << 32) | (componentRef & 0xFFFFFFFFL);
+  }
+
+  private static class ComponentData {
+    private final Domain domain;
+    private final int componentRef;
+    private final byte[] bytes;
+    // bigger data is accepted even if it exceeds the batch size
+    private final int reservedBytes;
+
+    private ComponentData(Domain domain, int componentRef, byte[] bytes, int maxReservedBytes) {
+      this.domain = domain;
+      this.componentRef = componentRef;
+      this.bytes = bytes;
+      this.reservedBytes = Math.min(bytes.length, maxReservedBytes);
+    }
+  }
+}
@@ -62,7 +62,9 @@ public class ComponentsPublisher implements ReportPublisherStep {
 
   @Override
   public void publish(ScannerReportWriter writer) {
-    this.reader = new ScannerReportReader(writer.getFileStructure().root());
+    // issues are appended to the report being written
+    writer.flush();
+    this.reader = new ScannerReportReader(writer.getFileStructure().root(), writer.getLayout());
     this.writer = writer;
     recursiveWriteComponent((DefaultInputComponent) moduleHierarchy.root());
   }
@@ -86,6 +86,10 @@ public class MeasuresPublisher implements ReportPublisherStep {
       DefaultInputComponent component = (DefaultInputComponent) c;
       if (component.isFile()) {
         DefaultInputFile file = (DefaultInputFile) component;
+        if (componentStore.isUnchangedInIncrementalMode(file)) {
+          // measures of the previous analysis are copied by the Compute Engine
+          continue;
+        }
         // Recompute all coverage measures from line data to take into account the possible merge of several reports
         updateCoverageFromLineData(file);
         // Recompute test execution measures from MutableTestPlan to take into account the possible merge of several reports
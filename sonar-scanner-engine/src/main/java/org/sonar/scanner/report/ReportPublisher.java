@@ -34,6 +34,7 @@ import java.util.Map;
 import javax.annotation.Nullable;
 import okhttp3.HttpUrl;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.picocontainer.Startable;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.ScannerSide;
@@ -47,6 +48,7 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonar.scanner.protocol.output.FileStructure.Layout;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
 import org.sonarqube.ws.MediaTypes;
 import org.sonarqube.ws.WsCe;
@@ -64,6 +66,10 @@ public class ReportPublisher implements Startable {
   public static final String KEEP_REPORT_PROP_KEY = "sonar.scanner.keepReport";
   public static final String VERBOSE_KEY = "sonar.verbose";
   public static final String METADATA_DUMP_FILENAME = "report-task.txt";
+  /**
+   * If true (default), report is compressed while being uploaded, without temporary zip file.
+   */
+  public static final String STREAM_REPORT_PROP_KEY = "sonar.scanner.streamReport";
 
   private final Configuration settings;
   private final ScannerWsClient wsClient;
@@ -76,6 +82,7 @@ public class ReportPublisher implements Startable {
 
   private Path reportDir;
   private ScannerReportWriter writer;
+  private BufferedReportWriter bufferedWriter;
 
   public ReportPublisher(Configuration settings, ScannerWsClient wsClient, Server server, AnalysisContextReportPublisher contextPublisher,
     InputModuleHierarchy moduleHierarchy, DefaultAnalysisMode analysisMode, TempFolder temp, ReportPublisherStep[] publishers) {
@@ -92,7 +99,8 @@ public class ReportPublisher implements Startable {
   @Override
   public void start() {
     reportDir = moduleHierarchy.root().getWorkDir().resolve("scanner-report");
-    writer = new ScannerReportWriter(reportDir.toFile());
+    writer = new ScannerReportWriter(reportDir.toFile(), Layout.SEGMENTED);
+    bufferedWriter = new BufferedReportWriter(writer);
     contextPublisher.init(writer);
 
     if (!analysisMode.isIssues() && !analysisMode.isMediumTest()) {
@@ -105,6 +113,8 @@ public class ReportPublisher implements Startable {
 
   @Override
   public void stop() {
+    bufferedWriter.close();
+    writer.close();
     if (!shouldKeepReport()) {
       deleteQuietly(reportDir);
     }
@@ -118,16 +128,24 @@ public class ReportPublisher implements Startable {
     return writer;
   }
 
+  /**
+   * Writer of data saved by sensors. It is flushed before the report is generated.
+   */
+  public BufferedReportWriter getBufferedWriter() {
+    return bufferedWriter;
+  }
+
   public void execute() {
+    bufferedWriter.flush();
     // If this is a issues mode analysis then we should not upload reports
     String taskId = null;
     if (!analysisMode.isIssues()) {
-      File report = generateReportFile();
+      generateReport();
       if (shouldKeepReport()) {
         LOG.info("Analysis report generated in " + reportDir);
       }
       if (!analysisMode.isMediumTest()) {
-        taskId = upload(report);
+        taskId = shouldStreamReport() ? upload(newStreamedReportPart()) : upload(compressReport());
       }
     }
     logSuccess(taskId);
@@ -137,19 +155,26 @@ public class ReportPublisher implements Startable {
     return settings.getBoolean(KEEP_REPORT_PROP_KEY).orElse(false) || settings.getBoolean(VERBOSE_KEY).orElse(false);
   }
 
-  private File generateReportFile() {
+  private boolean shouldStreamReport() {
+    return settings.getBoolean(STREAM_REPORT_PROP_KEY).orElse(true);
+  }
+
+  private void generateReport() {
+    long startTime = System.currentTimeMillis();
+    for (ReportPublisherStep publisher : publishers) {
+      publisher.publish(writer);
+    }
+    writer.close();
+    long stopTime = System.currentTimeMillis();
+    LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir.toFile())));
+  }
+
+  private File compressReport() {
     try {
       long startTime = System.currentTimeMillis();
-      for (ReportPublisherStep publisher : publishers) {
-        publisher.publish(writer);
-      }
-      long stopTime = System.currentTimeMillis();
-      LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir.toFile())));
-
-      startTime = System.currentTimeMillis();
       File reportZip = temp.newFile("scanner-report", ".zip");
       ZipUtils.zipDir(reportDir.toFile(), reportZip);
-      stopTime = System.currentTimeMillis();
+      long stopTime = System.currentTimeMillis();
       LOG.info("Analysis reports compressed in {}ms, zip size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(reportZip)));
       return reportZip;
     } catch (IOException e) {
@@ -157,21 +182,40 @@ public class ReportPublisher implements Startable {
     }
   }
 
+  /**
+   * The report directory is compressed straight into the body of the HTTP request, which
+   * is sent in chunks. Compression and upload overlap, and the zip is never stored on disk.
+   */
+  @VisibleForTesting
+  PostRequest.Part newStreamedReportPart() {
+    return new PostRequest.Part(MediaTypes.ZIP, "scanner-report.zip", output -> {
+      CountingOutputStream countingOutput = new CountingOutputStream(output);
+      ZipUtils.zipDir(reportDir.toFile(), countingOutput);
+      LOG.info("Analysis report compressed while being uploaded, zip size={}", FileUtils.byteCountToDisplaySize(countingOutput.getByteCount()));
+    });
+  }
+
   /**
    * Uploads the report file to server and returns the generated task id
    */
   @VisibleForTesting
   String upload(File report) {
+    return upload(new PostRequest.Part(MediaTypes.ZIP, report));
+  }
+
+  /**
+   * Uploads the report to server and returns the generated task id
+   */
+  private String upload(PostRequest.Part reportPart) {
     LOG.debug("Upload report");
     long startTime = System.currentTimeMillis();
-    PostRequest.Part filePart = new PostRequest.Part(MediaTypes.ZIP, report);
     PostRequest post = new PostRequest("api/ce/submit")
       .setMediaType(MediaTypes.PROTOBUF)
       .setParam("organization", settings.get(CoreProperties.PROJECT_ORGANIZATION_PROPERTY).orElse(null))
       .setParam("projectKey", moduleHierarchy.root().key())
       .setParam("projectName", moduleHierarchy.root().getOriginalName())
       .setParam("projectBranch", moduleHierarchy.root().getBranch())
-      .setPart("report", filePart);
+      .setPart("report", reportPart);
 
     if (analysisMode.isIncremental()) {
       post.setParam("characteristic", "incremental=true");
@@ -20,11 +20,10 @@
 package org.sonar.scanner.report;
 
 import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
@@ -42,9 +41,7 @@ public class SourcePublisher implements ReportPublisherStep {
   @Override
   public void publish(ScannerReportWriter writer) {
     for (final DefaultInputFile inputFile : componentCache.allFilesToPublish()) {
-      File iofile = writer.getSourceFile(inputFile.batchId());
-
-      try (FileOutputStream output = new FileOutputStream(iofile);
+      try (OutputStream output = writer.newSourceOutput(inputFile.batchId());
         InputStream in = inputFile.inputStream();
         BufferedReader reader = new BufferedReader(new InputStreamReader(in, inputFile.charset()))) {
         writeSource(reader, output, inputFile.lines());
@@ -54,7 +51,7 @@ public class SourcePublisher implements ReportPublisherStep {
     }
   }
 
-  private static void writeSource(BufferedReader reader, FileOutputStream output, int lines) throws IOException {
+  private static void writeSource(BufferedReader reader, OutputStream output, int lines) throws IOException {
     int line = 0;
     String lineStr = reader.readLine();
     while (lineStr != null) {
@@ -22,17 +22,18 @@ package org.sonar.scanner.scan;
 import com.google.common.base.Preconditions;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.internal.InputComponentTree;
 
 public class DefaultComponentTree implements InputComponentTree {
-  private Map<InputComponent, InputComponent> parents = new HashMap<>();
-  private Map<InputComponent, Set<InputComponent>> children = new HashMap<>();
+  private Map<InputComponent, InputComponent> parents = new ConcurrentHashMap<>();
+  // modules can be scanned concurrently, but children of a given component are always indexed by the same module
+  private Map<InputComponent, Set<InputComponent>> children = new ConcurrentHashMap<>();
 
   public void index(InputComponent component, InputComponent parent) {
     Preconditions.checkNotNull(component);
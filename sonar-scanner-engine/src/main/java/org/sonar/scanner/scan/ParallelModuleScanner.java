@@ -0,0 +1,93 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
+
+/**
+ * Scans the modules of the project with a pool of threads. As in the sequential mode, a module is scanned only
+ * once all its children are scanned, so modules of different branches of the hierarchy are scanned concurrently.
+ * The root module is always scanned last, by the calling thread.
+ */
+class ParallelModuleScanner {
+
+  private final InputModuleHierarchy tree;
+  private final Consumer<DefaultInputModule> moduleScanner;
+  private final int parallelism;
+
+  ParallelModuleScanner(InputModuleHierarchy tree, Consumer<DefaultInputModule> moduleScanner, int parallelism) {
+    this.tree = tree;
+    this.moduleScanner = moduleScanner;
+    this.parallelism = parallelism;
+  }
+
+  void scan() {
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder().setNameFormat("ModuleScanner-%d").build());
+    // completed as soon as a module fails, so that the other modules don't need to be waited for
+    CompletableFuture<Void> failure = new CompletableFuture<>();
+    try {
+      CompletableFuture<Void> children = scanChildren(tree.root(), executor, failure);
+      CompletableFuture.anyOf(children, failure).join();
+    } catch (CompletionException e) {
+      Throwable cause = e;
+      while (cause instanceof CompletionException && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+    } finally {
+      executor.shutdownNow();
+      awaitTermination(executor);
+    }
+    moduleScanner.accept(tree.root());
+  }
+
+  /**
+   * Scans of other modules must be completed before a failure is propagated, as the project container
+   * and its storages are stopped right after.
+   */
+  private static void awaitTermination(ExecutorService executor) {
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private CompletableFuture<Void> scanChildren(DefaultInputModule module, ExecutorService executor, CompletableFuture<Void> failure) {
+    CompletableFuture<?>[] children = tree.children(module).stream()
+      .map(child -> scanChildren(child, executor, failure)
+        .thenRunAsync(() -> moduleScanner.accept(child), executor)
+        .whenComplete((result, e) -> {
+          if (e != null) {
+            failure.completeExceptionally(e);
+          }
+        }))
+      .toArray(CompletableFuture[]::new);
+    return CompletableFuture.allOf(children);
+  }
+}
@@ -21,6 +21,7 @@ package org.sonar.scanner.scan;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.InstantiationStrategy;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
@@ -29,6 +30,7 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Languages;
 import org.sonar.api.resources.ResourceTypes;
 import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.metric.ScannerMetrics;
@@ -95,6 +97,8 @@ public class ProjectScanContainer extends ComponentContainer {
 
   private static final Logger LOG = Loggers.get(ProjectScanContainer.class);
 
+  static final String MODULE_PARALLELISM_PROP_KEY = "sonar.scanner.moduleParallelism";
+
   private final AnalysisProperties props;
 
   public ProjectScanContainer(ComponentContainer globalContainer, AnalysisProperties props) {
@@ -109,8 +113,7 @@ public class ProjectScanContainer extends ComponentContainer {
     ProjectLock lock = getComponentByType(ProjectLock.class);
     lock.tryLock();
     getComponentByType(WorkDirectoriesInitializer.class).execute();
-    Settings settings = getComponentByType(Settings.class);
-    if (settings != null && settings.getBoolean(CoreProperties.PROFILING_LOG_PROPERTY)) {
+    if (isProfilingEnabled()) {
       add(PhasesSumUpTimeProfiler.class);
     }
     if (isTherePreviousAnalysis()) {
@@ -211,6 +214,11 @@ public class ProjectScanContainer extends ComponentContainer {
     addIfMissing(DefaultServerLineHashesLoader.class, ServerLineHashesLoader.class);
   }
 
+  private boolean isProfilingEnabled() {
+    Settings settings = getComponentByType(Settings.class);
+    return settings != null && settings.getBoolean(CoreProperties.PROFILING_LOG_PROPERTY);
+  }
+
   private boolean isTherePreviousAnalysis() {
     return getComponentByType(ProjectRepositories.class).lastAnalysisDate() != null;
   }
@@ -235,14 +243,45 @@ public class ProjectScanContainer extends ComponentContainer {
       LOG.info("Branch key: {}", branch);
     }
 
-    LOG.debug("Start recursive analysis of project modules");
-    scanRecursively(tree, tree.root());
+    int parallelism = getModuleParallelism();
+    if (parallelism > 1 && !tree.children(tree.root()).isEmpty()) {
+      LOG.info("Scan up to {} modules in parallel", parallelism);
+      instantiateComponents();
+      new ParallelModuleScanner(tree, this::scan, parallelism).scan();
+    } else {
+      LOG.debug("Start recursive analysis of project modules");
+      scanRecursively(tree, tree.root());
+    }
 
     if (analysisMode.isMediumTest()) {
       getComponentByType(ScanTaskObservers.class).notifyEndOfScanTask();
     }
   }
 
+  private int getModuleParallelism() {
+    String value = props.property(MODULE_PARALLELISM_PROP_KEY);
+    if (StringUtils.isBlank(value)) {
+      return 1;
+    }
+    int parallelism = NumberUtils.toInt(value.trim(), 0);
+    if (parallelism < 1) {
+      throw MessageException.of(String.format("Property '%s' must be a positive integer: %s", MODULE_PARALLELISM_PROP_KEY, value));
+    }
+    if (parallelism > 1 && isProfilingEnabled()) {
+      LOG.info("Modules are scanned sequentially when property '{}' is enabled", CoreProperties.PROFILING_LOG_PROPERTY);
+      return 1;
+    }
+    return parallelism;
+  }
+
+  /**
+   * Project components that are not {@link org.picocontainer.Startable} are lazily instantiated by the first module
+   * that requires them. They must be created before modules are scanned concurrently, so that they're not instantiated twice.
+   */
+  private void instantiateComponents() {
+    getPicoContainer().getComponents();
+  }
+
   private void scanRecursively(InputModuleHierarchy tree, DefaultInputModule module) {
     for (DefaultInputModule child : tree.children(module)) {
       scanRecursively(tree, child);
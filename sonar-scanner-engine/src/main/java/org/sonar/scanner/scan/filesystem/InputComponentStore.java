@@ -20,17 +20,16 @@
 package org.sonar.scanner.scan.filesystem;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.LinkedHashMultimap;
-import com.google.common.collect.SetMultimap;
-import com.google.common.collect.Table;
-import com.google.common.collect.TreeBasedTable;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import javax.annotation.CheckForNull;
 import org.sonar.api.batch.AnalysisMode;
 import org.sonar.api.batch.ScannerSide;
@@ -46,23 +45,24 @@ import org.sonar.api.batch.fs.internal.FileExtensionPredicate;
 import org.sonar.api.scan.filesystem.PathResolver;
 
 /**
- * Store of all files and dirs. This cache is shared amongst all project modules. Inclusion and
- * exclusion patterns are already applied.
+ * Store of all files and dirs. This cache is shared amongst all project modules, that can be scanned
+ * concurrently. Inclusion and exclusion patterns are already applied.
  */
 @ScannerSide
 public class InputComponentStore {
 
-  private final SortedSet<String> globalLanguagesCache = new TreeSet<>();
-  private final Map<String, SortedSet<String>> languagesCache = new HashMap<>();
-  private final Map<String, InputFile> globalInputFileCache = new HashMap<>();
-  private final Table<String, String, InputFile> inputFileCache = TreeBasedTable.create();
-  private final Map<String, InputDir> globalInputDirCache = new HashMap<>();
-  private final Table<String, String, InputDir> inputDirCache = TreeBasedTable.create();
+  private final SortedSet<String> globalLanguagesCache = new ConcurrentSkipListSet<>();
+  private final Map<String, SortedSet<String>> languagesCache = new ConcurrentHashMap<>();
+  private final Map<String, InputFile> globalInputFileCache = new ConcurrentHashMap<>();
+  // files and dirs by module key, then by module relative path. Both are sorted.
+  private final ConcurrentMap<String, Map<String, InputFile>> inputFileCache = new ConcurrentSkipListMap<>();
+  private final Map<String, InputDir> globalInputDirCache = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Map<String, InputDir>> inputDirCache = new ConcurrentSkipListMap<>();
   // indexed by key with branch
-  private final Map<String, InputModule> inputModuleCache = new HashMap<>();
-  private final Map<String, InputComponent> inputComponents = new HashMap<>();
-  private final SetMultimap<String, InputFile> filesByNameCache = LinkedHashMultimap.create();
-  private final SetMultimap<String, InputFile> filesByExtensionCache = LinkedHashMultimap.create();
+  private final Map<String, InputModule> inputModuleCache = new ConcurrentHashMap<>();
+  private final Map<String, InputComponent> inputComponents = new ConcurrentHashMap<>();
+  private final Map<String, Set<InputFile>> filesByNameCache = new ConcurrentHashMap<>();
+  private final Map<String, Set<InputFile>> filesByExtensionCache = new ConcurrentHashMap<>();
   private final InputModule root;
   private final AnalysisMode mode;
 
@@ -78,17 +78,28 @@ public class InputComponentStore {
 
   public Iterable<DefaultInputFile> allFilesToPublish() {
     return inputFileCache.values().stream()
+      .flatMap(files -> files.values().stream())
       .map(f -> (DefaultInputFile) f)
       .filter(DefaultInputFile::isPublished)
-      .filter(f -> !mode.isIncremental() || f.status() != Status.SAME)::iterator;
+      .filter(f -> !isUnchangedInIncrementalMode(f))::iterator;
+  }
+
+  /**
+   * In incremental mode, the data of the files which did not change since the previous analysis is not sent
+   * to the Compute Engine. It reuses the data of the previous analysis instead.
+   */
+  public boolean isUnchangedInIncrementalMode(InputFile file) {
+    return mode.isIncremental() && file.status() == Status.SAME;
   }
 
   public Iterable<InputFile> allFiles() {
-    return inputFileCache.values();
+    return inputFileCache.values().stream()
+      .flatMap(files -> files.values().stream())::iterator;
   }
 
   public Iterable<InputDir> allDirs() {
-    return inputDirCache.values();
+    return inputDirCache.values().stream()
+      .flatMap(dirs -> dirs.values().stream())::iterator;
   }
 
   public InputComponent getByKey(String key) {
@@ -100,39 +111,45 @@ public class InputComponentStore {
   }
 
   public Iterable<InputFile> filesByModule(String moduleKey) {
-    return inputFileCache.row(moduleKey).values();
+    return inputFileCache.getOrDefault(moduleKey, Collections.emptyMap()).values();
   }
 
   public Iterable<InputDir> dirsByModule(String moduleKey) {
-    return inputDirCache.row(moduleKey).values();
+    return inputDirCache.getOrDefault(moduleKey, Collections.emptyMap()).values();
   }
 
   public InputComponentStore removeModule(String moduleKey) {
-    inputFileCache.row(moduleKey).clear();
-    inputDirCache.row(moduleKey).clear();
+    inputFileCache.remove(moduleKey);
+    inputDirCache.remove(moduleKey);
     return this;
   }
 
   public InputComponentStore remove(InputFile inputFile) {
     DefaultInputFile file = (DefaultInputFile) inputFile;
-    inputFileCache.remove(file.moduleKey(), file.getModuleRelativePath());
+    Map<String, InputFile> files = inputFileCache.get(file.moduleKey());
+    if (files != null) {
+      files.remove(file.getModuleRelativePath());
+    }
     return this;
   }
 
   public InputComponentStore remove(InputDir inputDir) {
     DefaultInputDir dir = (DefaultInputDir) inputDir;
-    inputDirCache.remove(dir.moduleKey(), inputDir.relativePath());
+    Map<String, InputDir> dirs = inputDirCache.get(dir.moduleKey());
+    if (dirs != null) {
+      dirs.remove(inputDir.relativePath());
+    }
     return this;
   }
 
   public InputComponentStore put(InputFile inputFile) {
     DefaultInputFile file = (DefaultInputFile) inputFile;
     addToLanguageCache(file);
-    inputFileCache.put(file.moduleKey(), file.getModuleRelativePath(), inputFile);
+    inputFileCache.computeIfAbsent(file.moduleKey(), k -> new ConcurrentSkipListMap<>()).put(file.getModuleRelativePath(), inputFile);
     globalInputFileCache.put(file.getProjectRelativePath(), inputFile);
     inputComponents.put(inputFile.key(), inputFile);
-    filesByNameCache.put(inputFile.filename(), inputFile);
-    filesByExtensionCache.put(FileExtensionPredicate.getExtension(inputFile), inputFile);
+    filesByNameCache.computeIfAbsent(inputFile.filename(), k -> ConcurrentHashMap.newKeySet()).add(inputFile);
+    filesByExtensionCache.computeIfAbsent(FileExtensionPredicate.getExtension(inputFile), k -> ConcurrentHashMap.newKeySet()).add(inputFile);
     return this;
   }
 
@@ -140,13 +157,13 @@ public class InputComponentStore {
     String language = inputFile.language();
     if (language != null) {
       globalLanguagesCache.add(language);
-      languagesCache.computeIfAbsent(inputFile.moduleKey(), k -> new TreeSet<>()).add(language);
+      languagesCache.computeIfAbsent(inputFile.moduleKey(), k -> new ConcurrentSkipListSet<>()).add(language);
     }
   }
 
   public InputComponentStore put(InputDir inputDir) {
     DefaultInputDir dir = (DefaultInputDir) inputDir;
-    inputDirCache.put(dir.moduleKey(), inputDir.relativePath(), inputDir);
+    inputDirCache.computeIfAbsent(dir.moduleKey(), k -> new ConcurrentSkipListMap<>()).put(inputDir.relativePath(), inputDir);
     // FIXME an InputDir can be already indexed by another module
     globalInputDirCache.put(getProjectRelativePath(dir), inputDir);
     inputComponents.put(inputDir.key(), inputDir);
@@ -163,7 +180,7 @@ public class InputComponentStore {
 
   @CheckForNull
   public InputFile getFile(String moduleKey, String relativePath) {
-    return inputFileCache.get(moduleKey, relativePath);
+    return inputFileCache.getOrDefault(moduleKey, Collections.emptyMap()).get(relativePath);
   }
 
   @CheckForNull
@@ -173,7 +190,7 @@ public class InputComponentStore {
 
   @CheckForNull
   public InputDir getDir(String moduleKey, String relativePath) {
-    return inputDirCache.get(moduleKey, relativePath);
+    return inputDirCache.getOrDefault(moduleKey, Collections.emptyMap()).get(relativePath);
   }
 
   @CheckForNull
@@ -197,11 +214,11 @@ public class InputComponentStore {
   }
 
   public Iterable<InputFile> getFilesByName(String filename) {
-    return filesByNameCache.get(filename);
+    return filesByNameCache.getOrDefault(filename, Collections.emptySet());
   }
 
   public Iterable<InputFile> getFilesByExtension(String extension) {
-    return filesByExtensionCache.get(extension);
+    return filesByExtensionCache.getOrDefault(extension, Collections.emptySet());
   }
 
   public SortedSet<String> getLanguages() {
@@ -58,10 +58,11 @@ import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
 import org.sonar.scanner.issue.ModuleIssues;
 import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReport;
-import org.sonar.scanner.protocol.output.ScannerReportWriter;
+import org.sonar.scanner.report.BufferedReportWriter;
 import org.sonar.scanner.report.ReportPublisher;
 import org.sonar.scanner.report.ScannerReportUtils;
 import org.sonar.scanner.repository.ContextPropertiesCache;
+import org.sonar.scanner.scan.filesystem.InputComponentStore;
 import org.sonar.scanner.scan.measure.MeasureCache;
 
 import static java.util.stream.Collectors.toList;
@@ -111,6 +112,10 @@ import static org.sonar.api.measures.CoreMetrics.TEST_SUCCESS_DENSITY_KEY;
 import static org.sonar.api.measures.CoreMetrics.UNCOVERED_CONDITIONS;
 import static org.sonar.api.measures.CoreMetrics.UNCOVERED_LINES;
 
+/**
+ * Data is saved by sensors that may be executed concurrently (see {@link org.sonar.api.batch.sensor.SensorDescriptor#threadSafe()}).
+ * Writes to caches are synchronized, while data written to the report is buffered by {@link BufferedReportWriter}.
+ */
 public class DefaultSensorStorage implements SensorStorage {
 
   private static final Logger LOG = Loggers.get(DefaultSensorStorage.class);
@@ -146,6 +151,7 @@ public class DefaultSensorStorage implements SensorStorage {
   private final ContextPropertiesCache contextPropertiesCache;
   private final Configuration settings;
   private final ScannerMetrics scannerMetrics;
+  private final InputComponentStore componentStore;
   private final Map<Metric<?>, Metric<?>> deprecatedCoverageMetricMapping = new HashMap<>();
   private final Set<Metric<?>> coverageMetrics = new HashSet<>();
   private final Set<Metric<?>> byLineMetrics = new HashSet<>();
@@ -153,7 +159,7 @@ public class DefaultSensorStorage implements SensorStorage {
 
   public DefaultSensorStorage(MetricFinder metricFinder, ModuleIssues moduleIssues, Configuration settings,
     ReportPublisher reportPublisher, MeasureCache measureCache, SonarCpdBlockIndex index,
-    ContextPropertiesCache contextPropertiesCache, ScannerMetrics scannerMetrics) {
+    ContextPropertiesCache contextPropertiesCache, ScannerMetrics scannerMetrics, InputComponentStore componentStore) {
     this.metricFinder = metricFinder;
     this.moduleIssues = moduleIssues;
     this.settings = settings;
@@ -162,6 +168,7 @@ public class DefaultSensorStorage implements SensorStorage {
     this.index = index;
     this.contextPropertiesCache = contextPropertiesCache;
     this.scannerMetrics = scannerMetrics;
+    this.componentStore = componentStore;
 
     coverageMetrics.add(UNCOVERED_LINES);
     coverageMetrics.add(LINES_TO_COVER);
@@ -198,7 +205,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(Measure newMeasure) {
+  public synchronized void store(Measure newMeasure) {
     if (newMeasure.inputComponent() instanceof DefaultInputFile) {
       ((DefaultInputFile) newMeasure.inputComponent()).setPublished(true);
     }
@@ -214,7 +221,7 @@ public class DefaultSensorStorage implements SensorStorage {
     }
   }
 
-  public void saveMeasure(InputComponent component, DefaultMeasure<?> measure) {
+  public synchronized void saveMeasure(InputComponent component, DefaultMeasure<?> measure) {
     if (component.isFile()) {
       ((DefaultInputFile) component).setPublished(true);
     }
@@ -350,7 +357,7 @@ public class DefaultSensorStorage implements SensorStorage {
    * Thread safe assuming that each issues for each file are only written once.
    */
   @Override
-  public void store(Issue issue) {
+  public synchronized void store(Issue issue) {
     if (issue.primaryLocation().inputComponent() instanceof DefaultInputFile) {
       ((DefaultInputFile) issue.primaryLocation().inputComponent()).setPublished(true);
     }
@@ -359,17 +366,21 @@ public class DefaultSensorStorage implements SensorStorage {
 
   @Override
   public void store(DefaultHighlighting highlighting) {
-    ScannerReportWriter writer = reportPublisher.getWriter();
+    BufferedReportWriter writer = reportPublisher.getBufferedWriter();
     DefaultInputFile inputFile = (DefaultInputFile) highlighting.inputFile();
     inputFile.setPublished(true);
     int componentRef = inputFile.batchId();
     if (writer.hasComponentData(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef)) {
-      throw new UnsupportedOperationException("Trying to save highlighting twice for the same file is not supported: " + inputFile);
+      throw highlightingSavedTwice(inputFile);
+    }
+    if (componentStore.isUnchangedInIncrementalMode(inputFile)) {
+      // sources of unchanged files are not persisted again by the Compute Engine
+      return;
     }
     final ScannerReport.SyntaxHighlightingRule.Builder builder = ScannerReport.SyntaxHighlightingRule.newBuilder();
     final ScannerReport.TextRange.Builder rangeBuilder = ScannerReport.TextRange.newBuilder();
 
-    writer.writeComponentSyntaxHighlighting(componentRef,
+    boolean written = writer.writeComponentSyntaxHighlighting(componentRef,
       highlighting.getSyntaxHighlightingRuleSet().stream()
         .map(input -> {
           builder.setRange(rangeBuilder.setStartLine(input.range().start().line())
@@ -380,20 +391,31 @@ public class DefaultSensorStorage implements SensorStorage {
           builder.setType(ScannerReportUtils.toProtocolType(input.getTextType()));
           return builder.build();
         }).collect(toList()));
+    if (!written) {
+      // saved concurrently by another thread
+      throw highlightingSavedTwice(inputFile);
+    }
+  }
+
+  private static UnsupportedOperationException highlightingSavedTwice(InputFile inputFile) {
+    return new UnsupportedOperationException("Trying to save highlighting twice for the same file is not supported: " + inputFile);
   }
 
   @Override
   public void store(DefaultSymbolTable symbolTable) {
-    ScannerReportWriter writer = reportPublisher.getWriter();
+    BufferedReportWriter writer = reportPublisher.getBufferedWriter();
     DefaultInputFile inputFile = (DefaultInputFile) symbolTable.inputFile();
     inputFile.setPublished(true);
     int componentRef = inputFile.batchId();
     if (writer.hasComponentData(FileStructure.Domain.SYMBOLS, componentRef)) {
-      throw new UnsupportedOperationException("Trying to save symbol table twice for the same file is not supported: " + symbolTable.inputFile().absolutePath());
+      throw symbolTableSavedTwice(inputFile);
+    }
+    if (componentStore.isUnchangedInIncrementalMode(inputFile)) {
+      return;
     }
     final ScannerReport.Symbol.Builder builder = ScannerReport.Symbol.newBuilder();
     final ScannerReport.TextRange.Builder rangeBuilder = ScannerReport.TextRange.newBuilder();
-    writer.writeComponentSymbols(componentRef,
+    boolean written = writer.writeComponentSymbols(componentRef,
       symbolTable.getReferencesBySymbol().entrySet().stream()
         .map(input -> {
           builder.clear();
@@ -413,10 +435,18 @@ public class DefaultSensorStorage implements SensorStorage {
           }
           return builder.build();
         }).collect(Collectors.toList()));
+    if (!written) {
+      // saved concurrently by another thread
+      throw symbolTableSavedTwice(inputFile);
+    }
+  }
+
+  private static UnsupportedOperationException symbolTableSavedTwice(InputFile inputFile) {
+    return new UnsupportedOperationException("Trying to save symbol table twice for the same file is not supported: " + inputFile.absolutePath());
   }
 
   @Override
-  public void store(DefaultCoverage defaultCoverage) {
+  public synchronized void store(DefaultCoverage defaultCoverage) {
     DefaultInputFile inputFile = (DefaultInputFile) defaultCoverage.inputFile();
     inputFile.setPublished(true);
     if (defaultCoverage.linesToCover() > 0) {
@@ -459,7 +489,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void storeProperty(String key, String value) {
+  public synchronized void storeProperty(String key, String value) {
     contextPropertiesCache.put(key, value);
   }
 }
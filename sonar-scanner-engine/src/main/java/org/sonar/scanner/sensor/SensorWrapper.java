@@ -19,6 +19,7 @@
  */
 package org.sonar.scanner.sensor;
 
+import java.util.Collection;
 import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.internal.DefaultSensorDescriptor;
@@ -65,4 +66,12 @@ public class SensorWrapper implements org.sonar.api.batch.Sensor {
   public boolean isGlobal() {
     return descriptor.isGlobal();
   }
+
+  public boolean isThreadSafe() {
+    return descriptor.isThreadSafe();
+  }
+
+  public Collection<String> languages() {
+    return descriptor.languages();
+  }
 }
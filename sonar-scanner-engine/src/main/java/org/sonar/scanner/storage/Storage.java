@@ -22,27 +22,34 @@ package org.sonar.scanner.storage;
 import com.persistit.Exchange;
 import com.persistit.Key;
 import com.persistit.KeyFilter;
+import com.persistit.Value;
 import com.persistit.exception.PersistitException;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Supplier;
 import javax.annotation.CheckForNull;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
 /**
  * <p>
- * This storage is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * This storage is thread-safe. As {@link com.persistit.Exchange} is not, each thread works with its own copy
+ * of the exchange created by {@link Storages}.
  * </p>
  */
 public class Storage<V> {
 
   private final String name;
-  private final Exchange exchange;
+  private final ThreadLocal<Exchange> exchanges;
 
   Storage(String name, Exchange exchange) {
     this.name = name;
-    this.exchange = exchange;
+    this.exchanges = ThreadLocal.withInitial(() -> {
+      Exchange copy = new Exchange(exchange);
+      copy.setMaximumValueSize(Value.MAXIMUM_SIZE);
+      return copy;
+    });
   }
 
   public Storage<V> put(Object key, V value) {
@@ -66,6 +73,7 @@ public class Storage<V> {
   }
 
   private Storage<V> doPut(V value) {
+    Exchange exchange = exchange();
     try {
       exchange.getValue().put(value);
       exchange.store();
@@ -113,6 +121,7 @@ public class Storage<V> {
   @SuppressWarnings("unchecked")
   @CheckForNull
   private V doGet() {
+    Exchange exchange = exchange();
     try {
       exchange.fetch();
       if (!exchange.getValue().isDefined()) {
@@ -146,6 +155,7 @@ public class Storage<V> {
   }
 
   private boolean doContainsKey() {
+    Exchange exchange = exchange();
     try {
       exchange.fetch();
       return exchange.isValueDefined();
@@ -177,7 +187,7 @@ public class Storage<V> {
 
   private boolean doRemove() {
     try {
-      return exchange.remove();
+      return exchange().remove();
     } catch (Exception e) {
       // TODO add parameters to message
       throw new IllegalStateException("Fail to get element from cache " + name, e);
@@ -210,6 +220,7 @@ public class Storage<V> {
   }
 
   private Storage<V> doClear() {
+    Exchange exchange = exchange();
     try {
       Key to = new Key(exchange.getKey());
       to.append(Key.AFTER);
@@ -224,6 +235,7 @@ public class Storage<V> {
    * Clears the default as well as all group caches.
    */
   public void clear() {
+    Exchange exchange = exchange();
     try {
       exchange.clear();
       exchange.removeAll();
@@ -241,6 +253,7 @@ public class Storage<V> {
    */
   @SuppressWarnings("rawtypes")
   public Set keySet(Object key) {
+    Exchange exchange = exchange();
     try {
       Set<Object> keys = new LinkedHashSet<>();
       exchange.clear();
@@ -258,6 +271,7 @@ public class Storage<V> {
 
   @SuppressWarnings("rawtypes")
   public Set keySet(Object firstKey, Object secondKey) {
+    Exchange exchange = exchange();
     try {
       Set<Object> keys = new LinkedHashSet<>();
       exchange.clear();
@@ -280,6 +294,7 @@ public class Storage<V> {
    * @return The set containing the keys for this cache.
    */
   public Set<Object> keySet() {
+    Exchange exchange = exchange();
     try {
       Set<Object> keys = new LinkedHashSet<>();
       exchange.clear();
@@ -298,47 +313,55 @@ public class Storage<V> {
    * Lazy-loading values for given keys
    */
   public Iterable<V> values(Object firstKey, Object secondKey) {
-    return new ValueIterable<>(exchange, firstKey, secondKey);
+    return new ValueIterable<>(this::exchange, firstKey, secondKey);
   }
 
   /**
    * Lazy-loading values for a given key
    */
   public Iterable<V> values(Object firstKey) {
-    return new ValueIterable<>(exchange, firstKey);
+    return new ValueIterable<>(this::exchange, firstKey);
   }
 
   /**
    * Lazy-loading values
    */
   public Iterable<V> values() {
-    return new ValueIterable<>(exchange);
+    return new ValueIterable<>(this::exchange);
   }
 
   public Iterable<Entry<V>> entries() {
-    return new EntryIterable<>(exchange);
+    return new EntryIterable<>(this::exchange);
   }
 
   public Iterable<Entry<V>> entries(Object firstKey) {
-    return new EntryIterable<>(exchange, firstKey);
+    return new EntryIterable<>(this::exchange, firstKey);
+  }
+
+  private Exchange exchange() {
+    return exchanges.get();
   }
 
   private void resetKey(Object key) {
+    Exchange exchange = exchange();
     exchange.clear();
     exchange.append(key);
   }
 
   private void resetKey(Object first, Object second) {
+    Exchange exchange = exchange();
     exchange.clear();
     exchange.append(first).append(second);
   }
 
   private void resetKey(Object first, Object second, Object third) {
+    Exchange exchange = exchange();
     exchange.clear();
     exchange.append(first).append(second).append(third);
   }
 
   private void resetKey(Object[] keys) {
+    Exchange exchange = exchange();
     exchange.clear();
     for (Object o : keys) {
       exchange.append(o);
@@ -350,16 +373,17 @@ public class Storage<V> {
   //
 
   private static class ValueIterable<T> implements Iterable<T> {
-    private final Exchange originExchange;
+    private final Supplier<Exchange> exchangeSupplier;
     private final Object[] keys;
 
-    private ValueIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
+    private ValueIterable(Supplier<Exchange> exchangeSupplier, Object... keys) {
+      this.exchangeSupplier = exchangeSupplier;
       this.keys = keys;
     }
 
     @Override
     public Iterator<T> iterator() {
+      Exchange originExchange = exchangeSupplier.get();
       originExchange.clear();
       KeyFilter filter = new KeyFilter();
       for (Object key : keys) {
@@ -411,16 +435,17 @@ public class Storage<V> {
   }
 
   private static class EntryIterable<T> implements Iterable<Entry<T>> {
-    private final Exchange originExchange;
+    private final Supplier<Exchange> exchangeSupplier;
     private final Object[] keys;
 
-    private EntryIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
+    private EntryIterable(Supplier<Exchange> exchangeSupplier, Object... keys) {
+      this.exchangeSupplier = exchangeSupplier;
       this.keys = keys;
     }
 
     @Override
     public Iterator<Entry<T>> iterator() {
+      Exchange originExchange = exchangeSupplier.get();
       originExchange.clear();
       KeyFilter filter = new KeyFilter();
       for (Object key : keys) {
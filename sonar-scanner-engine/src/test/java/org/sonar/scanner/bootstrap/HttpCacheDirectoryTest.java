@@ -0,0 +1,112 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.bootstrap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.home.cache.DirectoryLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HttpCacheDirectoryTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private GlobalProperties settings;
+  private List<HttpCacheDirectory> directories = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    File userHome = temp.newFolder();
+    settings = new GlobalProperties(Collections.singletonMap("sonar.userHome", userHome.getAbsolutePath()));
+  }
+
+  @After
+  public void tearDown() {
+    directories.forEach(HttpCacheDirectory::stop);
+  }
+
+  @Test
+  public void lock_directory_in_user_home() {
+    HttpCacheDirectory underTest = newDirectory();
+
+    File dir = underTest.get();
+
+    assertThat(dir).isDirectory();
+    assertThat(dir.getParentFile().getName()).isEqualTo("http_cache");
+    assertThat(new File(dir, DirectoryLock.LOCK_FILE_NAME)).exists();
+    assertThat(underTest.get()).isEqualTo(dir);
+  }
+
+  @Test
+  public void concurrent_analyses_use_different_directories() {
+    File first = newDirectory().get();
+    File second = newDirectory().get();
+
+    assertThat(first).isNotNull();
+    assertThat(second).isNotNull().isNotEqualTo(first);
+  }
+
+  @Test
+  public void directory_is_reused_once_unlocked() {
+    HttpCacheDirectory first = newDirectory();
+    File dir = first.get();
+    first.stop();
+
+    assertThat(newDirectory().get()).isEqualTo(dir);
+  }
+
+  @Test
+  public void no_directory_if_all_are_locked() {
+    for (int i = 0; i < HttpCacheDirectory.MAX_DIRECTORIES; i++) {
+      assertThat(newDirectory().get()).isNotNull();
+    }
+
+    assertThat(newDirectory().get()).isNull();
+  }
+
+  @Test
+  public void directory_is_reused_once_unlocked_even_if_all_were_locked() {
+    HttpCacheDirectory first = newDirectory();
+    File dir = first.get();
+    for (int i = 1; i < HttpCacheDirectory.MAX_DIRECTORIES; i++) {
+      newDirectory().get();
+    }
+    assertThat(newDirectory().get()).isNull();
+
+    first.stop();
+
+    assertThat(newDirectory().get()).isEqualTo(dir);
+  }
+
+  private HttpCacheDirectory newDirectory() {
+    HttpCacheDirectory directory = new HttpCacheDirectory(settings);
+    directories.add(directory);
+    return directory;
+  }
+}
@@ -21,6 +21,11 @@ package org.sonar.scanner.bootstrap;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.ClassRule;
@@ -70,6 +75,26 @@ public class ScannerPluginJarExploderTest {
     assertThat(new File(fileFromCache.getParent(), "sonar-checkstyle-plugin-2.8.jar_unzip/org/sonar/plugins/checkstyle/CheckstyleVersion.class")).doesNotExist();
   }
 
+  @Test
+  public void extract_only_once_when_exploded_concurrently() throws Exception {
+    File fileFromCache = getFileFromCache("sonar-checkstyle-plugin-2.8.jar");
+    PluginInfo info = PluginInfo.create(fileFromCache);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<ExplodedPlugin>> futures = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      futures.add(executor.submit(() -> underTest.explode(info)));
+    }
+    for (Future<ExplodedPlugin> future : futures) {
+      assertThat(future.get().getLibs()).extracting("name").containsOnly("antlr-2.7.6.jar", "checkstyle-5.1.jar", "commons-cli-1.0.jar");
+    }
+    executor.shutdown();
+
+    assertThat(new File(fileFromCache.getParent(), "sonar-checkstyle-plugin-2.8.jar_unzip/META-INF/lib/checkstyle-5.1.jar")).exists();
+    // temporary directories are cleaned
+    assertThat(new File(userHome, "cache/_tmp").list()).isEmpty();
+  }
+
   File getFileFromCache(String filename) throws IOException {
     File src = FileUtils.toFile(getClass().getResource(this.getClass().getSimpleName() + "/" + filename));
     File destFile = new File(new File(userHome, "" + filename.hashCode()), filename);
@@ -19,17 +19,25 @@
  */
 package org.sonar.scanner.bootstrap;
 
+import java.io.File;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.batch.bootstrapper.EnvironmentInformation;
 import org.sonarqube.ws.client.HttpConnector;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class ScannerWsClientProviderTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private ScannerWsClientProvider underTest = new ScannerWsClientProvider();
   private EnvironmentInformation env = new EnvironmentInformation("Maven Plugin", "2.3");
 
@@ -37,7 +45,7 @@ public class ScannerWsClientProviderTest {
   public void provide_client_with_default_settings() {
     GlobalProperties settings = new GlobalProperties(new HashMap<>());
 
-    ScannerWsClient client = underTest.provide(settings, env, new GlobalMode(new GlobalProperties(Collections.emptyMap())));
+    ScannerWsClient client = underTest.provide(settings, env, new GlobalMode(new GlobalProperties(Collections.emptyMap())), mock(HttpCacheDirectory.class));
 
     assertThat(client).isNotNull();
     assertThat(client.baseUrl()).isEqualTo("http://localhost:9000/");
@@ -48,6 +56,42 @@ public class ScannerWsClientProviderTest {
     assertThat(httpConnector.okHttpClient().readTimeoutMillis()).isEqualTo(60_000);
   }
 
+  @Test
+  public void provide_client_with_http_cache_in_user_home() throws Exception {
+    File userHome = temp.newFolder();
+    Map<String, String> props = new HashMap<>();
+    props.put("sonar.userHome", userHome.getAbsolutePath());
+
+    GlobalProperties settings = new GlobalProperties(props);
+
+    ScannerWsClient client = underTest.provide(settings, env, new GlobalMode(new GlobalProperties(Collections.emptyMap())), new HttpCacheDirectory(settings));
+
+    HttpConnector httpConnector = (HttpConnector) client.wsConnector();
+    assertThat(httpConnector.okHttpClient().cache()).isNotNull();
+    assertThat(httpConnector.okHttpClient().cache().directory()).isEqualTo(new File(userHome, "http_cache/0"));
+  }
+
+  @Test
+  public void provide_client_without_http_cache_if_no_directory_is_available() {
+    HttpCacheDirectory httpCacheDirectory = mock(HttpCacheDirectory.class);
+    when(httpCacheDirectory.get()).thenReturn(null);
+
+    ScannerWsClient client = underTest.provide(new GlobalProperties(new HashMap<>()), env, new GlobalMode(new GlobalProperties(Collections.emptyMap())), httpCacheDirectory);
+
+    assertThat(((HttpConnector) client.wsConnector()).okHttpClient().cache()).isNull();
+  }
+
+  @Test
+  public void http_cache_can_be_disabled() throws Exception {
+    Map<String, String> props = new HashMap<>();
+    props.put("sonar.userHome", temp.newFolder().getAbsolutePath());
+    props.put("sonar.ws.cache.enabled", "false");
+
+    ScannerWsClient client = underTest.provide(new GlobalProperties(props), env, new GlobalMode(new GlobalProperties(Collections.emptyMap())), mock(HttpCacheDirectory.class));
+
+    assertThat(((HttpConnector) client.wsConnector()).okHttpClient().cache()).isNull();
+  }
+
   @Test
   public void provide_client_with_custom_settings() {
     Map<String, String> props = new HashMap<>();
@@ -57,7 +101,7 @@ public class ScannerWsClientProviderTest {
     props.put("sonar.ws.timeout", "42");
     GlobalProperties settings = new GlobalProperties(props);
 
-    ScannerWsClient client = underTest.provide(settings, env, new GlobalMode(new GlobalProperties(Collections.emptyMap())));
+    ScannerWsClient client = underTest.provide(settings, env, new GlobalMode(new GlobalProperties(Collections.emptyMap())), mock(HttpCacheDirectory.class));
 
     assertThat(client).isNotNull();
     HttpConnector httpConnector = (HttpConnector) client.wsConnector();
@@ -68,8 +112,8 @@ public class ScannerWsClientProviderTest {
   @Test
   public void build_singleton() {
     GlobalProperties settings = new GlobalProperties(new HashMap<>());
-    ScannerWsClient first = underTest.provide(settings, env, new GlobalMode(new GlobalProperties(Collections.emptyMap())));
-    ScannerWsClient second = underTest.provide(settings, env, new GlobalMode(new GlobalProperties(Collections.emptyMap())));
+    ScannerWsClient first = underTest.provide(settings, env, new GlobalMode(new GlobalProperties(Collections.emptyMap())), mock(HttpCacheDirectory.class));
+    ScannerWsClient second = underTest.provide(settings, env, new GlobalMode(new GlobalProperties(Collections.emptyMap())), mock(HttpCacheDirectory.class));
     assertThat(first).isSameAs(second);
   }
 }
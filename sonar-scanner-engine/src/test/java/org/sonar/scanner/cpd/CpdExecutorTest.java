@@ -35,6 +35,7 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.utils.internal.DefaultTempFolder;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.core.util.CloseableIterator;
@@ -83,8 +84,9 @@ public class CpdExecutorTest {
     settings = mock(CpdSettings.class);
     publisher = mock(ReportPublisher.class);
     when(publisher.getWriter()).thenReturn(new ScannerReportWriter(outputDir));
+    when(settings.getMappedIndexThreshold()).thenReturn(Integer.MAX_VALUE);
 
-    index = new SonarCpdBlockIndex(publisher, settings);
+    index = new SonarCpdBlockIndex(publisher, settings, new DefaultTempFolder(temp.newFolder()));
     DefaultInputModule inputModule = TestInputFileBuilder.newDefaultInputModule("foo", baseDir);
     componentStore = new InputComponentStore(inputModule, mock(AnalysisMode.class));
     executor = new CpdExecutor(settings, index, publisher, componentStore);
@@ -221,6 +223,48 @@ public class CpdExecutorTest {
         "Timeout during detection of duplications for .*Foo2.php");
   }
 
+  @Test
+  public void detect_duplications_of_all_files_at_once_when_project_wide_detection_is_enabled() {
+    when(settings.isProjectWideDetectionEnabled()).thenReturn(true);
+    index.insert(batchComponent1, newBlocks(batchComponent1, 1, 2, 3));
+    index.insert(batchComponent2, newBlocks(batchComponent2, 4, 1, 2, 3));
+
+    executor.execute(1);
+
+    Duplication[] dups = readDuplications(1);
+    assertDuplication(dups[0], 1, 4, batchComponent2.batchId(), 2, 5);
+    assertThat(logTester.logs(LoggerLevel.WARN)).isEmpty();
+  }
+
+  @Test
+  public void detect_duplications_when_index_is_moved_to_disk() {
+    logTester.setLevel(LoggerLevel.DEBUG);
+    when(settings.getMappedIndexThreshold()).thenReturn(3);
+    index.insert(batchComponent1, newBlocks(batchComponent1, 1, 2, 3));
+    index.insert(batchComponent2, newBlocks(batchComponent2, 4, 1, 2, 3));
+
+    executor.execute(1);
+
+    Duplication[] dups = readDuplications(1);
+    assertDuplication(dups[0], 1, 4, batchComponent2.batchId(), 2, 5);
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("More than 3 CPD blocks, index is moved to disk");
+    index.stop();
+  }
+
+  private static List<Block> newBlocks(DefaultInputFile file, long... hashes) {
+    List<Block> blocks = new ArrayList<>();
+    for (int i = 0; i < hashes.length; i++) {
+      blocks.add(Block.builder()
+        .setResourceId(file.key())
+        .setIndexInFile(i)
+        .setLines(i + 1, i + 2)
+        .setUnit(i, i + 1)
+        .setBlockHash(new ByteArray(hashes[i]))
+        .build());
+    }
+    return blocks;
+  }
+
   private Duplication[] readDuplications(int expected) {
     assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(expected);
     Duplication[] duplications = new Duplication[expected];
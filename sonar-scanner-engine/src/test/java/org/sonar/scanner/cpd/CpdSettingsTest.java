@@ -51,6 +51,27 @@ public class CpdSettingsTest {
     assertThat(cpdSettings.getMinimumTokens("java")).isEqualTo(100);
   }
 
+  @Test
+  public void project_wide_detection_is_disabled_by_default() {
+    when(configuration.getBoolean("sonar.cpd.projectWideDetection")).thenReturn(Optional.empty());
+    assertThat(cpdSettings.isProjectWideDetectionEnabled()).isFalse();
+  }
+
+  @Test
+  public void enable_project_wide_detection() {
+    when(configuration.getBoolean("sonar.cpd.projectWideDetection")).thenReturn(Optional.of(true));
+    assertThat(cpdSettings.isProjectWideDetectionEnabled()).isTrue();
+  }
+
+  @Test
+  public void mapped_index_threshold() {
+    when(configuration.getInt("sonar.cpd.mappedIndexThreshold")).thenReturn(Optional.empty());
+    assertThat(cpdSettings.getMappedIndexThreshold()).isEqualTo(500_000);
+
+    when(configuration.getInt("sonar.cpd.mappedIndexThreshold")).thenReturn(Optional.of(42));
+    assertThat(cpdSettings.getMappedIndexThreshold()).isEqualTo(42);
+  }
+
   @Test
   public void minimumTokensByLanguage() {
     when(configuration.getInt("sonar.cpd.java.minimumTokens")).thenReturn(Optional.of(42));
@@ -37,6 +37,7 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.InputDir;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.System2;
 import org.sonar.scanner.mediumtest.LogOutputRecorder;
@@ -660,6 +661,68 @@ public class FileSystemMediumTest {
     assertThat(result.inputDirs()).hasSize(4);
   }
 
+  @Test
+  public void scanMultiModuleProjectWithModulesInParallel() throws IOException {
+    File projectDir = temp.newFolder();
+    FileUtils.copyDirectory(new File("src/test/resources/mediumtest/xoo/multi-modules-sample"), projectDir);
+    for (File xooFile : FileUtils.listFiles(projectDir, new String[] {"xoo"}, true)) {
+      FileUtils.write(new File(xooFile.getParentFile(), xooFile.getName() + ".highlighting"), "0:7:k");
+    }
+    tester
+      .addRules(new XooRulesDefinition())
+      .addActiveRule("xoo", "OneIssuePerLine", null, "One issue per line", "MAJOR", null, "xoo");
+
+    TaskResult sequentialResult = tester
+      .newScanTask(new File(projectDir, "sonar-project.properties"))
+      .execute();
+
+    TaskResult result = tester
+      .newScanTask(new File(projectDir, "sonar-project.properties"))
+      .property("sonar.scanner.moduleParallelism", "2")
+      .execute();
+
+    assertThat(logs.getAllAsString()).contains("Scan up to 2 modules in parallel");
+    assertThat(result.inputFiles()).hasSize(4);
+    assertThat(result.inputDirs()).hasSize(4);
+    assertThat(result.allMeasures()).isEqualTo(sequentialResult.allMeasures());
+    assertThat(result.trackedIssues()).hasSameSizeAs(sequentialResult.trackedIssues());
+    for (InputFile file : result.inputFiles()) {
+      InputFile sequentialFile = sequentialResult.inputFile(((DefaultInputFile) file).getProjectRelativePath());
+      assertThat(result.issuesFor(file)).isNotEmpty().isEqualTo(sequentialResult.issuesFor(sequentialFile));
+      assertThat(result.highlightingTypeFor(file, 1, 0)).containsExactly(TypeOfText.KEYWORD)
+        .isEqualTo(sequentialResult.highlightingTypeFor(sequentialFile, 1, 0));
+    }
+    assertThat(moduleSettings(result)).contains("Sub-module A1")
+      .isEqualTo(moduleSettings(sequentialResult));
+  }
+
+  /**
+   * Settings dumped for each module in the analysis log, except the parallelism that only the parallel scan is given
+   */
+  private static String moduleSettings(TaskResult result) throws IOException {
+    String analysisLog = FileUtils.readFileToString(result.analysisLog(), StandardCharsets.UTF_8);
+    StringBuilder settings = new StringBuilder();
+    for (String line : analysisLog.substring(analysisLog.indexOf("Settings for module:")).split("\n")) {
+      if (!line.contains("sonar.scanner.moduleParallelism")) {
+        settings.append(line).append('\n');
+      }
+    }
+    return settings.toString();
+  }
+
+  @Test
+  public void failIfModuleParallelismIsInvalid() {
+    File projectDir = new File("src/test/resources/mediumtest/xoo/multi-modules-sample");
+
+    thrown.expect(MessageException.class);
+    thrown.expectMessage("Property 'sonar.scanner.moduleParallelism' must be a positive integer: foo");
+
+    tester
+      .newScanTask(new File(projectDir, "sonar-project.properties"))
+      .property("sonar.scanner.moduleParallelism", "foo")
+      .execute();
+  }
+
   @Test
   public void scanProjectWithCommaInSourcePath() throws IOException {
     File srcDir = new File(baseDir, "src");
@@ -20,23 +20,41 @@
 package org.sonar.scanner.phases;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.events.EventHandler;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.api.batch.fs.internal.SensorStrategy;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.resources.Project;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
+import org.sonar.scanner.bootstrap.ScannerPluginRepository;
 import org.sonar.scanner.events.EventBus;
+import org.sonar.scanner.sensor.SensorOptimizer;
+import org.sonar.scanner.sensor.SensorWrapper;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -46,9 +64,18 @@ public class SensorsExecutorTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
 
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
   private SensorsExecutor rootModuleExecutor;
   private SensorsExecutor subModuleExecutor;
+  private DefaultInputModule subModule;
+  private InputModuleHierarchy hierarchy;
   private SensorContext context;
+  private ScannerExtensionDictionnary selector;
 
   private SensorStrategy strategy = new SensorStrategy();
 
@@ -77,11 +104,41 @@ public class SensorsExecutorTest {
     }
   }
 
+  static class ThreadSafeSensor implements org.sonar.api.batch.sensor.Sensor {
+    final String language;
+    final CyclicBarrier barrier;
+
+    Thread thread;
+
+    ThreadSafeSensor(String language, @Nullable CyclicBarrier barrier) {
+      this.language = language;
+      this.barrier = barrier;
+    }
+
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      descriptor.onlyOnLanguage(language).threadSafe();
+    }
+
+    @Override
+    public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+      thread = Thread.currentThread();
+      if (barrier != null) {
+        try {
+          // fails if the other sensor is not executed at the same time
+          barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+  }
+
   @Before
   public void setUp() throws IOException {
     context = mock(SensorContext.class);
 
-    ScannerExtensionDictionnary selector = mock(ScannerExtensionDictionnary.class);
+    selector = mock(ScannerExtensionDictionnary.class);
     when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Collections.singleton(perModuleSensor));
     when(selector.selectSensors(any(DefaultInputModule.class), eq(true))).thenReturn(Collections.singleton(globalSensor));
 
@@ -89,9 +146,9 @@ public class SensorsExecutorTest {
     ProjectDefinition rootDef = ProjectDefinition.create().setKey("root").setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder());
 
     DefaultInputModule rootModule = TestInputFileBuilder.newDefaultInputModule(rootDef);
-    DefaultInputModule subModule = TestInputFileBuilder.newDefaultInputModule(childDef);
+    subModule = TestInputFileBuilder.newDefaultInputModule(childDef);
 
-    InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class);
+    hierarchy = mock(InputModuleHierarchy.class);
     when(hierarchy.isRoot(rootModule)).thenReturn(true);
 
     rootModuleExecutor = new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy);
@@ -107,6 +164,102 @@ public class SensorsExecutorTest {
     assertThat(globalSensor.called).isFalse();
   }
 
+  @Test
+  public void should_execute_thread_safe_sensors_of_different_languages_concurrently() {
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    ThreadSafeSensor javaSensor = new ThreadSafeSensor("java", barrier);
+    ThreadSafeSensor jsSensor = new ThreadSafeSensor("js", barrier);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(javaSensor), wrap(jsSensor)));
+
+    subModuleExecutor.execute(context);
+
+    assertThat(javaSensor.thread).isNotSameAs(Thread.currentThread());
+    assertThat(jsSensor.thread).isNotSameAs(Thread.currentThread()).isNotSameAs(javaSensor.thread);
+  }
+
+  @Test
+  public void should_profile_thread_safe_sensors_executed_concurrently() {
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    ThreadSafeSensor javaSensor = new ThreadSafeSensor("java", barrier);
+    ThreadSafeSensor jsSensor = new ThreadSafeSensor("js", barrier);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(javaSensor), wrap(jsSensor)));
+    EventBus eventBus = new EventBus(new EventHandler[] {new PhasesTimeProfiler(mock(ScannerPluginRepository.class))});
+
+    // both sensors are started before any of them is stopped
+    new SensorsExecutor(selector, subModule, hierarchy, eventBus, strategy).execute(context);
+
+    List<String> stopLogs = logTester.logs(LoggerLevel.INFO).stream()
+      .filter(log -> log.contains(" (done) | time="))
+      .collect(Collectors.toList());
+    assertThat(stopLogs).hasSize(2);
+    for (String log : stopLogs) {
+      assertThat(log).startsWith("Sensor " + ThreadSafeSensor.class.getName() + " (done)");
+    }
+  }
+
+  @Test
+  public void should_execute_thread_safe_sensors_of_same_language_sequentially() {
+    ThreadSafeSensor javaSensor = new ThreadSafeSensor("java", null);
+    ThreadSafeSensor otherJavaSensor = new ThreadSafeSensor("java", null);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(javaSensor), wrap(otherJavaSensor), perModuleSensor));
+
+    subModuleExecutor.execute(context);
+
+    assertThat(javaSensor.thread).isSameAs(Thread.currentThread());
+    assertThat(otherJavaSensor.thread).isSameAs(Thread.currentThread());
+    assertThat(perModuleSensor.called).isTrue();
+  }
+
+  @Test
+  public void should_propagate_failure_of_concurrent_sensor() {
+    ThreadSafeSensor javaSensor = new ThreadSafeSensor("java", null);
+    ThreadSafeSensor failingSensor = new ThreadSafeSensor("js", null) {
+      @Override
+      public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+        throw new IllegalStateException("failure");
+      }
+    };
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(javaSensor), wrap(failingSensor)));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("failure");
+
+    subModuleExecutor.execute(context);
+  }
+
+  @Test
+  public void should_wait_for_concurrent_sensors_before_propagating_failure() {
+    CountDownLatch failed = new CountDownLatch(1);
+    AtomicBoolean completed = new AtomicBoolean(false);
+    ThreadSafeSensor slowSensor = new ThreadSafeSensor("java", null) {
+      @Override
+      public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+        // interruption by shutdownNow() is ignored, like by most sensors
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200L);
+        while (failed.getCount() > 0L || System.nanoTime() < end) {
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10L));
+        }
+        completed.set(true);
+      }
+    };
+    ThreadSafeSensor failingSensor = new ThreadSafeSensor("js", null) {
+      @Override
+      public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+        failed.countDown();
+        throw new IllegalStateException("failure");
+      }
+    };
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(slowSensor), wrap(failingSensor)));
+
+    try {
+      subModuleExecutor.execute(context);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("failure");
+    }
+    assertThat(completed.get()).isTrue();
+  }
+
   @Test
   public void should_execute_all_sensors_for_root_module() {
     rootModuleExecutor.execute(context);
@@ -116,4 +269,8 @@ public class SensorsExecutorTest {
     assertThat(globalSensor.called).isTrue();
     assertThat(globalSensor.global).isTrue();
   }
+
+  private static Sensor wrap(org.sonar.api.batch.sensor.Sensor sensor) {
+    return new SensorWrapper(sensor, mock(org.sonar.api.batch.sensor.SensorContext.class), mock(SensorOptimizer.class));
+  }
 }
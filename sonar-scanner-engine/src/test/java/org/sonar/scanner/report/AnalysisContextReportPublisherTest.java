@@ -250,4 +250,34 @@ public class AnalysisContextReportPublisherTest {
     String content = FileUtils.readFileToString(writer.getFileStructure().analysisLog());
     assertThat(content).doesNotContain(SONAR_SKIP);
   }
+
+  @Test
+  public void dump_settings_of_modules_in_scan_order_when_scanned_in_parallel() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(temp.newFolder());
+    publisher.init(writer);
+
+    DefaultInputModule root = newModule("root");
+    DefaultInputModule moduleA = newModule("moduleA");
+    DefaultInputModule moduleB = newModule("moduleB");
+    when(hierarchy.root()).thenReturn(root);
+    when(hierarchy.children(root)).thenReturn(Arrays.asList(moduleA, moduleB));
+
+    publisher.dumpModuleSettings(moduleB);
+    assertThat(FileUtils.readFileToString(writer.getFileStructure().analysisLog())).doesNotContain("Settings for module");
+
+    publisher.dumpModuleSettings(moduleA);
+    publisher.dumpModuleSettings(root);
+
+    String content = FileUtils.readFileToString(writer.getFileStructure().analysisLog());
+    assertThat(content.indexOf("Settings for module: moduleA")).isPositive()
+      .isLessThan(content.indexOf("Settings for module: moduleB"));
+    assertThat(content.indexOf("Settings for module: moduleB")).isLessThan(content.indexOf("Settings for module: root"));
+  }
+
+  private DefaultInputModule newModule(String key) throws Exception {
+    return new DefaultInputModule(ProjectDefinition.create()
+      .setBaseDir(temp.newFolder())
+      .setWorkDir(temp.newFolder())
+      .setKey(key));
+  }
 }
@@ -0,0 +1,137 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.report;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.scanner.protocol.output.FileStructure.Domain;
+import org.sonar.scanner.protocol.output.FileStructure.Layout;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportReader;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+public class BufferedReportWriterTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private ScannerReportWriter writer;
+  private ScannerReportReader reader;
+  private BufferedReportWriter underTest;
+
+  @Before
+  public void setUp() throws IOException {
+    writer = new ScannerReportWriter(temp.getRoot(), Layout.SEGMENTED);
+    reader = new ScannerReportReader(temp.getRoot(), Layout.SEGMENTED);
+    underTest = new BufferedReportWriter(writer);
+  }
+
+  @After
+  public void tearDown() {
+    underTest.close();
+  }
+
+  @Test
+  public void write_data_in_report_when_flushed() {
+    assertThat(underTest.writeComponentSymbols(1, singletonList(ScannerReport.Symbol.newBuilder().build()))).isTrue();
+    assertThat(underTest.writeComponentSyntaxHighlighting(1, singletonList(ScannerReport.SyntaxHighlightingRule.newBuilder().build()))).isTrue();
+    assertThat(underTest.writeCpdTextBlocks(2, singletonList(ScannerReport.CpdTextBlock.newBuilder().setHash("abc").build()))).isTrue();
+
+    assertThat(underTest.hasComponentData(Domain.SYMBOLS, 1)).isTrue();
+    assertThat(underTest.hasComponentData(Domain.SYMBOLS, 2)).isFalse();
+    assertThat(writer.hasComponentData(Domain.SYMBOLS, 1)).isFalse();
+
+    underTest.flush();
+
+    assertThat(reader.readComponentSymbols(1)).hasSize(1);
+    assertThat(reader.readComponentSyntaxHighlighting(1)).hasSize(1);
+    assertThat(reader.readCpdTextBlocks(2)).extracting(ScannerReport.CpdTextBlock::getHash).containsExactly("abc");
+  }
+
+  @Test
+  public void data_is_written_only_once_per_component_and_domain() {
+    assertThat(underTest.writeComponentSymbols(1, singletonList(ScannerReport.Symbol.newBuilder().build()))).isTrue();
+    assertThat(underTest.writeComponentSymbols(1, singletonList(ScannerReport.Symbol.newBuilder().build()))).isFalse();
+    assertThat(underTest.writeComponentSymbols(2, singletonList(ScannerReport.Symbol.newBuilder().build()))).isTrue();
+    assertThat(underTest.writeComponentSyntaxHighlighting(1, singletonList(ScannerReport.SyntaxHighlightingRule.newBuilder().build()))).isTrue();
+
+    underTest.flush();
+
+    assertThat(reader.readComponentSymbols(1)).hasSize(1);
+  }
+
+  @Test
+  public void write_concurrently_with_small_budget() throws Exception {
+    underTest.close();
+    underTest = new BufferedReportWriter(writer, 50);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<Boolean>> futures = new ArrayList<>();
+    for (int i = 1; i <= 200; i++) {
+      int ref = i;
+      futures.add(executor.submit(() -> underTest.writeComponentSymbols(ref, singletonList(ScannerReport.Symbol.newBuilder()
+        .setDeclaration(ScannerReport.TextRange.newBuilder().setStartLine(ref))
+        .build()))));
+    }
+    for (Future<Boolean> future : futures) {
+      assertThat(future.get()).isTrue();
+    }
+    executor.shutdown();
+
+    underTest.flush();
+
+    for (int i = 1; i <= 200; i++) {
+      assertThat(reader.readComponentSymbols(i)).extracting(symbol -> symbol.getDeclaration().getStartLine()).containsExactly(i);
+    }
+  }
+
+  @Test
+  public void fail_to_flush_if_data_can_not_be_written() {
+    ScannerReportWriter failingWriter = mock(ScannerReportWriter.class);
+    doThrow(new IllegalStateException("disk full")).when(failingWriter).writeComponentData(any(Domain.class), anyInt(), any(byte[].class));
+    underTest.close();
+    underTest = new BufferedReportWriter(failingWriter);
+    underTest.writeComponentSymbols(1, singletonList(ScannerReport.Symbol.newBuilder().build()));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Fail to write report");
+
+    underTest.flush();
+  }
+}
@@ -29,6 +29,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.AnalysisMode;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
@@ -96,6 +97,25 @@ public class MeasuresPublisherTest {
     }
   }
 
+  @Test
+  public void do_not_publish_measures_of_unchanged_files_in_incremental_mode() throws Exception {
+    AnalysisMode mode = mock(AnalysisMode.class);
+    when(mode.isIncremental()).thenReturn(true);
+    DefaultInputFile sameFile = new TestInputFileBuilder("foo", "src/Bar.php").setPublish(true).setStatus(InputFile.Status.SAME).build();
+    InputComponentStore componentCache = new InputComponentStore(inputModule, mode);
+    componentCache.put(inputFile);
+    componentCache.put(sameFile);
+    DefaultMeasure<Integer> measure = new DefaultMeasure<Integer>().forMetric(CoreMetrics.NCLOC).withValue(2);
+    when(measureCache.byComponentKey(inputFile.key())).thenReturn(Collections.singletonList(measure));
+    when(measureCache.byComponentKey(sameFile.key())).thenReturn(Collections.singletonList(measure));
+
+    new MeasuresPublisher(componentCache, measureCache, mock(TestPlanBuilder.class)).publish(writer);
+    ScannerReportReader reader = new ScannerReportReader(outputDir);
+
+    assertThat(reader.readComponentMeasures(inputFile.batchId())).hasSize(1);
+    assertThat(reader.readComponentMeasures(sameFile.batchId())).hasSize(0);
+  }
+
   @Test
   public void fail_with_IAE_when_measure_has_no_value() throws Exception {
     DefaultMeasure<Integer> measure = new DefaultMeasure<Integer>().forMetric(CoreMetrics.LINES_TO_COVER);
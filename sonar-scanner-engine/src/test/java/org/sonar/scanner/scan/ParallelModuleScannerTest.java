@@ -0,0 +1,145 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
+
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ParallelModuleScannerTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private InputModuleHierarchy tree = mock(InputModuleHierarchy.class);
+  private DefaultInputModule root = mock(DefaultInputModule.class);
+  private DefaultInputModule moduleA = mock(DefaultInputModule.class);
+  private DefaultInputModule moduleA1 = mock(DefaultInputModule.class);
+  private DefaultInputModule moduleB = mock(DefaultInputModule.class);
+
+  @Before
+  public void setUp() {
+    when(tree.root()).thenReturn(root);
+    when(tree.children(root)).thenReturn(asList(moduleA, moduleB));
+    when(tree.children(moduleA)).thenReturn(Collections.singletonList(moduleA1));
+    when(tree.children(moduleA1)).thenReturn(Collections.emptyList());
+    when(tree.children(moduleB)).thenReturn(Collections.emptyList());
+  }
+
+  @Test
+  public void scan_children_before_parents_and_root_last_in_calling_thread() {
+    List<DefaultInputModule> scanned = new CopyOnWriteArrayList<>();
+    List<Thread> threads = new CopyOnWriteArrayList<>();
+
+    new ParallelModuleScanner(tree, module -> {
+      scanned.add(module);
+      threads.add(Thread.currentThread());
+    }, 2).scan();
+
+    assertThat(scanned).containsOnly(root, moduleA, moduleA1, moduleB);
+    assertThat(scanned.indexOf(moduleA1)).isLessThan(scanned.indexOf(moduleA));
+    assertThat(scanned.get(3)).isSameAs(root);
+    assertThat(threads.get(3)).isSameAs(Thread.currentThread());
+    assertThat(threads.subList(0, 3)).doesNotContain(Thread.currentThread());
+  }
+
+  @Test
+  public void scan_independent_modules_concurrently() {
+    CountDownLatch latch = new CountDownLatch(2);
+
+    // would time out if A1 and B were not scanned at the same time
+    new ParallelModuleScanner(tree, module -> {
+      if (module == moduleA1 || module == moduleB) {
+        latch.countDown();
+        try {
+          assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }, 2).scan();
+
+    assertThat(latch.getCount()).isZero();
+  }
+
+  @Test
+  public void fail_if_a_module_fails() {
+    List<DefaultInputModule> scanned = new CopyOnWriteArrayList<>();
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Fail to scan A1");
+
+    try {
+      new ParallelModuleScanner(tree, module -> {
+        if (module == moduleA1) {
+          throw new IllegalArgumentException("Fail to scan A1");
+        }
+        scanned.add(module);
+      }, 2).scan();
+    } finally {
+      assertThat(scanned).doesNotContain(moduleA, root);
+    }
+  }
+
+  @Test
+  public void wait_for_running_modules_before_failing() throws Exception {
+    CountDownLatch failed = new CountDownLatch(1);
+    AtomicBoolean moduleBCompleted = new AtomicBoolean(false);
+
+    try {
+      new ParallelModuleScanner(tree, module -> {
+        if (module == moduleA1) {
+          failed.countDown();
+          throw new IllegalArgumentException("Fail to scan A1");
+        }
+        if (module == moduleB) {
+          try {
+            failed.await(10, TimeUnit.SECONDS);
+            Thread.sleep(200);
+          } catch (InterruptedException e) {
+            // interrupted when the other module fails, but still takes time to complete
+            sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+          } finally {
+            moduleBCompleted.set(true);
+          }
+        }
+      }, 2).scan();
+      fail("Expected exception");
+    } catch (IllegalArgumentException e) {
+      assertThat(moduleBCompleted.get()).isTrue();
+    }
+  }
+}
@@ -30,6 +30,7 @@ import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.batch.measure.MetricFinder;
@@ -42,9 +43,12 @@ import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.core.metric.ScannerMetrics;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
 import org.sonar.scanner.issue.ModuleIssues;
+import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
+import org.sonar.scanner.report.BufferedReportWriter;
 import org.sonar.scanner.report.ReportPublisher;
 import org.sonar.scanner.repository.ContextPropertiesCache;
+import org.sonar.scanner.scan.filesystem.InputComponentStore;
 import org.sonar.scanner.scan.measure.MeasureCache;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -66,6 +70,9 @@ public class DefaultSensorStorageTest {
   private ModuleIssues moduleIssues;
   private MeasureCache measureCache;
   private ContextPropertiesCache contextPropertiesCache = new ContextPropertiesCache();
+  private InputComponentStore componentStore;
+  private ScannerReportWriter reportWriter;
+  private BufferedReportWriter bufferedReportWriter;
 
   @Before
   public void prepare() throws Exception {
@@ -76,10 +83,14 @@ public class DefaultSensorStorageTest {
     moduleIssues = mock(ModuleIssues.class);
     measureCache = mock(MeasureCache.class);
     ReportPublisher reportPublisher = mock(ReportPublisher.class);
-    when(reportPublisher.getWriter()).thenReturn(new ScannerReportWriter(temp.newFolder()));
+    reportWriter = new ScannerReportWriter(temp.newFolder());
+    when(reportPublisher.getWriter()).thenReturn(reportWriter);
+    bufferedReportWriter = new BufferedReportWriter(reportWriter);
+    when(reportPublisher.getBufferedWriter()).thenReturn(bufferedReportWriter);
+    componentStore = mock(InputComponentStore.class);
     underTest = new DefaultSensorStorage(metricFinder,
       moduleIssues, settings.asConfig(), reportPublisher, measureCache,
-      mock(SonarCpdBlockIndex.class), contextPropertiesCache, new ScannerMetrics());
+      mock(SonarCpdBlockIndex.class), contextPropertiesCache, new ScannerMetrics(), componentStore);
   }
 
   @Test
@@ -129,6 +140,34 @@ public class DefaultSensorStorageTest {
     assertThat(m.metric()).isEqualTo(CoreMetrics.NCLOC);
   }
 
+  @Test
+  public void write_highlighting_and_symbols_in_report() throws Exception {
+    InputFile inputFile = new TestInputFileBuilder("foo", "src/Foo.java")
+      .setModuleBaseDir(temp.newFolder().toPath()).build();
+
+    underTest.store(new DefaultHighlighting(null).onFile(inputFile));
+    underTest.store(new DefaultSymbolTable(null).onFile(inputFile));
+    bufferedReportWriter.flush();
+
+    int ref = ((DefaultInputFile) inputFile).batchId();
+    assertThat(reportWriter.hasComponentData(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, ref)).isTrue();
+    assertThat(reportWriter.hasComponentData(FileStructure.Domain.SYMBOLS, ref)).isTrue();
+  }
+
+  @Test
+  public void do_not_write_highlighting_and_symbols_of_unchanged_file_in_incremental_mode() throws Exception {
+    InputFile inputFile = new TestInputFileBuilder("foo", "src/Foo.java")
+      .setModuleBaseDir(temp.newFolder().toPath()).setStatus(InputFile.Status.SAME).build();
+    when(componentStore.isUnchangedInIncrementalMode(inputFile)).thenReturn(true);
+
+    underTest.store(new DefaultHighlighting(null).onFile(inputFile));
+    underTest.store(new DefaultSymbolTable(null).onFile(inputFile));
+
+    int ref = ((DefaultInputFile) inputFile).batchId();
+    assertThat(reportWriter.hasComponentData(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, ref)).isFalse();
+    assertThat(reportWriter.hasComponentData(FileStructure.Domain.SYMBOLS, ref)).isFalse();
+  }
+
   @Test(expected = UnsupportedOperationException.class)
   public void duplicateHighlighting() throws Exception {
     InputFile inputFile = new TestInputFileBuilder("foo", "src/Foo.java")
@@ -20,6 +20,11 @@
 package org.sonar.scanner.storage;
 
 import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
 import org.sonar.scanner.index.AbstractCachesTest;
 import org.sonar.scanner.storage.Storage.Entry;
@@ -248,4 +253,31 @@ public class StorageTest extends AbstractCachesTest {
     cache.clear("foo", "bar", "baz");
     cache.clear();
   }
+
+  @Test
+  public void put_and_get_from_concurrent_threads() throws Exception {
+    Storage<String> cache = caches.createCache("modules");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        String module = "module" + thread;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 500; i++) {
+            cache.put(module, i, module + ":" + i);
+            assertThat(cache.get(module, i)).isEqualTo(module + ":" + i);
+          }
+          assertThat(cache.values(module)).hasSize(500);
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(cache.keySet()).containsOnly("module0", "module1", "module2", "module3");
+    assertThat(cache.values()).hasSize(2000);
+  }
 }
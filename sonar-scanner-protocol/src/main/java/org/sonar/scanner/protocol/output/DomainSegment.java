@@ -0,0 +1,273 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+
+/**
+ * Data of all the components of a {@link FileStructure.Domain} in the {@link FileStructure.Layout#SEGMENTED segmented}
+ * layout of report. Data is appended to a single segment file, and an index file lists the chunks of data
+ * of each component.
+ * <p>
+ * Index is a sequence of fixed-size entries: component ref (int), offset of chunk in segment (long),
+ * length of chunk (long) and a flag (byte) telling whether the chunk replaces the previous chunks of
+ * the component. Both files are append-only.
+ * </p>
+ * <p>
+ * Files are kept open for writing from the first append until {@link #close()}. Data is buffered, so
+ * it is visible to the other instances reading the same files only once {@link #flush() flushed}.
+ * Index entries are kept in memory until the data they refer to is flushed to the segment, so that
+ * readers never load an entry whose data is not written yet.
+ * </p>
+ */
+class DomainSegment {
+
+  private static final int ENTRY_SIZE = 4 + 8 + 8 + 1;
+
+  private final File segmentFile;
+  private final File indexFile;
+
+  // chunks read from index, refreshed when index grows
+  private final Map<Integer, List<Chunk>> chunksByRef = new HashMap<>();
+  private long loadedIndexLength = 0L;
+
+  // opened by the first append, null when closed
+  private OutputStream segmentOutput;
+  private OutputStream indexOutput;
+  private long segmentLength;
+
+  // index entries of the data appended since last flush
+  private final ByteArrayOutputStream pendingIndex = new ByteArrayOutputStream();
+  private final DataOutputStream pendingIndexOutput = new DataOutputStream(pendingIndex);
+  private final Set<Integer> pendingRefs = new HashSet<>();
+
+  DomainSegment(File segmentFile, File indexFile) {
+    this.segmentFile = segmentFile;
+    this.indexFile = indexFile;
+  }
+
+  File getSegmentFile() {
+    return segmentFile;
+  }
+
+  synchronized boolean contains(int componentRef) {
+    if (pendingRefs.contains(componentRef)) {
+      return true;
+    }
+    try {
+      refreshIndex();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read index " + indexFile, e);
+    }
+    return chunksByRef.containsKey(componentRef);
+  }
+
+  /**
+   * @param replace if true, the previous chunks of the component are dropped
+   */
+  synchronized void append(int componentRef, byte[] data, boolean replace) {
+    try {
+      if (segmentOutput == null) {
+        segmentLength = segmentFile.length();
+        segmentOutput = new BufferedOutputStream(new FileOutputStream(segmentFile, true));
+        indexOutput = new BufferedOutputStream(new FileOutputStream(indexFile, true));
+      }
+      segmentOutput.write(data);
+      pendingIndexOutput.writeInt(componentRef);
+      pendingIndexOutput.writeLong(segmentLength);
+      pendingIndexOutput.writeLong(data.length);
+      pendingIndexOutput.writeBoolean(replace);
+      pendingRefs.add(componentRef);
+      segmentLength += data.length;
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to write data of component #" + componentRef + " in " + segmentFile, e);
+    }
+  }
+
+  /**
+   * Writes the buffered data, so that it can be read by other instances. Expected to be called
+   * when a batch of data is completed, not for each read.
+   */
+  synchronized void flush() {
+    if (segmentOutput == null) {
+      return;
+    }
+    try {
+      // segment first, so that index never refers to data which is not written yet
+      segmentOutput.flush();
+      pendingIndex.writeTo(indexOutput);
+      pendingIndex.reset();
+      pendingRefs.clear();
+      indexOutput.flush();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to flush " + segmentFile, e);
+    }
+  }
+
+  /**
+   * Flushes and closes the files. Next append opens them again.
+   */
+  synchronized void close() {
+    if (segmentOutput == null) {
+      return;
+    }
+    flush();
+    try (OutputStream index = indexOutput) {
+      segmentOutput.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to close " + segmentFile, e);
+    } finally {
+      segmentOutput = null;
+      indexOutput = null;
+    }
+  }
+
+  /**
+   * @return null if the component has no data in this segment
+   */
+  @CheckForNull
+  synchronized InputStream open(int componentRef) {
+    if (pendingRefs.contains(componentRef)) {
+      // data is read back by the instance which wrote it
+      flush();
+    }
+    try {
+      refreshIndex();
+      List<Chunk> chunks = chunksByRef.get(componentRef);
+      if (chunks == null) {
+        return null;
+      }
+      return new ChunksInputStream(new RandomAccessFile(segmentFile, "r"), new ArrayList<>(chunks).iterator());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read data of component #" + componentRef + " in " + segmentFile, e);
+    }
+  }
+
+  private void refreshIndex() throws IOException {
+    long indexLength = indexFile.length();
+    if (indexLength == loadedIndexLength) {
+      return;
+    }
+    try (RandomAccessFile index = new RandomAccessFile(indexFile, "r")) {
+      index.seek(loadedIndexLength);
+      long entries = (indexLength - loadedIndexLength) / ENTRY_SIZE;
+      for (long i = 0; i < entries; i++) {
+        int ref = index.readInt();
+        Chunk chunk = new Chunk(index.readLong(), index.readLong());
+        boolean replace = index.readBoolean();
+        List<Chunk> chunks = chunksByRef.computeIfAbsent(ref, r -> new ArrayList<>());
+        if (replace) {
+          chunks.clear();
+        }
+        if (chunk.length > 0) {
+          chunks.add(chunk);
+        }
+      }
+      loadedIndexLength += entries * ENTRY_SIZE;
+    }
+  }
+
+  private static class Chunk {
+    private final long offset;
+    private final long length;
+
+    private Chunk(long offset, long length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Reads the chunks of a component one after the other, as a single stream
+   */
+  private static class ChunksInputStream extends InputStream {
+    private final RandomAccessFile file;
+    private final Iterator<Chunk> chunks;
+    private long remainingInChunk = 0L;
+
+    private ChunksInputStream(RandomAccessFile file, Iterator<Chunk> chunks) {
+      this.file = file;
+      this.chunks = chunks;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!nextChunkIfNeeded()) {
+        return -1;
+      }
+      int b = file.read();
+      if (b < 0) {
+        throw new EOFException("Segment is truncated");
+      }
+      remainingInChunk--;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!nextChunkIfNeeded()) {
+        return -1;
+      }
+      int read = file.read(b, off, (int) Math.min(len, remainingInChunk));
+      if (read < 0) {
+        throw new EOFException("Segment is truncated");
+      }
+      remainingInChunk -= read;
+      return read;
+    }
+
+    private boolean nextChunkIfNeeded() throws IOException {
+      while (remainingInChunk == 0L) {
+        if (!chunks.hasNext()) {
+          return false;
+        }
+        Chunk chunk = chunks.next();
+        file.seek(chunk.offset);
+        remainingInChunk = chunk.length;
+      }
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      file.close();
+    }
+  }
+}
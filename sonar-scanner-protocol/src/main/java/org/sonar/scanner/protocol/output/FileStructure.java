@@ -29,6 +29,45 @@ import javax.annotation.concurrent.Immutable;
 @Immutable
 public class FileStructure {
 
+  /**
+   * Layout of the data of components. Metadata, active rules, context properties and analysis log are
+   * always stored in their own files.
+   */
+  public enum Layout {
+    /**
+     * One file per component and per domain, for example "issues-3.pb"
+     */
+    FILE_PER_COMPONENT(0),
+
+    /**
+     * One append-only segment file per domain, for example "issues-segment.pb", and an index
+     * giving the chunks of data of each component, for example "issues-index.idx".
+     */
+    SEGMENTED(1);
+
+    private final int version;
+
+    Layout(int version) {
+      this.version = version;
+    }
+
+    /**
+     * Version of layout recorded in {@link ScannerReport.Metadata#getLayoutVersion()}
+     */
+    public int getVersion() {
+      return version;
+    }
+
+    public static Layout fromVersion(int version) {
+      for (Layout layout : values()) {
+        if (layout.version == version) {
+          return layout;
+        }
+      }
+      throw new IllegalStateException("Unsupported layout version of analysis report: " + version);
+    }
+  }
+
   public enum Domain {
     ISSUES("issues-", Domain.PB),
     COMPONENT("component-", Domain.PB),
@@ -78,6 +117,14 @@ public class FileStructure {
     return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
   }
 
+  public File segmentFor(Domain domain) {
+    return new File(dir, domain.filePrefix + "segment" + domain.fileSuffix);
+  }
+
+  public File indexFor(Domain domain) {
+    return new File(dir, domain.filePrefix + "index.idx");
+  }
+
   public File contextProperties() {
     return new File(dir, "context-props.pb");
   }
@@ -19,21 +19,43 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
 import javax.annotation.CheckForNull;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.Protobuf;
+import org.sonar.scanner.protocol.output.FileStructure.Domain;
+import org.sonar.scanner.protocol.output.FileStructure.Layout;
 
 import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
 
+/**
+ * Reads reports of both layouts {@link Layout#FILE_PER_COMPONENT} and {@link Layout#SEGMENTED}.
+ * Layout is read from metadata, unless it is given by the caller, for example to read a report which is being written.
+ */
 public class ScannerReportReader {
 
   private final FileStructure fileStructure;
+  private final Map<Domain, DomainSegment> segments = new EnumMap<>(Domain.class);
+  // read from metadata on first access to data of components, if not given
+  private Layout layout;
 
   public ScannerReportReader(File dir) {
     this.fileStructure = new FileStructure(dir);
   }
 
+  public ScannerReportReader(File dir, Layout layout) {
+    this(dir);
+    this.layout = layout;
+  }
+
   public ScannerReport.Metadata readMetadata() {
     File file = fileStructure.metadataFile();
     if (!fileExists(file)) {
@@ -51,115 +73,107 @@ public class ScannerReportReader {
   }
 
   public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Measure.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(Domain.MEASURES, componentRef, ScannerReport.Measure.parser());
   }
 
   @CheckForNull
   public ScannerReport.Changesets readChangesets(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.read(file, ScannerReport.Changesets.parser());
-    }
-    return null;
+    return read(Domain.CHANGESETS, componentRef, ScannerReport.Changesets.parser());
   }
 
   public ScannerReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
+    ScannerReport.Component component = read(Domain.COMPONENT, componentRef, ScannerReport.Component.parser());
+    if (component == null) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: "
+        + fileStructure.fileFor(Domain.COMPONENT, componentRef));
     }
-    return Protobuf.read(file, ScannerReport.Component.parser());
+    return component;
   }
 
   public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Issue.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(Domain.ISSUES, componentRef, ScannerReport.Issue.parser());
   }
 
   public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Duplication.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(Domain.DUPLICATIONS, componentRef, ScannerReport.Duplication.parser());
   }
 
   public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.CpdTextBlock.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(Domain.CPD_TEXT_BLOCKS, componentRef, ScannerReport.CpdTextBlock.parser());
   }
 
   public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Symbol.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(Domain.SYMBOLS, componentRef, ScannerReport.Symbol.parser());
   }
 
   public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    return file.exists();
+    return hasComponentData(Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
   }
 
   public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.SyntaxHighlightingRule.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(Domain.SYNTAX_HIGHLIGHTINGS, fileRef, ScannerReport.SyntaxHighlightingRule.parser());
   }
 
   public boolean hasCoverage(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    return file.exists();
+    return hasComponentData(Domain.COVERAGES, componentRef);
   }
 
   public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.LineCoverage.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(Domain.COVERAGES, fileRef, ScannerReport.LineCoverage.parser());
   }
 
+  /**
+   * Supported only by layout {@link FileStructure.Layout#FILE_PER_COMPONENT}.
+   * @see #openFileSource(int)
+   */
   @CheckForNull
   public File readFileSource(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SOURCE, fileRef);
-    if (fileExists(file)) {
-      return file;
-    }
-    return null;
+    return readFile(Domain.SOURCE, fileRef);
   }
 
+  /**
+   * Source code of a file, encoded in UTF-8. The stream must be closed by caller.
+   * @return null if the file has no source
+   */
+  @CheckForNull
+  public InputStream openFileSource(int fileRef) {
+    return open(Domain.SOURCE, fileRef);
+  }
+
+  /**
+   * Supported only by layout {@link FileStructure.Layout#FILE_PER_COMPONENT}.
+   * @see #openTests(int)
+   */
   @CheckForNull
   public File readTests(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.TESTS, testFileRef);
-    if (fileExists(file)) {
-      return file;
-    }
+    return readFile(Domain.TESTS, testFileRef);
+  }
 
-    return null;
+  /**
+   * Stream of delimited {@link ScannerReport.Test} messages. The stream must be closed by caller.
+   * @return null if the file has no tests
+   */
+  @CheckForNull
+  public InputStream openTests(int testFileRef) {
+    return open(Domain.TESTS, testFileRef);
   }
 
+  /**
+   * Supported only by layout {@link FileStructure.Layout#FILE_PER_COMPONENT}.
+   * @see #openCoverageDetails(int)
+   */
   @CheckForNull
   public File readCoverageDetails(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
-    if (fileExists(file)) {
-      return file;
-    }
+    return readFile(Domain.COVERAGE_DETAILS, testFileRef);
+  }
 
-    return null;
+  /**
+   * Stream of delimited {@link ScannerReport.CoverageDetail} messages. The stream must be closed by caller.
+   * @return null if the file has no coverage details
+   */
+  @CheckForNull
+  public InputStream openCoverageDetails(int testFileRef) {
+    return open(Domain.COVERAGE_DETAILS, testFileRef);
   }
 
   public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
@@ -170,6 +184,86 @@ public class ScannerReportReader {
     return Protobuf.readStream(file, ScannerReport.ContextProperty.parser());
   }
 
+  private boolean hasComponentData(Domain domain, int componentRef) {
+    DomainSegment segment = segment(domain);
+    if (segment != null) {
+      return segment.contains(componentRef);
+    }
+    return fileStructure.fileFor(domain, componentRef).exists();
+  }
+
+  @CheckForNull
+  private <M extends Message> M read(Domain domain, int componentRef, Parser<M> parser) {
+    DomainSegment segment = segment(domain);
+    if (segment != null) {
+      InputStream input = segment.open(componentRef);
+      return input == null ? null : Protobuf.read(new BufferedInputStream(input), parser);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (fileExists(file)) {
+      return Protobuf.read(file, parser);
+    }
+    return null;
+  }
+
+  private <M extends Message> CloseableIterator<M> readStream(Domain domain, int componentRef, Parser<M> parser) {
+    DomainSegment segment = segment(domain);
+    if (segment != null) {
+      InputStream input = segment.open(componentRef);
+      return input == null ? emptyCloseableIterator() : Protobuf.readStream(new BufferedInputStream(input), parser);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (fileExists(file)) {
+      return Protobuf.readStream(file, parser);
+    }
+    return emptyCloseableIterator();
+  }
+
+  @CheckForNull
+  private InputStream open(Domain domain, int componentRef) {
+    DomainSegment segment = segment(domain);
+    if (segment != null) {
+      InputStream input = segment.open(componentRef);
+      return input == null ? null : new BufferedInputStream(input);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (!fileExists(file)) {
+      return null;
+    }
+    try {
+      return new BufferedInputStream(new FileInputStream(file));
+    } catch (FileNotFoundException e) {
+      throw new IllegalStateException("Unable to open " + file, e);
+    }
+  }
+
+  @CheckForNull
+  private File readFile(Domain domain, int componentRef) {
+    if (segment(domain) != null) {
+      throw new IllegalStateException("Data of domain " + domain + " is not stored in separated files in segmented report");
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (fileExists(file)) {
+      return file;
+    }
+    return null;
+  }
+
+  /**
+   * @return null in layout {@link Layout#FILE_PER_COMPONENT}
+   */
+  @CheckForNull
+  private synchronized DomainSegment segment(Domain domain) {
+    if (layout == null) {
+      // reports without metadata are considered as written by previous versions
+      layout = fileExists(fileStructure.metadataFile()) ? Layout.fromVersion(readMetadata().getLayoutVersion()) : Layout.FILE_PER_COMPONENT;
+    }
+    if (layout != Layout.SEGMENTED) {
+      return null;
+    }
+    return segments.computeIfAbsent(domain, d -> new DomainSegment(fileStructure.segmentFor(d), fileStructure.indexFor(d)));
+  }
+
   private static boolean fileExists(File file) {
     return file.exists() && file.isFile();
   }
@@ -19,40 +19,82 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
-import javax.annotation.concurrent.Immutable;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.concurrent.ThreadSafe;
 import org.sonar.core.util.ContextException;
 import org.sonar.core.util.Protobuf;
+import org.sonar.scanner.protocol.output.FileStructure.Domain;
+import org.sonar.scanner.protocol.output.FileStructure.Layout;
 
-@Immutable
-public class ScannerReportWriter {
+/**
+ * Writes the report in the given {@link Layout}, which is recorded in metadata for {@link ScannerReportReader}.
+ * <p>
+ * In layout {@link Layout#SEGMENTED}, files are kept open and data is buffered: it is visible to readers only
+ * after {@link #flush()}, and the writer must be closed before the report is sent.
+ */
+@ThreadSafe
+public class ScannerReportWriter implements Closeable {
 
   private final FileStructure fileStructure;
+  private final Layout layout;
+
+  // null in layout FILE_PER_COMPONENT
+  @CheckForNull
+  private final Map<Domain, DomainSegment> segments;
 
   public ScannerReportWriter(File dir) {
+    this(dir, Layout.FILE_PER_COMPONENT);
+  }
+
+  public ScannerReportWriter(File dir, Layout layout) {
     if (!dir.exists() && !dir.mkdirs()) {
       throw new IllegalStateException("Unable to create directory: " + dir);
     }
     this.fileStructure = new FileStructure(dir);
+    this.layout = layout;
+    if (layout == Layout.SEGMENTED) {
+      this.segments = new EnumMap<>(Domain.class);
+      for (Domain domain : Domain.values()) {
+        segments.put(domain, new DomainSegment(fileStructure.segmentFor(domain), fileStructure.indexFor(domain)));
+      }
+    } else {
+      this.segments = null;
+    }
   }
 
   public FileStructure getFileStructure() {
     return fileStructure;
   }
 
+  public Layout getLayout() {
+    return layout;
+  }
+
   public boolean hasComponentData(FileStructure.Domain domain, int componentRef) {
+    if (segments != null) {
+      return segments.get(domain).contains(componentRef);
+    }
     File file = fileStructure.fileFor(domain, componentRef);
     return file.exists() && file.isFile();
   }
 
   /**
-   * Metadata is mandatory
+   * Metadata is mandatory. The layout of the report is added to the given metadata.
    */
   public File writeMetadata(ScannerReport.Metadata metadata) {
-    Protobuf.write(metadata, fileStructure.metadataFile());
+    Protobuf.write(metadata.toBuilder().setLayoutVersion(layout.getVersion()).build(), fileStructure.metadataFile());
     return fileStructure.metadataFile();
   }
 
@@ -62,18 +104,24 @@ public class ScannerReportWriter {
   }
 
   public File writeComponent(ScannerReport.Component component) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, component.getRef());
-    Protobuf.write(component, file);
-    return file;
+    return write(Domain.COMPONENT, component.getRef(), component);
   }
 
   public File writeComponentIssues(int componentRef, Iterable<ScannerReport.Issue> issues) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    Protobuf.writeStream(issues, file, false);
-    return file;
+    return writeStream(Domain.ISSUES, componentRef, issues);
   }
 
   public void appendComponentIssue(int componentRef, ScannerReport.Issue issue) {
+    if (segments != null) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try {
+        issue.writeDelimitedTo(out);
+      } catch (IOException e) {
+        throw ContextException.of("Unable to write issue", e);
+      }
+      segments.get(Domain.ISSUES).append(componentRef, out.toByteArray(), false);
+      return;
+    }
     File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
     try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
       issue.writeDelimitedTo(out);
@@ -83,56 +131,57 @@ public class ScannerReportWriter {
   }
 
   public File writeComponentMeasures(int componentRef, Iterable<ScannerReport.Measure> measures) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    Protobuf.writeStream(measures, file, false);
-    return file;
+    return writeStream(Domain.MEASURES, componentRef, measures);
   }
 
   public File writeComponentChangesets(ScannerReport.Changesets changesets) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, changesets.getComponentRef());
-    Protobuf.write(changesets, file);
-    return file;
+    return write(Domain.CHANGESETS, changesets.getComponentRef(), changesets);
   }
 
   public File writeComponentDuplications(int componentRef, Iterable<ScannerReport.Duplication> duplications) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    Protobuf.writeStream(duplications, file, false);
-    return file;
+    return writeStream(Domain.DUPLICATIONS, componentRef, duplications);
   }
 
   public File writeCpdTextBlocks(int componentRef, Iterable<ScannerReport.CpdTextBlock> blocks) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    Protobuf.writeStream(blocks, file, false);
-    return file;
+    return writeStream(Domain.CPD_TEXT_BLOCKS, componentRef, blocks);
   }
 
   public File writeComponentSymbols(int componentRef, Iterable<ScannerReport.Symbol> symbols) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    Protobuf.writeStream(symbols, file, false);
-    return file;
+    return writeStream(Domain.SYMBOLS, componentRef, symbols);
   }
 
   public File writeComponentSyntaxHighlighting(int componentRef, Iterable<ScannerReport.SyntaxHighlightingRule> syntaxHighlightingRules) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    Protobuf.writeStream(syntaxHighlightingRules, file, false);
-    return file;
+    return writeStream(Domain.SYNTAX_HIGHLIGHTINGS, componentRef, syntaxHighlightingRules);
   }
 
   public File writeComponentCoverage(int componentRef, Iterable<ScannerReport.LineCoverage> coverageList) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    Protobuf.writeStream(coverageList, file, false);
-    return file;
+    return writeStream(Domain.COVERAGES, componentRef, coverageList);
   }
 
   public File writeTests(int componentRef, Iterable<ScannerReport.Test> tests) {
-    File file = fileStructure.fileFor(FileStructure.Domain.TESTS, componentRef);
-    Protobuf.writeStream(tests, file, false);
-    return file;
+    return writeStream(Domain.TESTS, componentRef, tests);
   }
 
   public File writeCoverageDetails(int componentRef, Iterable<ScannerReport.CoverageDetail> tests) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE_DETAILS, componentRef);
-    Protobuf.writeStream(tests, file, false);
+    return writeStream(Domain.COVERAGE_DETAILS, componentRef, tests);
+  }
+
+  /**
+   * Writes data of component already serialized as a stream of delimited messages, for example
+   * by {@link Protobuf#writeStream(Iterable, OutputStream)}.
+   */
+  public File writeComponentData(Domain domain, int componentRef, byte[] delimitedMessages) {
+    if (segments != null) {
+      DomainSegment segment = segments.get(domain);
+      segment.append(componentRef, delimitedMessages, true);
+      return segment.getSegmentFile();
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    try {
+      Files.write(file.toPath(), delimitedMessages);
+    } catch (IOException e) {
+      throw ContextException.of("Unable to write component data", e).addContext("file", file);
+    }
     return file;
   }
 
@@ -142,8 +191,96 @@ public class ScannerReportWriter {
     return file;
   }
 
+  /**
+   * Output of the source code of a file, which must be encoded in UTF-8. Existing source is replaced.
+   * The stream must be closed by caller.
+   */
+  public OutputStream newSourceOutput(int componentRef) {
+    if (segments != null) {
+      return new SegmentOutputStream(segments.get(Domain.SOURCE), componentRef);
+    }
+    File file = getSourceFile(componentRef);
+    try {
+      return new BufferedOutputStream(new FileOutputStream(file));
+    } catch (FileNotFoundException e) {
+      throw ContextException.of("Unable to write source", e).addContext("file", file);
+    }
+  }
+
+  /**
+   * Supported only by layout {@link Layout#FILE_PER_COMPONENT}.
+   * @see #newSourceOutput(int)
+   */
   public File getSourceFile(int componentRef) {
+    if (segments != null) {
+      throw new IllegalStateException("Sources are not stored in separated files in segmented report");
+    }
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
 
+  private File write(Domain domain, int componentRef, Message message) {
+    if (segments != null) {
+      DomainSegment segment = segments.get(domain);
+      segment.append(componentRef, message.toByteArray(), true);
+      return segment.getSegmentFile();
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    Protobuf.write(message, file);
+    return file;
+  }
+
+  private <M extends Message> File writeStream(Domain domain, int componentRef, Iterable<M> messages) {
+    if (segments != null) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      Protobuf.writeStream(messages, out);
+      DomainSegment segment = segments.get(domain);
+      segment.append(componentRef, out.toByteArray(), true);
+      return segment.getSegmentFile();
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    Protobuf.writeStream(messages, file, false);
+    return file;
+  }
+
+  /**
+   * Writes the buffered data of components, so that it can be read by {@link ScannerReportReader}
+   */
+  public void flush() {
+    if (segments != null) {
+      segments.values().forEach(DomainSegment::flush);
+    }
+  }
+
+  /**
+   * Flushes and closes the files of the report. Data can still be written after close, but files are then open again.
+   */
+  @Override
+  public void close() {
+    if (segments != null) {
+      segments.values().forEach(DomainSegment::close);
+    }
+  }
+
+  /**
+   * Data is appended to segment when stream is closed, so that concurrent writes of different components
+   * are not mixed.
+   */
+  private static class SegmentOutputStream extends ByteArrayOutputStream {
+    private final DomainSegment segment;
+    private final int componentRef;
+    private boolean closed = false;
+
+    private SegmentOutputStream(DomainSegment segment, int componentRef) {
+      this.segment = segment;
+      this.componentRef = componentRef;
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        segment.append(componentRef, toByteArray(), true);
+      }
+    }
+  }
 }
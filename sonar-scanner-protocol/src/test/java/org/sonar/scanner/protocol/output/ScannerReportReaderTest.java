@@ -20,9 +20,11 @@
 package org.sonar.scanner.protocol.output;
 
 import com.google.common.collect.Lists;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
@@ -30,6 +32,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.core.util.Protobuf;
 import org.sonar.scanner.protocol.output.ScannerReport.Measure.StringValue;
 import org.sonar.scanner.protocol.output.ScannerReport.SyntaxHighlightingRule.HighlightingType;
 import org.sonar.scanner.protocol.output.ScannerReport.Test.TestStatus;
@@ -37,6 +40,7 @@ import org.sonar.scanner.protocol.output.ScannerReport.Test.TestStatus;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class ScannerReportReaderTest {
 
@@ -377,4 +381,143 @@ public class ScannerReportReaderTest {
   public void return_null_when_no_file_source() throws Exception {
     assertThat(underTest.readFileSource(UNKNOWN_COMPONENT_REF)).isNull();
   }
+
+  @Test
+  public void open_file_source() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    try (OutputStream outputStream = writer.newSourceOutput(1)) {
+      IOUtils.write("line1\nline2", outputStream);
+    }
+
+    try (InputStream inputStream = underTest.openFileSource(1)) {
+      assertThat(IOUtils.readLines(inputStream)).containsOnly("line1", "line2");
+    }
+    assertThat(underTest.openFileSource(UNKNOWN_COMPONENT_REF)).isNull();
+  }
+
+  @Test
+  public void read_segmented_report() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir, FileStructure.Layout.SEGMENTED);
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).setPath("src").build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(2).setPath("src/Foo.java").build());
+    writer.writeComponentMeasures(2, asList(ScannerReport.Measure.newBuilder().setMetricKey("lines").build()));
+    try (OutputStream outputStream = writer.newSourceOutput(2)) {
+      IOUtils.write("line1\nline2", outputStream);
+    }
+    writer.close();
+
+    assertThat(underTest.readComponent(1).getPath()).isEqualTo("src");
+    assertThat(underTest.readComponent(2).getPath()).isEqualTo("src/Foo.java");
+    assertThat(underTest.readComponentMeasures(1)).isEmpty();
+    assertThat(underTest.readComponentMeasures(2)).extracting(ScannerReport.Measure::getMetricKey).containsExactly("lines");
+    assertThat(underTest.readChangesets(2)).isNull();
+    try (InputStream inputStream = underTest.openFileSource(2)) {
+      assertThat(IOUtils.readLines(inputStream)).containsExactly("line1", "line2");
+    }
+    assertThat(underTest.openFileSource(1)).isNull();
+    assertThat(dir.list()).containsOnly("metadata.pb", "component-segment.pb", "component-index.idx", "measures-segment.pb", "measures-index.idx",
+      "source-segment.txt", "source-index.idx");
+  }
+
+  @Test
+  public void read_issues_appended_to_segmented_report() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir, FileStructure.Layout.SEGMENTED);
+    writer.appendComponentIssue(1, ScannerReport.Issue.newBuilder().setMsg("first").build());
+    writer.appendComponentIssue(2, ScannerReport.Issue.newBuilder().setMsg("other").build());
+    writer.appendComponentIssue(1, ScannerReport.Issue.newBuilder().setMsg("second").build());
+    writer.flush();
+    underTest = new ScannerReportReader(dir, FileStructure.Layout.SEGMENTED);
+
+    assertThat(underTest.readComponentIssues(1)).extracting(ScannerReport.Issue::getMsg).containsExactly("first", "second");
+    assertThat(underTest.readComponentIssues(2)).extracting(ScannerReport.Issue::getMsg).containsExactly("other");
+    assertThat(underTest.readComponentIssues(3)).isEmpty();
+  }
+
+  @Test
+  public void data_written_again_replaces_previous_data_in_segmented_report() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir, FileStructure.Layout.SEGMENTED);
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("old").build()));
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("new").build()));
+    writer.flush();
+    underTest = new ScannerReportReader(dir, FileStructure.Layout.SEGMENTED);
+
+    assertThat(underTest.readComponentIssues(1)).extracting(ScannerReport.Issue::getMsg).containsExactly("new");
+  }
+
+  @Test
+  public void read_data_written_after_first_read_of_segmented_report() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir, FileStructure.Layout.SEGMENTED);
+    underTest = new ScannerReportReader(dir, FileStructure.Layout.SEGMENTED);
+    writer.writeComponentSymbols(1, asList(ScannerReport.Symbol.newBuilder().build()));
+    writer.flush();
+    assertThat(underTest.readComponentSymbols(1)).hasSize(1);
+    assertThat(underTest.readComponentSymbols(2)).isEmpty();
+
+    writer.writeComponentSymbols(2, asList(ScannerReport.Symbol.newBuilder().build()));
+    assertThat(underTest.readComponentSymbols(2)).isEmpty();
+    writer.flush();
+
+    assertThat(underTest.readComponentSymbols(2)).hasSize(1);
+  }
+
+  @Test
+  public void read_serialized_data_of_segmented_report() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir, FileStructure.Layout.SEGMENTED);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Protobuf.writeStream(asList(ScannerReport.Symbol.newBuilder().build(), ScannerReport.Symbol.newBuilder().build()), out);
+
+    writer.writeComponentData(FileStructure.Domain.SYMBOLS, 1, out.toByteArray());
+    writer.close();
+    underTest = new ScannerReportReader(dir, FileStructure.Layout.SEGMENTED);
+
+    assertThat(underTest.readComponentSymbols(1)).hasSize(2);
+  }
+
+  @Test
+  public void fail_to_get_file_of_segmented_report() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir, FileStructure.Layout.SEGMENTED);
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().build());
+    writer.writeTests(1, asList(ScannerReport.Test.newBuilder().build()));
+    writer.close();
+
+    try {
+      underTest.readTests(1);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Data of domain TESTS is not stored in separated files in segmented report");
+    }
+  }
+
+  @Test
+  public void layout_is_read_from_metadata() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir, FileStructure.Layout.SEGMENTED);
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().build());
+    writer.writeComponentSymbols(1, asList(ScannerReport.Symbol.newBuilder().build()));
+    writer.close();
+
+    assertThat(underTest.readMetadata().getLayoutVersion()).isEqualTo(FileStructure.Layout.SEGMENTED.getVersion());
+    assertThat(underTest.readComponentSymbols(1)).hasSize(1);
+  }
+
+  @Test
+  public void report_without_layout_in_metadata_has_one_file_per_component() {
+    Protobuf.write(ScannerReport.Metadata.newBuilder().build(), new FileStructure(dir).metadataFile());
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeComponentSymbols(1, asList(ScannerReport.Symbol.newBuilder().build()));
+
+    assertThat(underTest.readComponentSymbols(1)).hasSize(1);
+  }
+
+  @Test
+  public void fail_if_layout_version_is_not_supported() {
+    Protobuf.write(ScannerReport.Metadata.newBuilder().setLayoutVersion(42).build(), new FileStructure(dir).metadataFile());
+
+    try {
+      underTest.readComponentSymbols(1);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Unsupported layout version of analysis report: 42");
+    }
+  }
 }
@@ -20,6 +20,7 @@
 package org.sonar.scanner.protocol.output;
 
 import com.google.common.collect.Iterators;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
@@ -68,6 +69,61 @@ public class ScannerReportWriterTest {
     assertThat(read.getAnalysisDate()).isEqualTo(15000000L);
     assertThat(read.getProjectKey()).isEqualTo("PROJECT_A");
     assertThat(read.getRootComponentRef()).isEqualTo(1);
+    assertThat(read.getLayoutVersion()).isEqualTo(FileStructure.Layout.FILE_PER_COMPONENT.getVersion());
+  }
+
+  @Test
+  public void write_layout_in_metadata_of_segmented_report() {
+    underTest = new ScannerReportWriter(dir, FileStructure.Layout.SEGMENTED);
+    underTest.writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("PROJECT_A").build());
+
+    ScannerReport.Metadata read = Protobuf.read(underTest.getFileStructure().metadataFile(), ScannerReport.Metadata.parser());
+    assertThat(read.getProjectKey()).isEqualTo("PROJECT_A");
+    assertThat(read.getLayoutVersion()).isEqualTo(FileStructure.Layout.SEGMENTED.getVersion());
+  }
+
+  @Test
+  public void data_of_segmented_report_is_written_on_flush_and_close() {
+    underTest = new ScannerReportWriter(dir, FileStructure.Layout.SEGMENTED);
+    File segment = underTest.getFileStructure().segmentFor(FileStructure.Domain.COMPONENT);
+    File index = underTest.getFileStructure().indexFor(FileStructure.Domain.COMPONENT);
+
+    underTest.writeComponent(ScannerReport.Component.newBuilder().setRef(1).setPath("src").build());
+    assertThat(segment.length()).isZero();
+    assertThat(index.length()).isZero();
+    // lookups do not flush
+    assertThat(underTest.hasComponentData(FileStructure.Domain.COMPONENT, 1)).isTrue();
+    assertThat(index.length()).isZero();
+
+    underTest.flush();
+    assertThat(segment.length()).isPositive();
+    assertThat(index.length()).isPositive();
+
+    underTest.writeComponent(ScannerReport.Component.newBuilder().setRef(2).setPath("src/Foo.java").build());
+    long segmentLength = segment.length();
+    underTest.close();
+
+    assertThat(segment.length()).isGreaterThan(segmentLength);
+    ScannerReportReader reader = new ScannerReportReader(dir, FileStructure.Layout.SEGMENTED);
+    assertThat(reader.readComponent(2).getPath()).isEqualTo("src/Foo.java");
+  }
+
+  @Test
+  public void index_of_segmented_report_refers_only_to_flushed_data() {
+    underTest = new ScannerReportWriter(dir, FileStructure.Layout.SEGMENTED);
+    File index = underTest.getFileStructure().indexFor(FileStructure.Domain.COMPONENT);
+    ScannerReportReader reader = new ScannerReportReader(dir, FileStructure.Layout.SEGMENTED);
+
+    // more entries than the size of write buffers
+    for (int ref = 1; ref <= 1_000; ref++) {
+      underTest.writeComponent(ScannerReport.Component.newBuilder().setRef(ref).setPath("src/Foo" + ref + ".java").build());
+    }
+    assertThat(index.length()).isZero();
+
+    underTest.flush();
+    for (int ref = 1; ref <= 1_000; ref++) {
+      assertThat(reader.readComponent(ref).getPath()).isEqualTo("src/Foo" + ref + ".java");
+    }
   }
 
   @Test
@@ -246,6 +302,20 @@ public class ScannerReportWriterTest {
     }
   }
 
+  @Test
+  public void write_serialized_component_data() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Protobuf.writeStream(asList(ScannerReport.Symbol.newBuilder().build(), ScannerReport.Symbol.newBuilder().build()), out);
+
+    underTest.writeComponentData(FileStructure.Domain.SYMBOLS, 1, out.toByteArray());
+
+    assertThat(underTest.hasComponentData(FileStructure.Domain.SYMBOLS, 1)).isTrue();
+    File file = underTest.getFileStructure().fileFor(FileStructure.Domain.SYMBOLS, 1);
+    try (CloseableIterator<ScannerReport.Symbol> read = Protobuf.readStream(file, ScannerReport.Symbol.parser())) {
+      assertThat(read).hasSize(2);
+    }
+  }
+
   @Test
   public void write_syntax_highlighting() {
     // no data yet
@@ -19,12 +19,14 @@
  */
 package org.sonarqube.ws.client;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.Proxy;
 import java.util.Map;
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.X509TrustManager;
+import okhttp3.Cache;
 import okhttp3.Call;
 import okhttp3.Credentials;
 import okhttp3.FormBody;
@@ -35,11 +37,14 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.BufferedSink;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.google.common.base.Strings.nullToEmpty;
 import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
 
 /**
  * Connect to any SonarQube server available through HTTP or HTTPS.
@@ -81,6 +86,9 @@ public class HttpConnector implements WsConnector {
     okHttpClientBuilder.setReadTimeoutMs(builder.readTimeoutMs);
     okHttpClientBuilder.setSSLSocketFactory(builder.sslSocketFactory);
     okHttpClientBuilder.setTrustManager(builder.sslTrustManager);
+    if (builder.cacheDirectory != null) {
+      okHttpClientBuilder.setCache(new Cache(builder.cacheDirectory, builder.cacheMaxSizeInBytes));
+    }
     this.okHttpClient = okHttpClientBuilder.build();
   }
 
@@ -134,8 +142,8 @@ public class HttpConnector implements WsConnector {
         PostRequest.Part part = param.getValue();
         bodyBuilder.addFormDataPart(
           param.getKey(),
-          part.getFile().getName(),
-          RequestBody.create(MediaType.parse(part.getMediaType()), part.getFile()));
+          part.getFileName(),
+          toRequestBody(part));
       });
       body = bodyBuilder.build();
     }
@@ -143,6 +151,28 @@ public class HttpConnector implements WsConnector {
     return doCall(reqBuilder.post(body).build());
   }
 
+  private static RequestBody toRequestBody(PostRequest.Part part) {
+    MediaType mediaType = MediaType.parse(part.getMediaType());
+    File file = part.getFile();
+    if (file != null) {
+      return RequestBody.create(mediaType, file);
+    }
+    PostRequest.ContentWriter contentWriter = requireNonNull(part.getContentWriter());
+    return new RequestBody() {
+      @Override
+      public MediaType contentType() {
+        return mediaType;
+      }
+
+      @Override
+      public void writeTo(BufferedSink sink) throws IOException {
+        // length is unknown (-1 by default), so body is sent in chunks while being written.
+        // Sink is shared with the other parts of multipart body, so it must not be closed by writer.
+        contentWriter.writeTo(new CloseShieldOutputStream(sink.outputStream()));
+      }
+    };
+  }
+
   private HttpUrl.Builder prepareUrlBuilder(WsRequest wsRequest) {
     String path = wsRequest.getPath();
     return baseUrl
@@ -196,6 +226,8 @@ public class HttpConnector implements WsConnector {
     private int readTimeoutMs = DEFAULT_READ_TIMEOUT_MILLISECONDS;
     private SSLSocketFactory sslSocketFactory = null;
     private X509TrustManager sslTrustManager = null;
+    private File cacheDirectory = null;
+    private long cacheMaxSizeInBytes = 0L;
 
     /**
      * Private since 5.5.
@@ -274,6 +306,19 @@ public class HttpConnector implements WsConnector {
       return this;
     }
 
+    /**
+     * Optional persistent cache of HTTP responses, stored in the given directory. Responses sent by server with an
+     * ETag or Last-Modified header are revalidated with conditional requests, and not downloaded again
+     * when not modified. The least recently used responses are evicted when size of cache exceeds {@code maxSizeInBytes}.
+     * Default is no cache.
+     */
+    public Builder cache(@Nullable File directory, long maxSizeInBytes) {
+      checkArgument(maxSizeInBytes > 0, "Max size of cache must be positive. Got %s", maxSizeInBytes);
+      this.cacheDirectory = directory;
+      this.cacheMaxSizeInBytes = maxSizeInBytes;
+      return this;
+    }
+
     public Builder proxy(@Nullable Proxy proxy) {
       this.proxy = proxy;
       return this;
@@ -40,6 +40,7 @@ import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
+import okhttp3.Cache;
 import okhttp3.ConnectionSpec;
 import okhttp3.Credentials;
 import okhttp3.Interceptor;
@@ -69,6 +70,7 @@ public class OkHttpClientBuilder {
   private long readTimeoutMs = -1;
   private SSLSocketFactory sslSocketFactory = null;
   private X509TrustManager sslTrustManager = null;
+  private Cache cache = null;
 
   /**
    * Optional User-Agent. If set, then all the requests sent by the
@@ -149,9 +151,19 @@ public class OkHttpClientBuilder {
     return this;
   }
 
+  /**
+   * Optional cache of HTTP responses. Responses are stored and revalidated according to the headers
+   * Cache-Control, ETag and Last-Modified sent by server. Default is no cache.
+   */
+  public OkHttpClientBuilder setCache(@Nullable Cache cache) {
+    this.cache = cache;
+    return this;
+  }
+
   public OkHttpClient build() {
     OkHttpClient.Builder builder = new OkHttpClient.Builder();
     builder.proxy(proxy);
+    builder.cache(cache);
     if (connectTimeoutMs >= 0) {
       builder.connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS);
     }
@@ -20,8 +20,12 @@
 package org.sonarqube.ws.client;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 /**
  * @since 5.3
@@ -50,20 +54,68 @@ public class PostRequest extends BaseRequest<PostRequest> {
 
   public static class Part {
     private final String mediaType;
+    private final String fileName;
+    @Nullable
     private final File file;
+    @Nullable
+    private final ContentWriter contentWriter;
 
     public Part(String mediaType, File file) {
       this.mediaType = mediaType;
+      this.fileName = file.getName();
       this.file = file;
+      this.contentWriter = null;
+    }
+
+    /**
+     * Part which content is generated while being sent, without being first stored
+     * in a file. Its length is unknown, so the request is sent with chunked transfer encoding.
+     * Writer may be called multiple times if request is retried.
+     *
+     * @since 6.6
+     */
+    public Part(String mediaType, String fileName, ContentWriter contentWriter) {
+      this.mediaType = mediaType;
+      this.fileName = fileName;
+      this.file = null;
+      this.contentWriter = contentWriter;
     }
 
     public String getMediaType() {
       return mediaType;
     }
 
+    /**
+     * @since 6.6
+     */
+    public String getFileName() {
+      return fileName;
+    }
+
+    /**
+     * @return null if content is generated by {@link #getContentWriter()}
+     */
+    @CheckForNull
     public File getFile() {
       return file;
     }
+
+    /**
+     * @return null if content is read from {@link #getFile()}
+     * @since 6.6
+     */
+    @CheckForNull
+    public ContentWriter getContentWriter() {
+      return contentWriter;
+    }
+  }
+
+  /**
+   * @since 6.6
+   */
+  @FunctionalInterface
+  public interface ContentWriter {
+    void writeTo(OutputStream output) throws IOException;
   }
 
 }
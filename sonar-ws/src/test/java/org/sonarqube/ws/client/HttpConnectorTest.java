@@ -22,6 +22,7 @@ package org.sonarqube.ws.client;
 import java.io.File;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import javax.net.ssl.SSLSocketFactory;
 import okhttp3.ConnectionSpec;
@@ -95,6 +96,32 @@ public class HttpConnectorTest {
     assertThat(recordedRequest.getHeader("Accept-Encoding")).isEqualTo("gzip");
   }
 
+  @Test
+  public void revalidate_cached_response_with_etag() throws Exception {
+    server.enqueue(new MockResponse().setHeader("ETag", "\"abc\"").setHeader("Cache-Control", "private, no-cache").setBody("hello, world!"));
+    server.enqueue(new MockResponse().setResponseCode(304));
+    underTest = HttpConnector.newBuilder()
+      .url(serverUrl)
+      .cache(temp.newFolder(), 1_000_000L)
+      .build();
+
+    assertThat(underTest.call(new GetRequest("api/metrics/search")).content()).isEqualTo("hello, world!");
+    WsResponse response = underTest.call(new GetRequest("api/metrics/search"));
+
+    assertThat(response.code()).isEqualTo(200);
+    assertThat(response.content()).isEqualTo("hello, world!");
+    assertThat(server.takeRequest().getHeader("If-None-Match")).isNull();
+    assertThat(server.takeRequest().getHeader("If-None-Match")).isEqualTo("\"abc\"");
+  }
+
+  @Test
+  public void fail_if_max_size_of_cache_is_not_positive() throws Exception {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Max size of cache must be positive. Got 0");
+
+    HttpConnector.newBuilder().cache(temp.newFolder(), 0L);
+  }
+
   @Test
   public void use_basic_authentication() throws Exception {
     answerHelloWorld();
@@ -282,6 +309,35 @@ public class HttpConnectorTest {
       .contains("the report content");
   }
 
+  @Test
+  public void upload_generated_content_in_chunks() throws Exception {
+    answerHelloWorld();
+    PostRequest request = new PostRequest("api/report/upload")
+      .setParam("project", "theKey")
+      .setPart("report", new PostRequest.Part(MediaTypes.TXT, "report.txt", output -> {
+        output.write("the generated ".getBytes(StandardCharsets.UTF_8));
+        output.write("report content".getBytes(StandardCharsets.UTF_8));
+        // closing output must not end the multipart body
+        output.close();
+      }))
+      .setMediaType(MediaTypes.PROTOBUF);
+
+    underTest = HttpConnector.newBuilder().url(serverUrl).build();
+    WsResponse response = underTest.call(request);
+
+    assertThat(response.hasContent()).isTrue();
+    RecordedRequest recordedRequest = server.takeRequest();
+    assertThat(recordedRequest.getPath()).isEqualTo("/api/report/upload?project=theKey");
+    assertThat(recordedRequest.getHeader("Transfer-Encoding")).isEqualTo("chunked");
+    assertThat(recordedRequest.getChunkSizes()).isNotEmpty();
+    String body = IOUtils.toString(recordedRequest.getBody().inputStream());
+    assertThat(body)
+      .contains("Content-Disposition: form-data; name=\"report\"; filename=\"report.txt\"")
+      .contains("Content-Type: text/plain")
+      .contains("the generated report content")
+      .endsWith("--\r\n");
+  }
+
   @Test
   public void http_error() throws Exception {
     server.enqueue(new MockResponse().setResponseCode(404));
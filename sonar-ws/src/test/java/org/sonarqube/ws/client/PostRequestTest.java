@@ -57,4 +57,17 @@ public class PostRequestTest {
     assertThat(part.getMediaType()).isEqualTo(MediaTypes.JSON);
     assertThat(part.getFile()).isSameAs(reportFile);
   }
+
+  @Test
+  public void add_generated_part() {
+    PostRequest.ContentWriter contentWriter = output -> output.write(1);
+    PostRequest request = new PostRequest("api/issues/search");
+    request.setPart("report", new PostRequest.Part(MediaTypes.ZIP, "report.zip", contentWriter));
+
+    PostRequest.Part part = request.getParts().get("report");
+    assertThat(part.getMediaType()).isEqualTo(MediaTypes.ZIP);
+    assertThat(part.getFileName()).isEqualTo("report.zip");
+    assertThat(part.getFile()).isNull();
+    assertThat(part.getContentWriter()).isSameAs(contentWriter);
+  }
 }
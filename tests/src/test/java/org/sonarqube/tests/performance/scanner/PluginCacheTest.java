@@ -0,0 +1,69 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarqube.tests.performance.scanner;
+
+import com.sonar.orchestrator.Orchestrator;
+import com.sonar.orchestrator.build.BuildResult;
+import java.io.File;
+import java.io.IOException;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonarqube.tests.performance.AbstractPerfTest;
+import org.sonarqube.tests.performance.MavenLogs;
+import org.sonarqube.tests.performance.PerfRule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares bootstrap of scanner with an empty user cache, when plugins are downloaded and extracted,
+ * and with a cache already populated by a previous analysis.
+ */
+public class PluginCacheTest extends AbstractPerfTest {
+
+  @Rule
+  public PerfRule perfRule = new PerfRule(4) {
+    @Override
+    protected void beforeEachRun() {
+      orchestrator.resetData();
+    }
+  };
+
+  @ClassRule
+  public static TemporaryFolder temp = new TemporaryFolder();
+
+  @ClassRule
+  public static Orchestrator orchestrator = ScannerPerformanceSuite.ORCHESTRATOR;
+
+  @Test
+  public void bootstrap_with_cached_plugins() throws IOException {
+    File userHome = temp.newFolder();
+
+    BuildResult coldResult = orchestrator.executeBuild(newScanner("-Xmx512m -server", "sonar.userHome", userHome.getAbsolutePath()));
+    assertThat(coldResult.getLogs()).contains("Download sonar-xoo-plugin");
+
+    BuildResult warmResult = orchestrator.executeBuild(newScanner("-Xmx512m -server", "sonar.userHome", userHome.getAbsolutePath()));
+    assertThat(warmResult.getLogs()).doesNotContain("Download sonar-xoo-plugin");
+
+    perfRule.assertDurationLessThan(MavenLogs.extractTotalTime(warmResult.getLogs()), MavenLogs.extractTotalTime(coldResult.getLogs()));
+  }
+
+}